@@ -0,0 +1,121 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides the input spectra used by the benchmarks.
+ */
+public final class BenchmarkSpectra {
+    /**
+     * Spectra taken from the main project's test resources
+     */
+    public static final String REAL_SPECTRA_RESOURCE = "/spectra_400.0_4.0.mgf";
+
+    /**
+     * Source of the spectra used by a benchmark
+     */
+    public enum Source {
+        /**
+         * Spectra read from REAL_SPECTRA_RESOURCE
+         */
+        REAL,
+        /**
+         * Spectra created by the SyntheticSpectrumGenerator
+         */
+        SYNTHETIC
+    }
+
+    private BenchmarkSpectra() {
+
+    }
+
+    /**
+     * Reads the real spectra bundled with the benchmarks.
+     *
+     * @return all spectra in REAL_SPECTRA_RESOURCE
+     */
+    public static List<ISpectrum> readRealSpectra() {
+        InputStream is = BenchmarkSpectra.class.getResourceAsStream(REAL_SPECTRA_RESOURCE);
+        if (is == null)
+            throw new IllegalStateException("Missing benchmark resource " + REAL_SPECTRA_RESOURCE);
+
+        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(is))) {
+            List<ISpectrum> spectra = new ArrayList<>();
+            for (ISpectrum spectrum : ParserUtilities.readMGFScans(reader)) {
+                spectra.add(spectrum);
+            }
+            return spectra;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates pairs of spectra to compare. Real spectra are paired with
+     * their neighbour in the file (the file is sorted by precursor m/z).
+     * Synthetic spectra are paired with a derived spectrum that shares
+     * half of its peaks.
+     *
+     * @param source      the source of the spectra
+     * @param numberPairs number of pairs to create
+     * @param peakCount   number of peaks of synthetic spectra
+     * @param tolerance   the fragment tolerance - used to shift shared synthetic peaks
+     * @return array of pairs
+     */
+    public static ISpectrum[][] createPairs(Source source, int numberPairs, int peakCount, float tolerance) {
+        ISpectrum[][] pairs = new ISpectrum[numberPairs][];
+
+        if (source == Source.REAL) {
+            List<ISpectrum> spectra = readRealSpectra();
+            for (int i = 0; i < numberPairs; i++) {
+                int index = i % (spectra.size() - 1);
+                pairs[i] = new ISpectrum[]{spectra.get(index), spectra.get(index + 1)};
+            }
+        } else {
+            SyntheticSpectrumGenerator generator = new SyntheticSpectrumGenerator(42);
+            for (int i = 0; i < numberPairs; i++) {
+                ISpectrum spectrum = generator.generateSpectrum(peakCount, 400F + i, 2);
+                pairs[i] = new ISpectrum[]{spectrum, generator.generateSimilarSpectrum(spectrum, 0.5F, tolerance / 2)};
+            }
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Creates the spectra of a cluster. Real spectra are taken in file order
+     * and reused if more spectra are requested than available. Synthetic
+     * spectra are all derived from one template spectrum.
+     *
+     * @param source      the source of the spectra
+     * @param clusterSize number of spectra to create
+     * @param peakCount   number of peaks of synthetic spectra
+     * @return the cluster's spectra
+     */
+    public static ISpectrum[] createCluster(Source source, int clusterSize, int peakCount) {
+        ISpectrum[] cluster = new ISpectrum[clusterSize];
+
+        if (source == Source.REAL) {
+            List<ISpectrum> spectra = readRealSpectra();
+            for (int i = 0; i < clusterSize; i++) {
+                cluster[i] = spectra.get(i % spectra.size());
+            }
+        } else {
+            SyntheticSpectrumGenerator generator = new SyntheticSpectrumGenerator(42);
+            ISpectrum template = generator.generateSpectrum(peakCount, 600F, 2);
+            for (int i = 0; i < clusterSize; i++) {
+                cluster[i] = generator.generateSimilarSpectrum(template, 0.7F, 0.1F);
+            }
+        }
+
+        return cluster;
+    }
+}
@@ -0,0 +1,227 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.engine.ClusteringEngineMetrics;
+import uk.ac.ebi.pride.spectracluster.engine.EngineFactories;
+import uk.ac.ebi.pride.spectracluster.engine.GreedyIncrementalClusteringEngine;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.KnownProperties;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Clusters a synthetic dataset using the GreedyIncrementalClusteringEngine
+ * and reports throughput, memory usage and a fingerprint of the clustering
+ * result. Since the dataset is created from a fixed seed, the accuracy
+ * measures and the fingerprint only change if the clustering behaviour changes.
+ * <p>
+ * Parameters are passed as key=value pairs, for example:
+ * <pre>
+ * java -cp target/benchmarks.jar uk.ac.ebi.pride.spectracluster.benchmark.ClusteringThroughputBenchmark spectra=50000 clusters=5000 charges=2:0.6,3:0.3,4:0.1
+ * </pre>
+ */
+public class ClusteringThroughputBenchmark {
+    public static final int DEFAULT_NUMBER_SPECTRA = 20000;
+    public static final int DEFAULT_NUMBER_CLUSTERS = 2000;
+    public static final float DEFAULT_MIN_PRECURSOR_MZ = 400;
+    public static final float DEFAULT_MAX_PRECURSOR_MZ = 1200;
+    public static final String DEFAULT_CHARGES = "2:0.6,3:0.3,4:0.1";
+    public static final int DEFAULT_MIN_PEAKS = 50;
+    public static final int DEFAULT_MAX_PEAKS = 300;
+    public static final float DEFAULT_SHARED_PEAK_FRACTION = 0.7F;
+    public static final long DEFAULT_SEED = 42;
+    public static final float DEFAULT_MZ_BIN_WIDTH = 100;
+
+    private final SyntheticClusteringDataset dataset;
+    private final float mzBinWidth;
+
+    public ClusteringThroughputBenchmark(SyntheticClusteringDataset dataset, float mzBinWidth) {
+        this.dataset = dataset;
+        this.mzBinWidth = mzBinWidth;
+    }
+
+    /**
+     * Clusters the dataset and prints the results to System.out.
+     */
+    public void run() throws Exception {
+        long startGeneration = System.nanoTime();
+        List<ISpectrum> spectra = dataset.generateSpectra();
+        System.out.printf("Generated %d spectra (%d true clusters, seed %d) in %.1f s%n", spectra.size(),
+                dataset.getNumberTrueClusters(), dataset.getSeed(), (System.nanoTime() - startGeneration) / 1e9);
+
+        ISimilarityChecker similarityChecker = Defaults.getDefaultSimilarityChecker();
+
+        EngineFactories.GreedyIncrementalClusteringEngineFactory factory = new EngineFactories.GreedyIncrementalClusteringEngineFactory(
+                similarityChecker, Defaults.getDefaultSpectrumComparator(), Defaults.getSimilarityThreshold(),
+                Defaults.getDefaultPrecursorIonTolerance(), Defaults.getDefaultComparisonPeakFilter(), null);
+        GreedyIncrementalClusteringEngine engine = (GreedyIncrementalClusteringEngine) factory.getGreedyIncrementalClusteringEngine(
+                Defaults.getDefaultPrecursorIonTolerance());
+        // comparisons are counted by the listener so that only scores the engine used are counted
+        ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+        engine.setEngineListener(metrics);
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long startGcTime = getTotalGcTime();
+
+        // cluster the spectra and record the time spent per m/z bin
+        SortedMap<Integer, long[]> binTimings = new TreeMap<>();
+        List<ICluster> clusters = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (ISpectrum spectrum : spectra) {
+            long spectrumStart = System.nanoTime();
+            clusters.addAll(engine.addClusterIncremental(ClusterUtilities.asCluster(spectrum)));
+
+            int bin = (int) (spectrum.getPrecursorMz() / mzBinWidth);
+            long[] binTiming = binTimings.get(bin);
+            if (binTiming == null) {
+                binTiming = new long[2];
+                binTimings.put(bin, binTiming);
+            }
+            binTiming[0]++;
+            binTiming[1] += System.nanoTime() - spectrumStart;
+        }
+        clusters.addAll(engine.getClusters());
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcTime = getTotalGcTime() - startGcTime;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        System.out.printf("Clustering time:   %.2f s%n", seconds);
+        System.out.printf("Spectra / s:       %.1f%n", spectra.size() / seconds);
+        System.out.printf("Comparisons:       %d (%.1f / s)%n", metrics.getComparisons(), metrics.getComparisons() / seconds);
+        System.out.printf("Peak heap:         %.1f MB (sum of the heap pools' peaks)%n", peakHeap / 1024.0 / 1024.0);
+        System.out.printf("GC time:           %d ms%n", gcTime);
+
+        System.out.println("m/z bin timings:");
+        for (Map.Entry<Integer, long[]> binTiming : binTimings.entrySet()) {
+            float binStart = binTiming.getKey() * mzBinWidth;
+            long[] timing = binTiming.getValue();
+            System.out.printf("  %7.1f - %7.1f: %6d spectra, %8.1f ms, %6.1f spectra / s%n", binStart, binStart + mzBinWidth,
+                    timing[0], timing[1] / 1e6, timing[0] / (timing[1] / 1e9));
+        }
+
+        System.out.println("Engine metrics:");
+        System.out.print(metrics.getSummary());
+
+        printAccuracy(clusters);
+    }
+
+    /**
+     * Prints the purity and completeness of the clusters compared to the
+     * true clusters as well as a checksum of the clustering result.
+     */
+    private void printAccuracy(List<ICluster> clusters) {
+        Map<String, Integer> trueClusterSizes = new HashMap<>();
+        Map<String, Integer> largestClusterPart = new HashMap<>();
+        long correctlyClustered = 0;
+        long totalSpectra = 0;
+        int nonSingletonClusters = 0;
+        List<String> clusterSignatures = new ArrayList<>(clusters.size());
+
+        for (ICluster cluster : clusters) {
+            Map<String, Integer> labelCounts = new HashMap<>();
+            List<String> spectrumIds = new ArrayList<>();
+
+            for (ISpectrum spectrum : cluster.getClusteredSpectra()) {
+                String label = spectrum.getProperty(KnownProperties.IDENTIFIED_PEPTIDE_KEY);
+                labelCounts.merge(label, 1, Integer::sum);
+                trueClusterSizes.merge(label, 1, Integer::sum);
+                spectrumIds.add(spectrum.getId());
+            }
+
+            int maxCount = 0;
+            for (Map.Entry<String, Integer> labelCount : labelCounts.entrySet()) {
+                maxCount = Math.max(maxCount, labelCount.getValue());
+                largestClusterPart.merge(labelCount.getKey(), labelCount.getValue(), Math::max);
+            }
+
+            correctlyClustered += maxCount;
+            totalSpectra += cluster.getClusteredSpectraCount();
+            if (cluster.getClusteredSpectraCount() > 1)
+                nonSingletonClusters++;
+
+            Collections.sort(spectrumIds);
+            clusterSignatures.add(String.join(",", spectrumIds));
+        }
+
+        long completeSpectra = 0;
+        for (Map.Entry<String, Integer> largestPart : largestClusterPart.entrySet()) {
+            completeSpectra += largestPart.getValue();
+        }
+
+        // the fingerprint does not depend on the order of the clusters
+        Collections.sort(clusterSignatures);
+        CRC32 checksum = new CRC32();
+        for (String signature : clusterSignatures) {
+            checksum.update(signature.getBytes());
+            checksum.update('\n');
+        }
+
+        System.out.printf("Clusters:          %d (%d with more than one spectrum, %d true clusters)%n",
+                clusters.size(), nonSingletonClusters, trueClusterSizes.size());
+        System.out.printf("Purity:            %.4f%n", (double) correctlyClustered / totalSpectra);
+        System.out.printf("Completeness:      %.4f%n", (double) completeSpectra / totalSpectra);
+        System.out.printf("Fingerprint:       %08x%n", checksum.getValue());
+    }
+
+    private static long getTotalGcTime() {
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, gcBean.getCollectionTime());
+        }
+        return gcTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index < 1)
+                throw new IllegalArgumentException("Parameters must be passed as key=value: " + arg);
+            params.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+
+        String[] chargeDefinitions = params.getOrDefault("charges", DEFAULT_CHARGES).split(",");
+        int[] charges = new int[chargeDefinitions.length];
+        double[] chargeFractions = new double[chargeDefinitions.length];
+        for (int i = 0; i < chargeDefinitions.length; i++) {
+            String[] fields = chargeDefinitions[i].split(":");
+            charges[i] = Integer.parseInt(fields[0]);
+            chargeFractions[i] = (fields.length > 1) ? Double.parseDouble(fields[1]) : 1;
+        }
+
+        SyntheticClusteringDataset dataset = new SyntheticClusteringDataset(
+                Integer.parseInt(params.getOrDefault("spectra", String.valueOf(DEFAULT_NUMBER_SPECTRA))),
+                Integer.parseInt(params.getOrDefault("clusters", String.valueOf(DEFAULT_NUMBER_CLUSTERS))),
+                Float.parseFloat(params.getOrDefault("minMz", String.valueOf(DEFAULT_MIN_PRECURSOR_MZ))),
+                Float.parseFloat(params.getOrDefault("maxMz", String.valueOf(DEFAULT_MAX_PRECURSOR_MZ))),
+                charges, chargeFractions,
+                Integer.parseInt(params.getOrDefault("minPeaks", String.valueOf(DEFAULT_MIN_PEAKS))),
+                Integer.parseInt(params.getOrDefault("maxPeaks", String.valueOf(DEFAULT_MAX_PEAKS))),
+                Float.parseFloat(params.getOrDefault("sharedPeaks", String.valueOf(DEFAULT_SHARED_PEAK_FRACTION))),
+                Long.parseLong(params.getOrDefault("seed", String.valueOf(DEFAULT_SEED))));
+
+        float mzBinWidth = Float.parseFloat(params.getOrDefault("binWidth", String.valueOf(DEFAULT_MZ_BIN_WIDTH)));
+
+        new ClusteringThroughputBenchmark(dataset, mzBinWidth).run();
+    }
+}
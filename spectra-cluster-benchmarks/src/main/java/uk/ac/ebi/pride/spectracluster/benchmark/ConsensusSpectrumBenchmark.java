@@ -0,0 +1,167 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ebi.pride.spectracluster.consensus.BinnedGreedyConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.consensus.ConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.consensus.GreedyConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.BinSpectrumMaxFunction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building consensus spectra for clusters of
+ * different sizes:
+ * <ul>
+ * <li>addSpectra: adds all spectra one by one, as the clustering engines do</li>
+ * <li>addSpectraAndGetConsensusSpectrum: adds all spectra and calculates the consensus spectrum -
+ * the difference to addSpectra is the cost of the calculation</li>
+ * <li>addConsensusSpectrum: merges two clusters of the passed size (greedy builders only)</li>
+ * </ul>
+ * <pre>
+ * java -jar target/benchmarks.jar ConsensusSpectrumBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsensusSpectrumBenchmark {
+    /**
+     * The consensus spectrum builders to test
+     */
+    public enum BuilderType {
+        CONSENSUS,
+        GREEDY,
+        BINNED_GREEDY;
+
+        public IConsensusSpectrumBuilder createBuilder() {
+            switch (this) {
+                case CONSENSUS:
+                    return ConsensusSpectrum.FACTORY.getConsensusSpectrumBuilder();
+                case GREEDY:
+                    return GreedyConsensusSpectrum.FACTORY.getConsensusSpectrumBuilder();
+                default:
+                    return BinnedGreedyConsensusSpectrum.FACTORY.getConsensusSpectrumBuilder();
+            }
+        }
+    }
+
+    /**
+     * The builders supporting addConsensusSpectrum
+     */
+    public enum GreedyBuilderType {
+        GREEDY,
+        BINNED_GREEDY;
+
+        public IConsensusSpectrumBuilder createBuilder() {
+            switch (this) {
+                case GREEDY:
+                    return GreedyConsensusSpectrum.FACTORY.getConsensusSpectrumBuilder();
+                default:
+                    return BinnedGreedyConsensusSpectrum.FACTORY.getConsensusSpectrumBuilder();
+            }
+        }
+
+        /**
+         * Creates a new builder holding the same raw peaks as the passed one. The
+         * consensus spectrum of the new builder still needs to be calculated.
+         */
+        public IConsensusSpectrumBuilder copyBuilder(IConsensusSpectrumBuilder builder) {
+            float tolerance = Defaults.getFragmentIonTolerance();
+
+            switch (this) {
+                case GREEDY:
+                    return new GreedyConsensusSpectrum(tolerance, null, builder.getSpectraCount(), builder.getSumPrecursorMz(),
+                            builder.getSumPrecursorIntensity(), builder.getSumCharge(), builder.getRawConsensusPeaks());
+                default:
+                    return new BinnedGreedyConsensusSpectrum(tolerance, null, builder.getSpectraCount(), builder.getSumPrecursorMz(),
+                            builder.getSumPrecursorIntensity(), builder.getSumCharge(), builder.getRawConsensusPeaks(),
+                            new BinSpectrumMaxFunction(tolerance));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClusterState {
+        @Param({"SYNTHETIC", "REAL"})
+        public BenchmarkSpectra.Source source;
+
+        @Param({"2", "10", "100", "1000", "10000"})
+        public int clusterSize;
+
+        @Param({"CONSENSUS", "GREEDY", "BINNED_GREEDY"})
+        public BuilderType builderType;
+
+        ISpectrum[] spectra;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            spectra = BenchmarkSpectra.createCluster(source, clusterSize, 150);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MergeState {
+        @Param({"SYNTHETIC", "REAL"})
+        public BenchmarkSpectra.Source mergeSource;
+
+        @Param({"2", "10", "100", "1000", "10000"})
+        public int mergeClusterSize;
+
+        @Param({"GREEDY", "BINNED_GREEDY"})
+        public GreedyBuilderType mergeBuilderType;
+
+        IConsensusSpectrumBuilder target;
+        IConsensusSpectrumBuilder toAdd;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ISpectrum[] spectra = BenchmarkSpectra.createCluster(mergeSource, mergeClusterSize * 2, 150);
+            target = mergeBuilderType.createBuilder();
+            toAdd = mergeBuilderType.createBuilder();
+
+            for (int i = 0; i < spectra.length; i++) {
+                if (i % 2 == 0)
+                    target.addSpectra(spectra[i]);
+                else
+                    toAdd.addSpectra(spectra[i]);
+            }
+
+            // make sure the added consensus spectrum is not recalculated during the benchmark
+            toAdd.getConsensusSpectrum();
+        }
+    }
+
+    @Benchmark
+    public IConsensusSpectrumBuilder addSpectra(ClusterState state) {
+        IConsensusSpectrumBuilder builder = state.builderType.createBuilder();
+        for (ISpectrum spectrum : state.spectra) {
+            builder.addSpectra(spectrum);
+        }
+        return builder;
+    }
+
+    @Benchmark
+    public ISpectrum addSpectraAndGetConsensusSpectrum(ClusterState state) {
+        return addSpectra(state).getConsensusSpectrum();
+    }
+
+    /**
+     * The measured time includes copying the target cluster's raw peaks.
+     */
+    @Benchmark
+    public IConsensusSpectrumBuilder addConsensusSpectrum(MergeState state) {
+        IConsensusSpectrumBuilder target = state.mergeBuilderType.copyBuilder(state.target);
+
+        if (target instanceof GreedyConsensusSpectrum)
+            ((GreedyConsensusSpectrum) target).addConsensusSpectrum(state.toAdd);
+        else
+            ((BinnedGreedyConsensusSpectrum) target).addConsensusSpectrum(state.toAdd);
+
+        return target;
+    }
+}
@@ -0,0 +1,94 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.peak.BinnedHighestNPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.peak.FractionTICPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.peak.HighestNPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.BinSpectrumMaxFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.HighestNSpectrumPeaksFunction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the peak functions used to pre-process
+ * spectra and to build consensus spectra.
+ * <pre>
+ * java -jar target/benchmarks.jar PeakFunctionBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeakFunctionBenchmark {
+    private static final int NUMBER_SPECTRA = 200;
+
+    @Param({"SYNTHETIC", "REAL"})
+    public BenchmarkSpectra.Source source;
+
+    /**
+     * Maximum number of peaks per spectrum. Real spectra are reduced to
+     * their highest peaks.
+     */
+    @Param({"100", "500", "2000"})
+    public int peakCount;
+
+    @Param({"0.5"})
+    public float tolerance;
+
+    private ISpectrum[] spectra;
+    private int currentSpectrum;
+
+    private IFunction<List<IPeak>, List<IPeak>> binnedHighestNPeakFunction;
+    private IFunction<List<IPeak>, List<IPeak>> highestNPeakFunction;
+    private IFunction<List<IPeak>, List<IPeak>> fractionTICPeakFunction;
+    private IFunction<ISpectrum, ISpectrum> binSpectrumMaxFunction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ISpectrum[][] pairs = BenchmarkSpectra.createPairs(source, NUMBER_SPECTRA, peakCount, tolerance);
+
+        IFunction<ISpectrum, ISpectrum> highestPeaks = new HighestNSpectrumPeaksFunction(peakCount);
+        spectra = new ISpectrum[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            spectra[i] = highestPeaks.apply(pairs[i][0]);
+        }
+
+        binnedHighestNPeakFunction = new BinnedHighestNPeakFunction();
+        highestNPeakFunction = new HighestNPeakFunction();
+        fractionTICPeakFunction = new FractionTICPeakFunction();
+        binSpectrumMaxFunction = new BinSpectrumMaxFunction(tolerance);
+    }
+
+    private ISpectrum nextSpectrum() {
+        ISpectrum spectrum = spectra[currentSpectrum];
+        currentSpectrum = (currentSpectrum + 1) % spectra.length;
+        return spectrum;
+    }
+
+    @Benchmark
+    public List<IPeak> binnedHighestNPeakFunction() {
+        return binnedHighestNPeakFunction.apply(nextSpectrum().getPeaks());
+    }
+
+    @Benchmark
+    public List<IPeak> highestNPeakFunction() {
+        return highestNPeakFunction.apply(nextSpectrum().getPeaks());
+    }
+
+    @Benchmark
+    public List<IPeak> fractionTICPeakFunction() {
+        return fractionTICPeakFunction.apply(nextSpectrum().getPeaks());
+    }
+
+    @Benchmark
+    public ISpectrum binSpectrumMaxFunction() {
+        return binSpectrumMaxFunction.apply(nextSpectrum());
+    }
+}
@@ -0,0 +1,132 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ebi.pride.spectracluster.similarity.*;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.HighestNSpectrumPeaksFunction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the similarity checkers and the underlying
+ * peak matching. Run with "-prof gc" to also report the allocation rate:
+ * <pre>
+ * java -jar target/benchmarks.jar SimilarityCheckerBenchmark -prof gc
+ * </pre>
+ *
+ * Spectra cache the result of getHighestNPeaks. Every iteration therefore
+ * scores fresh copies of the pairs, rotating through NUMBER_COPIES copies of
+ * every pair. With peakFiltering enabled, only the first comparison of every
+ * copy pays for the filtering; once an iteration has scored more than
+ * NUMBER_PAIRS * NUMBER_COPIES pairs, the filtered spectra are taken from
+ * the cache as when the engines score the same spectrum repeatedly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityCheckerBenchmark {
+    private static final int NUMBER_PAIRS = 200;
+    private static final int NUMBER_COPIES = 50;
+
+    @Param({"SYNTHETIC", "REAL"})
+    public BenchmarkSpectra.Source source;
+
+    /**
+     * Maximum number of peaks per spectrum. Real spectra are reduced to
+     * their highest peaks.
+     */
+    @Param({"50", "150", "500"})
+    public int peakCount;
+
+    @Param({"0.5", "0.05"})
+    public float tolerance;
+
+    @Param({"false", "true"})
+    public boolean peakFiltering;
+
+    private ISpectrum[][] originalPairs;
+    private ISpectrum[][] pairs;
+    private int currentPair;
+
+    private ISimilarityChecker frankEtAlDotProduct;
+    private ISimilarityChecker fisherExactTest;
+    private ISimilarityChecker intensityRankCorrelation;
+    private ISimilarityChecker combinedFisherIntensityTest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalPairs = BenchmarkSpectra.createPairs(source, NUMBER_PAIRS, peakCount, tolerance);
+
+        IFunction<ISpectrum, ISpectrum> highestPeaks = new HighestNSpectrumPeaksFunction(peakCount);
+        for (ISpectrum[] pair : originalPairs) {
+            pair[0] = highestPeaks.apply(pair[0]);
+            pair[1] = highestPeaks.apply(pair[1]);
+        }
+
+        frankEtAlDotProduct = new FrankEtAlDotProduct(tolerance);
+        frankEtAlDotProduct.setPeakFiltering(peakFiltering);
+        fisherExactTest = new FisherExactTest(tolerance, peakFiltering);
+        intensityRankCorrelation = new IntensityRankCorrelation(tolerance, peakFiltering);
+        combinedFisherIntensityTest = new CombinedFisherIntensityTest(tolerance, peakFiltering);
+    }
+
+    /**
+     * Creates copies of the pairs that did not cache any filtered version yet.
+     */
+    @Setup(Level.Iteration)
+    public void copyPairs() {
+        pairs = new ISpectrum[originalPairs.length * NUMBER_COPIES][];
+        for (int i = 0; i < pairs.length; i++) {
+            ISpectrum[] pair = originalPairs[i % originalPairs.length];
+            pairs[i] = new ISpectrum[]{copy(pair[0]), copy(pair[1])};
+        }
+        currentPair = 0;
+    }
+
+    private static ISpectrum copy(ISpectrum spectrum) {
+        // the peaks are immutable and already sorted, only the list is copied
+        return new Spectrum(spectrum, spectrum.getPeaks(), true);
+    }
+
+    private ISpectrum[] nextPair() {
+        ISpectrum[] pair = pairs[currentPair];
+        currentPair = (currentPair + 1) % pairs.length;
+        return pair;
+    }
+
+    @Benchmark
+    public double frankEtAlDotProduct() {
+        ISpectrum[] pair = nextPair();
+        return frankEtAlDotProduct.assessSimilarity(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public double fisherExactTest() {
+        ISpectrum[] pair = nextPair();
+        return fisherExactTest.assessSimilarity(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public double intensityRankCorrelation() {
+        ISpectrum[] pair = nextPair();
+        return intensityRankCorrelation.assessSimilarity(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public double combinedFisherIntensityTest() {
+        ISpectrum[] pair = nextPair();
+        return combinedFisherIntensityTest.assessSimilarity(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public List<Integer>[] getSharedPeaks() {
+        ISpectrum[] pair = nextPair();
+        return PeakMatchesUtilities.getSharedPeaks(pair[0], pair[1], tolerance);
+    }
+}
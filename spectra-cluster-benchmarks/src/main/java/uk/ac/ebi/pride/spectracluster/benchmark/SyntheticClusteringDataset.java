@@ -0,0 +1,136 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.KnownProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A reproducible set of synthetic spectra with a known cluster structure.
+ * Every true cluster is represented by a template spectrum, all spectra of
+ * a cluster are derived from this template. The true cluster is stored
+ * as the spectrum's identified peptide (KnownProperties.IDENTIFIED_PEPTIDE_KEY).
+ */
+public class SyntheticClusteringDataset {
+    public static final String TRUE_CLUSTER_PREFIX = "TRUE_CLUSTER_";
+
+    private final int numberSpectra;
+    private final int numberTrueClusters;
+    private final float minPrecursorMz;
+    private final float maxPrecursorMz;
+    private final int[] charges;
+    private final double[] chargeFractions;
+    private final int minPeaks;
+    private final int maxPeaks;
+    private final float sharedPeakFraction;
+    private final long seed;
+
+    /**
+     * Creates a new dataset definition. The spectra are only created by
+     * calling generateSpectra.
+     *
+     * @param numberSpectra      total number of spectra
+     * @param numberTrueClusters number of true clusters the spectra are derived from
+     * @param minPrecursorMz     lowest precursor m/z
+     * @param maxPrecursorMz     highest precursor m/z - together with the number of clusters this defines the precursor density
+     * @param charges            the precursor charges to use
+     * @param chargeFractions    relative frequency of every charge
+     * @param minPeaks           minimum number of peaks per spectrum
+     * @param maxPeaks           maximum number of peaks per spectrum
+     * @param sharedPeakFraction fraction of peaks a spectrum shares with its cluster's template
+     * @param seed               seed of the random number generator
+     */
+    public SyntheticClusteringDataset(int numberSpectra, int numberTrueClusters, float minPrecursorMz, float maxPrecursorMz,
+                                      int[] charges, double[] chargeFractions, int minPeaks, int maxPeaks,
+                                      float sharedPeakFraction, long seed) {
+        if (charges.length != chargeFractions.length)
+            throw new IllegalArgumentException("Every charge requires a fraction");
+        if (numberTrueClusters < 1 || numberSpectra < numberTrueClusters)
+            throw new IllegalArgumentException("Invalid number of spectra / clusters");
+
+        this.numberSpectra = numberSpectra;
+        this.numberTrueClusters = numberTrueClusters;
+        this.minPrecursorMz = minPrecursorMz;
+        this.maxPrecursorMz = maxPrecursorMz;
+        this.charges = charges.clone();
+        this.chargeFractions = chargeFractions.clone();
+        this.minPeaks = minPeaks;
+        this.maxPeaks = maxPeaks;
+        this.sharedPeakFraction = sharedPeakFraction;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the dataset's spectra sorted by precursor m/z. Repeated calls
+     * return identical spectra.
+     *
+     * @return !null list of spectra
+     */
+    public List<ISpectrum> generateSpectra() {
+        Random random = new Random(seed);
+        SyntheticSpectrumGenerator generator = new SyntheticSpectrumGenerator(seed);
+
+        // create the templates
+        ISpectrum[] templates = new ISpectrum[numberTrueClusters];
+        for (int i = 0; i < numberTrueClusters; i++) {
+            float precursorMz = minPrecursorMz + random.nextFloat() * (maxPrecursorMz - minPrecursorMz);
+            int peakCount = minPeaks + random.nextInt(maxPeaks - minPeaks + 1);
+            templates[i] = generator.generateSpectrum(peakCount, precursorMz, randomCharge(random));
+        }
+
+        List<ISpectrum> spectra = new ArrayList<>(numberSpectra);
+        for (int i = 0; i < numberSpectra; i++) {
+            // make sure every cluster has at least one spectrum
+            int trueCluster = (i < numberTrueClusters) ? i : random.nextInt(numberTrueClusters);
+
+            ISpectrum spectrum = generator.generateSimilarSpectrum(templates[trueCluster], sharedPeakFraction, 0.1F);
+            spectrum.setProperty(KnownProperties.IDENTIFIED_PEPTIDE_KEY, TRUE_CLUSTER_PREFIX + trueCluster);
+            spectra.add(spectrum);
+        }
+
+        Collections.sort(spectra, new Comparator<ISpectrum>() {
+            @Override
+            public int compare(ISpectrum o1, ISpectrum o2) {
+                int comparison = Float.compare(o1.getPrecursorMz(), o2.getPrecursorMz());
+                if (comparison != 0)
+                    return comparison;
+
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+
+        return spectra;
+    }
+
+    private int randomCharge(Random random) {
+        double total = 0;
+        for (double fraction : chargeFractions) {
+            total += fraction;
+        }
+
+        double value = random.nextDouble() * total;
+        for (int i = 0; i < charges.length; i++) {
+            value -= chargeFractions[i];
+            if (value < 0)
+                return charges[i];
+        }
+
+        return charges[charges.length - 1];
+    }
+
+    public int getNumberSpectra() {
+        return numberSpectra;
+    }
+
+    public int getNumberTrueClusters() {
+        return numberTrueClusters;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
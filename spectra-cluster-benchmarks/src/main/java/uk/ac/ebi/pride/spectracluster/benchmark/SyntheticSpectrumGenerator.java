@@ -0,0 +1,88 @@
+package uk.ac.ebi.pride.spectracluster.benchmark;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates reproducible random spectra for benchmarking. Intensities follow
+ * a log-normal distribution which roughly resembles real MS/MS spectra
+ * where few high peaks are accompanied by many small noise peaks.
+ */
+public class SyntheticSpectrumGenerator {
+    public static final float MINIMUM_MZ = 100F;
+    public static final float MAXIMUM_MZ = 2000F;
+
+    private final Random random;
+    private int createdSpectra;
+
+    public SyntheticSpectrumGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates a new random spectrum.
+     *
+     * @param peakCount   number of peaks to create
+     * @param precursorMz the spectrum's precursor m/z
+     * @param charge      the spectrum's precursor charge
+     * @return the new spectrum
+     */
+    public ISpectrum generateSpectrum(int peakCount, float precursorMz, int charge) {
+        List<IPeak> peaks = new ArrayList<>(peakCount);
+        float maxMz = Math.min(MAXIMUM_MZ, precursorMz * charge);
+
+        for (int i = 0; i < peakCount; i++) {
+            float mz = MINIMUM_MZ + random.nextFloat() * (maxMz - MINIMUM_MZ);
+            peaks.add(new Peak(mz, randomIntensity()));
+        }
+
+        return createSpectrum(precursorMz, charge, peaks);
+    }
+
+    /**
+     * Creates a spectrum sharing a fraction of its peaks with the passed
+     * template. Shared peaks are shifted by at most mzJitter, all other peaks
+     * are replaced by random ones.
+     *
+     * @param template       the spectrum to derive the new one from
+     * @param sharedFraction fraction (0 - 1) of peaks to keep
+     * @param mzJitter       maximum m/z shift of the shared peaks
+     * @return the new spectrum with the same number of peaks as the template
+     */
+    public ISpectrum generateSimilarSpectrum(ISpectrum template, float sharedFraction, float mzJitter) {
+        List<IPeak> peaks = new ArrayList<>(template.getPeaksCount());
+        float maxMz = Math.min(MAXIMUM_MZ, template.getPrecursorMz() * template.getPrecursorCharge());
+
+        for (IPeak peak : template.getPeaks()) {
+            if (random.nextFloat() < sharedFraction) {
+                float mz = peak.getMz() + (random.nextFloat() * 2 - 1) * mzJitter;
+                float intensity = peak.getIntensity() * (0.5F + random.nextFloat());
+                peaks.add(new Peak(mz, intensity));
+            } else {
+                float mz = MINIMUM_MZ + random.nextFloat() * (maxMz - MINIMUM_MZ);
+                peaks.add(new Peak(mz, randomIntensity()));
+            }
+        }
+
+        return createSpectrum(template.getPrecursorMz(), template.getPrecursorCharge(), peaks);
+    }
+
+    private ISpectrum createSpectrum(float precursorMz, int charge, List<IPeak> peaks) {
+        peaks.sort(new PeakMzComparator());
+        String id = "synthetic_" + createdSpectra++;
+
+        return new Spectrum(id, charge, precursorMz, Defaults.getDefaultQualityScorer(), peaks);
+    }
+
+    private float randomIntensity() {
+        return (float) Math.exp(random.nextGaussian() * 1.5 + 5);
+    }
+}
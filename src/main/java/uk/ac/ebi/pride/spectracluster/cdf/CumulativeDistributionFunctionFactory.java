@@ -2,6 +2,7 @@ package uk.ac.ebi.pride.spectracluster.cdf;
 
 import uk.ac.ebi.pride.spectracluster.similarity.CombinedFisherIntensityTest;
 import uk.ac.ebi.pride.spectracluster.similarity.FrankEtAlDotProduct;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
 import java.io.BufferedReader;
@@ -24,8 +25,21 @@ public class CumulativeDistributionFunctionFactory {
      * @throws Exception
      */
     public static CumulativeDistributionFunction getDefaultCumlativeDistributionFunctionForSimilarityMetric(Class similatiryClass) throws Exception {
-        if (Defaults.getCumulativeDistributionFunction() != null) {
-            return Defaults.getCumulativeDistributionFunction();
+        return getDefaultCumlativeDistributionFunctionForSimilarityMetric(similatiryClass, Defaults.getConfiguration());
+    }
+
+    /**
+     * Returns the cumulative distribution function (CDF) set in the passed
+     * configuration. If none is set, the matching CDF is loaded from the
+     * resource file.
+     * @param similatiryClass
+     * @param configuration
+     * @return
+     * @throws Exception
+     */
+    public static CumulativeDistributionFunction getDefaultCumlativeDistributionFunctionForSimilarityMetric(Class<?> similatiryClass, ClusteringConfiguration configuration) throws Exception {
+        if (configuration.getCumulativeDistributionFunction() != null) {
+            return configuration.getCumulativeDistributionFunction();
         }
         else {
             return getCumulativeDistributionFunctionForSimilarityMetric(similatiryClass);
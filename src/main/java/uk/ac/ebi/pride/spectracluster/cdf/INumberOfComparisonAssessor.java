@@ -5,7 +5,8 @@ import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 /**
  * This interface describes classes that derive the
  * number of comparisons to use for the threshold
- * calculation.
+ * calculation. Custom implementations have to be
+ * serializable to be stored in checkpoints.
  *
  * Created by jg on 13.10.17.
  */
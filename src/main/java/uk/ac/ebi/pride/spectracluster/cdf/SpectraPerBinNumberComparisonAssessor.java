@@ -42,6 +42,21 @@ public class SpectraPerBinNumberComparisonAssessor implements INumberOfCompariso
         this(precursorTolerance, 0);
     }
 
+    /**
+     * Create a SpectraPerBinNumberComparisonAssessor with already counted spectra,
+     * f.e. to restore a checkpoint.
+     * @param precursorTolerance The precursor tolerance in m/z to use.
+     * @param minSpectra The minimum number of spectra always to return.
+     * @param spectraPerBin The counts as returned by getSpectraPerBin.
+     */
+    public SpectraPerBinNumberComparisonAssessor(float precursorTolerance, int minSpectra, int[] spectraPerBin) {
+        this(precursorTolerance, minSpectra);
+
+        if (spectraPerBin.length != this.spectraPerBin.length)
+            throw new IllegalArgumentException("Expected " + this.spectraPerBin.length + " bins but got " + spectraPerBin.length);
+        System.arraycopy(spectraPerBin, 0, this.spectraPerBin, 0, spectraPerBin.length);
+    }
+
     /**
      * Count this spectrum to know how many spectra exist per
      * bin. This function is thread safe.
@@ -66,6 +81,21 @@ public class SpectraPerBinNumberComparisonAssessor implements INumberOfCompariso
         }
     }
 
+    public float getPrecursorTolerance() {
+        return windowSize / 2;
+    }
+
+    public int getMinSpectra() {
+        return minSpectra;
+    }
+
+    /**
+     * @return A copy of the number of spectra counted per bin
+     */
+    public synchronized int[] getSpectraPerBin() {
+        return spectraPerBin.clone();
+    }
+
     @Override
     public int getNumberOfComparisons(ICluster clusterToCompare, int nCurrentClusters) {
         int bin = getBinForSpectrum(clusterToCompare.getPrecursorMz());
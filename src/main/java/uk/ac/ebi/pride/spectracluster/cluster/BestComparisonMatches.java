@@ -0,0 +1,233 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
+import uk.ac.ebi.pride.spectracluster.util.IdRegistry;
+import uk.ac.ebi.pride.spectracluster.util.IntIntHashMap;
+
+import java.util.*;
+
+/**
+ * Keeps the N best comparison matches of a cluster. The matches are
+ * stored in a min-heap of primitive arrays so that the lowest match
+ * can be replaced in O(log N) without sorting. Matches with the same
+ * similarity are ordered by the time they were added, thereby the
+ * earliest of several equally low matches is removed first.
+ *
+ * The ids are stored as indices of the cluster's IdRegistry and only resolved
+ * when the matches are requested as a list. The number of times an id
+ * is part of the matches is kept up to date with every change so that
+ * lookups never have to rebuild an index.
+ *
+ * Instances are not thread-safe.
+ */
+final class BestComparisonMatches {
+    private final int maximumSize;
+    private final IdRegistry idRegistry;
+
+    private float[] similarities;
+    private long[] sequences;
+    private int[] ids;
+    private int size;
+    private long nextSequence;
+
+    private final IntIntHashMap idCounts;
+    /**
+     * Cached result of getMatches, null if the matches changed
+     */
+    private List<ComparisonMatch> matches;
+
+    BestComparisonMatches(int maximumSize, IdRegistry idRegistry) {
+        this.maximumSize = maximumSize;
+        this.idRegistry = idRegistry;
+        // one additional slot for the match that is replaced
+        similarities = new float[maximumSize + 1];
+        sequences = new long[maximumSize + 1];
+        ids = new int[maximumSize + 1];
+        idCounts = new IntIntHashMap(maximumSize + 1);
+    }
+
+    /**
+     * Copies the matches. The ids are registered in the passed registry
+     * if it is not the one of the copied matches.
+     */
+    BestComparisonMatches(BestComparisonMatches other, IdRegistry idRegistry) {
+        this.maximumSize = other.maximumSize;
+        this.idRegistry = idRegistry;
+        this.similarities = other.similarities.clone();
+        this.sequences = other.sequences.clone();
+        this.ids = other.ids.clone();
+        this.size = other.size;
+        this.nextSequence = other.nextSequence;
+        this.matches = other.matches;
+
+        if (idRegistry == other.idRegistry) {
+            this.idCounts = new IntIntHashMap(other.idCounts);
+        } else {
+            this.idCounts = new IntIntHashMap(maximumSize + 1);
+            for (int i = 0; i < size; i++) {
+                ids[i] = idRegistry.intern(other.idRegistry.resolve(ids[i]));
+                idCounts.addTo(ids[i], 1);
+            }
+        }
+    }
+
+    /**
+     * Adds a match unless the N best matches are already known and
+     * the similarity is lower than all of them.
+     *
+     * @param id         Id of the cluster that the comparison was performed with
+     * @param similarity The similarity score
+     */
+    void add(String id, float similarity) {
+        if (size >= maximumSize && similarity < similarities[0])
+            return;
+
+        push(idRegistry.intern(id), similarity);
+
+        while (size > maximumSize)
+            removeLowest();
+
+        matches = null;
+    }
+
+    /**
+     * Replaces all matches. Just like a sorted list, all passed matches are
+     * kept even if these are more than N.
+     *
+     * @param comparisonMatches The new matches, may be null
+     */
+    void setAll(List<ComparisonMatch> comparisonMatches) {
+        size = 0;
+        idCounts.clear();
+        matches = null;
+
+        if (comparisonMatches == null)
+            return;
+
+        // the stable sort keeps the order of equal matches
+        List<ComparisonMatch> sortedMatches = new ArrayList<>(comparisonMatches);
+        Collections.sort(sortedMatches);
+
+        int capacity = Math.max(maximumSize, sortedMatches.size()) + 1;
+        if (capacity > similarities.length) {
+            similarities = new float[capacity];
+            sequences = new long[capacity];
+            ids = new int[capacity];
+        }
+
+        for (ComparisonMatch comparisonMatch : sortedMatches)
+            push(idRegistry.intern(comparisonMatch.getSpectrumId()), comparisonMatch.getSimilarity());
+    }
+
+    boolean contains(String id) {
+        int index = idRegistry.getIndex(id);
+        return index != IdRegistry.UNKNOWN_ID && idCounts.containsKey(index);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the matches in the order they were added. Once N matches
+     * are known, they are sorted from the lowest to the highest similarity.
+     *
+     * @return An unmodifiable list of the matches
+     */
+    List<ComparisonMatch> getMatches() {
+        if (matches == null) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+
+            if (size >= maximumSize)
+                Arrays.sort(order, (i, j) -> isLower(i, j) ? -1 : (isLower(j, i) ? 1 : 0));
+            else
+                Arrays.sort(order, (i, j) -> Long.compare(sequences[i], sequences[j]));
+
+            List<ComparisonMatch> sortedMatches = new ArrayList<>(size);
+            for (Integer index : order)
+                sortedMatches.add(new ComparisonMatch(idRegistry.resolve(ids[index]), similarities[index]));
+
+            matches = Collections.unmodifiableList(sortedMatches);
+        }
+
+        return matches;
+    }
+
+    private void push(int id, float similarity) {
+        int index = size++;
+        similarities[index] = similarity;
+        sequences[index] = nextSequence++;
+        ids[index] = id;
+        idCounts.addTo(id, 1);
+
+        siftUp(index);
+    }
+
+    private void removeLowest() {
+        int id = ids[0];
+        if (idCounts.addTo(id, -1) == 0)
+            idCounts.remove(id);
+
+        size--;
+        move(size, 0);
+
+        siftDown(0);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isLower(index, parent))
+                break;
+
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && isLower(left, lowest))
+                lowest = left;
+            if (right < size && isLower(right, lowest))
+                lowest = right;
+            if (lowest == index)
+                return;
+
+            swap(index, lowest);
+            index = lowest;
+        }
+    }
+
+    /**
+     * Same order as sorting ComparisonMatch objects with a stable sort.
+     */
+    private boolean isLower(int i, int j) {
+        int result = Float.compare(similarities[i], similarities[j]);
+        return result < 0 || (result == 0 && sequences[i] < sequences[j]);
+    }
+
+    private void move(int from, int to) {
+        similarities[to] = similarities[from];
+        sequences[to] = sequences[from];
+        ids[to] = ids[from];
+    }
+
+    private void swap(int i, int j) {
+        float similarity = similarities[i];
+        long sequence = sequences[i];
+        int id = ids[i];
+
+        move(j, i);
+
+        similarities[j] = similarity;
+        sequences[j] = sequence;
+        ids[j] = id;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
+
+import java.util.List;
+
+/**
+ * Estimates the heap memory used by a cluster. The estimate is based on
+ * typical object sizes of a 64-bit JVM with compressed references and is
+ * only meant to decide when memory gets scarce - it is not exact.
+ *
+ * The estimate only uses O(1) operations for clusters that do not store
+ * their peak lists (GreedySpectralCluster) so that it can be used while
+ * clustering.
+ */
+public final class ClusterMemoryEstimator {
+    /**
+     * A Peak object (header, m/z, intensity, count) and its reference in a list
+     */
+    public static final long PEAK_BYTES = 32;
+    /**
+     * A spectrum without peaks: the object, its id, the (usually small)
+     * properties and the entry in the cluster's id set
+     */
+    public static final long SPECTRUM_HEADER_BYTES = 400;
+    /**
+     * A ComparisonMatch including its 36 character UUID id
+     */
+    public static final long COMPARISON_MATCH_BYTES = 136;
+    /**
+     * The cluster object itself with its collections, consensus spectrum builder
+     * and the filtered consensus spectrum kept by the engines
+     */
+    public static final long CLUSTER_BASE_BYTES = 1024;
+
+    private ClusterMemoryEstimator() {
+
+    }
+
+    /**
+     * Estimates the memory used by the passed cluster in bytes.
+     *
+     * @param cluster The cluster to estimate
+     * @return The estimated footprint in bytes
+     */
+    public static long estimateBytes(ICluster cluster) {
+        long bytes = CLUSTER_BASE_BYTES;
+
+        // the raw peaks and the consensus spectrum which holds at most as many peaks
+        IConsensusSpectrumBuilder consensusSpectrumBuilder = cluster.getConsensusSpectrumBuilder();
+        if (consensusSpectrumBuilder != null) {
+            bytes += 2 * consensusSpectrumBuilder.getRawConsensusPeaks().size() * PEAK_BYTES;
+        }
+
+        bytes += cluster.getClusteredSpectraCount() * SPECTRUM_HEADER_BYTES;
+        if (cluster.storesPeakLists()) {
+            for (ISpectrum spectrum : cluster.getClusteredSpectra()) {
+                bytes += spectrum.getPeaksCount() * PEAK_BYTES;
+            }
+        }
+
+        // greedy clusters only create the list of comparison matches on request
+        if (cluster instanceof GreedySpectralCluster) {
+            bytes += ((GreedySpectralCluster) cluster).getComparisonMatchCount() * COMPARISON_MATCH_BYTES;
+        } else {
+            List<ComparisonMatch> comparisonMatches = cluster.getComparisonMatches();
+            if (comparisonMatches != null) {
+                bytes += comparisonMatches.size() * COMPARISON_MATCH_BYTES;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Estimates the memory used by all passed clusters in bytes.
+     *
+     * @param clusters The clusters to estimate
+     * @return The estimated footprint in bytes
+     */
+    public static long estimateBytes(Iterable<? extends ICluster> clusters) {
+        long bytes = 0;
+        for (ICluster cluster : clusters) {
+            bytes += estimateBytes(cluster);
+        }
+        return bytes;
+    }
+}
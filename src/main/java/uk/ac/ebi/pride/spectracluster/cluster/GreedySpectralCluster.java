@@ -4,8 +4,12 @@ import uk.ac.ebi.pride.spectracluster.consensus.BinnedGreedyConsensusSpectrum;
 import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.CompareTo;
 import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.IdRegistry;
+import uk.ac.ebi.pride.spectracluster.util.IntHashSet;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
 import uk.ac.ebi.pride.spectracluster.util.SpectrumUtilities;
 
@@ -26,12 +30,22 @@ public class GreedySpectralCluster implements ICluster {
      * saved
      */
     public static final int SAVED_COMPARISON_MATCHES = 30;
-    private final List<ComparisonMatch> bestComparisonMatches = new ArrayList<>(SAVED_COMPARISON_MATCHES);
-    private float lowestBestComparisonSimilarity = 0;
-    private Set<String> bestComparisonMatchIds = null;
+    private final BestComparisonMatches bestComparisonMatches;
 
     private String id;
-    private final Set<String> spectraIds = new HashSet<>();
+    /**
+     * The spectra's ids as indices of the configuration's IdRegistry
+     */
+    private final IntHashSet spectraIds = new IntHashSet();
+    /**
+     * The resolved ids returned by getSpectralIds, null if spectra were added
+     */
+    private Set<String> resolvedSpectraIds;
+    /**
+     * The sorted, comma-joined ids returned by getSpectralId. This is
+     * the sort key used by compareTo, null if spectra were added.
+     */
+    private String spectralId;
     private final Properties properties = new Properties();
     private final List<SpectrumHolderListener> spectrumHolderListeners = new CopyOnWriteArrayList<>();
 
@@ -42,14 +56,40 @@ public class GreedySpectralCluster implements ICluster {
 
     private final BinnedGreedyConsensusSpectrum consensusSpectrumBuilder;
 
+    /**
+     * The configuration new consensus spectra and ids are created with
+     */
+    private final ClusteringConfiguration configuration;
+    private final IdRegistry idRegistry;
+
     public GreedySpectralCluster(String id) {
+        this(id, Defaults.getConfiguration());
+    }
+
+    public GreedySpectralCluster(String id, ClusteringConfiguration configuration) {
         this.id = id;
-        this.consensusSpectrumBuilder = BinnedGreedyConsensusSpectrum.FACTORY.getGreedyConsensusSpectrumBuilder(id);
+        this.configuration = configuration;
+        this.idRegistry = configuration.getIdRegistry();
+        this.bestComparisonMatches = new BestComparisonMatches(SAVED_COMPARISON_MATCHES, idRegistry);
+        this.consensusSpectrumBuilder = BinnedGreedyConsensusSpectrum.FACTORY.getGreedyConsensusSpectrumBuilder(id, configuration);
         addSpectrumHolderListener(this.consensusSpectrumBuilder);
     }
 
     public GreedySpectralCluster(ICluster cluster) {
+        this(cluster, Defaults.getConfiguration());
+    }
+
+    /**
+     * Copies the passed cluster. Consensus spectra of clusters that are not
+     * GreedySpectralClusters are rebuilt using the passed configuration.
+     *
+     * @param cluster       The cluster to copy
+     * @param configuration The configuration to use
+     */
+    public GreedySpectralCluster(ICluster cluster, ClusteringConfiguration configuration) {
         this.id = cluster.getId();
+        this.configuration = configuration;
+        this.idRegistry = configuration.getIdRegistry();
 
         // copy the basic parameters
         this.properties.putAll(cluster.getProperties());
@@ -59,9 +99,7 @@ public class GreedySpectralCluster implements ICluster {
             GreedySpectralCluster existingCluster = (GreedySpectralCluster) cluster;
 
             // copy the comparison matches
-            this.bestComparisonMatches.addAll(existingCluster.bestComparisonMatches);
-            this.lowestBestComparisonSimilarity = existingCluster.lowestBestComparisonSimilarity;
-            this.bestComparisonMatchIds = existingCluster.bestComparisonMatchIds;
+            this.bestComparisonMatches = new BestComparisonMatches(existingCluster.bestComparisonMatches, idRegistry);
             // for greedy clusters the consensus spectrum must be copied since it cannot be derived from the actual spectra
             this.consensusSpectrumBuilder = (BinnedGreedyConsensusSpectrum) existingCluster.getConsensusSpectrumBuilder();
             addSpectrumHolderListener(this.consensusSpectrumBuilder);
@@ -69,11 +107,14 @@ public class GreedySpectralCluster implements ICluster {
             this.clusteredSpectra.addAll(existingCluster.getClusteredSpectra()); // peak lists are already removed
             this.spectraIds.clear();
             for (ISpectrum spectrum : clusteredSpectra) {
-                spectraIds.add(spectrum.getId());
+                spectraIds.add(idRegistry.intern(spectrum.getId()));
             }
+            this.spectralId = existingCluster.spectralId;
         } else {
+            this.bestComparisonMatches = new BestComparisonMatches(SAVED_COMPARISON_MATCHES, idRegistry);
+
             // rebuild with a GreedyConsensusSpectrum
-            this.consensusSpectrumBuilder = BinnedGreedyConsensusSpectrum.FACTORY.getGreedyConsensusSpectrumBuilder(id);
+            this.consensusSpectrumBuilder = BinnedGreedyConsensusSpectrum.FACTORY.getGreedyConsensusSpectrumBuilder(id, configuration);
             addSpectrumHolderListener(this.consensusSpectrumBuilder);
 
             if (!cluster.storesPeakLists())
@@ -86,9 +127,16 @@ public class GreedySpectralCluster implements ICluster {
     }
 
     public GreedySpectralCluster(String id, List<ISpectrum> clusteredSpectra, BinnedGreedyConsensusSpectrum consensusSpectrumBuilder, List<ComparisonMatch> bestComparisonMatches) {
+        this(id, clusteredSpectra, consensusSpectrumBuilder, bestComparisonMatches, Defaults.getConfiguration());
+    }
+
+    public GreedySpectralCluster(String id, List<ISpectrum> clusteredSpectra, BinnedGreedyConsensusSpectrum consensusSpectrumBuilder, List<ComparisonMatch> bestComparisonMatches, ClusteringConfiguration configuration) {
         this.id = id;
+        this.configuration = configuration;
+        this.idRegistry = configuration.getIdRegistry();
         this.clusteredSpectra = clusteredSpectra;
         this.consensusSpectrumBuilder = consensusSpectrumBuilder;
+        this.bestComparisonMatches = new BestComparisonMatches(SAVED_COMPARISON_MATCHES, idRegistry);
 
         addSpectrumHolderListener(this.consensusSpectrumBuilder);
         setComparisonMatches(bestComparisonMatches);
@@ -103,13 +151,65 @@ public class GreedySpectralCluster implements ICluster {
      */
     @Override
     public Set<String> getSpectralIds() {
+        IntHashSet indices = getInternedSpectralIds();
+
+        if (resolvedSpectraIds == null) {
+            Set<String> ids = new HashSet<>(indices.size());
+            for (int index : indices.toArray()) {
+                ids.add(idRegistry.resolve(index));
+            }
+            resolvedSpectraIds = Collections.unmodifiableSet(ids);
+        }
+
+        return resolvedSpectraIds;
+    }
+
+    /**
+     * The returned set must not be changed.
+     *
+     * @return The spectra's ids as indices of the configuration's IdRegistry
+     */
+    private IntHashSet getInternedSpectralIds() {
         if (this.spectraIds.isEmpty()) {
-            List<ISpectrum> clusteredSpectra1 = getClusteredSpectra();
-            for (ISpectrum iSpectrum : clusteredSpectra1) {
-                spectraIds.add(iSpectrum.getId());
+            for (ISpectrum iSpectrum : clusteredSpectra) {
+                spectraIds.add(idRegistry.intern(iSpectrum.getId()));
             }
+            onSpectraIdsChanged();
+        }
+
+        return spectraIds;
+    }
+
+    private void onSpectraIdsChanged() {
+        resolvedSpectraIds = null;
+        spectralId = null;
+    }
+
+    /**
+     * @return Number of distinct spectrum ids, same as getSpectralIds().size()
+     */
+    public int getSpectralIdCount() {
+        return getInternedSpectralIds().size();
+    }
+
+    /**
+     * Counts the spectra that are part of both clusters. The ids are only
+     * resolved if the clusters use different IdRegistries.
+     *
+     * @param other The other cluster
+     * @return Number of spectra with the same id
+     */
+    public int countSharedSpectra(GreedySpectralCluster other) {
+        if (idRegistry == other.idRegistry)
+            return getInternedSpectralIds().countShared(other.getInternedSpectralIds());
+
+        int shared = 0;
+        Set<String> otherIds = other.getSpectralIds();
+        for (String spectrumId : getSpectralIds()) {
+            if (otherIds.contains(spectrumId))
+                shared++;
         }
-        return Collections.unmodifiableSet(spectraIds);
+        return shared;
     }
 
 
@@ -162,13 +262,21 @@ public class GreedySpectralCluster implements ICluster {
     public String getId() {
         if (id == null) {
             // if no id is set, generate a new unique id
-            id = UUID.randomUUID().toString();
+            id = configuration.getClusterIdGenerator().nextId();
         }
         return id;
     }
 
+    /**
+     * The id is only built once and cached until spectra are added.
+     *
+     * @return The sorted, comma-separated ids of all spectra
+     */
     @Override
     public String getSpectralId() {
+        if (spectralId != null)
+            return spectralId;
+
         StringBuilder sb = new StringBuilder();
         List<String> spectralIds = new ArrayList<>(getSpectralIds());
 
@@ -179,10 +287,12 @@ public class GreedySpectralCluster implements ICluster {
                 sb.append(",");
                 sb.append(spectralIds.get(i));
             }
-            return sb.toString();
+            spectralId = sb.toString();
         } else {
-            return spectralIds.get(0);
+            spectralId = spectralIds.get(0);
         }
+
+        return spectralId;
     }
 
     public void setId(String id) {
@@ -241,6 +351,10 @@ public class GreedySpectralCluster implements ICluster {
         return consensusSpectrumBuilder;
     }
 
+    public ClusteringConfiguration getConfiguration() {
+        return configuration;
+    }
+
     @Override
     public int getClusteredSpectraCount() {
         return clusteredSpectra.size();
@@ -254,10 +368,10 @@ public class GreedySpectralCluster implements ICluster {
 
             for (ISpectrum spectrumToMerge : merged) {
                 // ignore spectra that have already been added
-                if (spectraIds.contains(spectrumToMerge.getId()))
+                if (!spectraIds.add(idRegistry.intern(spectrumToMerge.getId())))
                     continue;
 
-                spectraIds.add(spectrumToMerge.getId());
+                onSpectraIdsChanged();
 
                 spectrumAdded = true;
                 ISpectrum spectrumWithoutPeaks = new Spectrum(spectrumToMerge, Collections.EMPTY_LIST);
@@ -293,7 +407,8 @@ public class GreedySpectralCluster implements ICluster {
 
             // save the spectra ids
             for (ISpectrum spectrum : cluster.getClusteredSpectra())
-                spectraIds.add(spectrum.getId());
+                spectraIds.add(idRegistry.intern(spectrum.getId()));
+            onSpectraIdsChanged();
 
             notifySpectrumHolderListeners(true, cluster.getClusteredSpectra().toArray(new ISpectrum[cluster.getClusteredSpectra().size()]));   // tell other interested parties  true says this is an add
         }
@@ -375,6 +490,7 @@ public class GreedySpectralCluster implements ICluster {
                 return getClusteredSpectraCount() < o.getClusteredSpectraCount() ? -1 : 1;
             }
 
+            // both ids are cached for greedy clusters
             String spectra = getSpectralId();
             String otherSpectra = o.getSpectralId();
             return spectra.compareTo(otherSpectra);
@@ -458,28 +574,8 @@ public class GreedySpectralCluster implements ICluster {
      * @param similarity The similarity score to store for this comparison
      */
     public void saveComparisonResult(String id, float similarity) {
-        if (bestComparisonMatches.size() >= SAVED_COMPARISON_MATCHES && similarity < lowestBestComparisonSimilarity)
-            return;
-
-        ComparisonMatch comparisonMatch = new ComparisonMatch(id, similarity);
-        bestComparisonMatches.add(comparisonMatch);
-
-        // remove the lowest matches if necessary
-        if (bestComparisonMatches.size() >= SAVED_COMPARISON_MATCHES) {
-            Collections.sort(bestComparisonMatches);
-            int tooManyMatches = bestComparisonMatches.size() - SAVED_COMPARISON_MATCHES;
-            for (int i = 0; i < tooManyMatches; i++)
-                bestComparisonMatches.remove(0); // natural order is lowest to highest, remove lowest
-
-            lowestBestComparisonSimilarity = bestComparisonMatches.get(0).getSimilarity();
-        }
-        // if nothing is removed check whether the new lowest similarity is the lowest
-        else if (similarity < lowestBestComparisonSimilarity) {
-            lowestBestComparisonSimilarity = similarity;
-
-        }
-
-        bestComparisonMatchIds = null; // delete to mark as dirty
+        // the lowest match is replaced if necessary
+        bestComparisonMatches.add(id, similarity);
     }
 
     /**
@@ -490,14 +586,7 @@ public class GreedySpectralCluster implements ICluster {
      * @return Boolean indicating whether the comparison scored among the top N
      */
     public boolean isInBestComparisonResults(String id) {
-        if (bestComparisonMatchIds == null) {
-            bestComparisonMatchIds = new HashSet<>(bestComparisonMatches.size());
-
-            for (ComparisonMatch comparisonMatch : bestComparisonMatches)
-                bestComparisonMatchIds.add(comparisonMatch.getSpectrumId());
-        }
-
-        return bestComparisonMatchIds.contains(id);
+        return bestComparisonMatches.contains(id);
     }
 
     @Override
@@ -507,27 +596,27 @@ public class GreedySpectralCluster implements ICluster {
 
     @Override
     public List<ComparisonMatch> getComparisonMatches() {
-        return Collections.unmodifiableList(bestComparisonMatches);
+        return bestComparisonMatches.getMatches();
+    }
+
+    /**
+     * Returns the number of stored comparison matches without creating
+     * the list returned by getComparisonMatches.
+     *
+     * @return The number of comparison matches
+     */
+    public int getComparisonMatchCount() {
+        return bestComparisonMatches.size();
     }
 
     @Override
     public void setComparisonMatches(List<ComparisonMatch> comparisonMatches) {
-        this.bestComparisonMatches.clear();
-        if (comparisonMatches != null && comparisonMatches.size() > 0) {
-            this.bestComparisonMatches.addAll(comparisonMatches);
-
-            Collections.sort(bestComparisonMatches);
-            lowestBestComparisonSimilarity = bestComparisonMatches.get(0).getSimilarity();
-        } else {
-            lowestBestComparisonSimilarity = 0;
-        }
-
-        bestComparisonMatchIds = null; // delete to mark as dirty
+        bestComparisonMatches.setAll(comparisonMatches);
     }
 
     @Override
     public boolean isKnownComparisonMatch(String clusterId) {
-        return bestComparisonMatches.size() != 0 && bestComparisonMatches.stream().anyMatch(comparisonMatch -> comparisonMatch.getSpectrumId().equals(clusterId));
+        return bestComparisonMatches.contains(clusterId);
 
     }
 }
@@ -0,0 +1,16 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+/**
+ * Creates the ids of clusters that were not given an id. The
+ * generator to use is set through ClusteringConfiguration /
+ * Defaults.
+ *
+ * Implementations must be thread-safe and must never return the
+ * same id twice.
+ */
+public interface IClusterIdGenerator {
+    /**
+     * @return A new cluster id
+     */
+    String nextId();
+}
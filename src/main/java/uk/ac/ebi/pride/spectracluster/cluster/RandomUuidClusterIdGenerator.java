@@ -0,0 +1,53 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Creates random version 4 UUIDs, i.e. ids in the same format as
+ * UUID.randomUUID. The 128 bits are taken from a SplittableRandom
+ * instead of the SecureRandom used by UUID.randomUUID, which may block
+ * on entropy and synchronizes all threads. Every thread uses its own
+ * generator split off the shared one.
+ *
+ * This is the default generator. Use a SeededClusterIdGenerator to get
+ * reproducible ids or a SequentialClusterIdGenerator for short ids.
+ */
+public class RandomUuidClusterIdGenerator implements IClusterIdGenerator {
+    private final SplittableRandom random;
+    private final ThreadLocal<SplittableRandom> threadRandom = ThreadLocal.withInitial(this::splitRandom);
+
+    public RandomUuidClusterIdGenerator() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * @param random The generator to split the per thread generators off, must not be null
+     */
+    public RandomUuidClusterIdGenerator(SplittableRandom random) {
+        if (random == null)
+            throw new IllegalArgumentException("random must not be null");
+
+        this.random = random;
+    }
+
+    @Override
+    public String nextId() {
+        SplittableRandom currentRandom = threadRandom.get();
+        long mostSigBits = currentRandom.nextLong();
+        long leastSigBits = currentRandom.nextLong();
+
+        // set the version (4, random) and the IETF variant as UUID.randomUUID does
+        mostSigBits = (mostSigBits & ~0xF000L) | 0x4000L;
+        leastSigBits = (leastSigBits & ~(0xC000000000000000L)) | 0x8000000000000000L;
+
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    private SplittableRandom splitRandom() {
+        // SplittableRandom is not thread-safe
+        synchronized (random) {
+            return random.split();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates random looking 64-bit ids (16 hex digits) that only depend
+ * on the seed. Thereby, ids are reproducible across runs with the same
+ * seed. The n-th id is derived from the seed and n through the
+ * SplitMix64 mixing function, which is a bijection. Therefore, a
+ * generator never returns the same id twice.
+ *
+ * Generators without a seed use a random seed so that ids of
+ * different runs are unlikely to collide. In contrast to
+ * UUID.randomUUID this never blocks on entropy.
+ */
+public class SeededClusterIdGenerator implements IClusterIdGenerator {
+    /**
+     * Odd constant used by SplitMix64 to step through the 64-bit values
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final String prefix;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Creates a generator with a random seed.
+     */
+    public SeededClusterIdGenerator() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    public SeededClusterIdGenerator(long seed) {
+        this(seed, "");
+    }
+
+    /**
+     * @param seed   The seed the ids are derived from
+     * @param prefix Prefix of all ids (f.e. the partition of a parallel driver), must not be null
+     */
+    public SeededClusterIdGenerator(long seed, String prefix) {
+        if (prefix == null)
+            throw new IllegalArgumentException("prefix must not be null");
+
+        this.seed = seed;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public String nextId() {
+        long value = mix(seed + counter.incrementAndGet() * GOLDEN_GAMMA);
+
+        // zero-pad to always use 16 characters
+        String hex = Long.toHexString(value);
+        StringBuilder id = new StringBuilder(prefix.length() + 16).append(prefix);
+        for (int i = hex.length(); i < 16; i++)
+            id.append('0');
+
+        return id.append(hex).toString();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
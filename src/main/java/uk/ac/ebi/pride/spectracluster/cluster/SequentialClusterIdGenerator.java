@@ -0,0 +1,37 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the ids "prefix1", "prefix2", ... The ids are only unique
+ * within one run. When the results of several runs (f.e. the
+ * partitions of a parallel driver) are combined, every run has to
+ * use a different prefix.
+ */
+public class SequentialClusterIdGenerator implements IClusterIdGenerator {
+    private final String prefix;
+    private final AtomicLong lastId = new AtomicLong();
+
+    public SequentialClusterIdGenerator() {
+        this("");
+    }
+
+    /**
+     * @param prefix Prefix of all ids, must not be null
+     */
+    public SequentialClusterIdGenerator(String prefix) {
+        if (prefix == null)
+            throw new IllegalArgumentException("prefix must not be null");
+
+        this.prefix = prefix;
+    }
+
+    @Override
+    public String nextId() {
+        return prefix + lastId.incrementAndGet();
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+}
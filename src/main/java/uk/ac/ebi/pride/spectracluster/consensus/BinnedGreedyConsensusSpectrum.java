@@ -2,10 +2,13 @@ package uk.ac.ebi.pride.spectracluster.consensus;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ISpectrumHolder;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectrumHolderListener;
+import uk.ac.ebi.pride.spectracluster.jfr.ConsensusRebuildEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
 import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
 import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
@@ -45,6 +48,10 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
      * The m/z threshold to consider two peaks identical
      */
     protected final float fragmentTolerance;
+    /**
+     * The configuration the quality scorer and the minimum number of consensus peaks are taken from
+     */
+    protected final ClusteringConfiguration configuration;
 
     private static final PeakMzComparator peakMzComparator = new PeakMzComparator();
     private final String id;
@@ -60,6 +67,8 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
     protected final IFunction<ISpectrum, ISpectrum> binningFunction;
 
     private boolean isDirty = true;
+    private ISpectrum versionedSpectrum;
+    private long version;
 
     protected final String methodName = "Greedy Consensus Spectrum Builder";
     protected final String methodVersion = "0.1";
@@ -89,48 +98,59 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
          */
         @Override
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder() {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance());
+            return getConsensusSpectrumBuilder(Defaults.getConfiguration());
+        }
+
+        @Override
+        public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(ClusteringConfiguration configuration) {
+            return new BinnedGreedyConsensusSpectrum(configuration, null, new BinSpectrumMaxFunction(configuration.getFragmentIonTolerance()));
         }
 
         public BinnedGreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder() {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance());
+            return getGreedyConsensusSpectrumBuilder(null);
         }
 
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(String id) {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id, new BinSpectrumMaxFunction(Defaults.getFragmentIonTolerance()));
+            return getGreedyConsensusSpectrumBuilder(id);
         }
 
         public BinnedGreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder(String id) {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id, new BinSpectrumMaxFunction(Defaults.getFragmentIonTolerance()));
+            return getGreedyConsensusSpectrumBuilder(id, Defaults.getConfiguration());
+        }
+
+        public BinnedGreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder(String id, ClusteringConfiguration configuration) {
+            return new BinnedGreedyConsensusSpectrum(configuration, id, new BinSpectrumMaxFunction(configuration.getFragmentIonTolerance()));
         }
 
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(String id, IFunction<ISpectrum, ISpectrum> binningFunction) {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id, binningFunction);
+            return new BinnedGreedyConsensusSpectrum(Defaults.getConfiguration(), id, binningFunction);
         }
 
         public BinnedGreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder(String id, IFunction<ISpectrum, ISpectrum> binningFunction) {
-            return new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id, binningFunction);
+            return new BinnedGreedyConsensusSpectrum(Defaults.getConfiguration(), id, binningFunction);
         }
     }
 
     /**
      * private to force use of the factory
      */
-    private BinnedGreedyConsensusSpectrum(float fragmentTolerance) {
-        this(fragmentTolerance, null, new BinSpectrumMaxFunction(fragmentTolerance));
-    }
-
-    /**
-     * private to force use of the factory
-     */
-    private BinnedGreedyConsensusSpectrum(float fragmentTolerance, String id, IFunction<ISpectrum, ISpectrum> binningFunction) {
-        this.fragmentTolerance = fragmentTolerance;
+    private BinnedGreedyConsensusSpectrum(ClusteringConfiguration configuration, String id, IFunction<ISpectrum, ISpectrum> binningFunction) {
+        this.fragmentTolerance = configuration.getFragmentIonTolerance();
+        this.configuration = configuration;
         this.id = id;
         this.binningFunction = binningFunction;
     }
 
     public BinnedGreedyConsensusSpectrum(float fragmentTolerance, String id, int nSpectra, double sumPrecursorMz, double sumPrecursorIntens, int sumCharge, List<IPeak> peaks, IFunction<ISpectrum, ISpectrum> binningFunction) {
+        this(Defaults.getConfiguration(), fragmentTolerance, id, nSpectra, sumPrecursorMz, sumPrecursorIntens, sumCharge, peaks, binningFunction);
+    }
+
+    /**
+     * Constructor to recover a stored consensus spectrum using the passed configuration
+     */
+    public BinnedGreedyConsensusSpectrum(ClusteringConfiguration configuration, float fragmentTolerance, String id, int nSpectra, double sumPrecursorMz, double sumPrecursorIntens, int sumCharge, List<IPeak> peaks, IFunction<ISpectrum, ISpectrum> binningFunction) {
         this.fragmentTolerance = fragmentTolerance;
+        this.configuration = configuration;
         this.id = id;
         this.nSpectra = nSpectra;
         this.sumPrecursorMz = sumPrecursorMz;
@@ -202,11 +222,15 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
 
     protected void updateConsensusSpectrum() {
         if (isDirty()) {
+            ConsensusRebuildEvent event = FlightRecorderEvents.beginConsensusRebuild();
 
             // update the actual consensus spectrum
-            List<IPeak> processedConsensusPeaks = findConsensusPeaks(consensusPeaks, nSpectra);
-            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, Defaults.getDefaultQualityScorer(), processedConsensusPeaks);
+            List<IPeak> processedConsensusPeaks = findConsensusPeaks(consensusPeaks, nSpectra, configuration.getConsensusMinPeaks());
+            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, configuration.getQualityScorer(), processedConsensusPeaks);
             setIsDirty(false);
+
+            if (event != null)
+                event.finish("BinnedGreedyConsensusSpectrum", nSpectra, consensusPeaks.size(), processedConsensusPeaks.size());
         }
     }
 
@@ -309,7 +333,7 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
      * @param input !null set of all peaks
      * @return !null set of  consensus peaks
      */
-    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int nSpectra) {
+    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int nSpectra, int minPeaks) {
         if (input.size() < 1)
             return input;
 
@@ -317,16 +341,18 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
         List<IPeak> ret = adaptPeakIntensities(input, nSpectra);
 
         // Step 3: filter the spectrum
-        ret = filterNoise(ret);
+        ret = filterNoise(ret, minPeaks);
 
         return ret;
     }
 
     /**
      * Filters the consensus spectrum keeping only the top 5 peaks per 100 m/z
+     *
+     * @param minPeaks Spectra with fewer peaks are not filtered
      */
-    protected static List<IPeak> filterNoise(List<IPeak> inp) {
-        if (inp.size() < Defaults.getDefaultConsensusMinPeaks()) {
+    protected static List<IPeak> filterNoise(List<IPeak> inp, int minPeaks) {
+        if (inp.size() < minPeaks) {
             return inp;
         }
 
@@ -399,7 +425,8 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
         removeSpectra(removed);
     }
 
-    protected boolean isDirty() {
+    @Override
+    public boolean isDirty() {
         return isDirty;
     }
 
@@ -407,6 +434,18 @@ public class BinnedGreedyConsensusSpectrum implements IConsensusSpectrumBuilder
         this.isDirty = isDirty;
     }
 
+    @Override
+    public long getVersion() {
+        // every update creates a new consensus spectrum
+        ISpectrum spectrum = getConsensusSpectrum();
+        if (spectrum != versionedSpectrum) {
+            version = ConsensusSpectrumVersions.getVersion(spectrum);
+            versionedSpectrum = spectrum;
+        }
+
+        return version;
+    }
+
     @Override
     public int getSumCharge() {
         return sumCharge;
@@ -1,5 +1,7 @@
 package uk.ac.ebi.pride.spectracluster.consensus;
 
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+
 import java.io.Serializable;
 
 /**
@@ -16,4 +18,13 @@ public interface ConcensusSpectrumBuilderFactory extends Serializable{
      */
     IConsensusSpectrumBuilder getConsensusSpectrumBuilder();
 
+    /**
+     * build a new instance of the spectrum builder that takes its
+     * parameters from the passed configuration instead of Defaults
+     *
+     * @param configuration !null configuration to use
+     * @return !null instance
+     */
+    IConsensusSpectrumBuilder getConsensusSpectrumBuilder(ClusteringConfiguration configuration);
+
 }
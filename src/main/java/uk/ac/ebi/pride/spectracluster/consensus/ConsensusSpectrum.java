@@ -2,10 +2,13 @@ package uk.ac.ebi.pride.spectracluster.consensus;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ISpectrumHolder;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectrumHolderListener;
+import uk.ac.ebi.pride.spectracluster.jfr.ConsensusRebuildEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
 import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
 import uk.ac.ebi.pride.spectracluster.util.PeakUtilities;
@@ -58,6 +61,8 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
     private final String id;
     protected int nSpectra;
     protected boolean isDirty;
+    private ISpectrum versionedSpectrum;
+    private long version;
     protected float averagePrecursorMz;
     protected float sumPrecursorMz;
     protected float averagePrecursorIntens;
@@ -71,6 +76,10 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
     protected final String methodName = "Crowded Consensus Spectrum Builder";
     protected final String methodVersion = "0.1";
     protected final float fragmentTolerance;
+    /**
+     * The configuration the quality scorer and the minimum number of consensus peaks are taken from
+     */
+    protected final ClusteringConfiguration configuration;
 
     /**
      * Defines whether m/z values should be rounded. Thereby, more peaks are considered identical
@@ -116,23 +125,22 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
          */
         @Override
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder() {
-            return new ConsensusSpectrum(Defaults.getFragmentIonTolerance());
+            return getConsensusSpectrumBuilder(Defaults.getConfiguration());
         }
-    }
 
-    /**
-     * private to force use of the factory
-     */
-    private ConsensusSpectrum(float fragmentTolerance) {
-        this(null, fragmentTolerance);
+        @Override
+        public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(ClusteringConfiguration configuration) {
+            return new ConsensusSpectrum(null, configuration.getFragmentIonTolerance(), configuration);
+        }
     }
 
     /**
      * private to force use of the factory
      */
-    private ConsensusSpectrum(String id, float fragmentTolerance) {
+    private ConsensusSpectrum(String id, float fragmentTolerance, ClusteringConfiguration configuration) {
         this.id = id;
         this.fragmentTolerance = fragmentTolerance;
+        this.configuration = configuration;
     }
 
     /**
@@ -152,6 +160,7 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
         this.sumCharge = sumCharge;
         this.consensusPeaks.addAll( peaks );
         this.fragmentTolerance = fragmentIonTolerance;
+        this.configuration = Defaults.getConfiguration();
 
         setIsDirty(true);
     }
@@ -389,7 +398,8 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
      *
      * @return
      */
-    protected boolean isDirty() {
+    @Override
+    public boolean isDirty() {
         return isDirty;
     }
 
@@ -397,11 +407,25 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
         this.isDirty = isDirty;
     }
 
+    @Override
+    public long getVersion() {
+        // every update creates a new consensus spectrum
+        ISpectrum spectrum = getConsensusSpectrum();
+        if (spectrum != versionedSpectrum) {
+            version = ConsensusSpectrumVersions.getVersion(spectrum);
+            versionedSpectrum = spectrum;
+        }
+
+        return version;
+    }
+
     /**
      * Updates all properties of the consensus spectrum as well as the actual consensus
      * spectrum.
      */
     protected void update() {
+        ConsensusRebuildEvent event = FlightRecorderEvents.beginConsensusRebuild();
+
         if (nSpectra > 0) {
             averagePrecursorMz = sumPrecursorMz / nSpectra;
             averageCharge = sumCharge / nSpectra;
@@ -415,11 +439,13 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
 
         if (allPeaks.size() < 1) {
             //noinspection unchecked
-            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, Defaults.getDefaultQualityScorer(), Collections.EMPTY_LIST);
+            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, configuration.getQualityScorer(), Collections.EMPTY_LIST);
             setIsDirty(false);
+            if (event != null)
+                event.finish("ConsensusSpectrum", nSpectra, 0, 0);
             return;
         }
-        List<IPeak> newPeaks = findConsensusPeaks(allPeaks, DEFAULT_PEAKS_TO_KEEP, nSpectra, fragmentTolerance);
+        List<IPeak> newPeaks = findConsensusPeaks(allPeaks, DEFAULT_PEAKS_TO_KEEP, nSpectra, fragmentTolerance, configuration.getConsensusMinPeaks());
 
         // update the consensus spectrum
         consensusPeaks.clear();
@@ -436,18 +462,21 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
         lowestConcensusPeak = minimumConsensusPeak;
 
         // create the ConsensusSpectrum object
-        consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, Defaults.getDefaultQualityScorer(), consensusPeaks);
+        consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, configuration.getQualityScorer(), consensusPeaks);
 
         setIsDirty(false);
+        if (event != null)
+            event.finish("ConsensusSpectrum", nSpectra, allPeaks.size(), consensusPeaks.size());
     }
 
     /**
      * refactored to make testing easier
      *
      * @param input !null set of all peaks
+     * @param minPeaks Minimum number of peaks before the noise filter is applied
      * @return !null set of  consensus peaks
      */
-    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int peaksToKeep, int nSpectra, float fragmentTolerance) {
+    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int peaksToKeep, int nSpectra, float fragmentTolerance, int minPeaks) {
         // Step 1: merge identical peaks
         List<IPeak> ret = mergeIdenticalPeaks(input, fragmentTolerance);
 
@@ -455,15 +484,17 @@ public class ConsensusSpectrum implements IConsensusSpectrumBuilder {
         ret = adaptPeakIntensities(ret, nSpectra);
 
         // Step 3: filter the spectrum
-        ret = filterNoise(ret);
+        ret = filterNoise(ret, minPeaks);
         return ret;
     }
 
     /**
      * Filters the consensus spectrum keeping only the top 5 peaks per 100 m/z
+     *
+     * @param minPeaks Spectra with fewer peaks are not filtered
      */
-    protected static List<IPeak> filterNoise(List<IPeak> inp) {
-        if (inp.size() < Defaults.getDefaultConsensusMinPeaks()) {
+    protected static List<IPeak> filterNoise(List<IPeak> inp, int minPeaks) {
+        if (inp.size() < minPeaks) {
             return inp;
         }
 
@@ -0,0 +1,47 @@
+package uk.ac.ebi.pride.spectracluster.consensus;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+/**
+ * Derives the versions of consensus spectra from their contents. The
+ * version is a 64 bit hash of everything a similarity checker can see of a
+ * consensus spectrum: its precursor m/z, its charge and its peaks. Thereby,
+ * two consensus spectra with the same contents always have the same
+ * version - also if they were created by different builders, by different
+ * runs or after a cluster was re-read from a file.
+ */
+public final class ConsensusSpectrumVersions {
+    private ConsensusSpectrumVersions() {
+
+    }
+
+    /**
+     * @param consensusSpectrum The consensus spectrum
+     * @return The version of the consensus spectrum's contents
+     */
+    public static long getVersion(ISpectrum consensusSpectrum) {
+        long hash = mix(Float.floatToIntBits(consensusSpectrum.getPrecursorMz()));
+        hash = mix(hash ^ consensusSpectrum.getPrecursorCharge());
+
+        for (IPeak peak : consensusSpectrum.getPeaks()) {
+            hash = mix(hash ^ Float.floatToIntBits(peak.getMz()));
+            hash = mix(hash ^ Float.floatToIntBits(peak.getIntensity()));
+            hash = mix(hash ^ peak.getCount());
+        }
+
+        return hash;
+    }
+
+    /**
+     * Finalization step of MurmurHash3's 64 bit variant
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -2,10 +2,13 @@ package uk.ac.ebi.pride.spectracluster.consensus;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ISpectrumHolder;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectrumHolderListener;
+import uk.ac.ebi.pride.spectracluster.jfr.ConsensusRebuildEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
 import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
 import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
@@ -41,6 +44,10 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
      * The m/z threshold to consider two peaks identical
      */
     protected final float fragmentTolerance;
+    /**
+     * The configuration the quality scorer and the minimum number of consensus peaks are taken from
+     */
+    protected final ClusteringConfiguration configuration;
 
     private static final PeakMzComparator peakMzComparator = new PeakMzComparator();
     private final String id;
@@ -55,6 +62,8 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
     protected final List<SpectrumHolderListener> listeners = new ArrayList<SpectrumHolderListener>();
 
     private boolean isDirty = true;
+    private ISpectrum versionedSpectrum;
+    private long version;
 
     protected final String methodName = "Greedy Consensus Spectrum Builder";
     protected final String methodVersion = "0.1";
@@ -84,39 +93,39 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
          */
         @Override
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder() {
-            return new GreedyConsensusSpectrum(Defaults.getFragmentIonTolerance());
+            return getConsensusSpectrumBuilder(Defaults.getConfiguration());
+        }
+
+        @Override
+        public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(ClusteringConfiguration configuration) {
+            return new GreedyConsensusSpectrum(configuration, null);
         }
 
         public GreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder() {
-            return new GreedyConsensusSpectrum(Defaults.getFragmentIonTolerance());
+            return new GreedyConsensusSpectrum(Defaults.getConfiguration(), null);
         }
 
         public IConsensusSpectrumBuilder getConsensusSpectrumBuilder(String id) {
-            return new GreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id);
+            return new GreedyConsensusSpectrum(Defaults.getConfiguration(), id);
         }
 
         public GreedyConsensusSpectrum getGreedyConsensusSpectrumBuilder(String id) {
-            return new GreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id);
+            return new GreedyConsensusSpectrum(Defaults.getConfiguration(), id);
         }
     }
 
     /**
      * private to force use of the factory
      */
-    private GreedyConsensusSpectrum(float fragmentTolerance) {
-        this(fragmentTolerance, null);
-    }
-
-    /**
-     * private to force use of the factory
-     */
-    private GreedyConsensusSpectrum(float fragmentTolerance, String id) {
-        this.fragmentTolerance = fragmentTolerance;
+    private GreedyConsensusSpectrum(ClusteringConfiguration configuration, String id) {
+        this.fragmentTolerance = configuration.getFragmentIonTolerance();
+        this.configuration = configuration;
         this.id = id;
     }
 
     public GreedyConsensusSpectrum(float fragmentTolerance, String id, int nSpectra, double sumPrecursorMz, double sumPrecursorIntens, int sumCharge, List<IPeak> peaks) {
         this.fragmentTolerance = fragmentTolerance;
+        this.configuration = Defaults.getConfiguration();
         this.id = id;
         this.nSpectra = nSpectra;
         this.sumPrecursorMz = sumPrecursorMz;
@@ -191,11 +200,15 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
 
     protected void updateConsensusSpectrum() {
         if (isDirty()) {
+            ConsensusRebuildEvent event = FlightRecorderEvents.beginConsensusRebuild();
 
             // update the actual consensus spectrum
-            List<IPeak> processedConsensusPeaks = findConsensusPeaks(consensusPeaks, nSpectra);
-            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, Defaults.getDefaultQualityScorer(), processedConsensusPeaks);
+            List<IPeak> processedConsensusPeaks = findConsensusPeaks(consensusPeaks, nSpectra, configuration.getConsensusMinPeaks());
+            consensusSpectrum = new Spectrum(id, averageCharge, averagePrecursorMz, configuration.getQualityScorer(), processedConsensusPeaks);
             setIsDirty(false);
+
+            if (event != null)
+                event.finish("GreedyConsensusSpectrum", nSpectra, consensusPeaks.size(), processedConsensusPeaks.size());
         }
     }
 
@@ -293,7 +306,7 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
      * @param input !null set of all peaks
      * @return !null set of  consensus peaks
      */
-    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int nSpectra) {
+    protected static List<IPeak> findConsensusPeaks(List<IPeak> input, int nSpectra, int minPeaks) {
         if (input.size() < 1)
             return input;
 
@@ -301,16 +314,18 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
         List<IPeak> ret = adaptPeakIntensities(input, nSpectra);
 
         // Step 3: filter the spectrum
-        ret = filterNoise(ret);
+        ret = filterNoise(ret, minPeaks);
 
         return ret;
     }
 
     /**
      * Filters the consensus spectrum keeping only the top 5 peaks per 100 m/z
+     *
+     * @param minPeaks Spectra with fewer peaks are not filtered
      */
-    protected static List<IPeak> filterNoise(List<IPeak> inp) {
-        if (inp.size() < Defaults.getDefaultConsensusMinPeaks()) {
+    protected static List<IPeak> filterNoise(List<IPeak> inp, int minPeaks) {
+        if (inp.size() < minPeaks) {
             return inp;
         }
 
@@ -439,7 +454,8 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
         removeSpectra(removed);
     }
 
-    protected boolean isDirty() {
+    @Override
+    public boolean isDirty() {
         return isDirty;
     }
 
@@ -447,6 +463,18 @@ public class GreedyConsensusSpectrum implements IConsensusSpectrumBuilder {
         this.isDirty = isDirty;
     }
 
+    @Override
+    public long getVersion() {
+        // every update creates a new consensus spectrum
+        ISpectrum spectrum = getConsensusSpectrum();
+        if (spectrum != versionedSpectrum) {
+            version = ConsensusSpectrumVersions.getVersion(spectrum);
+            versionedSpectrum = spectrum;
+        }
+
+        return version;
+    }
+
     @Override
     public int getSumCharge() {
         return sumCharge;
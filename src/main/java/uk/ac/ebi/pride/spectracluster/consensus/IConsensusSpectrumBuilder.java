@@ -40,6 +40,26 @@ public interface IConsensusSpectrumBuilder extends ISpectrumHolder, SpectrumHold
      */
     ISpectrum getConsensusSpectrum();
 
+    /**
+     * Returns the version of the consensus spectrum. The version is derived
+     * from the consensus spectrum's contents (see ConsensusSpectrumVersions),
+     * so consensus spectra with the same contents have the same version.
+     *
+     * @return Version of the current consensus spectrum
+     */
+    long getVersion();
+
+    /**
+     * Indicates whether the consensus spectrum has to be recalculated by
+     * the next call to getConsensusSpectrum. Builders that do not track
+     * their state always report a recalculation.
+     *
+     * @return true if the consensus spectrum is outdated
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
     /**
      * Clear the consensus spectrum.
      */
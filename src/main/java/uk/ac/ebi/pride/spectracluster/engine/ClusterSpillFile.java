@@ -0,0 +1,417 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
+import uk.ac.ebi.pride.spectracluster.consensus.BinnedGreedyConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.BinSpectrumMaxFunction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Temporary file used by the GreedyIncrementalClusteringEngine to move
+ * GreedySpectralClusters out of memory. The complete state of a cluster
+ * (clustered spectra without peaks, consensus spectrum builder, comparison
+ * matches and properties) is written in a compact binary form so that the
+ * reloaded cluster behaves exactly like the original one.
+ *
+ * The file is created on the first spill and deleted once all clusters
+ * were loaded again. The space of loaded clusters is reused by later spills
+ * and the file is truncated whenever its end becomes free, repeated
+ * spill / reload cycles therefore do not grow the file.
+ */
+public class ClusterSpillFile implements Closeable {
+    private final File directory;
+    private final ClusteringConfiguration configuration;
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private int nSpilledClusters;
+    private long bytesWritten;
+    /**
+     * Free segments of the file (offset to length), adjacent segments are merged
+     */
+    private final TreeMap<Long, Long> freeSegments = new TreeMap<>();
+
+    /**
+     * @param directory     Directory to create the file in, null to use the system's temporary directory
+     * @param configuration The configuration of the engine that spills the clusters, used to restore them
+     */
+    public ClusterSpillFile(File directory, ClusteringConfiguration configuration) {
+        this.directory = directory;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Writes the cluster to the file.
+     *
+     * @param cluster The cluster to write. The object must no longer be used afterwards.
+     * @return The handle to load the cluster again
+     * @throws IOException
+     */
+    public SpilledCluster spill(GreedySpectralCluster cluster) throws IOException {
+        if (randomAccessFile == null) {
+            file = File.createTempFile("spectra-cluster-spill", ".bin", directory);
+            file.deleteOnExit();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeCluster(out, cluster);
+        out.flush();
+
+        long offset = allocate(buffer.size());
+        randomAccessFile.seek(offset);
+        randomAccessFile.write(buffer.toByteArray());
+
+        nSpilledClusters++;
+        bytesWritten += buffer.size();
+
+        List<ComparisonMatch> comparisonMatches = cluster.getComparisonMatches();
+        // results below the lowest saved similarity are ignored by full clusters
+        float minimumSimilarity = (comparisonMatches.size() >= GreedySpectralCluster.SAVED_COMPARISON_MATCHES) ?
+                comparisonMatches.get(0).getSimilarity() : Float.NEGATIVE_INFINITY;
+
+        return new SpilledCluster(cluster.getId(), cluster.getPrecursorMz(), offset, buffer.size(), minimumSimilarity);
+    }
+
+    /**
+     * Loads a previously spilled cluster and applies all comparison results
+     * that were saved while the cluster was spilled.
+     *
+     * @param spilledCluster The handle returned by spill
+     * @return The restored cluster
+     * @throws IOException
+     */
+    public GreedySpectralCluster load(SpilledCluster spilledCluster) throws IOException {
+        GreedySpectralCluster cluster = read(spilledCluster);
+
+        nSpilledClusters--;
+        if (nSpilledClusters == 0)
+            close();
+        else
+            release(spilledCluster.offset, spilledCluster.length);
+
+        return cluster;
+    }
+
+    /**
+     * Returns the offset to write the passed number of bytes at. The first
+     * free segment that is large enough is used, otherwise the data is
+     * appended.
+     */
+    private long allocate(int length) throws IOException {
+        for (Map.Entry<Long, Long> freeSegment : freeSegments.entrySet()) {
+            long offset = freeSegment.getKey();
+            long freeLength = freeSegment.getValue();
+            if (freeLength < length)
+                continue;
+
+            freeSegments.remove(offset);
+            if (freeLength > length)
+                freeSegments.put(offset + length, freeLength - length);
+
+            return offset;
+        }
+
+        return randomAccessFile.length();
+    }
+
+    /**
+     * Marks the passed segment as free and truncates the file if the
+     * segment is at its end.
+     */
+    private void release(long offset, long length) throws IOException {
+        Map.Entry<Long, Long> previous = freeSegments.lowerEntry(offset);
+        if (previous != null && previous.getKey() + previous.getValue() == offset) {
+            freeSegments.remove(previous.getKey());
+            offset = previous.getKey();
+            length += previous.getValue();
+        }
+
+        Long next = freeSegments.remove(offset + length);
+        if (next != null)
+            length += next;
+
+        if (offset + length == randomAccessFile.length())
+            randomAccessFile.setLength(offset);
+        else
+            freeSegments.put(offset, length);
+    }
+
+    /**
+     * Reads a copy of a spilled cluster including the comparison results saved
+     * while the cluster was spilled. The cluster remains in the file.
+     *
+     * @param spilledCluster The handle returned by spill
+     * @return A copy of the cluster
+     * @throws IOException
+     */
+    public GreedySpectralCluster read(SpilledCluster spilledCluster) throws IOException {
+        byte[] data = new byte[spilledCluster.length];
+        randomAccessFile.seek(spilledCluster.offset);
+        randomAccessFile.readFully(data);
+
+        GreedySpectralCluster cluster = readCluster(new DataInputStream(new ByteArrayInputStream(data)), configuration);
+
+        for (int i = 0; i < spilledCluster.nPendingResults; i++) {
+            cluster.saveComparisonResult(spilledCluster.pendingIds[i], spilledCluster.pendingSimilarities[i]);
+        }
+
+        return cluster;
+    }
+
+    public int getSpilledClusterCount() {
+        return nSpilledClusters;
+    }
+
+    /**
+     * @return The current length of the file in bytes, 0 if there is no file
+     * @throws IOException
+     */
+    public long getFileLength() throws IOException {
+        return (randomAccessFile == null) ? 0 : randomAccessFile.length();
+    }
+
+    /**
+     * @return Total number of bytes written to the file(s)
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Closes and deletes the file. Clusters that were not loaded are lost.
+     */
+    @Override
+    public void close() throws IOException {
+        if (randomAccessFile == null)
+            return;
+
+        randomAccessFile.close();
+        randomAccessFile = null;
+        nSpilledClusters = 0;
+        freeSegments.clear();
+
+        if (!file.delete())
+            file.deleteOnExit();
+        file = null;
+    }
+
+    /**
+     * Writes the complete state of the cluster. Also used to write checkpoints.
+     */
+    static void writeCluster(DataOutputStream out, GreedySpectralCluster cluster) throws IOException {
+        writeString(out, cluster.getId());
+        writeProperties(out, cluster.getProperties());
+
+        IConsensusSpectrumBuilder consensusSpectrumBuilder = cluster.getConsensusSpectrumBuilder();
+        writeString(out, consensusSpectrumBuilder.getConsensusSpectrum().getId());
+        out.writeFloat(consensusSpectrumBuilder.getFragmentIonTolerance());
+        out.writeInt(consensusSpectrumBuilder.getSpectraCount());
+        out.writeInt(consensusSpectrumBuilder.getSumCharge());
+        out.writeDouble(consensusSpectrumBuilder.getSumPrecursorMz());
+        out.writeDouble(consensusSpectrumBuilder.getSumPrecursorIntensity());
+
+        List<IPeak> rawConsensusPeaks = consensusSpectrumBuilder.getRawConsensusPeaks();
+        out.writeInt(rawConsensusPeaks.size());
+        for (IPeak peak : rawConsensusPeaks) {
+            out.writeFloat(peak.getMz());
+            out.writeFloat(peak.getIntensity());
+            out.writeInt(peak.getCount());
+        }
+
+        // the order is preserved so that the matches can be replayed
+        List<ComparisonMatch> comparisonMatches = cluster.getComparisonMatches();
+        out.writeInt(comparisonMatches.size());
+        for (ComparisonMatch comparisonMatch : comparisonMatches) {
+            writeString(out, comparisonMatch.getSpectrumId());
+            out.writeFloat(comparisonMatch.getSimilarity());
+        }
+
+        List<ISpectrum> clusteredSpectra = cluster.getClusteredSpectra();
+        out.writeInt(clusteredSpectra.size());
+        for (ISpectrum spectrum : clusteredSpectra) {
+            writeString(out, spectrum.getId());
+            out.writeInt(spectrum.getPrecursorCharge());
+            out.writeFloat(spectrum.getPrecursorMz());
+            writeProperties(out, spectrum.getProperties());
+        }
+    }
+
+    /**
+     * Reads a cluster written by writeCluster. Everything that is not part of
+     * the stored state is taken from the passed configuration.
+     */
+    static GreedySpectralCluster readCluster(DataInputStream in, ClusteringConfiguration configuration) throws IOException {
+        String id = readString(in);
+        Properties properties = readProperties(in);
+
+        String consensusId = readString(in);
+        float fragmentTolerance = in.readFloat();
+        int nSpectra = in.readInt();
+        int sumCharge = in.readInt();
+        double sumPrecursorMz = in.readDouble();
+        double sumPrecursorIntensity = in.readDouble();
+
+        int nPeaks = in.readInt();
+        List<IPeak> rawConsensusPeaks = new ArrayList<>(nPeaks);
+        for (int i = 0; i < nPeaks; i++) {
+            rawConsensusPeaks.add(new Peak(in.readFloat(), in.readFloat(), in.readInt()));
+        }
+
+        BinnedGreedyConsensusSpectrum consensusSpectrumBuilder = new BinnedGreedyConsensusSpectrum(configuration, fragmentTolerance, consensusId,
+                nSpectra, sumPrecursorMz, sumPrecursorIntensity, sumCharge, rawConsensusPeaks, new BinSpectrumMaxFunction(fragmentTolerance));
+
+        int nMatches = in.readInt();
+        List<ComparisonMatch> comparisonMatches = new ArrayList<>(nMatches);
+        for (int i = 0; i < nMatches; i++) {
+            comparisonMatches.add(new ComparisonMatch(readString(in), in.readFloat()));
+        }
+
+        int nClusteredSpectra = in.readInt();
+        List<ISpectrum> clusteredSpectra = new ArrayList<>(nClusteredSpectra);
+        for (int i = 0; i < nClusteredSpectra; i++) {
+            String spectrumId = readString(in);
+            int charge = in.readInt();
+            float precursorMz = in.readFloat();
+            Properties spectrumProperties = readProperties(in);
+
+            ISpectrum spectrum = new Spectrum(spectrumId, charge, precursorMz, configuration.getQualityScorer(), Collections.emptyList());
+            for (String propertyName : spectrumProperties.stringPropertyNames()) {
+                spectrum.setProperty(propertyName, spectrumProperties.getProperty(propertyName));
+            }
+            clusteredSpectra.add(spectrum);
+        }
+
+        GreedySpectralCluster cluster = new GreedySpectralCluster(id, clusteredSpectra, consensusSpectrumBuilder, null, configuration);
+        cluster.getProperties().putAll(properties);
+
+        // replay the matches instead of setting them to keep their original order
+        for (ComparisonMatch comparisonMatch : comparisonMatches) {
+            cluster.saveComparisonResult(comparisonMatch.getSpectrumId(), comparisonMatch.getSimilarity());
+        }
+
+        return cluster;
+    }
+
+    static void writeProperties(DataOutputStream out, Properties properties) throws IOException {
+        out.writeInt(properties.size());
+        for (String name : properties.stringPropertyNames()) {
+            writeString(out, name);
+            writeString(out, properties.getProperty(name));
+        }
+    }
+
+    static Properties readProperties(DataInputStream in) throws IOException {
+        Properties properties = new Properties();
+        int nProperties = in.readInt();
+        for (int i = 0; i < nProperties; i++) {
+            properties.setProperty(readString(in), readString(in));
+        }
+        return properties;
+    }
+
+    /**
+     * Strings are written as length + UTF-8 bytes since writeUTF is limited to 64 kB
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handle of a cluster in the spill file. Comparison results of spilled
+     * clusters are buffered here and applied once the cluster is loaded.
+     */
+    public static class SpilledCluster {
+        /**
+         * Estimated memory used by a handle without its pending results
+         */
+        public static final long SPILLED_CLUSTER_BYTES = 128;
+        /**
+         * Estimated memory used per pending comparison result
+         */
+        public static final long PENDING_RESULT_BYTES = 12;
+
+        private final String id;
+        private final float precursorMz;
+        private final long offset;
+        private final int length;
+        private final float minimumSimilarity;
+
+        private final String[] pendingIds = new String[GreedySpectralCluster.SAVED_COMPARISON_MATCHES];
+        private final float[] pendingSimilarities = new float[GreedySpectralCluster.SAVED_COMPARISON_MATCHES];
+        private int nPendingResults;
+
+        private SpilledCluster(String id, float precursorMz, long offset, int length, float minimumSimilarity) {
+            this.id = id;
+            this.precursorMz = precursorMz;
+            this.offset = offset;
+            this.length = length;
+            this.minimumSimilarity = minimumSimilarity;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public float getPrecursorMz() {
+            return precursorMz;
+        }
+
+        /**
+         * Buffers a comparison result.
+         *
+         * @param id         Id of the cluster that the comparison was performed with
+         * @param similarity The similarity score
+         * @return false if the buffer is full and the cluster has to be loaded first
+         */
+        public boolean saveComparisonResult(String id, float similarity) {
+            // the cluster would ignore this result anyway
+            if (similarity < minimumSimilarity)
+                return true;
+
+            if (nPendingResults == pendingIds.length)
+                return false;
+
+            pendingIds[nPendingResults] = id;
+            pendingSimilarities[nPendingResults] = similarity;
+            nPendingResults++;
+
+            return true;
+        }
+
+        public long estimateBytes() {
+            return SPILLED_CLUSTER_BYTES + pendingIds.length * PENDING_RESULT_BYTES;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Information returned when an incremental clustering engine is resumed
+ * from a checkpoint. The caller has to continue reading its input after
+ * the stored offsets and first has to handle the pending clusters - these
+ * were returned by the engine just before the checkpoint was written.
+ */
+public class ClusteringCheckpoint {
+    /**
+     * Offset that is always stored: the number of clusters that were added to the engine
+     */
+    public static final String ADDED_CLUSTERS_OFFSET = "added_clusters";
+
+    private final Map<String, Long> offsets;
+    private final List<ICluster> pendingClusters;
+
+    public ClusteringCheckpoint(Map<String, Long> offsets, List<ICluster> pendingClusters) {
+        this.offsets = Collections.unmodifiableMap(offsets);
+        this.pendingClusters = Collections.unmodifiableList(pendingClusters);
+    }
+
+    /**
+     * Returns the offsets stored with the checkpoint, for example the number
+     * of spectra read from the input files or the size of the output file.
+     *
+     * @return !null map of offsets
+     */
+    public Map<String, Long> getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the stored offset.
+     *
+     * @param name Name of the offset
+     * @return The offset or -1 if it was not stored
+     */
+    public long getOffset(String name) {
+        Long offset = offsets.get(name);
+        return (offset == null) ? -1 : offset;
+    }
+
+    /**
+     * @return Number of clusters that were added to the engine before the checkpoint
+     */
+    public long getAddedClusters() {
+        return getOffset(ADDED_CLUSTERS_OFFSET);
+    }
+
+    /**
+     * Returns the clusters that were removed from the engine by the last
+     * call to addClusterIncremental before the checkpoint was written.
+     *
+     * @return !null list of clusters
+     */
+    public List<ICluster> getPendingClusters() {
+        return pendingClusters;
+    }
+}
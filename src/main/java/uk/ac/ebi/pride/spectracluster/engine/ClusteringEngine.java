@@ -3,8 +3,10 @@ package uk.ac.ebi.pride.spectracluster.engine;
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectralCluster;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.similarity.SimilarityScoreCache;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
 import java.util.*;
@@ -32,11 +34,30 @@ public class ClusteringEngine implements IClusteringEngine {
      * Similarity threshold below which spectra are removed from a cluster
      */
     private final double retainThreshold;
+    /**
+     * Configuration used to create the consensus spectrum builders of new clusters
+     */
+    private final ClusteringConfiguration configuration;
+    private MergeStrategy mergeStrategy = MergeStrategy.PAIRWISE;
 
     public ClusteringEngine(ISimilarityChecker similarityChecker,
                             Comparator<ICluster> spectrumComparator,
                             double similarityThreshold,
                             double retainThreshold) {
+        this(similarityChecker, spectrumComparator, similarityThreshold, retainThreshold, Defaults.getConfiguration());
+    }
+
+    public ClusteringEngine(ClusteringConfiguration configuration) {
+        this(configuration.getSimilarityChecker(), configuration.getSpectrumComparator(),
+                configuration.getSimilarityThreshold(), configuration.getRetainThreshold(), configuration);
+    }
+
+    public ClusteringEngine(ISimilarityChecker similarityChecker,
+                            Comparator<ICluster> spectrumComparator,
+                            double similarityThreshold,
+                            double retainThreshold,
+                            ClusteringConfiguration configuration) {
+        this.configuration = configuration;
         this.similarityChecker = similarityChecker;
         this.spectrumComparator = spectrumComparator;
         this.similarityThreshold = similarityThreshold;
@@ -104,18 +125,49 @@ public class ClusteringEngine implements IClusteringEngine {
         List<ICluster> myClustersToAdd = getClustersToAdd();
         List<ICluster> myClusters = internalGetClusters();
         ISimilarityChecker sCheck = getSimilarityChecker();
+        SimilarityScoreCache scoreCache = configuration.getScoreCache();
+        List<ISpectrum> consensusSpectra = new ArrayList<>();
+        List<Integer> scoredIndices = new ArrayList<>();
+        double[] similarityScores = new double[0];
+        double[] newScores = new double[0];
 
         for (ICluster clusterToAdd : myClustersToAdd) {
 
             ICluster mostSimilarCluster = null;
             double highestSimilarityScore = 0;
 
-            // find the cluster with the highest similarity score
-            for (ICluster cluster : myClusters) {
-                ISpectrum consensusSpectrum = cluster.getConsensusSpectrum();
-                ISpectrum consensusSpectrum1 = clusterToAdd.getConsensusSpectrum();  // subspectra are really only one spectrum clusters
+            if (similarityScores.length < myClusters.size()) {
+                similarityScores = new double[Math.max(myClusters.size(), similarityScores.length * 2)];
+                newScores = new double[similarityScores.length];
+            }
+
+            // score the cluster against all existing clusters at once, skipping known scores
+            consensusSpectra.clear();
+            scoredIndices.clear();
+            for (int i = 0; i < myClusters.size(); i++) {
+                ICluster cluster = myClusters.get(i);
+                similarityScores[i] = getCachedSimilarity(scoreCache, cluster, clusterToAdd);
+
+                if (Double.isNaN(similarityScores[i])) {
+                    consensusSpectra.add(cluster.getConsensusSpectrum());
+                    scoredIndices.add(i);
+                }
+            }
+
+            ISpectrum consensusSpectrumToAdd = clusterToAdd.getConsensusSpectrum();  // subspectra are really only one spectrum clusters
+            if (!consensusSpectra.isEmpty())
+                sCheck.assessSimilarity(consensusSpectrumToAdd, consensusSpectra, newScores);
 
-                double similarityScore = sCheck.assessSimilarity(consensusSpectrum, consensusSpectrum1);
+            for (int n = 0; n < scoredIndices.size(); n++) {
+                int i = scoredIndices.get(n);
+                similarityScores[i] = newScores[n];
+                cacheSimilarity(scoreCache, myClusters.get(i), clusterToAdd, newScores[n]);
+            }
+
+            // find the cluster with the highest similarity score
+            for (int i = 0; i < myClusters.size(); i++) {
+                ICluster cluster = myClusters.get(i);
+                double similarityScore = similarityScores[i];
 
                 if (similarityScore >= similarityThreshold && similarityScore > highestSimilarityScore) {
                     highestSimilarityScore = similarityScore;
@@ -134,7 +186,7 @@ public class ClusteringEngine implements IClusteringEngine {
                     mostSimilarCluster.setId(clusterToAdd.getId());
                 }
             } else {
-                myClusters.add(new SpectralCluster(clusterToAdd, Defaults.getDefaultConsensusSpectrumBuilder()));
+                myClusters.add(new SpectralCluster(clusterToAdd, configuration.getConsensusSpectrumBuilder()));
             }
         }
 
@@ -172,10 +224,14 @@ public class ClusteringEngine implements IClusteringEngine {
      * @return true if clusters have been merged
      */
     public boolean mergeAllClusters() {
+        if (mergeStrategy == MergeStrategy.UNION_FIND)
+            return mergeAllClustersUnionFind();
+
         boolean modified = false;
         boolean toMerge = true;
         List<ICluster> myClusters = internalGetClusters();
         ISimilarityChecker sCheck = getSimilarityChecker();
+        SimilarityScoreCache scoreCache = configuration.getScoreCache();
 
         while (toMerge) {
             toMerge = false;
@@ -184,7 +240,11 @@ public class ClusteringEngine implements IClusteringEngine {
                 for (int j = i + 1; j < myClusters.size(); j++) {
                     ICluster clusterI = myClusters.get(i);
                     ICluster clusterJ = myClusters.get(j);
-                    double similarityScore = sCheck.assessSimilarity(clusterI.getConsensusSpectrum(), clusterJ.getConsensusSpectrum());
+                    double similarityScore = getCachedSimilarity(scoreCache, clusterI, clusterJ);
+                    if (Double.isNaN(similarityScore)) {
+                        similarityScore = sCheck.assessSimilarity(clusterI.getConsensusSpectrum(), clusterJ.getConsensusSpectrum());
+                        cacheSimilarity(scoreCache, clusterI, clusterJ, similarityScore);
+                    }
                     if (similarityScore >= similarityThreshold) {
                         toMerge = true;
                         modified = true;
@@ -201,6 +261,167 @@ public class ClusteringEngine implements IClusteringEngine {
         return modified;
     }
 
+    /**
+     * Merges the clusters using the MergeStrategy.UNION_FIND strategy.
+     *
+     * @return true if clusters have been merged
+     */
+    private boolean mergeAllClustersUnionFind() {
+        boolean modified = false;
+        List<ICluster> myClusters = internalGetClusters();
+        ISimilarityChecker sCheck = getSimilarityChecker();
+        SimilarityScoreCache scoreCache = configuration.getScoreCache();
+        List<ISpectrum> consensusSpectra = new ArrayList<>();
+        List<Integer> scoredIndices = new ArrayList<>();
+
+        while (true) {
+            int nClusters = myClusters.size();
+            int[] parents = new int[nClusters];
+            for (int i = 0; i < nClusters; i++)
+                parents[i] = i;
+            double[] scores = new double[nClusters];
+            // the first following cluster every cluster matches, -1 if there is none
+            int[] firstMatches = new int[nClusters];
+            Arrays.fill(firstMatches, -1);
+
+            // score every pair (i, j) with i < j once, the uncached ones at once
+            for (int j = 1; j < nClusters; j++) {
+                ICluster clusterJ = myClusters.get(j);
+                consensusSpectra.clear();
+                scoredIndices.clear();
+
+                for (int i = 0; i < j; i++) {
+                    // only the first match of every cluster is used
+                    if (firstMatches[i] >= 0)
+                        continue;
+
+                    ICluster clusterI = myClusters.get(i);
+                    double similarityScore = getCachedSimilarity(scoreCache, clusterI, clusterJ);
+
+                    if (Double.isNaN(similarityScore)) {
+                        consensusSpectra.add(clusterI.getConsensusSpectrum());
+                        scoredIndices.add(i);
+                    } else if (similarityScore >= similarityThreshold) {
+                        firstMatches[i] = j;
+                    }
+                }
+
+                if (consensusSpectra.isEmpty())
+                    continue;
+
+                sCheck.assessSimilarity(clusterJ.getConsensusSpectrum(), consensusSpectra, scores);
+                for (int n = 0; n < scoredIndices.size(); n++) {
+                    int i = scoredIndices.get(n);
+                    cacheSimilarity(scoreCache, myClusters.get(i), clusterJ, scores[n]);
+
+                    if (scores[n] >= similarityThreshold)
+                        firstMatches[i] = j;
+                }
+            }
+
+            // clusters whose match is merged itself are compared again in the next round
+            boolean linked = false;
+            for (int i = 0; i < nClusters; i++) {
+                if (firstMatches[i] >= 0 && firstMatches[firstMatches[i]] < 0)
+                    linked |= union(parents, i, firstMatches[i]);
+            }
+
+            if (!linked)
+                break;
+            modified = true;
+
+            // just like in the pairwise strategy, spectra are merged into the last cluster
+            Map<Integer, List<ISpectrum>> spectraToMerge = new HashMap<>();
+            for (int i = 0; i < nClusters; i++) {
+                int root = find(parents, i);
+                if (root != i)
+                    spectraToMerge.computeIfAbsent(root, k -> new ArrayList<>()).addAll(myClusters.get(i).getClusteredSpectra());
+            }
+
+            List<ICluster> mergedClusters = new ArrayList<>(nClusters - spectraToMerge.size());
+            for (int i = 0; i < nClusters; i++) {
+                if (find(parents, i) != i)
+                    continue;
+
+                ICluster cluster = myClusters.get(i);
+                List<ISpectrum> spectra = spectraToMerge.get(i);
+                if (spectra != null)
+                    cluster.addSpectra(spectra.toArray(new ISpectrum[spectra.size()]));
+
+                mergedClusters.add(cluster);
+            }
+
+            myClusters.clear();
+            myClusters.addAll(mergedClusters);
+        }
+
+        return modified;
+    }
+
+    /**
+     * Links the two sets. The root of a set is always its highest index.
+     *
+     * @return true if the two indices were not linked before
+     */
+    private static boolean union(int[] parents, int index1, int index2) {
+        int root1 = find(parents, index1);
+        int root2 = find(parents, index2);
+        if (root1 == root2)
+            return false;
+
+        if (root1 < root2)
+            parents[root1] = root2;
+        else
+            parents[root2] = root1;
+
+        return true;
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            // path halving
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    public MergeStrategy getMergeStrategy() {
+        return mergeStrategy;
+    }
+
+    /**
+     * @param mergeStrategy The strategy used by mergeAllClusters, PAIRWISE by default
+     */
+    public void setMergeStrategy(MergeStrategy mergeStrategy) {
+        if (mergeStrategy == null)
+            throw new IllegalArgumentException("mergeStrategy must not be null");
+
+        this.mergeStrategy = mergeStrategy;
+    }
+
+    /**
+     * Returns the cached similarity between the two clusters' consensus spectra.
+     *
+     * @param scoreCache The cache to use, may be null
+     * @return The score or NaN if it is not known
+     */
+    private static double getCachedSimilarity(SimilarityScoreCache scoreCache, ICluster cluster1, ICluster cluster2) {
+        if (scoreCache == null)
+            return Double.NaN;
+
+        return scoreCache.get(cluster1.getId(), cluster1.getConsensusSpectrumBuilder().getVersion(),
+                cluster2.getId(), cluster2.getConsensusSpectrumBuilder().getVersion());
+    }
+
+    private static void cacheSimilarity(SimilarityScoreCache scoreCache, ICluster cluster1, ICluster cluster2, double similarityScore) {
+        if (scoreCache == null)
+            return;
+
+        scoreCache.put(cluster1.getId(), cluster1.getConsensusSpectrumBuilder().getVersion(),
+                cluster2.getId(), cluster2.getConsensusSpectrumBuilder().getVersion(), similarityScore);
+    }
+
     /**
      * Remove none fitting spectra and the none fitting spectra
      * back in as new clusters
@@ -212,9 +433,13 @@ public class ClusteringEngine implements IClusteringEngine {
 
         List<ICluster> emptyClusters = new ArrayList<>(); // holder for any empty clusters
         List<ICluster> myClusters = internalGetClusters();
+        // score all clusters at once, the clusters are only changed afterwards
+        List<List<ICluster>> noneFittingSpectraPerCluster =
+                ClusterUtilities.findNoneFittingSpectra(myClusters, similarityChecker, retainThreshold, configuration.getScoringExecutor());
 
-        for (ICluster cluster : myClusters) {
-            List<ICluster> noneFittingSpectra = ClusterUtilities.findNoneFittingSpectra(cluster, similarityChecker, retainThreshold);
+        for (int i = 0; i < myClusters.size(); i++) {
+            ICluster cluster = myClusters.get(i);
+            List<ICluster> noneFittingSpectra = noneFittingSpectraPerCluster.get(i);
             if (!noneFittingSpectra.isEmpty()) {
                 noneFittingSpectraFound = true;
 
@@ -0,0 +1,308 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default IClusteringEngineListener that collects counters and timing
+ * histograms. All values are stored in LongAdders so that one instance
+ * can be shared by engines running in different threads with little
+ * contention.
+ */
+public class ClusteringEngineMetrics implements IClusteringEngineListener {
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder acceptedComparisons = new LongAdder();
+    private final LongAdder predicateRejections = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder evictedClusters = new LongAdder();
+    private final LongAccumulator maximumWindowClusters = new LongAccumulator(Math::max, 0);
+    private final AtomicLong memoryFootprint = new AtomicLong();
+    private final LongAccumulator peakMemoryFootprint = new LongAccumulator(Math::max, 0);
+    private final LongAdder memoryPressureEvents = new LongAdder();
+    private final LongAdder memoryPressureEvictions = new LongAdder();
+    private final LongAdder spilledClusters = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+    private final LongAdder reloadedClusters = new LongAdder();
+    private final DoubleAccumulator minimumWindowSize = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final PowerOfTwoHistogram windowClusters = new PowerOfTwoHistogram();
+    private final PowerOfTwoHistogram mergedClusterSizes = new PowerOfTwoHistogram();
+    private final PowerOfTwoHistogram scoringTime = new PowerOfTwoHistogram();
+    private final PowerOfTwoHistogram filteringTime = new PowerOfTwoHistogram();
+    private final PowerOfTwoHistogram consensusRebuildTime = new PowerOfTwoHistogram();
+
+    @Override
+    public void onComparison(double score, boolean accepted, long scoringNanos) {
+        comparisons.increment();
+        if (accepted)
+            acceptedComparisons.increment();
+        scoringTime.add(scoringNanos);
+    }
+
+    @Override
+    public void onPredicateRejection() {
+        predicateRejections.increment();
+    }
+
+    @Override
+    public void onMerge(int mergedSize) {
+        merges.increment();
+        mergedClusterSizes.add(mergedSize);
+    }
+
+    @Override
+    public void onWindowUpdate(int evictedClusters, int windowClusters) {
+        this.evictedClusters.add(evictedClusters);
+        this.windowClusters.add(windowClusters);
+        maximumWindowClusters.accumulate(windowClusters);
+    }
+
+    @Override
+    public void onFiltering(long nanos) {
+        filteringTime.add(nanos);
+    }
+
+    @Override
+    public void onConsensusRebuild(long nanos) {
+        consensusRebuildTime.add(nanos);
+    }
+
+    @Override
+    public void onMemoryFootprint(long footprintBytes) {
+        memoryFootprint.set(footprintBytes);
+        peakMemoryFootprint.accumulate(footprintBytes);
+    }
+
+    @Override
+    public void onMemoryPressure(long footprintBytes, long budgetBytes, int evictedClusters, double windowSize) {
+        memoryPressureEvents.increment();
+        memoryPressureEvictions.add(evictedClusters);
+        minimumWindowSize.accumulate(windowSize);
+    }
+
+    @Override
+    public void onClustersSpilled(int spilledClusters, long bytesWritten) {
+        this.spilledClusters.add(spilledClusters);
+        spilledBytes.add(bytesWritten);
+    }
+
+    @Override
+    public void onClusterReloaded() {
+        reloadedClusters.increment();
+    }
+
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    public long getAcceptedComparisons() {
+        return acceptedComparisons.sum();
+    }
+
+    public long getRejectedComparisons() {
+        return comparisons.sum() - acceptedComparisons.sum();
+    }
+
+    public long getPredicateRejections() {
+        return predicateRejections.sum();
+    }
+
+    public long getMerges() {
+        return merges.sum();
+    }
+
+    public long getEvictedClusters() {
+        return evictedClusters.sum();
+    }
+
+    public long getMaximumWindowClusters() {
+        return maximumWindowClusters.get();
+    }
+
+    public long getScoringNanos() {
+        return scoringTime.getTotal();
+    }
+
+    public long getFilteringNanos() {
+        return filteringTime.getTotal();
+    }
+
+    public long getConsensusRebuildNanos() {
+        return consensusRebuildTime.getTotal();
+    }
+
+    public long getConsensusRebuilds() {
+        return consensusRebuildTime.getCount();
+    }
+
+    /**
+     * Returns the last reported memory footprint. If the instance is shared
+     * by several engines this is the footprint of the engine that reported last.
+     *
+     * @return The footprint in bytes
+     */
+    public long getMemoryFootprint() {
+        return memoryFootprint.get();
+    }
+
+    public long getPeakMemoryFootprint() {
+        return peakMemoryFootprint.get();
+    }
+
+    public long getMemoryPressureEvents() {
+        return memoryPressureEvents.sum();
+    }
+
+    public long getMemoryPressureEvictions() {
+        return memoryPressureEvictions.sum();
+    }
+
+    public long getSpilledClusters() {
+        return spilledClusters.sum();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    public long getReloadedClusters() {
+        return reloadedClusters.sum();
+    }
+
+    /**
+     * Returns the smallest window size used under memory pressure.
+     *
+     * @return The window size or NaN if there never was memory pressure
+     */
+    public double getMinimumWindowSize() {
+        double minimum = minimumWindowSize.get();
+        return (minimum == Double.POSITIVE_INFINITY) ? Double.NaN : minimum;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        comparisons.reset();
+        acceptedComparisons.reset();
+        predicateRejections.reset();
+        merges.reset();
+        evictedClusters.reset();
+        maximumWindowClusters.reset();
+        windowClusters.reset();
+        mergedClusterSizes.reset();
+        scoringTime.reset();
+        filteringTime.reset();
+        consensusRebuildTime.reset();
+        memoryFootprint.set(0);
+        peakMemoryFootprint.reset();
+        memoryPressureEvents.reset();
+        memoryPressureEvictions.reset();
+        minimumWindowSize.reset();
+        spilledClusters.reset();
+        spilledBytes.reset();
+        reloadedClusters.reset();
+    }
+
+    /**
+     * Returns a human readable summary of all collected metrics.
+     *
+     * @return !null summary
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+
+        summary.append(String.format(Locale.US, "comparisons: %d (accepted %d, rejected %d), predicate rejections: %d%n",
+                getComparisons(), getAcceptedComparisons(), getRejectedComparisons(), getPredicateRejections()));
+        summary.append(String.format(Locale.US, "merges: %d, evicted clusters: %d, maximum clusters in window: %d%n",
+                getMerges(), getEvictedClusters(), getMaximumWindowClusters()));
+        summary.append(String.format(Locale.US, "memory footprint: %.1f MB (peak %.1f MB), memory pressure events: %d (evicted %d clusters, minimum window %.2f)%n",
+                getMemoryFootprint() / 1048576.0, getPeakMemoryFootprint() / 1048576.0,
+                getMemoryPressureEvents(), getMemoryPressureEvictions(), getMinimumWindowSize()));
+        summary.append(String.format(Locale.US, "spilled clusters: %d (%.1f MB), reloaded clusters: %d%n",
+                getSpilledClusters(), getSpilledBytes() / 1048576.0, getReloadedClusters()));
+        summary.append("clusters in window: ").append(windowClusters.getSummary(1)).append("\n");
+        summary.append("merged cluster sizes: ").append(mergedClusterSizes.getSummary(1)).append("\n");
+        summary.append("scoring (us): ").append(scoringTime.getSummary(1000)).append("\n");
+        summary.append("filtering (us): ").append(filteringTime.getSummary(1000)).append("\n");
+        summary.append("consensus rebuild (us): ").append(consensusRebuildTime.getSummary(1000)).append("\n");
+
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    /**
+     * Histogram of positive values using power of two buckets.
+     */
+    private static class PowerOfTwoHistogram {
+        private static final int NUMBER_BUCKETS = 64;
+
+        private final LongAdder[] buckets = new LongAdder[NUMBER_BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        private PowerOfTwoHistogram() {
+            for (int i = 0; i < NUMBER_BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void add(long value) {
+            if (value < 0)
+                value = 0;
+
+            // bucket i holds values < 2^i
+            buckets[NUMBER_BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            total.add(value);
+        }
+
+        private long getTotal() {
+            return total.sum();
+        }
+
+        private long getCount() {
+            return count.sum();
+        }
+
+        private void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            total.reset();
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the passed quantile.
+         */
+        private long getQuantileUpperBound(double quantile) {
+            long nValues = count.sum();
+            long threshold = (long) Math.ceil(nValues * quantile);
+            long seen = 0;
+
+            for (int i = 0; i < NUMBER_BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= threshold && seen > 0)
+                    return (i == 0) ? 0 : (1L << i) - 1;
+            }
+
+            return 0;
+        }
+
+        private String getSummary(double unit) {
+            long nValues = count.sum();
+            double mean = (nValues > 0) ? total.sum() / (double) nValues : 0;
+
+            return String.format(Locale.US, "n = %d, total = %.1f, mean = %.2f, p50 < %.1f, p99 < %.1f",
+                    nValues, total.sum() / unit, mean / unit,
+                    getQuantileUpperBound(0.5) / unit, getQuantileUpperBound(0.99) / unit);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import uk.ac.ebi.pride.spectracluster.cdf.INumberOfComparisonAssessor;
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.IDefaultingFactory;
 import uk.ac.ebi.pride.spectracluster.util.comparator.ClusterComparator;
@@ -26,7 +27,8 @@ public class EngineFactories {
             new ClusteringEngineFactory(Defaults.getDefaultSimilarityChecker(),
                     Defaults.getDefaultSpectrumComparator(),
                     Defaults.getSimilarityThreshold(),
-                    Defaults.getRetainThreshold());
+                    Defaults.getRetainThreshold(),
+                    null);
 
 
     public static IDefaultingFactory<IClusteringEngine> buildClusteringEngineFactory(
@@ -37,7 +39,19 @@ public class EngineFactories {
         return new ClusteringEngineFactory(pSimilarityChecker,
                 pSpectrumComparator,
                 threshold,
-                retainThreshold);
+                retainThreshold,
+                null);
+    }
+
+    /**
+     * make a clustering engine factory taking all parameters from the passed configuration
+     */
+    public static IDefaultingFactory<IClusteringEngine> buildClusteringEngineFactory(ClusteringConfiguration configuration) {
+        return new ClusteringEngineFactory(configuration.getSimilarityChecker(),
+                configuration.getSpectrumComparator(),
+                configuration.getSimilarityThreshold(),
+                configuration.getRetainThreshold(),
+                configuration);
     }
 
 
@@ -46,16 +60,22 @@ public class EngineFactories {
         private final ClusterComparator spectrumComparator;
         private final double similarityThreshold;
         private final double retainThreshold;
+        /**
+         * if this is null, the current Defaults are used when the engine is built
+         */
+        private final ClusteringConfiguration configuration;
 
         private ClusteringEngineFactory(final ISimilarityChecker pSimilarityChecker,
                                         ClusterComparator pSpectrumComparator,
                                         double threshold,
-                                        double retainThreshold
+                                        double retainThreshold,
+                                        ClusteringConfiguration configuration
         ) {
             similarityChecker = pSimilarityChecker;
             spectrumComparator = pSpectrumComparator;
             similarityThreshold = threshold;
             this.retainThreshold = retainThreshold;
+            this.configuration = configuration;
         }
 
         /**
@@ -65,7 +85,8 @@ public class EngineFactories {
          */
         @Override
         public IClusteringEngine buildInstance(Object... otherdata) {
-            return new ClusteringEngine(similarityChecker, spectrumComparator, similarityThreshold, retainThreshold);
+            return new ClusteringEngine(similarityChecker, spectrumComparator, similarityThreshold, retainThreshold,
+                    configuration != null ? configuration : Defaults.getConfiguration());
         }
     }
 
@@ -147,6 +168,16 @@ public class EngineFactories {
         return buildGreedyIncrementalClusteringEngineFactory(Defaults.getDefaultSimilarityChecker(), Defaults.getDefaultSpectrumComparator(), Defaults.getSimilarityThreshold(), Defaults.getDefaultPrecursorIonTolerance(), Defaults.getDefaultComparisonPeakFilter(), null);
     }
 
+    /**
+     * make a greedy incremental clustering engine factory taking all parameters from the passed configuration
+     */
+    public static IDefaultingFactory<IIncrementalClusteringEngine> buildGreedyIncrementalClusteringEngineFactory(ClusteringConfiguration configuration,
+                                                                                                                 IComparisonPredicate<ICluster> comparisonPredicate) {
+        return new GreedyIncrementalClusteringEngineFactory(configuration.getSimilarityChecker(), configuration.getSpectrumComparator(),
+                configuration.getSimilarityThreshold(), configuration.getPrecursorIonTolerance(), configuration.getComparisonPeakFilter(),
+                comparisonPredicate, configuration);
+    }
+
     public static class GreedyIncrementalClusteringEngineFactory implements IDefaultingFactory<IIncrementalClusteringEngine> {
         private final ISimilarityChecker similarityChecker;
         private final ClusterComparator spectrumComparator;
@@ -154,8 +185,17 @@ public class EngineFactories {
         private final float windowSize;
         private final IFunction<List<IPeak>, List<IPeak>> peakFilterFunction;
         private final IComparisonPredicate<ICluster> comparisonPredicate;
+        /**
+         * if this is null, the current Defaults are used when the engine is built
+         */
+        private final ClusteringConfiguration configuration;
 
         public GreedyIncrementalClusteringEngineFactory(ISimilarityChecker similarityChecker, ClusterComparator spectrumComparator, double similarityThreshold, float windowSize, IFunction<List<IPeak>, List<IPeak>> peakFilterFunction, IComparisonPredicate<ICluster> comparisonPredicate) {
+            this(similarityChecker, spectrumComparator, similarityThreshold, windowSize, peakFilterFunction, comparisonPredicate, null);
+        }
+
+        public GreedyIncrementalClusteringEngineFactory(ISimilarityChecker similarityChecker, ClusterComparator spectrumComparator, double similarityThreshold, float windowSize, IFunction<List<IPeak>, List<IPeak>> peakFilterFunction, IComparisonPredicate<ICluster> comparisonPredicate, ClusteringConfiguration configuration) {
+            this.configuration = configuration;
             this.similarityChecker = similarityChecker;
             this.spectrumComparator = spectrumComparator;
             this.similarityThreshold = similarityThreshold;
@@ -165,15 +205,15 @@ public class EngineFactories {
         }
 
         public IIncrementalClusteringEngine getGreedyIncrementalClusteringEngine(float windowSize) {
-            return new GreedyIncrementalClusteringEngine(similarityChecker, spectrumComparator, windowSize, similarityThreshold, peakFilterFunction, comparisonPredicate);
+            return getGreedyIncrementalClusteringEngine(windowSize, comparisonPredicate);
         }
 
         public IIncrementalClusteringEngine getGreedyIncrementalClusteringEngine(float windowSize, IComparisonPredicate<ICluster> comparisonPredicate) {
-            return new GreedyIncrementalClusteringEngine(similarityChecker, spectrumComparator, windowSize, similarityThreshold, peakFilterFunction, comparisonPredicate);
+            return getGreedyIncrementalClusteringEngine(windowSize, comparisonPredicate, getConfiguration().getNumberOfComparisonAssessor());
         }
 
         public IIncrementalClusteringEngine getGreedyIncrementalClusteringEngine(float windowSize, IComparisonPredicate<ICluster> comparisonPredicate, INumberOfComparisonAssessor numberOfComparisonAssessor) {
-            return new GreedyIncrementalClusteringEngine(similarityChecker, spectrumComparator, windowSize, similarityThreshold, peakFilterFunction, comparisonPredicate, numberOfComparisonAssessor);
+            return new GreedyIncrementalClusteringEngine(similarityChecker, spectrumComparator, windowSize, similarityThreshold, peakFilterFunction, comparisonPredicate, numberOfComparisonAssessor, getConfiguration());
         }
 
         @Override
@@ -183,7 +223,11 @@ public class EngineFactories {
                 theWindowSize = (Float) input[0];
             }
 
-            return new GreedyIncrementalClusteringEngine(similarityChecker, spectrumComparator, theWindowSize, similarityThreshold, peakFilterFunction, comparisonPredicate);
+            return getGreedyIncrementalClusteringEngine(theWindowSize);
+        }
+
+        private ClusteringConfiguration getConfiguration() {
+            return configuration != null ? configuration : Defaults.getConfiguration();
         }
     }
 
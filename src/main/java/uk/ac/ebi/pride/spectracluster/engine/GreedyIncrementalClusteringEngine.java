@@ -3,23 +3,33 @@ package uk.ac.ebi.pride.spectracluster.engine;
 import uk.ac.ebi.pride.spectracluster.cdf.CumulativeDistributionFunction;
 import uk.ac.ebi.pride.spectracluster.cdf.CumulativeDistributionFunctionFactory;
 import uk.ac.ebi.pride.spectracluster.cdf.INumberOfComparisonAssessor;
+import uk.ac.ebi.pride.spectracluster.cdf.MinNumberComparisonsAssessor;
+import uk.ac.ebi.pride.spectracluster.cdf.SpectraPerBinNumberComparisonAssessor;
+import uk.ac.ebi.pride.spectracluster.cluster.ClusterMemoryEstimator;
 import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
+import uk.ac.ebi.pride.spectracluster.jfr.SpectrumAddedEvent;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.KnownProperties;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
 import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.IdRegistry;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
 import uk.ac.ebi.pride.spectracluster.util.NumberUtilities;
 import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
 import uk.ac.ebi.pride.spectracluster.util.predicate.IComparisonPredicate;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * uk.ac.ebi.pride.spectracluster.engine.IncrementalClusteringEngine
@@ -29,19 +39,82 @@ import java.util.List;
  * Date: 7/5/13
  */
 public class GreedyIncrementalClusteringEngine implements IIncrementalClusteringEngine {
+    /**
+     * Factor the precursor window is reduced by under memory pressure
+     */
+    public static final double WINDOW_SHRINK_FACTOR = 0.75;
+    /**
+     * The precursor window is never reduced below this fraction of the set window size
+     */
+    public static final double MINIMUM_WINDOW_FRACTION = 0.25;
+    /**
+     * The window grows back once the footprint is below this fraction of the memory budget
+     */
+    public static final double WINDOW_GROW_FOOTPRINT_FRACTION = 0.5;
+    /**
+     * Marks the beginning of a checkpoint file ("SCCP")
+     */
+    public static final int CHECKPOINT_MAGIC = 0x53434350;
+    public static final int CHECKPOINT_VERSION = 2;
+    /**
+     * Maximum number of window clusters that are scored in one call to the similarity
+     * checker. Since the first acceptable match ends the search, every added cluster
+     * starts with a batch of one cluster and the batch size is only doubled while no
+     * match is found. Thereby, at most half of the scores are calculated in vain.
+     */
+    public static final int COMPARISON_BATCH_SIZE = 8;
+
+    // clusters that were spilled to disk are null, their handle is stored in spilledClusters
     private final List<GreedySpectralCluster> clusters = new ArrayList<>();
     private final List<ISpectrum> filteredConsensusSpectra = new ArrayList<>();
+    private final List<ClusterSpillFile.SpilledCluster> spilledClusters = new ArrayList<>();
+    private final List<Long> lastMatches = new ArrayList<>();
+    // reused buffers for the batched comparisons
+    private final List<ISpectrum> comparisonCandidates = new ArrayList<>(COMPARISON_BATCH_SIZE);
+    private final int[] comparisonIndices = new int[COMPARISON_BATCH_SIZE];
+    private final double[] comparisonScores = new double[COMPARISON_BATCH_SIZE];
+    private final double[] batchScores = new double[COMPARISON_BATCH_SIZE];
+    private final boolean[] comparisonRejected = new boolean[COMPARISON_BATCH_SIZE];
 
     private final ISimilarityChecker similarityChecker;
     private final Comparator<ICluster> spectrumComparator;
     private final double windowSize;
+    private double currentWindowSize;
     private final double mixtureProbability;
     private final CumulativeDistributionFunction cumulativeDistributionFunction;
+    private final ClusteringConfiguration configuration;
     private final IFunction<List<IPeak>, List<IPeak>> spectrumFilterFunction;
     private final IComparisonPredicate<ICluster> clusterComparisonPredicate;
 
     private int currentMZAsInt;
     private INumberOfComparisonAssessor numberOfComparisonAssessor;
+    private IClusteringEngineListener engineListener;
+    private long memoryBudget;
+    private MemoryPressurePolicy memoryPressurePolicy = MemoryPressurePolicy.EVICT_EARLY;
+    private long memoryFootprint;
+    private File spillDirectory;
+    private ClusterSpillFile spillFile;
+    private long nAddedClusters;
+    private File checkpointFile;
+    private int checkpointInterval;
+    private Supplier<Map<String, Long>> checkpointOffsets;
+    // statistics of the last call to addToClusters, only used for the JFR event
+    private int lastComparisons;
+    private boolean lastAddMerged;
+
+    /**
+     * Creates a new engine that takes all parameters from the passed configuration. The
+     * configuration's precursor tolerance is used as window size.
+     *
+     * @param configuration !null configuration to use instead of Defaults
+     * @param clusterComparisonPredicate Predicate to decide whether two clusters are compared, may be null
+     */
+    public GreedyIncrementalClusteringEngine(ClusteringConfiguration configuration,
+                                             IComparisonPredicate<ICluster> clusterComparisonPredicate) {
+        this(configuration.getSimilarityChecker(), configuration.getSpectrumComparator(), configuration.getPrecursorIonTolerance(),
+                configuration.getSimilarityThreshold(), configuration.getComparisonPeakFilter(), clusterComparisonPredicate,
+                configuration.getNumberOfComparisonAssessor(), configuration);
+    }
 
     public GreedyIncrementalClusteringEngine(ISimilarityChecker sck,
                                              Comparator<ICluster> scm,
@@ -50,9 +123,30 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
                                              IFunction<List<IPeak>, List<IPeak>> spectrumFilterFunction,
                                              IComparisonPredicate<ICluster> clusterComparisonPredicate,
                                              INumberOfComparisonAssessor numberOfComparisonAssessor) {
+        this(sck, scm, windowSize, clusteringPrecision, spectrumFilterFunction, clusterComparisonPredicate,
+                numberOfComparisonAssessor, Defaults.getConfiguration());
+    }
+
+    /**
+     * The clusters created by the engine intern their ids in a new IdRegistry
+     * so that the ids are released together with the engine and its clusters.
+     *
+     * @param configuration Configuration the cumulative distribution function and the
+     *                      debug settings are taken from
+     */
+    public GreedyIncrementalClusteringEngine(ISimilarityChecker sck,
+                                             Comparator<ICluster> scm,
+                                             float windowSize,
+                                             double clusteringPrecision,
+                                             IFunction<List<IPeak>, List<IPeak>> spectrumFilterFunction,
+                                             IComparisonPredicate<ICluster> clusterComparisonPredicate,
+                                             INumberOfComparisonAssessor numberOfComparisonAssessor,
+                                             ClusteringConfiguration configuration) {
+        this.configuration = configuration.withIdRegistry(new IdRegistry());
         this.similarityChecker = sck;
         this.spectrumComparator = scm;
         this.windowSize = windowSize;
+        this.currentWindowSize = windowSize;
         // this change is performed so that a high threshold means a high clustering quality
         this.mixtureProbability = 1 - clusteringPrecision;
         this.spectrumFilterFunction = spectrumFilterFunction;
@@ -60,7 +154,7 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
         this.numberOfComparisonAssessor = numberOfComparisonAssessor;
 
         try {
-            this.cumulativeDistributionFunction = CumulativeDistributionFunctionFactory.getDefaultCumlativeDistributionFunctionForSimilarityMetric(sck.getClass());
+            this.cumulativeDistributionFunction = CumulativeDistributionFunctionFactory.getDefaultCumlativeDistributionFunctionForSimilarityMetric(sck.getClass(), configuration);
         }
         catch(Exception e) {
             throw new IllegalStateException(e);
@@ -74,7 +168,7 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
                                              IFunction<List<IPeak>, List<IPeak>> spectrumFilterFunction,
                                              IComparisonPredicate<ICluster> clusterComparisonPredicate) {
         this(sck, scm, windowSize, clusteringPrecision, spectrumFilterFunction, clusterComparisonPredicate,
-                Defaults.getNumberOfComparisonAssessor());
+                Defaults.getConfiguration().getNumberOfComparisonAssessor());
     }
 
     public GreedyIncrementalClusteringEngine(ISimilarityChecker sck,
@@ -89,6 +183,114 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
         return windowSize;
     }
 
+    /**
+     * Sets a listener that is notified about comparisons, merges and the time
+     * spent in the different stages. Timings are only measured if a listener is set.
+     *
+     * @param engineListener The listener to use, null to disable notifications
+     */
+    public void setEngineListener(IClusteringEngineListener engineListener) {
+        this.engineListener = engineListener;
+    }
+
+    public IClusteringEngineListener getEngineListener() {
+        return engineListener;
+    }
+
+    /**
+     * Limits the estimated memory used by the clusters in the precursor window
+     * (see ClusterMemoryEstimator). If the budget is exceeded the engine reacts
+     * as defined by the policy and notifies the engine listener.
+     *
+     * @param memoryBudget         The budget in bytes, 0 to disable the limit
+     * @param memoryPressurePolicy The reaction to exceeding the budget
+     */
+    public void setMemoryBudget(long memoryBudget, MemoryPressurePolicy memoryPressurePolicy) {
+        if (memoryBudget < 0)
+            throw new IllegalArgumentException("Memory budget must not be negative");
+
+        this.memoryBudget = memoryBudget;
+        this.memoryPressurePolicy = memoryPressurePolicy;
+        this.currentWindowSize = windowSize;
+    }
+
+    /**
+     * Sets the directory used to spill clusters to if the SPILL memory pressure
+     * policy is used.
+     *
+     * @param spillDirectory The directory, null to use the system's temporary directory
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @return Number of clusters currently spilled to disk
+     */
+    public int getSpilledClusterCount() {
+        return (spillFile == null) ? 0 : spillFile.getSpilledClusterCount();
+    }
+
+    /**
+     * Enables periodic checkpoints. A checkpoint is written at the end of every
+     * checkpointInterval-th call to addClusterIncremental and replaces the previous
+     * one. It includes the clusters returned by this call (see ClusteringCheckpoint).
+     *
+     * @param checkpointFile     The file to write the checkpoint to, null to disable checkpoints
+     * @param checkpointInterval Number of added clusters between two checkpoints
+     * @param checkpointOffsets  Called when a checkpoint is written to retrieve the caller's current
+     *                           input (and output) offsets. May be null.
+     */
+    public void setCheckpointing(File checkpointFile, int checkpointInterval, Supplier<Map<String, Long>> checkpointOffsets) {
+        if (checkpointFile != null && checkpointInterval < 1)
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointOffsets = checkpointOffsets;
+    }
+
+    /**
+     * @return Number of clusters added to the engine so far, including the clusters
+     * added before a restored checkpoint
+     */
+    public long getAddedClusterCount() {
+        return nAddedClusters;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public MemoryPressurePolicy getMemoryPressurePolicy() {
+        return memoryPressurePolicy;
+    }
+
+    /**
+     * Returns the estimated memory footprint of the clusters currently in the
+     * window. The footprint is updated whenever a cluster is added, merged,
+     * removed, spilled or reloaded.
+     *
+     * @return The footprint in bytes
+     */
+    public long getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    /**
+     * Returns the precursor window currently used. This only differs from
+     * getWindowSize if the window was reduced due to memory pressure.
+     *
+     * @return The current window size in m/z
+     */
+    public double getCurrentWindowSize() {
+        return currentWindowSize;
+    }
+
 
     public int getCurrentMZ() {
         return currentMZAsInt;
@@ -120,7 +322,10 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
      */
     @Override
     public List<ICluster> getClusters() {
-        final ArrayList<ICluster> ret = new ArrayList<>(clusters);
+        final ArrayList<ICluster> ret = new ArrayList<>(clusters.size());
+        for (int i = 0; i < clusters.size(); i++) {
+            ret.add(getCluster(i));
+        }
         Collections.sort(ret);
         return ret;
     }
@@ -142,13 +347,276 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
      */
     @Override
     public List<ICluster> addClusterIncremental(final ICluster added) {
+        SpectrumAddedEvent event = FlightRecorderEvents.beginSpectrumAdded();
+
         double precursorMz = added.getPrecursorMz();
         List<ICluster> clustersToremove = findClustersTooLow(precursorMz);
+        int windowClusters = clusters.size();
         // either add as an existing cluster if make a new cluster
         addToClusters(added);
+
+        if (checkpointFile != null && nAddedClusters % checkpointInterval == 0) {
+            Map<String, Long> offsets = (checkpointOffsets != null) ? checkpointOffsets.get() : null;
+            try {
+                writeCheckpoint(checkpointFile, offsets, clustersToremove);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write checkpoint " + checkpointFile, e);
+            }
+        }
+
+        if (event != null)
+            event.finish((float) precursorMz, windowClusters, lastComparisons, lastAddMerged);
         return clustersToremove;
     }
 
+    /**
+     * Writes the complete state of the engine to the checkpoint file. The file
+     * is first written to a temporary file and then moved in place so that an
+     * existing checkpoint is never corrupted.
+     *
+     * @param checkpointFile The file to write
+     * @param offsets        Optional offsets of the caller to store with the checkpoint, may be null
+     * @throws IOException
+     */
+    public void writeCheckpoint(File checkpointFile, Map<String, Long> offsets) throws IOException {
+        writeCheckpoint(checkpointFile, offsets, Collections.emptyList());
+    }
+
+    private void writeCheckpoint(File checkpointFile, Map<String, Long> offsets, List<ICluster> pendingClusters) throws IOException {
+        File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            writeState(out, offsets, pendingClusters);
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+
+        try {
+            Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeState(DataOutputStream out, Map<String, Long> offsets, List<ICluster> pendingClusters) throws IOException {
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeInt(CHECKPOINT_VERSION);
+
+        // settings, only used to check that the checkpoint is restored by a compatible engine
+        out.writeDouble(windowSize);
+        out.writeDouble(mixtureProbability);
+
+        out.writeDouble(currentWindowSize);
+        out.writeInt(currentMZAsInt);
+        out.writeLong(nAddedClusters);
+
+        Map<String, Long> allOffsets = new LinkedHashMap<>();
+        if (offsets != null)
+            allOffsets.putAll(offsets);
+        allOffsets.put(ClusteringCheckpoint.ADDED_CLUSTERS_OFFSET, nAddedClusters);
+
+        out.writeInt(allOffsets.size());
+        for (Map.Entry<String, Long> offset : allOffsets.entrySet()) {
+            ClusterSpillFile.writeString(out, offset.getKey());
+            out.writeLong(offset.getValue());
+        }
+
+        // the assessor may hold state, e.g. the spectra per bin
+        writeAssessor(out, numberOfComparisonAssessor);
+
+        out.writeInt(clusters.size());
+        for (int i = 0; i < clusters.size(); i++) {
+            // spilled clusters stay in the spill file
+            GreedySpectralCluster cluster = clusters.get(i);
+            if (cluster == null)
+                cluster = spillFile.read(spilledClusters.get(i));
+
+            ClusterSpillFile.writeCluster(out, cluster);
+            writeSpectrum(out, filteredConsensusSpectra.get(i));
+            out.writeLong(lastMatches.get(i));
+        }
+
+        out.writeInt(pendingClusters.size());
+        for (ICluster pendingCluster : pendingClusters) {
+            ClusterSpillFile.writeCluster(out, convertToGreedyCluster(pendingCluster));
+        }
+    }
+
+    /**
+     * Restores the state of the engine from a checkpoint. The engine must be created
+     * with the same settings as the engine that wrote the checkpoint. Afterwards the
+     * caller has to process the checkpoint's pending clusters and continue adding
+     * clusters after the stored offsets - the result is then identical to an
+     * uninterrupted run.
+     *
+     * The engine's state is only replaced once the complete checkpoint was read,
+     * it is left unchanged if reading fails.
+     *
+     * @param checkpointFile The checkpoint to read
+     * @return The offsets and pending clusters stored in the checkpoint
+     * @throws IOException If the file cannot be read, is no checkpoint or was written with different settings
+     */
+    public ClusteringCheckpoint resumeFromCheckpoint(File checkpointFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+                throw new IOException(checkpointFile + " is not a checkpoint file");
+            int version = in.readInt();
+            if (version != CHECKPOINT_VERSION)
+                throw new IOException("Unsupported checkpoint version " + version);
+
+            if (in.readDouble() != windowSize || in.readDouble() != mixtureProbability)
+                throw new IOException("Checkpoint was written by an engine with different settings");
+
+            double storedWindowSize = in.readDouble();
+            int storedMZAsInt = in.readInt();
+            long storedAddedClusters = in.readLong();
+
+            int nOffsets = in.readInt();
+            Map<String, Long> offsets = new LinkedHashMap<>();
+            for (int i = 0; i < nOffsets; i++) {
+                offsets.put(ClusterSpillFile.readString(in), in.readLong());
+            }
+
+            INumberOfComparisonAssessor storedAssessor = readAssessor(in);
+
+            int nClusters = in.readInt();
+            List<GreedySpectralCluster> storedClusters = new ArrayList<>(nClusters);
+            List<ISpectrum> storedConsensusSpectra = new ArrayList<>(nClusters);
+            List<Long> storedLastMatches = new ArrayList<>(nClusters);
+            for (int i = 0; i < nClusters; i++) {
+                storedClusters.add(ClusterSpillFile.readCluster(in, configuration));
+                storedConsensusSpectra.add(readSpectrum(in));
+                storedLastMatches.add(in.readLong());
+            }
+
+            int nPendingClusters = in.readInt();
+            List<ICluster> pendingClusters = new ArrayList<>(nPendingClusters);
+            for (int i = 0; i < nPendingClusters; i++) {
+                pendingClusters.add(ClusterSpillFile.readCluster(in, configuration));
+            }
+
+            // the checkpoint was read completely, replace the current state
+            if (spillFile != null) {
+                spillFile.close();
+                spillFile = null;
+            }
+            clusters.clear();
+            clusters.addAll(storedClusters);
+            filteredConsensusSpectra.clear();
+            filteredConsensusSpectra.addAll(storedConsensusSpectra);
+            spilledClusters.clear();
+            spilledClusters.addAll(Collections.nCopies(nClusters, null));
+            lastMatches.clear();
+            lastMatches.addAll(storedLastMatches);
+
+            currentWindowSize = storedWindowSize;
+            currentMZAsInt = storedMZAsInt;
+            nAddedClusters = storedAddedClusters;
+            numberOfComparisonAssessor = storedAssessor;
+            memoryFootprint = estimateFootprint();
+
+            return new ClusteringCheckpoint(offsets, pendingClusters);
+        }
+    }
+
+    /**
+     * The state of the assessors shipped with the library is written explicitly,
+     * custom assessors are stored using Java serialization.
+     */
+    private static void writeAssessor(DataOutputStream out, INumberOfComparisonAssessor assessor) throws IOException {
+        ClusterSpillFile.writeString(out, assessor.getClass().getName());
+
+        if (assessor.getClass() == MinNumberComparisonsAssessor.class) {
+            out.writeInt(((MinNumberComparisonsAssessor) assessor).getMinNumberComparisons());
+        } else if (assessor.getClass() == SpectraPerBinNumberComparisonAssessor.class) {
+            SpectraPerBinNumberComparisonAssessor spectraPerBinAssessor = (SpectraPerBinNumberComparisonAssessor) assessor;
+            out.writeFloat(spectraPerBinAssessor.getPrecursorTolerance());
+            out.writeInt(spectraPerBinAssessor.getMinSpectra());
+
+            int[] spectraPerBin = spectraPerBinAssessor.getSpectraPerBin();
+            out.writeInt(spectraPerBin.length);
+            for (int count : spectraPerBin) {
+                out.writeInt(count);
+            }
+        } else if (assessor instanceof Serializable) {
+            ByteArrayOutputStream assessorBytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(assessorBytes)) {
+                objectOutputStream.writeObject(assessor);
+            }
+            out.writeInt(assessorBytes.size());
+            assessorBytes.writeTo(out);
+        } else {
+            throw new IOException(assessor.getClass().getName() + " must be serializable to be stored in a checkpoint");
+        }
+    }
+
+    private static INumberOfComparisonAssessor readAssessor(DataInputStream in) throws IOException {
+        String className = ClusterSpillFile.readString(in);
+
+        if (MinNumberComparisonsAssessor.class.getName().equals(className))
+            return new MinNumberComparisonsAssessor(in.readInt());
+
+        if (SpectraPerBinNumberComparisonAssessor.class.getName().equals(className)) {
+            float precursorTolerance = in.readFloat();
+            int minSpectra = in.readInt();
+
+            int[] spectraPerBin = new int[in.readInt()];
+            for (int i = 0; i < spectraPerBin.length; i++) {
+                spectraPerBin[i] = in.readInt();
+            }
+
+            try {
+                return new SpectraPerBinNumberComparisonAssessor(precursorTolerance, minSpectra, spectraPerBin);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid state of the number of comparison assessor", e);
+            }
+        }
+
+        byte[] assessorBytes = new byte[in.readInt()];
+        in.readFully(assessorBytes);
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(assessorBytes))) {
+            return (INumberOfComparisonAssessor) objectInputStream.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Failed to restore the number of comparison assessor " + className, e);
+        }
+    }
+
+    private static void writeSpectrum(DataOutputStream out, ISpectrum spectrum) throws IOException {
+        ClusterSpillFile.writeString(out, spectrum.getId());
+        out.writeInt(spectrum.getPrecursorCharge());
+        out.writeFloat(spectrum.getPrecursorMz());
+        ClusterSpillFile.writeProperties(out, spectrum.getProperties());
+
+        List<IPeak> peaks = spectrum.getPeaks();
+        out.writeInt(peaks.size());
+        for (IPeak peak : peaks) {
+            out.writeFloat(peak.getMz());
+            out.writeFloat(peak.getIntensity());
+            out.writeInt(peak.getCount());
+        }
+    }
+
+    private ISpectrum readSpectrum(DataInputStream in) throws IOException {
+        String id = ClusterSpillFile.readString(in);
+        int charge = in.readInt();
+        float precursorMz = in.readFloat();
+        Properties properties = ClusterSpillFile.readProperties(in);
+
+        int nPeaks = in.readInt();
+        List<IPeak> peaks = new ArrayList<>(nPeaks);
+        for (int i = 0; i < nPeaks; i++) {
+            peaks.add(new Peak(in.readFloat(), in.readFloat(), in.readInt()));
+        }
+
+        ISpectrum spectrum = new Spectrum(id, charge, precursorMz, configuration.getQualityScorer(), peaks);
+        for (String propertyName : properties.stringPropertyNames()) {
+            spectrum.setProperty(propertyName, properties.getProperty(propertyName));
+        }
+
+        return spectrum;
+    }
+
     /**
      * return a list of clusters whose mz is too low to merge with the current cluster
      * these are dropped and will be handled as never modifies this pass
@@ -159,45 +627,236 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
     protected List<ICluster> findClustersTooLow(double precursorMz) {
         setCurrentMZ(precursorMz); // also performs sanity check whether precursorMz is larger than currentMz
 
-        double windowSize1 = getWindowSize();
-        double lowestMZ = precursorMz - windowSize1;
+        List<ICluster> clustersToremove = removeClustersBelow(precursorMz - currentWindowSize);
+
+        if (memoryBudget > 0)
+            handleMemoryBudget(precursorMz, clustersToremove);
+
+        if (engineListener != null) {
+            engineListener.onMemoryFootprint(memoryFootprint);
+            engineListener.onWindowUpdate(clustersToremove.size(), clusters.size());
+        }
+
+        return clustersToremove;
+    }
+
+    /**
+     * Removes all clusters with a precursor m/z below the passed limit.
+     *
+     * @param lowestMZ The lowest precursor m/z to keep
+     * @return !null list of removed clusters
+     */
+    private List<ICluster> removeClustersBelow(double lowestMZ) {
         List<ICluster> clustersToremove = new ArrayList<>();
-        List<ISpectrum> consensusSpectraToRemove = new ArrayList<>();
 
+        int nRetained = 0;
         for (int i = 0; i < clusters.size(); i++) {
-            ICluster currentCluster = clusters.get(i);
-            ISpectrum currentConsensusSpec = filteredConsensusSpectra.get(i);
+            if (lowestMZ > getPrecursorMz(i)) {
+                clustersToremove.add(getCluster(i));
+                memoryFootprint -= estimateFootprint(i);
+                continue;
+            }
 
-            float testPrecursorMz = currentCluster.getPrecursorMz();
-            if (lowestMZ > testPrecursorMz) {
-                clustersToremove.add(currentCluster);
-                consensusSpectraToRemove.add(currentConsensusSpec);
+            // keep all lists aligned
+            if (nRetained != i) {
+                clusters.set(nRetained, clusters.get(i));
+                filteredConsensusSpectra.set(nRetained, filteredConsensusSpectra.get(i));
+                spilledClusters.set(nRetained, spilledClusters.get(i));
+                lastMatches.set(nRetained, lastMatches.get(i));
             }
+            nRetained++;
         }
-        if (!clustersToremove.isEmpty()) {
-            clusters.removeAll(clustersToremove);
-            filteredConsensusSpectra.removeAll(consensusSpectraToRemove);
+
+        if (nRetained < clusters.size()) {
+            clusters.subList(nRetained, clusters.size()).clear();
+            filteredConsensusSpectra.subList(nRetained, filteredConsensusSpectra.size()).clear();
+            spilledClusters.subList(nRetained, spilledClusters.size()).clear();
+            lastMatches.subList(nRetained, lastMatches.size()).clear();
         }
 
         return clustersToremove;
     }
 
+    /**
+     * Reacts to the current memory footprint according to the memory
+     * pressure policy. Evicted clusters are added to clustersToremove.
+     */
+    private void handleMemoryBudget(double precursorMz, List<ICluster> clustersToremove) {
+        if (memoryFootprint <= memoryBudget) {
+            // restore the window once there is enough memory again
+            if (currentWindowSize < windowSize && memoryFootprint < memoryBudget * WINDOW_GROW_FOOTPRINT_FRACTION)
+                currentWindowSize = Math.min(windowSize, currentWindowSize / WINDOW_SHRINK_FACTOR);
+            return;
+        }
+
+        long footprintBefore = memoryFootprint;
+        int nRemovedBefore = clustersToremove.size();
+
+        if (memoryPressurePolicy == MemoryPressurePolicy.SHRINK_WINDOW) {
+            double minimumWindowSize = windowSize * MINIMUM_WINDOW_FRACTION;
+
+            while (memoryFootprint > memoryBudget && currentWindowSize > minimumWindowSize) {
+                currentWindowSize = Math.max(minimumWindowSize, currentWindowSize * WINDOW_SHRINK_FACTOR);
+                clustersToremove.addAll(removeClustersBelow(precursorMz - currentWindowSize));
+            }
+        }
+
+        if (memoryPressurePolicy == MemoryPressurePolicy.SPILL)
+            spillClusters();
+
+        // evict the clusters with the lowest precursor m/z
+        if (memoryFootprint > memoryBudget) {
+            List<Integer> indicesByMz = new ArrayList<>(clusters.size());
+            for (int i = 0; i < clusters.size(); i++) {
+                indicesByMz.add(i);
+            }
+            indicesByMz.sort(Comparator.comparingDouble(this::getPrecursorMz));
+
+            double lowestMZ = Double.NEGATIVE_INFINITY;
+            long remainingFootprint = memoryFootprint;
+            for (int index : indicesByMz) {
+                if (remainingFootprint <= memoryBudget)
+                    break;
+                remainingFootprint -= estimateFootprint(index);
+                lowestMZ = Math.nextUp((double) getPrecursorMz(index));
+            }
+
+            clustersToremove.addAll(removeClustersBelow(lowestMZ));
+        }
+
+        if (engineListener != null)
+            engineListener.onMemoryPressure(footprintBefore, memoryBudget, clustersToremove.size() - nRemovedBefore, currentWindowSize);
+    }
+
+    /**
+     * Writes the least recently matched clusters to the spill file until
+     * the footprint fits the memory budget.
+     */
+    private void spillClusters() {
+        if (memoryFootprint <= memoryBudget)
+            return;
+
+        List<Integer> indicesByLastMatch = new ArrayList<>(clusters.size());
+        for (int i = 0; i < clusters.size(); i++) {
+            if (clusters.get(i) != null)
+                indicesByLastMatch.add(i);
+        }
+        indicesByLastMatch.sort(Comparator.comparingLong(lastMatches::get));
+
+        if (spillFile == null)
+            spillFile = new ClusterSpillFile(spillDirectory, configuration);
+
+        int nSpilled = 0;
+        long bytesWrittenBefore = spillFile.getBytesWritten();
+
+        for (int index : indicesByLastMatch) {
+            if (memoryFootprint <= memoryBudget)
+                break;
+
+            long residentBytes = estimateFootprint(index);
+            try {
+                spilledClusters.set(index, spillFile.spill(clusters.get(index)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to spill cluster to disk", e);
+            }
+            clusters.set(index, null);
+
+            memoryFootprint += estimateFootprint(index) - residentBytes;
+            nSpilled++;
+        }
+
+        if (engineListener != null && nSpilled > 0)
+            engineListener.onClustersSpilled(nSpilled, spillFile.getBytesWritten() - bytesWrittenBefore);
+    }
+
+    /**
+     * Returns the cluster at the passed position and loads it from the spill
+     * file if necessary.
+     */
+    private GreedySpectralCluster getCluster(int index) {
+        GreedySpectralCluster cluster = clusters.get(index);
+        if (cluster != null)
+            return cluster;
+
+        long spilledBytes = estimateFootprint(index);
+        try {
+            cluster = spillFile.load(spilledClusters.get(index));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load spilled cluster", e);
+        }
+
+        clusters.set(index, cluster);
+        spilledClusters.set(index, null);
+        memoryFootprint += estimateFootprint(index) - spilledBytes;
+
+        if (engineListener != null)
+            engineListener.onClusterReloaded();
+
+        return cluster;
+    }
+
+    private float getPrecursorMz(int index) {
+        GreedySpectralCluster cluster = clusters.get(index);
+        return (cluster != null) ? cluster.getPrecursorMz() : spilledClusters.get(index).getPrecursorMz();
+    }
+
+    private String getClusterId(int index) {
+        GreedySpectralCluster cluster = clusters.get(index);
+        return (cluster != null) ? cluster.getId() : spilledClusters.get(index).getId();
+    }
+
+    /**
+     * Estimates the footprint of the whole window. This is O(window size) and
+     * only used to initialise memoryFootprint which is then kept up to date
+     * incrementally.
+     */
+    private long estimateFootprint() {
+        long footprint = 0;
+        for (int i = 0; i < clusters.size(); i++) {
+            footprint += estimateFootprint(i);
+        }
+        return footprint;
+    }
+
+    private long estimateFootprint(int index) {
+        GreedySpectralCluster cluster = clusters.get(index);
+        if (cluster != null)
+            return ClusterMemoryEstimator.estimateBytes(cluster);
+
+        // the filtered consensus spectrum always stays in memory
+        return spilledClusters.get(index).estimateBytes() +
+                filteredConsensusSpectra.get(index).getPeaksCount() * ClusterMemoryEstimator.PEAK_BYTES;
+    }
+
+    /**
+     * Adds a new cluster to the end of the window
+     */
+    private void addNewCluster(GreedySpectralCluster cluster) {
+        clusters.add(cluster);
+        filteredConsensusSpectra.add(filterSpectrum(getConsensusSpectrum(cluster)));
+        spilledClusters.add(null);
+        lastMatches.add(nAddedClusters);
+        memoryFootprint += estimateFootprint(clusters.size() - 1);
+    }
+
     /**
      * this method is called by guaranteeClean to place any added clusters in play
      * for further clustering
      */
     protected void addToClusters(final ICluster clusterToAdd) {
         GreedySpectralCluster greedySpectralCluster = convertToGreedyCluster(clusterToAdd);
+        lastComparisons = 0;
+        lastAddMerged = false;
+        nAddedClusters++;
 
         // if there are no clusters yet, just save it
         if (clusters.isEmpty()) {
-            clusters.add(greedySpectralCluster);
-            filteredConsensusSpectra.add(filterSpectrum(greedySpectralCluster.getConsensusSpectrum()));
+            addNewCluster(greedySpectralCluster);
             return;
         }
 
         ISimilarityChecker sCheck = getSimilarityChecker();
-        ISpectrum consensusSpectrumToAdd = clusterToAdd.getConsensusSpectrum();
+        ISpectrum consensusSpectrumToAdd = getConsensusSpectrum(clusterToAdd);
         // always only compare the N highest peaks
         ISpectrum filteredConsensusSpectrumToAdd = filterSpectrum(consensusSpectrumToAdd);
 
@@ -205,76 +864,166 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
         // this version does not look for the best match
         int nComparisons = numberOfComparisonAssessor.getNumberOfComparisons(clusterToAdd, clusters.size());
 
-        for (int i = 0; i < clusters.size(); i++) {
-            GreedySpectralCluster existingCluster = clusters.get(i);
+        int nextIndex = 0;
+        int batchSize = 1;
+        while (nextIndex < clusters.size()) {
+            // collect the next clusters to compare to
+            int nBatch = 0;
+            comparisonCandidates.clear();
+            while (nextIndex < clusters.size() && nBatch < batchSize) {
+                int i = nextIndex;
 
-            // apply the predicate if needed
-            if (clusterComparisonPredicate != null) {
-                if (!clusterComparisonPredicate.apply(clusterToAdd, existingCluster))
-                    continue;
+                // the predicate needs the complete cluster, spilled clusters are therefore
+                // only loaded once they are certainly compared, i.e. at the start of a batch
+                if (clusterComparisonPredicate != null && nBatch > 0 && clusters.get(i) == null)
+                    break;
+                nextIndex++;
+
+                comparisonIndices[nBatch] = i;
+                // rejections are only reported once the cluster is reached
+                comparisonRejected[nBatch] = clusterComparisonPredicate != null &&
+                        !clusterComparisonPredicate.apply(clusterToAdd, getCluster(i));
+                if (!comparisonRejected[nBatch])
+                    comparisonCandidates.add(filteredConsensusSpectra.get(i));
+                nBatch++;
             }
 
-            ISpectrum filteredConsensusSpectrum = filteredConsensusSpectra.get(i);
+            if (nBatch == 0)
+                break;
+            // the further the search goes, the less likely an early match gets
+            batchSize = Math.min(batchSize * 2, COMPARISON_BATCH_SIZE);
 
-            double similarityScore = sCheck.assessSimilarity(filteredConsensusSpectrum, filteredConsensusSpectrumToAdd);
+            long scoringNanos = 0;
+            if (!comparisonCandidates.isEmpty()) {
+                long scoringStart = (engineListener != null) ? System.nanoTime() : 0;
+                sCheck.assessSimilarity(filteredConsensusSpectrumToAdd, comparisonCandidates, batchScores);
+                // the listener only gets the average time per comparison
+                if (engineListener != null)
+                    scoringNanos = (System.nanoTime() - scoringStart) / comparisonCandidates.size();
+            }
 
-            if (cumulativeDistributionFunction.isSaveMatch(similarityScore, nComparisons, mixtureProbability)) {
-                // use the originally passed cluster object for this, the greedy version is only used
-                // to track comparison results and used if added internally
+            for (int n = 0, nScored = 0; n < nBatch; n++) {
+                if (!comparisonRejected[n])
+                    comparisonScores[n] = batchScores[nScored++];
+            }
 
-                // save the number of comparisons present when adding single spectra
-                if (Defaults.isSaveDebugInformation()) {
-                    if (clusterToAdd.getClusteredSpectraCount() == 1) {
-                        clusterToAdd.getClusteredSpectra().get(0).setProperty(KnownProperties.MIN_COMPARISONS, String.valueOf(nComparisons));
-                    }
-                    if (existingCluster.getClusteredSpectraCount() == 1) {
-                        existingCluster.getClusteredSpectra().get(0).setProperty(KnownProperties.MIN_COMPARISONS, String.valueOf(nComparisons));
-                    }
+            for (int n = 0; n < nBatch; n++) {
+                if (comparisonRejected[n]) {
+                    if (engineListener != null)
+                        engineListener.onPredicateRejection();
+                    continue;
                 }
 
-                // save the score if this is set
-                if (Defaults.isSaveAddingScore()) {
-                    // only save the score for single spectra
-                    if (clusterToAdd.getClusteredSpectraCount() == 1) {
-                        clusterToAdd.getClusteredSpectra().get(0).setProperty(
-                                KnownProperties.ADDING_SCORE, String.valueOf(similarityScore));
+                int i = comparisonIndices[n];
+                // spilled clusters are only loaded if they are needed
+                GreedySpectralCluster existingCluster = clusters.get(i);
+
+                double similarityScore = comparisonScores[n];
+                lastComparisons++;
+                boolean isSaveMatch = cumulativeDistributionFunction.isSaveMatch(similarityScore, nComparisons, mixtureProbability);
+
+                if (engineListener != null)
+                    engineListener.onComparison(similarityScore, isSaveMatch, scoringNanos);
+
+                if (isSaveMatch) {
+                    if (existingCluster == null)
+                        existingCluster = getCluster(i);
+                    lastMatches.set(i, nAddedClusters);
+                    long residentBytes = estimateFootprint(i);
+
+                    // use the originally passed cluster object for this, the greedy version is only used
+                    // to track comparison results and used if added internally
+
+                    // save the number of comparisons present when adding single spectra
+                    if (configuration.isSaveDebugInformation()) {
+                        if (clusterToAdd.getClusteredSpectraCount() == 1) {
+                            clusterToAdd.getClusteredSpectra().get(0).setProperty(KnownProperties.MIN_COMPARISONS, String.valueOf(nComparisons));
+                        }
+                        if (existingCluster.getClusteredSpectraCount() == 1) {
+                            existingCluster.getClusteredSpectra().get(0).setProperty(KnownProperties.MIN_COMPARISONS, String.valueOf(nComparisons));
+                        }
                     }
-                    if (existingCluster.getClusteredSpectraCount() == 1) {
-                        existingCluster.getClusteredSpectra().get(0).setProperty(
-                                KnownProperties.ADDING_SCORE, String.valueOf(similarityScore));
+
+                    // save the score if this is set
+                    if (configuration.isSaveAddingScore()) {
+                        // only save the score for single spectra
+                        if (clusterToAdd.getClusteredSpectraCount() == 1) {
+                            clusterToAdd.getClusteredSpectra().get(0).setProperty(
+                                    KnownProperties.ADDING_SCORE, String.valueOf(similarityScore));
+                        }
+                        if (existingCluster.getClusteredSpectraCount() == 1) {
+                            existingCluster.getClusteredSpectra().get(0).setProperty(
+                                    KnownProperties.ADDING_SCORE, String.valueOf(similarityScore));
+                        }
                     }
-                }
 
-                // preserve the id of the larger cluster
-                if (clusterToAdd.getClusteredSpectraCount() > existingCluster.getClusteredSpectraCount())
-                    existingCluster.setId(clusterToAdd.getId());
+                    // preserve the id of the larger cluster
+                    if (clusterToAdd.getClusteredSpectraCount() > existingCluster.getClusteredSpectraCount())
+                        existingCluster.setId(clusterToAdd.getId());
 
-                // add to cluster
-                existingCluster.addCluster(clusterToAdd);
+                    // add to cluster
+                    existingCluster.addCluster(clusterToAdd);
+                    lastAddMerged = true;
 
-                // update the existing consensus spectrum
-                filteredConsensusSpectra.set(i, filterSpectrum(existingCluster.getConsensusSpectrum()));
+                    if (engineListener != null)
+                        engineListener.onMerge(existingCluster.getClusteredSpectraCount());
 
-                // since the cluster was added we're done
-                return;
-            }
+                    // update the existing consensus spectrum
+                    filteredConsensusSpectra.set(i, filterSpectrum(getConsensusSpectrum(existingCluster)));
+                    memoryFootprint += estimateFootprint(i) - residentBytes;
+
+                    // since the cluster was added we're done
+                    return;
+                }
 
-            // save the comparison result for the next round of clustering
-            greedySpectralCluster.saveComparisonResult(existingCluster.getId(), (float) similarityScore);
-            existingCluster.saveComparisonResult(greedySpectralCluster.getId(), (float) similarityScore);
+                // save the comparison result for the next round of clustering
+                greedySpectralCluster.saveComparisonResult(getClusterId(i), (float) similarityScore);
+                if (existingCluster == null && !spilledClusters.get(i).saveComparisonResult(greedySpectralCluster.getId(), (float) similarityScore))
+                    existingCluster = getCluster(i);
+                // the footprint of spilled clusters does not depend on their buffered results
+                if (existingCluster != null) {
+                    long residentBytes = estimateFootprint(i);
+                    existingCluster.saveComparisonResult(greedySpectralCluster.getId(), (float) similarityScore);
+                    memoryFootprint += estimateFootprint(i) - residentBytes;
+                }
+            }
         }
 
         // since the cluster wasn't merged, add it as new
-        clusters.add(greedySpectralCluster);
-        // process the consensus spectrum
-        ISpectrum filteredConsensusSpectrum = filterSpectrum(greedySpectralCluster.getConsensusSpectrum());
-        filteredConsensusSpectra.add(filteredConsensusSpectrum);
+        addNewCluster(greedySpectralCluster);
+    }
+
+    /**
+     * Returns the cluster's consensus spectrum and reports the time needed to
+     * rebuild it to the engine listener. Consensus spectra that are still up
+     * to date are not reported.
+     */
+    private ISpectrum getConsensusSpectrum(ICluster cluster) {
+        if (engineListener == null || !cluster.getConsensusSpectrumBuilder().isDirty())
+            return cluster.getConsensusSpectrum();
+
+        long start = System.nanoTime();
+        ISpectrum consensusSpectrum = cluster.getConsensusSpectrum();
+        engineListener.onConsensusRebuild(System.nanoTime() - start);
+
+        return consensusSpectrum;
     }
 
     private ISpectrum filterSpectrum(ISpectrum spectrumToFilter) {
         if (spectrumFilterFunction == null)
             return spectrumToFilter;
 
+        if (engineListener == null)
+            return filterSpectrumInternal(spectrumToFilter);
+
+        long start = System.nanoTime();
+        ISpectrum filteredSpectrum = filterSpectrumInternal(spectrumToFilter);
+        engineListener.onFiltering(System.nanoTime() - start);
+
+        return filteredSpectrum;
+    }
+
+    private ISpectrum filterSpectrumInternal(ISpectrum spectrumToFilter) {
         ISpectrum filteredSpectrum;
         String nHighestPeaks = spectrumToFilter.getProperty(KnownProperties.N_HIGHEST_PEAKS);
         if (nHighestPeaks != null) {
@@ -296,7 +1045,7 @@ public class GreedyIncrementalClusteringEngine implements IIncrementalClustering
             greedyCluster = (GreedySpectralCluster) cluster;
         }
         else {
-            greedyCluster = new GreedySpectralCluster(cluster);
+            greedyCluster = new GreedySpectralCluster(cluster, configuration);
         }
 
         return greedyCluster;
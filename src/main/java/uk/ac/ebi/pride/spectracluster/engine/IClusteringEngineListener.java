@@ -0,0 +1,84 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+/**
+ * Receives notifications about the work performed by a clustering
+ * engine. Listeners are used to collect metrics (see ClusteringEngineMetrics)
+ * and are called from within the clustering loop - implementations
+ * must therefore be cheap.
+ */
+public interface IClusteringEngineListener {
+    /**
+     * Called after two clusters were compared.
+     *
+     * @param score        The similarity score
+     * @param accepted     Indicates whether the score was accepted by the cumulative distribution function
+     * @param scoringNanos Time spent on calculating the score in nanoseconds
+     */
+    void onComparison(double score, boolean accepted, long scoringNanos);
+
+    /**
+     * Called if a comparison was skipped since the comparison predicate
+     * rejected the two clusters.
+     */
+    void onPredicateRejection();
+
+    /**
+     * Called after a cluster was merged into an existing one.
+     *
+     * @param mergedSize Number of spectra in the resulting cluster
+     */
+    void onMerge(int mergedSize);
+
+    /**
+     * Called after clusters left the engine's precursor m/z window.
+     *
+     * @param evictedClusters Number of clusters that were removed
+     * @param windowClusters  Number of clusters that remain in the window
+     */
+    void onWindowUpdate(int evictedClusters, int windowClusters);
+
+    /**
+     * Called after a (consensus) spectrum was filtered for comparison.
+     *
+     * @param nanos Time spent filtering in nanoseconds
+     */
+    void onFiltering(long nanos);
+
+    /**
+     * Called after a consensus spectrum was rebuilt.
+     *
+     * @param nanos Time spent rebuilding in nanoseconds
+     */
+    void onConsensusRebuild(long nanos);
+
+    /**
+     * Called after the memory footprint of the clusters in the engine's
+     * window was estimated.
+     *
+     * @param footprintBytes The estimated footprint in bytes
+     */
+    void onMemoryFootprint(long footprintBytes);
+
+    /**
+     * Called whenever the engine exceeded its memory budget.
+     *
+     * @param footprintBytes  The estimated footprint that exceeded the budget
+     * @param budgetBytes     The memory budget
+     * @param evictedClusters Number of clusters that were evicted early
+     * @param windowSize      The precursor window size used after handling the pressure
+     */
+    void onMemoryPressure(long footprintBytes, long budgetBytes, int evictedClusters, double windowSize);
+
+    /**
+     * Called after clusters were written to disk due to memory pressure.
+     *
+     * @param spilledClusters Number of clusters written to disk
+     * @param bytesWritten    Number of bytes written
+     */
+    void onClustersSpilled(int spilledClusters, long bytesWritten);
+
+    /**
+     * Called whenever a spilled cluster was loaded from disk again.
+     */
+    void onClusterReloaded();
+}
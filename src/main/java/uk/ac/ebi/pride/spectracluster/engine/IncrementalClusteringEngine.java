@@ -4,6 +4,7 @@ import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectralCluster;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
 import uk.ac.ebi.pride.spectracluster.util.NumberUtilities;
@@ -40,12 +41,25 @@ public class IncrementalClusteringEngine implements IIncrementalClusteringEngine
     private final Comparator<ICluster> spectrumComparator;
     private final double windowSize;
     private final double similarityThreshold;
+    private final ClusteringConfiguration configuration;
     private int currentMZAsInt;
 
     public IncrementalClusteringEngine(ISimilarityChecker sck,
                                        Comparator<ICluster> scm,
                                        float windowSize,
                                        double similarityThreshold) {
+        this(sck, scm, windowSize, similarityThreshold, Defaults.getConfiguration());
+    }
+
+    /**
+     * @param configuration Configuration used to create the consensus spectrum builders of new clusters
+     */
+    public IncrementalClusteringEngine(ISimilarityChecker sck,
+                                       Comparator<ICluster> scm,
+                                       float windowSize,
+                                       double similarityThreshold,
+                                       ClusteringConfiguration configuration) {
+        this.configuration = configuration;
         this.similarityChecker = sck;
         this.spectrumComparator = scm;
         this.windowSize = windowSize;
@@ -152,7 +166,7 @@ public class IncrementalClusteringEngine implements IIncrementalClusteringEngine
     protected void addToClusters(final ICluster clusterToAdd) {
         List<ICluster> myClusters = internalGetClusters();
         if (myClusters.isEmpty()) {   // no checks just add
-            myClusters.add(new SpectralCluster(clusterToAdd, Defaults.getDefaultConsensusSpectrumBuilder()));
+            myClusters.add(new SpectralCluster(clusterToAdd, configuration.getConsensusSpectrumBuilder()));
             numberNotMerge++;
             return;
         }
@@ -196,7 +210,7 @@ public class IncrementalClusteringEngine implements IIncrementalClusteringEngine
             numberGoodMerge++;
         } else {
             // create a new cluster
-            myClusters.add(new SpectralCluster(clusterToAdd, Defaults.getDefaultConsensusSpectrumBuilder()));
+            myClusters.add(new SpectralCluster(clusterToAdd, configuration.getConsensusSpectrumBuilder()));
             numberNotMerge++;
         }
     }
@@ -0,0 +1,26 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+/**
+ * Defines how an incremental clustering engine reacts if the estimated
+ * memory footprint of its clusters exceeds the set memory budget.
+ */
+public enum MemoryPressurePolicy {
+    /**
+     * Clusters with the lowest precursor m/z are removed from the engine
+     * before they leave the precursor window until the footprint fits the budget.
+     */
+    EVICT_EARLY,
+    /**
+     * The precursor window is reduced step by step. Once the window reached its
+     * minimum size, clusters are evicted early. The window grows back once the
+     * footprint is well below the budget.
+     */
+    SHRINK_WINDOW,
+    /**
+     * The least recently matched clusters are written to a temporary file
+     * and loaded again once they are needed. This does not change the
+     * clustering result. Clusters are only evicted early if the remaining
+     * in-memory data still exceeds the budget.
+     */
+    SPILL
+}
@@ -0,0 +1,31 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+/**
+ * Defines how ClusteringEngine.mergeAllClusters merges similar clusters.
+ * Both strategies repeat their rounds until no two clusters score above
+ * the similarity threshold anymore.
+ */
+public enum MergeStrategy {
+    /**
+     * Every cluster is merged into the first following cluster it matches.
+     * Later comparisons within the same round already use the merged
+     * consensus spectra.
+     */
+    PAIRWISE,
+    /**
+     * Every pair of clusters is scored at most once per round using the consensus
+     * spectra from the start of the round. Just like in PAIRWISE, every
+     * cluster is merged into the first following cluster it matches. Clusters
+     * whose match is merged into another cluster themselves are compared
+     * again in the next round. All clusters merged into the same cluster
+     * are added at once so that its consensus spectrum is only rebuilt once.
+     *
+     * Since PAIRWISE already uses the merged consensus spectra within a
+     * round, the two strategies may merge clusters in a different order
+     * and the resulting clusters may differ slightly (on the test data the
+     * number of clusters differs by less than 5%). Both strategies end in
+     * the same state: no remaining pair of clusters scores above the
+     * threshold.
+     */
+    UNION_FIND
+}
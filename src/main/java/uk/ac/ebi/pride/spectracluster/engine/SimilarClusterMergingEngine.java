@@ -23,6 +23,19 @@ public class SimilarClusterMergingEngine implements IIncrementalClusteringEngine
     protected final double windowSize;
     protected final double requiredSharedSpectra;
 
+    /**
+     * Inverted index of all clusters in the window by their spectra's ids.
+     * Thereby, only clusters that share at least one spectrum have to
+     * be examined.
+     */
+    private final Map<String, Set<ICluster>> clustersBySpectrumId = new HashMap<>();
+    /**
+     * The position of every cluster in the window. Clusters are examined in
+     * the order in which they were added.
+     */
+    private final Map<ICluster, Long> clusterPositions = new IdentityHashMap<>();
+    private long nextClusterPosition;
+
     protected int currentMZAsInt;
 
     public SimilarClusterMergingEngine(Comparator<ICluster> scm,
@@ -115,9 +128,13 @@ public class SimilarClusterMergingEngine implements IIncrementalClusteringEngine
                 clustersToremove.add(test);
             }
         }
-        if (!clustersToremove.isEmpty())
+        if (!clustersToremove.isEmpty()) {
             clusters.removeAll(clustersToremove);
 
+            for (ICluster removedCluster : clustersToremove)
+                removeFromIndex(removedCluster);
+        }
+
         return clustersToremove;
     }
 
@@ -128,7 +145,11 @@ public class SimilarClusterMergingEngine implements IIncrementalClusteringEngine
     protected void addToClusters(final ICluster clusterToAdd) {
         Set<String> spectraIdsToAdd = clusterToAdd.getSpectralIds();
 
-        for (ICluster existingCluster : clusters) {
+        // without a minimum of shared spectra, clusters sharing no spectrum are merged as well
+        List<ICluster> candidates = (requiredSharedSpectra > 0) ?
+                findClustersSharingSpectra(spectraIdsToAdd) : new ArrayList<>(clusters);
+
+        for (ICluster existingCluster : candidates) {
             Set<String> existingSpectraIds = existingCluster.getSpectralIds();
             double sharedSpectra = calculateSharedSpectra(spectraIdsToAdd, existingSpectraIds);
 
@@ -151,20 +172,78 @@ public class SimilarClusterMergingEngine implements IIncrementalClusteringEngine
                     GreedySpectralCluster greedySpectralCluster = (GreedySpectralCluster) existingCluster;
                     greedySpectralCluster.addCluster(clusterToAdd);
                 }
+
+                // the existing cluster now also contains the added spectra
+                addToIndex(existingCluster, spectraIdsToAdd);
             }
         }
 
         // since the cluster wasn't merged, add it as new
         clusters.add(clusterToAdd);
+        addToIndex(clusterToAdd, spectraIdsToAdd);
+    }
+
+    /**
+     * @param spectraIds The spectra's ids
+     * @return All clusters in the window containing at least one of the spectra in the order they were added
+     */
+    private List<ICluster> findClustersSharingSpectra(Set<String> spectraIds) {
+        Set<ICluster> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String spectrumId : spectraIds) {
+            Set<ICluster> clustersWithSpectrum = clustersBySpectrumId.get(spectrumId);
+            if (clustersWithSpectrum != null)
+                candidates.addAll(clustersWithSpectrum);
+        }
+
+        List<ICluster> sortedCandidates = new ArrayList<>(candidates);
+        sortedCandidates.sort(Comparator.comparing(clusterPositions::get));
+
+        return sortedCandidates;
+    }
+
+    private void addToIndex(ICluster cluster, Set<String> spectraIds) {
+        clusterPositions.putIfAbsent(cluster, nextClusterPosition++);
+
+        for (String spectrumId : spectraIds) {
+            clustersBySpectrumId.computeIfAbsent(spectrumId, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(cluster);
+        }
     }
 
+    private void removeFromIndex(ICluster cluster) {
+        clusterPositions.remove(cluster);
+
+        for (String spectrumId : cluster.getSpectralIds()) {
+            Set<ICluster> clustersWithSpectrum = clustersBySpectrumId.get(spectrumId);
+            if (clustersWithSpectrum == null)
+                continue;
+
+            clustersWithSpectrum.remove(cluster);
+            if (clustersWithSpectrum.isEmpty())
+                clustersBySpectrumId.remove(spectrumId);
+        }
+    }
+
+    /**
+     * The shared spectra are counted by looking up the smaller cluster's ids
+     * in the larger cluster.
+     *
+     * @return Fraction of the smaller cluster's spectra that are part of the other cluster
+     */
     protected double calculateSharedSpectra(Set<String> spectraIdsToAdd, Set<String> existingSpectraIds) {
-        Set<String> sharedIds = new HashSet<>(spectraIdsToAdd);
-        sharedIds.retainAll(existingSpectraIds);
+        Set<String> smallerIds = spectraIdsToAdd;
+        Set<String> largerIds = existingSpectraIds;
+        if (smallerIds.size() > largerIds.size()) {
+            smallerIds = existingSpectraIds;
+            largerIds = spectraIdsToAdd;
+        }
 
-        int minSize = Math.min(spectraIdsToAdd.size(), existingSpectraIds.size());
+        int sharedIds = 0;
+        for (String spectrumId : smallerIds) {
+            if (largerIds.contains(spectrumId))
+                sharedIds++;
+        }
 
-        return (double) sharedIds.size() / minSize;
+        return (double) sharedIds / smallerIds.size();
     }
 
     /**
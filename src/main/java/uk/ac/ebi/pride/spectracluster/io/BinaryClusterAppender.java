@@ -2,6 +2,8 @@ package uk.ac.ebi.pride.spectracluster.io;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.jfr.ClusterWriteEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
@@ -30,6 +32,8 @@ public class BinaryClusterAppender {
      * @param cluster   !null cluster
      */
     public void appendCluster(final ObjectOutputStream out, final ICluster cluster) {
+        ClusterWriteEvent event = FlightRecorderEvents.beginClusterWrite();
+
         try {
             // first save the classname
             out.writeObject(cluster.getClass().getCanonicalName());
@@ -46,6 +50,9 @@ public class BinaryClusterAppender {
                 appendConsensusSpectrumBuilder(out, cluster.getConsensusSpectrumBuilder());
 
             appendSpectra(out, cluster);
+
+            if (event != null)
+                event.finish("binary", cluster.getClusteredSpectraCount());
         } catch (IOException e) {
             throw new AppenderException(e);
         }
@@ -2,6 +2,8 @@ package uk.ac.ebi.pride.spectracluster.io;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.jfr.ClusterWriteEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
@@ -35,6 +37,8 @@ public class CGFClusterAppender implements IClusterAppender {
      */
     @Override
     public void appendCluster(final Appendable out, final ICluster cluster, final Object... otherData) {
+        ClusterWriteEvent event = FlightRecorderEvents.beginClusterWrite();
+
         try {
             out.append("BEGIN CLUSTER");
             out.append(" Id=").append(cluster.getId());
@@ -53,6 +57,9 @@ public class CGFClusterAppender implements IClusterAppender {
 
             out.append("END CLUSTER");
             out.append("\n");
+
+            if (event != null)
+                event.finish("CGF", cluster.getClusteredSpectraCount());
         } catch (IOException e) {
             throw new AppenderException(e);
         }
@@ -1,6 +1,8 @@
 package uk.ac.ebi.pride.spectracluster.io;
 
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.jfr.ClusterWriteEvent;
+import uk.ac.ebi.pride.spectracluster.jfr.FlightRecorderEvents;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
@@ -55,6 +57,8 @@ public class DotClusterClusterAppender implements IClusterAppender {
      */
     @Override
     public void appendCluster(final Appendable out, final ICluster cluster, final Object... otherData) {
+        ClusterWriteEvent event = FlightRecorderEvents.beginClusterWrite();
+
         try {
             out.append("=Cluster=\n");
 
@@ -175,6 +179,9 @@ public class DotClusterClusterAppender implements IClusterAppender {
                 String csq = sb.toString();
                 out.append(csq);
             }
+
+            if (event != null)
+                event.finish("clustering", cluster.getClusteredSpectraCount());
         } catch (IOException e) {
             throw new AppenderException(e);
         }
@@ -8,6 +8,7 @@ import uk.ac.ebi.pride.spectracluster.consensus.BinnedGreedyConsensusSpectrum;
 import uk.ac.ebi.pride.spectracluster.consensus.ConsensusSpectrum;
 import uk.ac.ebi.pride.spectracluster.consensus.GreedyConsensusSpectrum;
 import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.jfr.ParseChunkRecorder;
 import uk.ac.ebi.pride.spectracluster.spectrum.*;
 import uk.ac.ebi.pride.spectracluster.util.*;
 import uk.ac.ebi.pride.spectracluster.util.function.spectrum.BinSpectrumMaxFunction;
@@ -73,13 +74,16 @@ public class ParserUtilities {
         for (ClusterCreateListener lstn : listerners) {
             lstn.onClusterStarted();
         }
+        ParseChunkRecorder chunkRecorder = new ParseChunkRecorder("CGF", inp);
         ICluster cls = readSpectralCluster(inp, null);
         while (cls != null) {
+            chunkRecorder.onItemParsed();
             for (ClusterCreateListener lstn : listerners) {
                 lstn.onClusterCreate(cls);
             }
             cls = readSpectralCluster(inp, null);
         }
+        chunkRecorder.finish();
 
         for (ClusterCreateListener lstn : listerners) {
             lstn.onClusterCreateFinished();
@@ -99,14 +103,17 @@ public class ParserUtilities {
         for (SpectrumCreateListener lstn : listerners) {
             lstn.onSpectrumStarted();
         }
+        ParseChunkRecorder chunkRecorder = new ParseChunkRecorder("MGF", inp);
         ISpectrum cls = readFilteredMGFScan(inp);  // filter peaks
 
         while (cls != null) {
+            chunkRecorder.onItemParsed();
             for (SpectrumCreateListener lstn : listerners) {
                 lstn.onSpectrumCreate(cls);
             }
             cls = readFilteredMGFScan(inp);
         }
+        chunkRecorder.finish();
 
         for (SpectrumCreateListener lstn : listerners) {
             lstn.onSpectrumCreateFinished();
@@ -121,11 +128,14 @@ public class ParserUtilities {
      */
     public static ICluster[] readSpectralCluster(LineNumberReader inp) {
         List<ICluster> holder = new ArrayList<>();
+        ParseChunkRecorder chunkRecorder = new ParseChunkRecorder("CGF", inp);
         ICluster cls = readSpectralCluster(inp, null);
         while (cls != null) {
             holder.add(cls);
+            chunkRecorder.onItemParsed();
             cls = readSpectralCluster(inp, null);
         }
+        chunkRecorder.finish();
 
         ICluster[] ret = new ICluster[holder.size()];
         holder.toArray(ret);
@@ -141,6 +151,19 @@ public class ParserUtilities {
      * @return The parsed ICluster object or null of all have been read.
      */
     public static ICluster readSpectralCluster(LineNumberReader inp, String line) {
+        return readSpectralCluster(inp, line, Defaults.getConfiguration());
+    }
+
+    /**
+     * Reads the next cluster using the peak filter, quality scorer and consensus
+     * spectrum builder of the passed configuration.
+     *
+     * @param inp LineNumberReader object as input
+     * @param line The last read line.
+     * @param configuration The configuration to use
+     * @return The parsed ICluster object or null of all have been read.
+     */
+    public static ICluster readSpectralCluster(LineNumberReader inp, String line, ClusteringConfiguration configuration) {
         String currentId = null;
         boolean storesPeakLists = false;
         List<ISpectrum> spectra = new ArrayList<>();
@@ -158,14 +181,14 @@ public class ParserUtilities {
                 }
                 // naked spectrum
                 if (line.startsWith(BEGIN_IONS)) {
-                    ISpectrum internalComplete = readMGFScan(inp, line);
+                    ISpectrum internalComplete = readMGFScan(inp, line, configuration);
                     final List<IPeak> peaks = internalComplete != null ? internalComplete.getPeaks() : null;
                     ISpectrum internal = new Spectrum(internalComplete, peaks);
 
                     // perform default peak filtering
-                    ISpectrum internalFiltered = Defaults.getDefaultPeakFilter().apply(internal);
+                    ISpectrum internalFiltered = configuration.getPeakFilter().apply(internal);
 
-                    ICluster ret = new SpectralCluster(internalFiltered.getId(), Defaults.getDefaultConsensusSpectrumBuilder());
+                    ICluster ret = new SpectralCluster(internalFiltered.getId(), configuration.getConsensusSpectrumBuilder());
                     ret.addSpectra(internalFiltered);
                     return ret;
                 }
@@ -196,11 +219,11 @@ public class ParserUtilities {
                 line = inp.readLine();
 
             if (line != null && line.startsWith("BEGIN CONSENSUS")) {
-                consensusSpectrumBuilder = parseConsensusSpectrumBuilder(inp, line);
+                consensusSpectrumBuilder = parseConsensusSpectrumBuilder(inp, line, configuration);
             }
 
             while (line != null) {
-                ISpectrum internal = readMGFScan(inp, line);
+                ISpectrum internal = readMGFScan(inp, line, configuration);
                 if (internal != null)
                     spectra.add(internal);
 
@@ -213,12 +236,12 @@ public class ParserUtilities {
 
                     // create the cluster
                     if (storesPeakLists) {
-                        ret = new SpectralCluster(currentId, Defaults.getDefaultConsensusSpectrumBuilder());
+                        ret = new SpectralCluster(currentId, configuration.getConsensusSpectrumBuilder());
                         ISpectrum[] spectraArray = new ISpectrum[spectra.size()];
                         ret.addSpectra(spectra.toArray(spectraArray));
                     }
                     else {
-                        ret = new GreedySpectralCluster(currentId, spectra, (BinnedGreedyConsensusSpectrum) consensusSpectrumBuilder, comparisonMatches);
+                        ret = new GreedySpectralCluster(currentId, spectra, (BinnedGreedyConsensusSpectrum) consensusSpectrumBuilder, comparisonMatches, configuration);
                     }
 
                     // set the properties
@@ -255,7 +278,7 @@ public class ParserUtilities {
         return properties;
     }
 
-    private static IConsensusSpectrumBuilder parseConsensusSpectrumBuilder(LineNumberReader inp, String line) throws Exception {
+    private static IConsensusSpectrumBuilder parseConsensusSpectrumBuilder(LineNumberReader inp, String line, ClusteringConfiguration configuration) throws Exception {
         line = line.substring("BEGIN CONSENSUS ".length()).trim();
 
         // load the header fields
@@ -316,9 +339,9 @@ public class ParserUtilities {
         // build the object
         IConsensusSpectrumBuilder consensusSpectrumBuilder;
         if (className.equals(ConsensusSpectrum.class.getCanonicalName()))
-            consensusSpectrumBuilder = new ConsensusSpectrum(id, nSpec, sumPrecMz, sumPrecIntens, sumCharge, peaks, Defaults.getFragmentIonTolerance());
+            consensusSpectrumBuilder = new ConsensusSpectrum(id, nSpec, sumPrecMz, sumPrecIntens, sumCharge, peaks, configuration.getFragmentIonTolerance());
         else if (className.equals(GreedyConsensusSpectrum.class.getCanonicalName()) || className.equals(BinnedGreedyConsensusSpectrum.class.getCanonicalName()))
-            consensusSpectrumBuilder = new BinnedGreedyConsensusSpectrum(Defaults.getFragmentIonTolerance(), id, nSpec, sumPrecMz, sumPrecIntens, sumCharge, peaks, new BinSpectrumMaxFunction(Defaults.getFragmentIonTolerance()));
+            consensusSpectrumBuilder = new BinnedGreedyConsensusSpectrum(configuration, configuration.getFragmentIonTolerance(), id, nSpec, sumPrecMz, sumPrecIntens, sumCharge, peaks, new BinSpectrumMaxFunction(configuration.getFragmentIonTolerance()));
         else
             throw new IllegalStateException("Cannot recover consensus spectrum of class " + className);
 
@@ -472,11 +495,14 @@ public class ParserUtilities {
      */
     public static ISpectrum[] readMGFScans(LineNumberReader inp) {
         List<ISpectrum> holder = new ArrayList<>();
+        ParseChunkRecorder chunkRecorder = new ParseChunkRecorder("MGF", inp);
         ISpectrum spectrum = readMGFScan(inp);
         while (spectrum != null) {
             holder.add(spectrum);
+            chunkRecorder.onItemParsed();
             spectrum = readMGFScan(inp);
          }
+        chunkRecorder.finish();
         ISpectrum[] ret = new ISpectrum[holder.size()];
         holder.toArray(ret);
         return ret;
@@ -521,11 +547,22 @@ public class ParserUtilities {
      * @return The parsed and filtered ISpectrum object.
      */
     public static ISpectrum readFilteredMGFScan(LineNumberReader inp) {
-        ISpectrum cls = readMGFScan(inp);
+        return readFilteredMGFScan(inp, Defaults.getConfiguration());
+    }
+
+    /**
+     * filter peaks list using the peak filter of the passed configuration
+     *
+     * @param inp LineNumberReader object as input
+     * @param configuration The configuration to use
+     * @return The parsed and filtered ISpectrum object.
+     */
+    public static ISpectrum readFilteredMGFScan(LineNumberReader inp, ClusteringConfiguration configuration) {
+        ISpectrum cls = readMGFScan(inp, null, configuration);
         if (cls == null)
             return null;
 
-        return  Defaults.getDefaultPeakFilter().apply(cls);
+        return  configuration.getPeakFilter().apply(cls);
     }
 
 
@@ -542,8 +579,18 @@ public class ParserUtilities {
      * @param line if non null the final line of the structure
      * @return The parsed ISpetrum object
      */
-    @SuppressWarnings("ConstantConditions")
     public static ISpectrum readMGFScan(LineNumberReader inp, String line) {
+        return readMGFScan(inp, line, Defaults.getConfiguration());
+    }
+
+    /**
+     * @param inp  !null reader
+     * @param line if non null the final line of the structure
+     * @param configuration The configuration the quality scorer and peak filter are taken from
+     * @return The parsed ISpetrum object
+     */
+    @SuppressWarnings("ConstantConditions")
+    public static ISpectrum readMGFScan(LineNumberReader inp, String line, ClusteringConfiguration configuration) {
         String titleLine = null;
         String sequence = null;
         String protein = null;
@@ -693,11 +740,11 @@ public class ParserUtilities {
                             title,
                             dcharge,
                             (float) mz,
-                            Defaults.getDefaultQualityScorer(),
+                            configuration.getQualityScorer(),
                             holder
                     );
 
-                    spectrum = Defaults.getDefaultPeakFilter().apply(spectrum);
+                    spectrum = configuration.getPeakFilter().apply(spectrum);
 
                     // add any properties we find
                     for (String s : props.stringPropertyNames()) {
@@ -0,0 +1,33 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded whenever a cluster is written by a cluster appender.
+ * Disabled by default.
+ */
+@Name("uk.ac.ebi.pride.spectracluster.ClusterWrite")
+@Label("Cluster Write")
+@Category({"Spectra Cluster", "IO"})
+@Description("A cluster was written")
+@Enabled(false)
+@StackTrace(false)
+public class ClusterWriteEvent extends Event {
+    @Label("Format")
+    String format;
+
+    @Label("Cluster Size")
+    int clusterSize;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     */
+    public void finish(String format, int clusterSize) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.clusterSize = clusterSize;
+            commit();
+        }
+    }
+}
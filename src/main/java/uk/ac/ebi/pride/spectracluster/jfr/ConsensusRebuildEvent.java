@@ -0,0 +1,41 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded whenever a consensus spectrum builder recalculates its
+ * consensus spectrum. Disabled by default.
+ */
+@Name("uk.ac.ebi.pride.spectracluster.ConsensusRebuild")
+@Label("Consensus Rebuild")
+@Category({"Spectra Cluster", "Consensus"})
+@Description("A consensus spectrum was recalculated")
+@Enabled(false)
+@StackTrace(false)
+public class ConsensusRebuildEvent extends Event {
+    @Label("Builder")
+    String builder;
+
+    @Label("Cluster Size")
+    int clusterSize;
+
+    @Label("Raw Peaks")
+    int rawPeaks;
+
+    @Label("Consensus Peaks")
+    int consensusPeaks;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     */
+    public void finish(String builder, int clusterSize, int rawPeaks, int consensusPeaks) {
+        end();
+        if (shouldCommit()) {
+            this.builder = builder;
+            this.clusterSize = clusterSize;
+            this.rawPeaks = rawPeaks;
+            this.consensusPeaks = consensusPeaks;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+/**
+ * Creates the flight recorder events. jdk.jfr is only part of Java 8 from
+ * update 262 on - on older JVMs no events are created and the event classes
+ * are never loaded. Callers must therefore always obtain events through this
+ * class and skip them if null is returned.
+ */
+public final class FlightRecorderEvents {
+    /**
+     * Indicates whether the running JVM provides jdk.jfr
+     */
+    public static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private FlightRecorderEvents() {
+
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return A started event or null if jdk.jfr is not available
+     */
+    public static SpectrumAddedEvent beginSpectrumAdded() {
+        if (!AVAILABLE)
+            return null;
+
+        SpectrumAddedEvent event = new SpectrumAddedEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return A started event or null if jdk.jfr is not available
+     */
+    public static ConsensusRebuildEvent beginConsensusRebuild() {
+        if (!AVAILABLE)
+            return null;
+
+        ConsensusRebuildEvent event = new ConsensusRebuildEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return A started event or null if jdk.jfr is not available
+     */
+    public static ClusterWriteEvent beginClusterWrite() {
+        if (!AVAILABLE)
+            return null;
+
+        ClusterWriteEvent event = new ClusterWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return A started event or null if jdk.jfr is not available
+     */
+    static ParseChunkEvent beginParseChunk() {
+        if (!AVAILABLE)
+            return null;
+
+        ParseChunkEvent event = new ParseChunkEvent();
+        event.begin();
+        return event;
+    }
+}
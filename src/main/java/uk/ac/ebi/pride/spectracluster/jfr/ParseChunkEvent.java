@@ -0,0 +1,37 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded for every chunk of spectra or clusters read from a file.
+ * Disabled by default.
+ */
+@Name("uk.ac.ebi.pride.spectracluster.ParseChunk")
+@Label("Parse Chunk")
+@Category({"Spectra Cluster", "IO"})
+@Description("A chunk of spectra or clusters was parsed")
+@Enabled(false)
+@StackTrace(false)
+public class ParseChunkEvent extends Event {
+    @Label("Format")
+    String format;
+
+    @Label("Items")
+    int items;
+
+    @Label("Last Line")
+    int lastLine;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     */
+    public void finish(String format, int items, int lastLine) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.items = items;
+            this.lastLine = lastLine;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+import java.io.LineNumberReader;
+
+/**
+ * Splits parsing into chunks of CHUNK_SIZE objects and records a
+ * ParseChunkEvent for every chunk. Nothing is recorded if jdk.jfr
+ * is not available.
+ */
+public class ParseChunkRecorder {
+    /**
+     * Number of objects parsed before a new event is started
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    private final String format;
+    private final LineNumberReader reader;
+    private ParseChunkEvent event;
+    private int items;
+
+    /**
+     * @param format The parsed format (for example "MGF")
+     * @param reader The reader used to report the current line
+     */
+    public ParseChunkRecorder(String format, LineNumberReader reader) {
+        this.format = format;
+        this.reader = reader;
+        startChunk();
+    }
+
+    /**
+     * Must be called after every parsed object.
+     */
+    public void onItemParsed() {
+        if (event == null)
+            return;
+
+        items++;
+        if (items >= CHUNK_SIZE) {
+            event.finish(format, items, reader.getLineNumber());
+            startChunk();
+        }
+    }
+
+    /**
+     * Records the last chunk. Must be called once parsing is complete.
+     */
+    public void finish() {
+        if (event != null && items > 0)
+            event.finish(format, items, reader.getLineNumber());
+    }
+
+    private void startChunk() {
+        event = FlightRecorderEvents.beginParseChunk();
+        items = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package uk.ac.ebi.pride.spectracluster.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded whenever a cluster (usually a single spectrum) is added to a
+ * clustering engine. Disabled by default, enable it in the recording's
+ * settings (uk.ac.ebi.pride.spectracluster.SpectrumAdded#enabled=true).
+ */
+@Name("uk.ac.ebi.pride.spectracluster.SpectrumAdded")
+@Label("Spectrum Added")
+@Category({"Spectra Cluster", "Engine"})
+@Description("A cluster was added to a clustering engine")
+@Enabled(false)
+@StackTrace(false)
+public class SpectrumAddedEvent extends Event {
+    @Label("Precursor m/z")
+    float precursorMz;
+
+    @Label("Clusters in Window")
+    int windowClusters;
+
+    @Label("Comparisons")
+    int comparisons;
+
+    @Label("Merged")
+    boolean merged;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     */
+    public void finish(float precursorMz, int windowClusters, int comparisons, boolean merged) {
+        end();
+        if (shouldCommit()) {
+            this.precursorMz = precursorMz;
+            this.windowClusters = windowClusters;
+            this.comparisons = comparisons;
+            this.merged = merged;
+            commit();
+        }
+    }
+}
@@ -2,9 +2,9 @@ package uk.ac.ebi.pride.spectracluster.quality;
 
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
-import uk.ac.ebi.pride.spectracluster.util.comparator.PeakIntensityComparator;
+import uk.ac.ebi.pride.spectracluster.util.PeakUtilities;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -45,39 +45,56 @@ public class SignalToNoiseChecker implements IQualityScorer {
      * peaks.
      * This method should only be used on normalized
      * spectra.
+     * The median is found by selection rather than
+     * sorting all peaks.
      */
     @Override
     public double calculateQualityScore(ISpectrum spectrum) {
-        ISpectrum highestNPeaks = spectrum.getHighestNPeaks(NUMBER_HIGH_PEAKS);
+        List<IPeak> peaks = spectrum.getPeaks();
+        int peakSize = peaks.size();
 
-        if (highestNPeaks.getPeaksCount() < NUMBER_HIGH_PEAKS)
+        if (peakSize < NUMBER_HIGH_PEAKS)
             return 0.0;
-        double totalIntensity = highestNPeaks.getTotalIntensity();
-        double highestPeak = 0;
-        for (IPeak peak : highestNPeaks.getPeaks()) {
-            highestPeak = Math.max(peak.getIntensity(), highestPeak);
+
+        // copy the intensities and keep track of the highest ones (sorted descending)
+        float[] intensities = new float[peakSize];
+        float[] highestIntensities = new float[NUMBER_HIGH_PEAKS];
+        Arrays.fill(highestIntensities, Float.NEGATIVE_INFINITY);
+
+        for (int i = 0; i < peakSize; i++) {
+            float intensity = peaks.get(i).getIntensity();
+            intensities[i] = intensity;
+
+            if (intensity > highestIntensities[NUMBER_HIGH_PEAKS - 1]) {
+                int position = NUMBER_HIGH_PEAKS - 1;
+                while (position > 0 && intensity > highestIntensities[position - 1]) {
+                    highestIntensities[position] = highestIntensities[position - 1];
+                    position--;
+                }
+                highestIntensities[position] = intensity;
+            }
         }
 
-        double meanHigh = (totalIntensity - highestPeak) / (NUMBER_HIGH_PEAKS - 1);
+        double totalIntensity = 0;
+        for (float intensity : highestIntensities) {
+            totalIntensity += intensity;
+        }
+        double highestPeak = highestIntensities[0];
 
-        List<IPeak> peaks = new ArrayList<>(spectrum.getPeaks());
-        peaks.sort(PeakIntensityComparator.INSTANCE);
+        double meanHigh = (totalIntensity - highestPeak) / (NUMBER_HIGH_PEAKS - 1);
 
         double median;
 
-        int peakSize = peaks.size();
+        int index2 = peakSize / 2;
+        double intensity2 = PeakUtilities.selectKthSmallest(intensities, index2);
         if (peakSize % 2 == 1) {
-            int index = peakSize / 2;
-            IPeak iPeak = peaks.get(index);
-            median = iPeak.getIntensity(); // odd case
-
+            median = intensity2; // odd case
         } else {
-            int index2 = (peakSize / 2);
-            int index1 = index2 - 1;
-            IPeak iPeak1 = peaks.get(index1);
-            IPeak iPeak2 = peaks.get(index2);
-            double intensity1 = iPeak1.getIntensity();
-            double intensity2 = iPeak2.getIntensity();
+            // all values before index2 are <= intensity2 - the lower middle is their maximum
+            float intensity1 = intensities[0];
+            for (int i = 1; i < index2; i++) {
+                intensity1 = Math.max(intensity1, intensities[i]);
+            }
             median = (intensity1 + intensity2) / 2; // even case
         }
 
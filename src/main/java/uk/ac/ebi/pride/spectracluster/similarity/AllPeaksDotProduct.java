@@ -27,7 +27,7 @@ public class AllPeaksDotProduct implements ISimilarityChecker {
     // add a nonsense park
     private static final IPeak LAST_PEAK = new Peak(Float.MAX_VALUE, 0);
 
-    private double similarityMZRange;
+    private final double similarityMZRange;
 
     public AllPeaksDotProduct(double similarityMZRange) {
         this.similarityMZRange = similarityMZRange;
@@ -193,4 +193,8 @@ public class AllPeaksDotProduct implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return 0;
     }
+    @Override
+    public AllPeaksDotProduct newThreadLocalCopy() {
+        return new AllPeaksDotProduct(similarityMZRange);
+    }
 }
@@ -2,8 +2,11 @@ package uk.ac.ebi.pride.spectracluster.similarity;
 
 import org.apache.commons.math3.distribution.ChiSquaredDistribution;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
+import java.util.List;
+
 /**
  * This SimilarityChecker combines the probability of the
  * FisherExactTest and the IntensityRankCorrelation Test
@@ -23,8 +26,8 @@ public class CombinedFisherIntensityTest implements ISimilarityChecker {
      * is used. Therefore, the fragmentIonTolerance and peakFiltering
      * do not have to be set.
       */
-    protected final FisherExactTest fisherExactTest = new FisherExactTest();
-    protected final IntensityRankCorrelation intensityRankCorrelation = new IntensityRankCorrelation();
+    protected final FisherExactTest fisherExactTest = new FisherExactTest(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE);
+    protected final IntensityRankCorrelation intensityRankCorrelation = new IntensityRankCorrelation(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE);
     protected final ChiSquaredDistribution chiSquaredDistribution = new ChiSquaredDistribution(4); // always 4 degrees of freedom
 
     /**
@@ -40,6 +43,13 @@ public class CombinedFisherIntensityTest implements ISimilarityChecker {
         this(Defaults.getFragmentIonTolerance());
     }
 
+    /**
+     * @param configuration The configuration the fragment ion tolerance is taken from
+     */
+    public CombinedFisherIntensityTest(ClusteringConfiguration configuration) {
+        this(configuration.getFragmentIonTolerance());
+    }
+
     public CombinedFisherIntensityTest(float fragmentIonTolerance) {
         this(fragmentIonTolerance, DEFAULT_PEAK_FILTERING);
     }
@@ -55,6 +65,16 @@ public class CombinedFisherIntensityTest implements ISimilarityChecker {
         return assessSimilarity(peakMatches);
     }
 
+    @Override
+    public void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+        PreparedSpectrum preparedQuery = new PreparedSpectrum(query);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            IPeakMatches peakMatches = PeakMatchesUtilities.getSharedPeaksAsMatches(candidates.get(i), preparedQuery, fragmentIonTolerance, peakFiltering);
+            scoresOut[i] = assessSimilarity(peakMatches);
+        }
+    }
+
     @Override
     public double assessSimilarity(IPeakMatches peakMatches) {
         double fisherExactP = fisherExactTest.assessSimilarityAsPValue(peakMatches);
@@ -104,4 +124,9 @@ public class CombinedFisherIntensityTest implements ISimilarityChecker {
     public String getCurrentVersion() {
         return algorithmVersion;
     }
+
+    @Override
+    public CombinedFisherIntensityTest newThreadLocalCopy() {
+        return new CombinedFisherIntensityTest(fragmentIonTolerance, peakFiltering);
+    }
 }
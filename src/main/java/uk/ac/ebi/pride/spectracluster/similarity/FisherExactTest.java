@@ -49,4 +49,9 @@ public class FisherExactTest extends HypergeometricScore {
     public String getCurrentVersion() {
         return algorithmVersion;
     }
+
+    @Override
+    public FisherExactTest newThreadLocalCopy() {
+        return new FisherExactTest(fragmentIonTolerance, isPeakFiltering());
+    }
 }
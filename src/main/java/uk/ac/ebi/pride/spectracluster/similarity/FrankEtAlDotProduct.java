@@ -3,9 +3,12 @@ package uk.ac.ebi.pride.spectracluster.similarity;
 
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.Pair;
 
+import java.util.List;
+
 
 /**
  * Assesses the similarity between two
@@ -82,6 +85,13 @@ public class FrankEtAlDotProduct implements ISimilarityChecker {
         this(Defaults.getFragmentIonTolerance(), DEFAULT_NUMBER_OF_PEAKS_TO_COMPARE, DEFAULT_PEAK_FILTERING);
     }
 
+    /**
+     * @param configuration The configuration the fragment ion tolerance and number of compared peaks are taken from
+     */
+    public FrankEtAlDotProduct(ClusteringConfiguration configuration) {
+        this(configuration.getFragmentIonTolerance(), configuration.getNumberComparedPeaks(), DEFAULT_PEAK_FILTERING);
+    }
+
     /**
      * return a name which should not change
      *
@@ -113,10 +123,22 @@ public class FrankEtAlDotProduct implements ISimilarityChecker {
     public double assessSimilarity(IPeakMatches peakMatches) {
         double dotProduct = 0;
 
-        for (int i = 0; i < peakMatches.getNumberOfSharedPeaks(); i++) {
-            Pair<IPeak, IPeak> matchedPeaks = peakMatches.getPeakPair(i);
+        if (peakMatches instanceof PreparedPeakMatches) {
+            // the query's intensities are only converted once
+            PreparedPeakMatches preparedPeakMatches = (PreparedPeakMatches) peakMatches;
+            List<IPeak> peaks1 = peakMatches.getSpectrumOne().getPeaks();
+            double[] convertedIntensities2 = preparedPeakMatches.getPreparedSpectrumTwo().getCurrentConvertedIntensities();
 
-            dotProduct += convertIntensity(matchedPeaks.getFirst()) * convertIntensity(matchedPeaks.getSecond());
+            for (int i = 0; i < peakMatches.getNumberOfSharedPeaks(); i++) {
+                dotProduct += convertIntensity(peaks1.get(preparedPeakMatches.getPeakIndexOne(i))) *
+                        convertedIntensities2[preparedPeakMatches.getPeakIndexTwo(i)];
+            }
+        } else {
+            for (int i = 0; i < peakMatches.getNumberOfSharedPeaks(); i++) {
+                Pair<IPeak, IPeak> matchedPeaks = peakMatches.getPeakPair(i);
+
+                dotProduct += convertIntensity(matchedPeaks.getFirst()) * convertIntensity(matchedPeaks.getSecond());
+            }
         }
 
         // normalize the dot product
@@ -162,12 +184,34 @@ public class FrankEtAlDotProduct implements ISimilarityChecker {
         return assessSimilarity(peakMatches);
     }
 
+    @Override
+    public void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+        PreparedSpectrum preparedQuery = new PreparedSpectrum(query);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            ISpectrum highestPeaksCandidate = candidates.get(i);
+
+            if (isPeakFiltering()) {
+                int numberCompared = computeNumberComparedSpectra(highestPeaksCandidate, query);
+
+                highestPeaksCandidate = highestPeaksCandidate.getHighestNPeaks(numberCompared);
+                preparedQuery.useHighestNPeaks(numberCompared);
+            }
+
+            IPeakMatches peakMatches = PeakMatchesUtilities.getSharedPeaksAsMatches(highestPeaksCandidate, preparedQuery, this.fragmentIonTolerance);
+            scoresOut[i] = assessSimilarity(peakMatches);
+        }
+    }
+
     /**
      * Transforms the intensities to penalize very high peaks.
      * This function is taken from the spectral-archives algorithm.
      */
     private double convertIntensity(IPeak p1) {
-        double intensity = p1.getIntensity();
+        return convertIntensity(p1.getIntensity());
+    }
+
+    static double convertIntensity(double intensity) {
         if (intensity == 0)
             return 0;
         return 1 + Math.log(intensity);
@@ -259,4 +303,11 @@ public class FrankEtAlDotProduct implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return fragmentIonTolerance;
     }
+
+    @Override
+    public FrankEtAlDotProduct newThreadLocalCopy() {
+        FrankEtAlDotProduct copy = new FrankEtAlDotProduct(fragmentIonTolerance, numberOfPeaksToCompare, peakFiltering);
+        copy.setVersion(version);
+        return copy;
+    }
 }
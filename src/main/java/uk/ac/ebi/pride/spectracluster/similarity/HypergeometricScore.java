@@ -4,6 +4,7 @@ import cern.jet.random.HyperGeometric;
 import cern.jet.random.engine.RandomEngine;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
 import java.util.List;
@@ -18,6 +19,10 @@ import java.util.List;
 public class HypergeometricScore implements ISimilarityChecker {
     public static final String algorithmName = "Hypergeometric Exact Test";
     public static final String algorithmVersion = "0.1";
+    /**
+     * Only passed to the HyperGeometric distributions which are never
+     * sampled from. Therefore, the engine can be shared between threads.
+     */
     protected static final RandomEngine randomEngine = RandomEngine.makeDefault();
 
     public static final boolean DEFAULT_PEAK_FILTERING = false;
@@ -33,6 +38,13 @@ public class HypergeometricScore implements ISimilarityChecker {
         this(Defaults.getFragmentIonTolerance(), DEFAULT_PEAK_FILTERING);
     }
 
+    /**
+     * @param configuration The configuration the fragment ion tolerance is taken from
+     */
+    public HypergeometricScore(ClusteringConfiguration configuration) {
+        this(configuration.getFragmentIonTolerance(), DEFAULT_PEAK_FILTERING);
+    }
+
     public HypergeometricScore(float fragmentIonTolerance) {
         this.fragmentIonTolerance = fragmentIonTolerance;
         this.peakFiltering = DEFAULT_PEAK_FILTERING;
@@ -74,19 +86,30 @@ public class HypergeometricScore implements ISimilarityChecker {
         List<IPeak> peaks1 = peakMatches.getSpectrumOne().getPeaks();
         List<IPeak> peaks2 = peakMatches.getSpectrumTwo().getPeaks();
 
+        // the m/z range of a prepared query is only extracted once
+        float minMz2, maxMz2;
+        if (peakMatches instanceof PreparedPeakMatches) {
+            PreparedSpectrum preparedSpectrum2 = ((PreparedPeakMatches) peakMatches).getPreparedSpectrumTwo();
+            minMz2 = preparedSpectrum2.getCurrentMinMz();
+            maxMz2 = preparedSpectrum2.getCurrentMaxMz();
+        } else {
+            minMz2 = peaks2.get(0).getMz();
+            maxMz2 = peaks2.get(peaks2.size() - 1).getMz();
+        }
+
         // set the maximum shared m/z value
         float minMz, maxMz; // minimum and maximum overlapping m/z
 
-        if (peaks1.get(0).getMz() < peaks2.get(0).getMz()) {
+        if (peaks1.get(0).getMz() < minMz2) {
             minMz = peaks1.get(0).getMz();
         } else {
-            minMz = peaks2.get(0).getMz();
+            minMz = minMz2;
         }
 
-        if (peaks1.get(peaks1.size() - 1).getMz() > peaks2.get(peaks2.size() - 1).getMz()) {
+        if (peaks1.get(peaks1.size() - 1).getMz() > maxMz2) {
             maxMz = peaks1.get(peaks1.size() - 1).getMz();
         } else {
-            maxMz = peaks2.get(peaks2.size() - 1).getMz();
+            maxMz = maxMz2;
         }
 
         int numberOfBins = Math.round((maxMz - minMz) / fragmentIonTolerance);
@@ -134,6 +157,16 @@ public class HypergeometricScore implements ISimilarityChecker {
         return assessSimilarity(peakMatches);
     }
 
+    @Override
+    public void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+        PreparedSpectrum preparedQuery = new PreparedSpectrum(query);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            IPeakMatches peakMatches = PeakMatchesUtilities.getSharedPeaksAsMatches(candidates.get(i), preparedQuery, fragmentIonTolerance, peakFiltering);
+            scoresOut[i] = assessSimilarity(peakMatches);
+        }
+    }
+
     @Override
     public String getName() {
         return algorithmName;
@@ -163,4 +196,9 @@ public class HypergeometricScore implements ISimilarityChecker {
     public void setPeakFiltering(boolean peakFiltering) {
         this.peakFiltering = peakFiltering;
     }
+
+    @Override
+    public HypergeometricScore newThreadLocalCopy() {
+        return new HypergeometricScore(fragmentIonTolerance, peakFiltering);
+    }
 }
@@ -41,4 +41,9 @@ public class HypergeometricScoreDiffPopSize extends HypergeometricScore {
                 peakMatches.getSpectrumTwo().getPeaksCount(),
                 numberOfBins);
     }
+
+    @Override
+    public HypergeometricScoreDiffPopSize newThreadLocalCopy() {
+        return new HypergeometricScoreDiffPopSize(fragmentIonTolerance, isPeakFiltering());
+    }
 }
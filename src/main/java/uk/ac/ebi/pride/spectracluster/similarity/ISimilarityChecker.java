@@ -3,12 +3,21 @@ package uk.ac.ebi.pride.spectracluster.similarity;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.IAlgorithm;
 
+import java.util.List;
+
 /**
  * Assesses the similarity between two
  * spectra and returns the result of this
  * check as a double. Higher values mean
  * a higher similarity.
  *
+ * assessSimilarity must not change the state of the checker. Thereby,
+ * a single instance may be used by several threads as long as none of
+ * the setters is called. Parallel drivers should nevertheless score
+ * using their own instance per thread, created through
+ * newThreadLocalCopy (for example using
+ * ThreadLocal.withInitial(checker::newThreadLocalCopy)).
+ *
  * @author jg
  * @author Rui Wang
  */
@@ -28,6 +37,23 @@ public interface ISimilarityChecker extends IAlgorithm {
 
     double assessSimilarity(IPeakMatches peakMatches);
 
+    /**
+     * Assesses the similarity between the query spectrum and every
+     * candidate spectrum. The query is always used as the second spectrum,
+     * scoresOut[i] therefore holds the score assessSimilarity(candidates.get(i), query)
+     * returns. By default, every candidate is scored separately. Implementations
+     * override this to prepare the query's data only once.
+     *
+     * @param query The spectrum to compare to all candidates. The list of Peaks MUST be sorted according to intensity.
+     * @param candidates The spectra to compare the query to. The lists of Peaks MUST be sorted according to intensity.
+     * @param scoresOut Array of at least candidates.size() elements the scores are written to.
+     */
+    default void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+        for (int i = 0; i < candidates.size(); i++) {
+            scoresOut[i] = assessSimilarity(candidates.get(i), query);
+        }
+    }
+
     /**
      * Indicates whether peak filtering is enabled for the
      * current algorithm
@@ -53,4 +79,14 @@ public interface ISimilarityChecker extends IAlgorithm {
      * @return The fragment ion tolerance in m/z
      */
     float getFragmentIonTolerance();
+
+    /**
+     * Creates a new instance using the same settings as this
+     * checker. The copy does not share any mutable state with
+     * this instance, therefore, changing the settings of one
+     * instance does not affect the other and both instances
+     * can be used by different threads.
+     * @return A new, independent instance with the same settings
+     */
+    ISimilarityChecker newThreadLocalCopy();
 }
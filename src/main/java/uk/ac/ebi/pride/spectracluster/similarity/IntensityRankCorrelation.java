@@ -4,6 +4,7 @@ import cern.jet.random.Normal;
 import cern.jet.random.engine.RandomEngine;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
 import java.util.List;
@@ -18,6 +19,10 @@ import java.util.List;
  */
 public class IntensityRankCorrelation implements ISimilarityChecker {
     public final static boolean DEFAULT_PEAK_FILTERING = false;
+    /**
+     * Only used to create the Normal distributions to calculate the cdf. Since
+     * the distributions are never sampled from, scoring does not change its state.
+     */
     protected final RandomEngine randomEngine = RandomEngine.makeDefault();
 
     /**
@@ -26,12 +31,19 @@ public class IntensityRankCorrelation implements ISimilarityChecker {
     protected float fragmentIonTolerance;
     protected boolean peakFiltering;
 
-    private SerializableKendallsCorrelation kendallsCorrelation = new SerializableKendallsCorrelation();
+    private final SerializableKendallsCorrelation kendallsCorrelation = new SerializableKendallsCorrelation();
 
     public IntensityRankCorrelation() {
         this(Defaults.getFragmentIonTolerance(), DEFAULT_PEAK_FILTERING);
     }
 
+    /**
+     * @param configuration The configuration the fragment ion tolerance is taken from
+     */
+    public IntensityRankCorrelation(ClusteringConfiguration configuration) {
+        this(configuration.getFragmentIonTolerance(), DEFAULT_PEAK_FILTERING);
+    }
+
     public IntensityRankCorrelation(float fragmentIonTolerance) {
         this(fragmentIonTolerance, DEFAULT_PEAK_FILTERING);
     }
@@ -93,6 +105,16 @@ public class IntensityRankCorrelation implements ISimilarityChecker {
         return assessSimilarity(peakMatches);
     }
 
+    @Override
+    public void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+        PreparedSpectrum preparedQuery = new PreparedSpectrum(query);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            IPeakMatches peakMatches = PeakMatchesUtilities.getSharedPeaksAsMatches(candidates.get(i), preparedQuery, fragmentIonTolerance, peakFiltering);
+            scoresOut[i] = assessSimilarity(peakMatches);
+        }
+    }
+
     private double[] extractPeakIntensities(List<IPeak> peaks) {
         double[] intensities = new double[peaks.size()];
 
@@ -132,4 +154,9 @@ public class IntensityRankCorrelation implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return fragmentIonTolerance;
     }
+
+    @Override
+    public IntensityRankCorrelation newThreadLocalCopy() {
+        return new IntensityRankCorrelation(fragmentIonTolerance, peakFiltering);
+    }
 }
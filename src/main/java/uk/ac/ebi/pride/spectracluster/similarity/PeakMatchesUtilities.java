@@ -47,6 +47,48 @@ public final class PeakMatchesUtilities {
         return PeakMatchesUtilities.getSharedPeaksAsMatches(filteredSpectrum1, filteredSpectrum2, mzTolerance);
     }
 
+    /**
+     * Same as getSharedPeaksAsMatches(ISpectrum, ISpectrum, float, boolean) but uses
+     * the already extracted data of the second spectrum.
+     *
+     * @param spectrum1         spectrum one
+     * @param spectrum2         prepared spectrum two, set to the peaks used for this comparison
+     * @param mzTolerance       mz tolerance
+     * @param applyNPeaksFilter whether to apply n peaks filter
+     * @return
+     */
+    static IPeakMatches getSharedPeaksAsMatches(ISpectrum spectrum1, PreparedSpectrum spectrum2,
+                                                float mzTolerance, boolean applyNPeaksFilter) {
+        ISpectrum filteredSpectrum1;
+
+        if (applyNPeaksFilter) {
+            int nPeaks = calculateNPeaks(spectrum1.getPrecursorMz(), spectrum2.getSpectrum().getPrecursorMz());
+            if (nPeaks < 20)
+                nPeaks = 20;
+
+            filteredSpectrum1 = spectrum1.getHighestNPeaks(nPeaks);
+            spectrum2.useHighestNPeaks(nPeaks);
+        } else {
+            filteredSpectrum1 = spectrum1;
+        }
+
+        return getSharedPeaksAsMatches(filteredSpectrum1, spectrum2, mzTolerance);
+    }
+
+    /**
+     * Matches the peaks of spectrum 1 against the currently used peaks of the prepared spectrum 2.
+     */
+    static PreparedPeakMatches getSharedPeaksAsMatches(ISpectrum spectrum1, PreparedSpectrum spectrum2, float mzTolerance) {
+        float[] mz1 = getMz(spectrum1.getPeaks());
+        float[] mz2 = spectrum2.getCurrentMz();
+
+        int[] indices1 = new int[Math.min(mz1.length, mz2.length)];
+        int[] indices2 = new int[indices1.length];
+        int nMatches = getSharedPeaks(mz1, mz2, mzTolerance, indices1, indices2);
+
+        return new PreparedPeakMatches(spectrum1, spectrum2, indices1, indices2, nMatches);
+    }
+
     public static IPeakMatches getSharedPeaksAsMatches(ISpectrum spectrum1, ISpectrum spectrum2, float mzTolerance) {
         List<Integer>[] sharedPeakIndices = getSharedPeaks(spectrum1, spectrum2, mzTolerance);
         return new PeakMatches(spectrum1, spectrum2, sharedPeakIndices[0], sharedPeakIndices[1]);
@@ -63,19 +105,47 @@ public final class PeakMatchesUtilities {
      * corresponding indices of spectrum 2.
      */
     public static List<Integer>[] getSharedPeaks(ISpectrum spectrum1, ISpectrum spectrum2, float mzTolerance) {
+        float[] mz1 = getMz(spectrum1.getPeaks());
+        float[] mz2 = getMz(spectrum2.getPeaks());
+
+        int[] indices1 = new int[Math.min(mz1.length, mz2.length)];
+        int[] indices2 = new int[indices1.length];
+        int nMatches = getSharedPeaks(mz1, mz2, mzTolerance, indices1, indices2);
+
+        List<Integer> sharedPeaksIndexes1 = new ArrayList<>(nMatches);
+        List<Integer> sharedPeaksIndexes2 = new ArrayList<>(nMatches);
+        for (int i = 0; i < nMatches; i++) {
+            sharedPeaksIndexes1.add(indices1[i]);
+            sharedPeaksIndexes2.add(indices2[i]);
+        }
 
-        List<IPeak> peaks1 = spectrum1.getPeaks();
-        List<IPeak> peaks2 = spectrum2.getPeaks();
+        List<Integer>[] result = new List[2];
+        result[0] = sharedPeaksIndexes1;
+        result[1] = sharedPeaksIndexes2;
 
-        List<Integer> sharedPeaksIndexes1 = new ArrayList<>();
-        List<Integer> sharedPeaksIndexes2 = new ArrayList<>();
+        return result;
+    }
+
+    /**
+     * Finds the peaks shared between two spectra given as their peaks' m/z values. This
+     * is the implementation behind getSharedPeaks(ISpectrum, ISpectrum, float).
+     *
+     * @param peaks1      m/z values of spectrum 1's peaks
+     * @param peaks2      m/z values of spectrum 2's peaks
+     * @param mzTolerance Peak tolerance for matching in m/z
+     * @param indices1    Receives the indices of the matched peaks of spectrum 1, must hold the number of peaks of the smaller spectrum
+     * @param indices2    Receives the corresponding indices of spectrum 2, same size as indices1
+     * @return Number of matches
+     */
+    static int getSharedPeaks(float[] peaks1, float[] peaks2, float mzTolerance, int[] indices1, int[] indices2) {
+        int nMatches = 0;
 
         // upper and lower bound
         int indexSpec1 = 0, indexSpec2 = 0;
 
-        while (indexSpec1 < peaks1.size() && indexSpec2 < peaks2.size()) {
-            float mz1 = peaks1.get(indexSpec1).getMz();
-            float mz2 = peaks2.get(indexSpec2).getMz();
+        while (indexSpec1 < peaks1.length && indexSpec2 < peaks2.length) {
+            float mz1 = peaks1[indexSpec1];
+            float mz2 = peaks2[indexSpec2];
             float difference = Math.abs(mz1 - mz2);
 
             if (difference > mzTolerance) {
@@ -88,18 +158,18 @@ public final class PeakMatchesUtilities {
             // a potential match was found
             else {
 
-                float differenceNextSpec1Spec2 = (indexSpec1 < peaks1.size() - 1 && indexSpec2 < peaks2.size() - 1) ?
-                        Math.abs(peaks1.get(indexSpec1 + 1).getMz() - peaks2.get(indexSpec2 + 1).getMz()) :
+                float differenceNextSpec1Spec2 = (indexSpec1 < peaks1.length - 1 && indexSpec2 < peaks2.length - 1) ?
+                        Math.abs(peaks1[indexSpec1 + 1] - peaks2[indexSpec2 + 1]) :
                         Float.MAX_VALUE;
 
                 // if the next two peaks are also a match, just match the current two
                 if (differenceNextSpec1Spec2 > mzTolerance) {
-                    float differenceNextSpec1 = (indexSpec1 < peaks1.size() - 1) ?
-                            Math.abs(peaks1.get(indexSpec1 + 1).getMz() - mz2) :
+                    float differenceNextSpec1 = (indexSpec1 < peaks1.length - 1) ?
+                            Math.abs(peaks1[indexSpec1 + 1] - mz2) :
                             Float.MAX_VALUE;
 
-                    float differenceNextSpec2 = (indexSpec2 < peaks2.size() - 1) ?
-                            Math.abs(peaks2.get(indexSpec2 + 1).getMz() - mz1) :
+                    float differenceNextSpec2 = (indexSpec2 < peaks2.length - 1) ?
+                            Math.abs(peaks2[indexSpec2 + 1] - mz1) :
                             Float.MAX_VALUE;
 
                     // using next peak in spec 1 is the best match
@@ -112,19 +182,28 @@ public final class PeakMatchesUtilities {
                     }
                 }
 
-                sharedPeaksIndexes1.add(indexSpec1);
-                sharedPeaksIndexes2.add(indexSpec2);
+                indices1[nMatches] = indexSpec1;
+                indices2[nMatches] = indexSpec2;
+                nMatches++;
 
                 indexSpec1++;
                 indexSpec2++;
             }
         }
 
-        List<Integer>[] result = new List[2];
-        result[0] = sharedPeaksIndexes1;
-        result[1] = sharedPeaksIndexes2;
+        return nMatches;
+    }
 
-        return result;
+    /**
+     * @return The m/z values of the peaks
+     */
+    static float[] getMz(List<IPeak> peaks) {
+        float[] mz = new float[peaks.size()];
+        for (int i = 0; i < mz.length; i++) {
+            mz[i] = peaks.get(i).getMz();
+        }
+
+        return mz;
     }
 
     /**
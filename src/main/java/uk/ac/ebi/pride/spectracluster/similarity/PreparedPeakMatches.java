@@ -0,0 +1,107 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Peak matches of a one-vs-many comparison. Spectrum two is the prepared
+ * query so that the similarity checkers can use its already extracted
+ * data instead of recalculating it for every candidate. The matched peak
+ * indices are kept in primitive arrays.
+ */
+final class PreparedPeakMatches implements IPeakMatches {
+    private static final long serialVersionUID = 1L;
+
+    private final ISpectrum spectrum1;
+    private final transient PreparedSpectrum preparedSpectrumTwo;
+    private final ISpectrum spectrum2;
+    private final int[] sharedPeakIndicesSpec1;
+    private final int[] sharedPeakIndicesSpec2;
+    private final int nSharedPeaks;
+
+    /**
+     * @param nSharedPeaks Number of matches, only this many indices of the two arrays are used
+     */
+    PreparedPeakMatches(ISpectrum spectrum1,
+                        PreparedSpectrum spectrum2,
+                        int[] sharedPeakIndicesSpec1,
+                        int[] sharedPeakIndicesSpec2,
+                        int nSharedPeaks) {
+        this.spectrum1 = spectrum1;
+        this.preparedSpectrumTwo = spectrum2;
+        this.spectrum2 = spectrum2.getCurrentSpectrum();
+        this.sharedPeakIndicesSpec1 = sharedPeakIndicesSpec1;
+        this.sharedPeakIndicesSpec2 = sharedPeakIndicesSpec2;
+        this.nSharedPeaks = nSharedPeaks;
+    }
+
+    PreparedSpectrum getPreparedSpectrumTwo() {
+        return preparedSpectrumTwo;
+    }
+
+    /**
+     * @param nIndex Index of the match
+     * @return Index of the matched peak in spectrum one
+     */
+    int getPeakIndexOne(int nIndex) {
+        return sharedPeakIndicesSpec1[nIndex];
+    }
+
+    /**
+     * @param nIndex Index of the match
+     * @return Index of the matched peak in the currently used peaks of the prepared spectrum two
+     */
+    int getPeakIndexTwo(int nIndex) {
+        return sharedPeakIndicesSpec2[nIndex];
+    }
+
+    @Override
+    public List<IPeak> getSharedPeaksFromSpectrumOne() {
+        return getSharedPeaks(spectrum1, sharedPeakIndicesSpec1);
+    }
+
+    @Override
+    public List<IPeak> getSharedPeaksFromSpectrumTwo() {
+        return getSharedPeaks(spectrum2, sharedPeakIndicesSpec2);
+    }
+
+    @Override
+    public int getNumberOfSharedPeaks() {
+        return nSharedPeaks;
+    }
+
+    @Override
+    public Pair<IPeak, IPeak> getPeakPair(int nIndex) {
+        if (nIndex < 0)
+            throw new IndexOutOfBoundsException("PeakPair index must be greater than 0");
+        if (nIndex >= nSharedPeaks)
+            throw new IndexOutOfBoundsException("Request PeakPair with index '" + nIndex + "' from " + nSharedPeaks + " matches");
+
+        return new Pair<>(spectrum1.getPeaks().get(sharedPeakIndicesSpec1[nIndex]),
+                spectrum2.getPeaks().get(sharedPeakIndicesSpec2[nIndex]));
+    }
+
+    @Override
+    public ISpectrum getSpectrumOne() {
+        return spectrum1;
+    }
+
+    @Override
+    public ISpectrum getSpectrumTwo() {
+        return spectrum2;
+    }
+
+    private List<IPeak> getSharedPeaks(ISpectrum spectrum, int[] indices) {
+        List<IPeak> peaks = spectrum.getPeaks();
+        List<IPeak> sharedPeaks = new ArrayList<>(nSharedPeaks);
+        for (int i = 0; i < nSharedPeaks; i++) {
+            sharedPeaks.add(peaks.get(indices[i]));
+        }
+
+        return sharedPeaks;
+    }
+}
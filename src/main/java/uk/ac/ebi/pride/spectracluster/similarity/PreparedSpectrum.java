@@ -0,0 +1,110 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.util.List;
+
+/**
+ * Holds the query spectrum of a one-vs-many comparison together with
+ * the data the similarity checkers need for every comparison: the
+ * filtered peaks, their m/z values and m/z range, and their transformed
+ * intensities. Thereby, this data is only extracted once and not for
+ * every candidate spectrum. Since the number of peaks to compare may
+ * depend on the candidate's precursor m/z, the last filtered version
+ * of the spectrum is kept.
+ *
+ * Instances are only used within a single call to assessSimilarity and
+ * are not thread-safe.
+ */
+final class PreparedSpectrum {
+    private final ISpectrum spectrum;
+    /**
+     * Number of highest peaks currently used, 0 if the complete spectrum is used
+     */
+    private int nPeaks;
+    private ISpectrum currentSpectrum;
+    private float[] currentMz;
+    private double[] currentConvertedIntensities;
+
+    PreparedSpectrum(ISpectrum spectrum) {
+        this.spectrum = spectrum;
+        this.currentSpectrum = spectrum;
+    }
+
+    /**
+     * Only use the N highest peaks of the spectrum.
+     *
+     * @param nPeaks Number of peaks to keep
+     */
+    void useHighestNPeaks(int nPeaks) {
+        if (nPeaks == this.nPeaks)
+            return;
+
+        this.nPeaks = nPeaks;
+        currentSpectrum = spectrum.getHighestNPeaks(nPeaks);
+        currentMz = null;
+        currentConvertedIntensities = null;
+    }
+
+    /**
+     * @return The complete spectrum as passed to the constructor
+     */
+    ISpectrum getSpectrum() {
+        return spectrum;
+    }
+
+    /**
+     * @return The spectrum holding the currently used peaks
+     */
+    ISpectrum getCurrentSpectrum() {
+        return currentSpectrum;
+    }
+
+    /**
+     * @return m/z values of the currently used peaks
+     */
+    float[] getCurrentMz() {
+        if (currentMz == null) {
+            List<IPeak> peaks = currentSpectrum.getPeaks();
+            currentMz = new float[peaks.size()];
+
+            for (int i = 0; i < currentMz.length; i++) {
+                currentMz[i] = peaks.get(i).getMz();
+            }
+        }
+
+        return currentMz;
+    }
+
+    /**
+     * @return m/z of the currently used peak with the lowest m/z
+     */
+    float getCurrentMinMz() {
+        return getCurrentMz()[0];
+    }
+
+    /**
+     * @return m/z of the currently used peak with the highest m/z
+     */
+    float getCurrentMaxMz() {
+        float[] mz = getCurrentMz();
+        return mz[mz.length - 1];
+    }
+
+    /**
+     * @return Intensities of the currently used peaks transformed as done by the FrankEtAlDotProduct
+     */
+    double[] getCurrentConvertedIntensities() {
+        if (currentConvertedIntensities == null) {
+            List<IPeak> peaks = currentSpectrum.getPeaks();
+            currentConvertedIntensities = new double[peaks.size()];
+
+            for (int i = 0; i < currentConvertedIntensities.length; i++) {
+                currentConvertedIntensities[i] = FrankEtAlDotProduct.convertIntensity(peaks.get(i).getIntensity());
+            }
+        }
+
+        return currentConvertedIntensities;
+    }
+}
@@ -0,0 +1,198 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of similarity scores between two consensus spectra. The
+ * entries are identified through the clusters' ids and the versions of their
+ * consensus spectra (see IConsensusSpectrumBuilder.getVersion). Since the
+ * version is derived from the consensus spectrum's contents, a cached score
+ * is only returned as long as neither of the two consensus spectra changed,
+ * but is also found for clusters that were rebuilt with the same contents.
+ * Scores are stored in the order the spectra were passed to the similarity
+ * checker.
+ *
+ * The cache is split into stripes, each holding the least recently used
+ * entries, so that several engines can share one cache. A cache must only
+ * be shared between engines that score the same way, i.e. that use the same
+ * similarity checker and filter the consensus spectra in the same way.
+ */
+public final class SimilarityScoreCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 1_000_000;
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final ScoreStripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean enabled = true;
+
+    public SimilarityScoreCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param maximumSize Maximum number of scores that are kept
+     * @param nStripes    Number of independently locked parts of the cache
+     */
+    public SimilarityScoreCache(int maximumSize, int nStripes) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        if (nStripes < 1)
+            throw new IllegalArgumentException("nStripes must be at least 1");
+
+        stripes = new ScoreStripe[nStripes];
+        int stripeSize = Math.max(1, maximumSize / nStripes);
+        for (int i = 0; i < nStripes; i++) {
+            stripes[i] = new ScoreStripe(stripeSize);
+        }
+    }
+
+    /**
+     * Returns the cached score.
+     *
+     * @return The score or NaN if it is not known or the cache is disabled
+     */
+    public double get(String idA, long versionA, String idB, long versionB) {
+        if (!enabled)
+            return Double.NaN;
+
+        ScoreKey key = new ScoreKey(idA, versionA, idB, versionB);
+        ScoreStripe stripe = getStripe(key);
+        Double score;
+        synchronized (stripe) {
+            score = stripe.get(key);
+        }
+
+        if (score == null) {
+            misses.increment();
+            return Double.NaN;
+        }
+
+        hits.increment();
+        return score;
+    }
+
+    /**
+     * Stores the score. NaN scores and scores added while the cache is disabled
+     * are ignored.
+     */
+    public void put(String idA, long versionA, String idB, long versionB, double score) {
+        if (!enabled || Double.isNaN(score))
+            return;
+
+        ScoreKey key = new ScoreKey(idA, versionA, idB, versionB);
+        ScoreStripe stripe = getStripe(key);
+        synchronized (stripe) {
+            stripe.put(key, score);
+        }
+    }
+
+    private ScoreStripe getStripe(ScoreKey key) {
+        return stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Disabling the cache does not remove the stored scores.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Fraction of lookups that returned a score, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long nHits = getHitCount();
+        long nLookups = nHits + getMissCount();
+
+        return (nLookups == 0) ? 0 : (double) nHits / nLookups;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ScoreStripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all scores and resets the hit and miss counts.
+     */
+    public void clear() {
+        for (ScoreStripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static final class ScoreStripe extends LinkedHashMap<ScoreKey, Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+
+        private ScoreStripe(int maximumSize) {
+            super(16, 0.75F, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ScoreKey, Double> eldest) {
+            return size() > maximumSize;
+        }
+    }
+
+    private static final class ScoreKey {
+        private final String idA;
+        private final long versionA;
+        private final String idB;
+        private final long versionB;
+
+        private ScoreKey(String idA, long versionA, String idB, long versionB) {
+            this.idA = idA;
+            this.versionA = versionA;
+            this.idB = idB;
+            this.versionB = versionB;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ScoreKey scoreKey = (ScoreKey) o;
+
+            return versionA == scoreKey.versionA && versionB == scoreKey.versionB &&
+                    Objects.equals(idA, scoreKey.idA) && Objects.equals(idB, scoreKey.idB);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode(idA);
+            result = 31 * result + Long.hashCode(versionA);
+            result = 31 * result + Objects.hashCode(idB);
+            result = 31 * result + Long.hashCode(versionB);
+            return result;
+        }
+    }
+}
@@ -10,6 +10,12 @@ import java.util.Properties;
  * used by Spectra like get highest peaks which are incomplete
  * spectra
  *
+ * Thread-safety: implementations must be safe for concurrent readers once the
+ * spectrum was constructed and published. The peaks never change and all
+ * cached values (quality, highest peaks, major peaks) may be requested from
+ * any thread without external locking. getProperty and setProperty may be
+ * called concurrently as well.
+ *
  * @author Steve Lewis
  * @author Rui Wang
  *         Date: 6/20/13
@@ -59,6 +65,7 @@ public interface ISpectrum extends ISpectrumQuality, Equivalent<ISpectrum>, Comp
 
     /**
      * get the highest intensity peaks sorted by MZ - this value may be cached
+     * and the returned spectrum may be shared between threads
      *
      * @param numberRequested number peaks requested
      * @return Peaks spectrum
@@ -70,7 +77,7 @@ public interface ISpectrum extends ISpectrumQuality, Equivalent<ISpectrum>, Comp
      * this follows Frank et all suggestion that all spectra in a cluster will share at least one of these
      *
      * @param majorPeakCount The number of highest peaks to consider "major"
-     * @return
+     * @return a new array that may be modified by the caller
      */
     int[] asMajorPeakMZs(int majorPeakCount);
 
@@ -3,7 +3,7 @@ package uk.ac.ebi.pride.spectracluster.spectrum;
 
 import uk.ac.ebi.pride.spectracluster.quality.IQualityScorer;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
-import uk.ac.ebi.pride.spectracluster.util.comparator.PeakIntensityComparator;
+import uk.ac.ebi.pride.spectracluster.util.PeakUtilities;
 import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
 
 import java.util.*;
@@ -11,13 +11,25 @@ import java.util.*;
 /**
  * uk.ac.ebi.pride.spectracluster.spectrum.Spectrum
  *
+ * The peaks of a spectrum never change after construction. All values that are
+ * calculated lazily (quality, highest peaks, major peaks) are stored as immutable
+ * snapshots published through volatile fields. Therefore, a spectrum can be read
+ * by multiple threads concurrently without locking. Two threads may compute the
+ * same cached value at the same time, in which case one of the results is dropped.
+ *
  * @author Johannes Griss
  * @author Steve Lewis
  * @author Rui Wang
  */
 public class Spectrum implements ISpectrum {
 
-    private static final int BAD_QUALITY_MEASURE = -1;
+    private static final PeakMzComparator PEAK_MZ_COMPARATOR = new PeakMzComparator();
+    private static final int[] NO_PEAK_INDICES = {};
+    private static final ISpectrum[] NO_HIGHEST_PEAKS = {};
+    /**
+     * Highest peak spectra are only cached up to this number of peaks
+     */
+    public static final int MAX_CACHED_HIGHEST_PEAKS = 128;
 
     private final String id;
     private final int precursorCharge;
@@ -29,14 +41,33 @@ public class Spectrum implements ISpectrum {
     private double sumSquareIntensity;
 
     private final IQualityScorer qualityScorer;
-    private double qualityMeasure = BAD_QUALITY_MEASURE;
-
+    private double qualityMeasure;
+    // written after qualityMeasure so that a reader seeing true also sees the measure
+    private volatile boolean isQualityMeasureCalculated;
+
+    // the cached arrays are never modified once they are assigned, a larger
+    // cache is always published as a new copy
+    // indices of the highest peaks sorted by decreasing intensity - any smaller
+    // number of highest peaks is a prefix of this array
+    private volatile int[] peaksByIntensity = NO_PEAK_INDICES;
     // Dot products always get the highest peaks of a specific intensity -
-    // this caches those and returns a list sorted by MZ
-    private final Map<Integer, ISpectrum> highestPeaks = new HashMap<>();
-    private final List<Integer> majorPeakMZ = new ArrayList<>();
-    // the number of peaks considered as "major" when the majorPeakMZ Set was filled the last time.
-    private int currentMajorPeakCount = 0;
+    // this caches those indexed by the number of peaks
+    private volatile ISpectrum[] highestPeaks = NO_HIGHEST_PEAKS;
+    private volatile MajorPeaks majorPeaks;
+
+    /**
+     * The m/z values of the major peaks together with the number of
+     * peaks that were considered "major" when they were calculated.
+     */
+    private static final class MajorPeaks {
+        private final int majorPeakCount;
+        private final int[] mzValues;
+
+        private MajorPeaks(int majorPeakCount, int[] mzValues) {
+            this.majorPeakCount = majorPeakCount;
+            this.mzValues = mzValues;
+        }
+    }
 
     /**
      * Creates a new spectrum object
@@ -111,6 +142,32 @@ public class Spectrum implements ISpectrum {
         }
         calculateIntensities();
 
+        // the quality only depends on the peaks
+        if (spectrum instanceof Spectrum) {
+            Spectrum original = (Spectrum) spectrum;
+            if (original.isQualityMeasureCalculated && original.qualityScorer == qualityScorer && hasIdenticalPeaks(original)) {
+                qualityMeasure = original.qualityMeasure;
+                isQualityMeasureCalculated = true;
+            }
+        }
+    }
+
+    /**
+     * Tests whether the other spectrum holds the identical peak objects
+     *
+     * @param other The spectrum to compare to
+     * @return true if both spectra hold the same peak instances in the same order
+     */
+    private boolean hasIdenticalPeaks(Spectrum other) {
+        if (peaks.size() != other.peaks.size())
+            return false;
+
+        for (int i = 0; i < peaks.size(); i++) {
+            if (peaks.get(i) != other.peaks.get(i))
+                return false;
+        }
+
+        return true;
     }
 
     protected void calculateIntensities() {
@@ -195,8 +252,11 @@ public class Spectrum implements ISpectrum {
      */
     @Override
     public boolean containsMajorPeak(final int mz, int majorPeakCount) {
-        guaranteeMajorPeaks(majorPeakCount);
-        return majorPeakMZ.contains(mz);
+        for (int majorMz : guaranteeMajorPeaks(majorPeakCount)) {
+            if (majorMz == mz)
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -207,11 +267,7 @@ public class Spectrum implements ISpectrum {
      */
     @Override
     public int[] asMajorPeakMZs(int majorPeakCount) {
-        guaranteeMajorPeaks(majorPeakCount);
-        int[] ret = majorPeakMZ.stream()
-                .mapToInt(integer -> integer)
-                .toArray();
-        return ret;
+        return guaranteeMajorPeaks(majorPeakCount).clone();
     }
 
 
@@ -225,19 +281,29 @@ public class Spectrum implements ISpectrum {
         return getHighestNPeaks(majorPeakCount);
     }
 
-    protected void guaranteeMajorPeaks(int majorPeakCount) {
-        if (majorPeakMZ.size() != majorPeakCount) {
-            majorPeakMZ.clear();
-            ISpectrum peaks = asMajorPeaks(majorPeakCount);
-            for (IPeak peak : peaks.getPeaks()) {
-                majorPeakMZ.add((int) peak.getMz());
+    /**
+     * @param majorPeakCount number of peaks considered as "major"
+     * @return the m/z values of the major peaks as integers - must not be modified
+     */
+    protected int[] guaranteeMajorPeaks(int majorPeakCount) {
+        MajorPeaks current = majorPeaks;
+        if (current == null || current.majorPeakCount != majorPeakCount) {
+            List<IPeak> peaks = asMajorPeaks(majorPeakCount).getPeaks();
+            int[] mzValues = new int[peaks.size()];
+            for (int i = 0; i < mzValues.length; i++) {
+                mzValues[i] = (int) peaks.get(i).getMz();
             }
+            current = new MajorPeaks(majorPeakCount, mzValues);
+            majorPeaks = current;
         }
+
+        return current.mzValues;
     }
 
     public double getQualityScore() {
-        if (qualityMeasure == BAD_QUALITY_MEASURE) {
+        if (!isQualityMeasureCalculated) {
             qualityMeasure = qualityScorer.calculateQualityScore(this);
+            isQualityMeasureCalculated = true;
         }
 
         return qualityMeasure;
@@ -256,17 +322,23 @@ public class Spectrum implements ISpectrum {
      */
     @Override
     public ISpectrum getHighestNPeaks(int numberRequested) {
-        //  guaranteeClean();
-        ISpectrum ret = highestPeaks.get(numberRequested);
-        if (ret == null) {
-            ret = buildHighestPeaks(numberRequested);
-            int numberPeaks = ret.getPeaksCount();
-            // remember the result and if less than requested remember for all
-            // requests above or equal to the size
-            for (int i = numberRequested; i >= numberPeaks; i--) {
-                highestPeaks.put(i, ret);  // todo fix
-            }
-        }
+        // all requests above the number of peaks return the same result
+        int numberPeaks = Math.max(0, Math.min(numberRequested, peaks.size()));
+
+        if (numberPeaks > MAX_CACHED_HIGHEST_PEAKS)
+            return buildHighestPeaks(numberPeaks);
+
+        ISpectrum[] cached = highestPeaks;
+        if (cached.length > numberPeaks && cached[numberPeaks] != null)
+            return cached[numberPeaks];
+
+        ISpectrum ret = buildHighestPeaks(numberPeaks);
+
+        // copy on write - a published array is never modified
+        ISpectrum[] updated = Arrays.copyOf(cached, Math.max(numberPeaks + 1, cached.length));
+        updated[numberPeaks] = ret;
+        highestPeaks = updated;
+
         return ret;
     }
 
@@ -277,19 +349,52 @@ public class Spectrum implements ISpectrum {
      * @return !null array of size &lt;= numberRequested;
      */
     protected ISpectrum buildHighestPeaks(int numberRequested) {
-        List<IPeak> byIntensity = new ArrayList<>(getPeaks());
-        byIntensity.sort(PeakIntensityComparator.INSTANCE); // sort by intensity
-        List<IPeak> holder = new ArrayList<>();
-        for (IPeak iPeak : byIntensity) {
-            holder.add(iPeak);
-            if (holder.size() >= numberRequested)
-                break;
+        int[] byIntensity = guaranteePeaksByIntensity(numberRequested);
+        int numberPeaks = Math.min(numberRequested, byIntensity.length);
+
+        List<IPeak> holder = new ArrayList<>(numberPeaks);
+        for (int i = 0; i < numberPeaks; i++) {
+            holder.add(peaks.get(byIntensity[i]));
         }
+        // stable sort so peaks with identical m/z stay in intensity order
+        holder.sort(PEAK_MZ_COMPARATOR);
+
         //noinspection UnnecessaryLocalVariable
-        Spectrum ret = new Spectrum(this, holder);
+        Spectrum ret = new Spectrum(this, holder, true);
         return ret;
     }
 
+    /**
+     * Makes sure that at least the numberRequested highest peaks are known in
+     * decreasing order of intensity. Peaks with identical intensity are ordered
+     * by m/z.
+     *
+     * @param numberRequested number peaks requested
+     * @return indices of the highest peaks in decreasing order of intensity
+     */
+    protected int[] guaranteePeaksByIntensity(int numberRequested) {
+        int numberPeaks = Math.min(numberRequested, peaks.size());
+        int[] current = peaksByIntensity;
+        if (current.length >= numberPeaks)
+            return current;
+
+        float[] intensities = new float[peaks.size()];
+        int[] indices = new int[peaks.size()];
+        for (int i = 0; i < intensities.length; i++) {
+            intensities[i] = peaks.get(i).getIntensity();
+            indices[i] = i;
+        }
+
+        // only the selected peaks need to be sorted
+        PeakUtilities.selectHighestIntensities(intensities, indices, 0, indices.length, numberPeaks);
+        PeakUtilities.sortByIntensity(intensities, indices, 0, numberPeaks);
+
+        int[] byIntensity = Arrays.copyOf(indices, numberPeaks);
+        peaksByIntensity = byIntensity;
+
+        return byIntensity;
+    }
+
     @Override
     public String toString() {
         return getId();
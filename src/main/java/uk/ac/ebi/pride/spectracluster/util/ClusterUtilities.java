@@ -1,5 +1,6 @@
 package uk.ac.ebi.pride.spectracluster.util;
 
+import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.cluster.SpectralCluster;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
@@ -9,6 +10,10 @@ import uk.ac.ebi.pride.spectracluster.spectrum.KnownProperties;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 
@@ -38,6 +43,17 @@ public final class ClusterUtilities {
     ICluster clusterFullyContains(@Nonnull ICluster c1, @Nonnull ICluster c2) {
         int size1 = c1.getClusteredSpectraCount();
         int size2 = c2.getClusteredSpectraCount();
+
+        // greedy clusters compare their interned ids without building strings
+        if (c1 instanceof GreedySpectralCluster && c2 instanceof GreedySpectralCluster) {
+            ICluster smaller = (size1 < size2) ? c1 : c2;
+            int shared = ((GreedySpectralCluster) c1).countSharedSpectra((GreedySpectralCluster) c2);
+
+            if (shared == ((GreedySpectralCluster) smaller).getSpectralIdCount())
+                return (smaller == c1) ? c2 : c1;
+            return null;
+        }
+
         if (size1 == size2) {
             if (c1.getSpectralId().equals(c2.getSpectralId()))
                 return c1; // same size same spectra;
@@ -65,6 +81,12 @@ public final class ClusterUtilities {
      */
     @Deprecated // TODO JG function highly similar to IncrementalClusteringEngine::getSharedSpectraIds
     public static double clusterFullyContainsScore(@Nonnull ICluster existing, @Nonnull ICluster added) {
+        if (existing instanceof GreedySpectralCluster && added instanceof GreedySpectralCluster) {
+            double minSize = Math.min(((GreedySpectralCluster) existing).getSpectralIdCount(),
+                    ((GreedySpectralCluster) added).getSpectralIdCount());
+            return ((GreedySpectralCluster) existing).countSharedSpectra((GreedySpectralCluster) added) / minSize;
+        }
+
         Set<String> spectralIds1 = existing.getSpectralIds();
         Set<String> spectralIds2 = added.getSpectralIds();
         double minSize = Math.min(spectralIds1.size(), spectralIds2.size());
@@ -85,8 +107,9 @@ public final class ClusterUtilities {
         List<ICluster> noneFittingSpectra = new ArrayList<>();
 
         if (cluster.getClusteredSpectra().size() > 1) {
+            final ISpectrum consensusSpectrum = cluster.getConsensusSpectrum();
+
             for (ISpectrum spectrum : cluster.getClusteredSpectra()) {
-                final ISpectrum consensusSpectrum = cluster.getConsensusSpectrum();
                 final double similarityScore = similarityChecker.assessSimilarity(consensusSpectrum, spectrum);
 
                 if (similarityScore < threshold) {
@@ -98,6 +121,140 @@ public final class ClusterUtilities {
         return noneFittingSpectra;
     }
 
+    /**
+     * Finds the none fitting spectra of all passed clusters at once in the calling
+     * thread - THIS NEVER CHANGES INTERNAL STATE.
+     *
+     * @see #findNoneFittingSpectra(List, ISimilarityChecker, double, ExecutorService)
+     */
+    public static List<List<ICluster>> findNoneFittingSpectra(List<ICluster> clusters, ISimilarityChecker similarityChecker, double threshold) {
+        return findNoneFittingSpectra(clusters, similarityChecker, threshold, null);
+    }
+
+    /**
+     * Finds the none fitting spectra of all passed clusters at once - THIS NEVER
+     * CHANGES INTERNAL STATE. The consensus spectra are built once per cluster
+     * before the spectra are scored. If an executor is passed, the work is split
+     * into ranges that are processed by the executor's threads, every range using
+     * its own copy of the similarity checker. The scores are the same as
+     * findNoneFittingSpectra's.
+     *
+     * @param clusters          The clusters to test, the consensus spectra of different clusters must be independent
+     * @param similarityChecker The checker to score the spectra against their cluster's consensus spectrum
+     * @param threshold         Spectra scoring below this threshold do not fit
+     * @param executor          The executor to score the spectra with, null to score them in the calling thread
+     * @return !null list holding the none fitting spectra (as clusters) of every passed cluster in the same order
+     */
+    public static List<List<ICluster>> findNoneFittingSpectra(List<ICluster> clusters, ISimilarityChecker similarityChecker,
+                                                              double threshold, @Nullable ExecutorService executor) {
+        int nClusters = clusters.size();
+        List<List<ISpectrum>> clusteredSpectra = new ArrayList<>(nClusters);
+        int nSpectra = 0;
+
+        for (ICluster cluster : clusters) {
+            List<ISpectrum> spectra = cluster.getClusteredSpectra();
+            clusteredSpectra.add(spectra);
+
+            // single spectra always fit
+            if (spectra.size() > 1)
+                nSpectra += spectra.size();
+        }
+
+        // remember the cluster of every spectrum to score
+        int[] clusterIndices = new int[nSpectra];
+        int[] spectrumIndices = new int[nSpectra];
+        int n = 0;
+        for (int i = 0; i < nClusters; i++) {
+            List<ISpectrum> spectra = clusteredSpectra.get(i);
+            if (spectra.size() < 2)
+                continue;
+
+            for (int j = 0; j < spectra.size(); j++) {
+                clusterIndices[n] = i;
+                spectrumIndices[n] = j;
+                n++;
+            }
+        }
+
+        // build every consensus spectrum once before the spectra are scored
+        ISpectrum[] consensusSpectra = new ISpectrum[nClusters];
+        forEachRange(nClusters, executor, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                if (clusteredSpectra.get(i).size() > 1)
+                    consensusSpectra[i] = clusters.get(i).getConsensusSpectrum();
+            }
+        });
+
+        double[] similarityScores = new double[nSpectra];
+        forEachRange(nSpectra, executor, (start, end) -> {
+            // every range running in the executor uses its own checker
+            ISimilarityChecker checker = (executor != null) ? similarityChecker.newThreadLocalCopy() : similarityChecker;
+
+            for (int k = start; k < end; k++) {
+                ISpectrum spectrum = clusteredSpectra.get(clusterIndices[k]).get(spectrumIndices[k]);
+                similarityScores[k] = checker.assessSimilarity(consensusSpectra[clusterIndices[k]], spectrum);
+            }
+        });
+
+        List<List<ICluster>> noneFittingSpectra = new ArrayList<>(nClusters);
+        for (int i = 0; i < nClusters; i++) {
+            noneFittingSpectra.add(new ArrayList<>());
+        }
+        for (int k = 0; k < nSpectra; k++) {
+            if (similarityScores[k] < threshold) {
+                ISpectrum spectrum = clusteredSpectra.get(clusterIndices[k]).get(spectrumIndices[k]);
+                noneFittingSpectra.get(clusterIndices[k]).add(ClusterUtilities.asCluster(spectrum));
+            }
+        }
+
+        return noneFittingSpectra;
+    }
+
+    /**
+     * Work on the range [start, end) of a bigger task
+     */
+    private interface RangeTask {
+        void process(int start, int end);
+    }
+
+    /**
+     * Processes the range [0, n) either in the calling thread or split into
+     * several ranges using the executor. Returns once all ranges are processed.
+     */
+    private static void forEachRange(int n, @Nullable ExecutorService executor, RangeTask task) {
+        if (executor == null || n < 2) {
+            task.process(0, n);
+            return;
+        }
+
+        // more ranges than threads so that the threads finish at about the same time
+        int nRanges = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+        List<Callable<Void>> ranges = new ArrayList<>(nRanges);
+        for (int r = 0; r < nRanges; r++) {
+            int start = (int) ((long) n * r / nRanges);
+            int end = (int) ((long) n * (r + 1) / nRanges);
+            ranges.add(() -> {
+                task.process(start, end);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> range : executor.invokeAll(ranges)) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the executor", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     /**
      * allow nonfitting spectra to leave and retuen a list of clusters to write out
      *
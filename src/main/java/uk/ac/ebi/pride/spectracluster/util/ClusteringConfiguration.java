@@ -0,0 +1,479 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import uk.ac.ebi.pride.spectracluster.cdf.CumulativeDistributionFunction;
+import uk.ac.ebi.pride.spectracluster.cdf.INumberOfComparisonAssessor;
+import uk.ac.ebi.pride.spectracluster.cluster.IClusterIdGenerator;
+import uk.ac.ebi.pride.spectracluster.cluster.RandomUuidClusterIdGenerator;
+import uk.ac.ebi.pride.spectracluster.consensus.ConcensusSpectrumBuilderFactory;
+import uk.ac.ebi.pride.spectracluster.consensus.ConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
+import uk.ac.ebi.pride.spectracluster.normalizer.IIntensityNormalizer;
+import uk.ac.ebi.pride.spectracluster.normalizer.TotalIntensityNormalizer;
+import uk.ac.ebi.pride.spectracluster.quality.IQualityScorer;
+import uk.ac.ebi.pride.spectracluster.quality.SignalToNoiseChecker;
+import uk.ac.ebi.pride.spectracluster.similarity.CombinedFisherIntensityTest;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.similarity.SimilarityScoreCache;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.comparator.ClusterComparator;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.peak.FractionTICPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.FusedPeakFilterFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.HighestNSpectrumPeaksFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.RemoveImpossiblyHighPeaksFunction;
+import uk.ac.ebi.pride.spectracluster.util.function.spectrum.RemovePrecursorPeaksFunction;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Immutable set of all parameters used by a clustering run. Every "with"
+ * method returns a modified copy so that differently configured engines can
+ * run concurrently in one JVM. Defaults is a facade to one shared instance
+ * which is used by all classes that are not given a configuration explicitly.
+ *
+ * The contained objects (similarity checker, functions, ...) are shared
+ * between copies and must not be modified once the configuration is in use.
+ */
+public final class ClusteringConfiguration {
+    private double similarityThreshold = Defaults.DEFAULT_SIMILARITY_THRESHOLD;
+    private double retainThreshold = Defaults.DEFAULT_RETAIN_THRESHOLD;
+    private int largeBinningRegion = Defaults.DEFAULT_LARGE_BINNING_REGION;
+    private int numberComparedPeaks = Defaults.DEFAULT_NUMBER_COMPARED_PEAKS;
+    private float fragmentIonTolerance = Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE;
+    private float precursorIonTolerance = Defaults.DEFAULT_PRECURSOR_ION_TOLERANCE;
+    private int numberReclusteringPasses = Defaults.DEFAULT_NUMBER_RECLUSTERING_PASSES;
+    private int majorPeakCount = Defaults.DEFAULT_MAJOR_PEAKS;
+    private int consensusMinPeaks = Defaults.DEFAULT_CONSENSUS_MIN_PEAKS;
+    private INumberOfComparisonAssessor numberOfComparisonAssessor = Defaults.DEFAULT_NUMBER_COMPARISON_ASSESSOR;
+    private CumulativeDistributionFunction cumulativeDistributionFunction = Defaults.DEFAULT_CUMULATIVE_DISTRIBUTION_FUNCTION;
+    private IFunction<ISpectrum, ISpectrum> peakFilter;
+    // the peak filter and similarity checker depend on the fragment tolerance unless they were set
+    private boolean peakFilterIsOverwritten = false;
+    private IFunction<List<IPeak>, List<IPeak>> comparisonPeakFilter = new FractionTICPeakFunction(0.5F, 20);
+    private ConcensusSpectrumBuilderFactory consensusFactory = ConsensusSpectrum.FACTORY;
+    private ISimilarityChecker similarityChecker;
+    private boolean similarityCheckerIsOverwritten = false;
+    private IQualityScorer qualityScorer = new SignalToNoiseChecker();
+    private ClusterComparator spectrumComparator = ClusterComparator.INSTANCE;
+    private IIntensityNormalizer intensityNormalizer = TotalIntensityNormalizer.DEFAULT;
+    private boolean saveDebugInformation = false;
+    private boolean saveAddingScore = false;
+    private SimilarityScoreCache scoreCache = null;
+    private ExecutorService scoringExecutor = null;
+    private IClusterIdGenerator clusterIdGenerator = new RandomUuidClusterIdGenerator();
+    private IdRegistry idRegistry = new IdRegistry();
+
+    private ClusteringConfiguration() {
+
+    }
+
+    /**
+     * Creates a new configuration holding the default values.
+     *
+     * @return !null configuration
+     */
+    public static ClusteringConfiguration createDefault() {
+        ClusteringConfiguration configuration = new ClusteringConfiguration();
+        configuration.peakFilter = generatePeakFilter(configuration.fragmentIonTolerance);
+        configuration.similarityChecker = new CombinedFisherIntensityTest(configuration.fragmentIonTolerance);
+
+        return configuration;
+    }
+
+    /**
+     * Generates the default peak filter which is applied to spectra
+     * right after they are loaded from the peak list file.
+     *
+     * The filters are fused so that only one filtered spectrum is created.
+     */
+    private static IFunction<ISpectrum, ISpectrum> generatePeakFilter(float fragmentIonTolerance) {
+        return new FusedPeakFilterFunction(new RemoveImpossiblyHighPeaksFunction(),
+                new RemovePrecursorPeaksFunction(fragmentIonTolerance),
+                new HighestNSpectrumPeaksFunction(150));
+    }
+
+    private ClusteringConfiguration copy() {
+        ClusteringConfiguration copy = new ClusteringConfiguration();
+
+        copy.similarityThreshold = similarityThreshold;
+        copy.retainThreshold = retainThreshold;
+        copy.largeBinningRegion = largeBinningRegion;
+        copy.numberComparedPeaks = numberComparedPeaks;
+        copy.fragmentIonTolerance = fragmentIonTolerance;
+        copy.precursorIonTolerance = precursorIonTolerance;
+        copy.numberReclusteringPasses = numberReclusteringPasses;
+        copy.majorPeakCount = majorPeakCount;
+        copy.consensusMinPeaks = consensusMinPeaks;
+        copy.numberOfComparisonAssessor = numberOfComparisonAssessor;
+        copy.cumulativeDistributionFunction = cumulativeDistributionFunction;
+        copy.peakFilter = peakFilter;
+        copy.peakFilterIsOverwritten = peakFilterIsOverwritten;
+        copy.comparisonPeakFilter = comparisonPeakFilter;
+        copy.consensusFactory = consensusFactory;
+        copy.similarityChecker = similarityChecker;
+        copy.similarityCheckerIsOverwritten = similarityCheckerIsOverwritten;
+        copy.qualityScorer = qualityScorer;
+        copy.spectrumComparator = spectrumComparator;
+        copy.intensityNormalizer = intensityNormalizer;
+        copy.saveDebugInformation = saveDebugInformation;
+        copy.saveAddingScore = saveAddingScore;
+        copy.scoreCache = scoreCache;
+        copy.scoringExecutor = scoringExecutor;
+        copy.clusterIdGenerator = clusterIdGenerator;
+        copy.idRegistry = idRegistry;
+
+        return copy;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public ClusteringConfiguration withSimilarityThreshold(double similarityThreshold) {
+        ClusteringConfiguration copy = copy();
+        copy.similarityThreshold = similarityThreshold;
+        return copy;
+    }
+
+    /**
+     * The retain threshold defines the similarity threshold below which
+     * spectra are removed from a cluster.
+     */
+    public double getRetainThreshold() {
+        return retainThreshold;
+    }
+
+    public ClusteringConfiguration withRetainThreshold(double retainThreshold) {
+        ClusteringConfiguration copy = copy();
+        copy.retainThreshold = retainThreshold;
+        return copy;
+    }
+
+    public int getLargeBinningRegion() {
+        return largeBinningRegion;
+    }
+
+    public ClusteringConfiguration withLargeBinningRegion(int largeBinningRegion) {
+        ClusteringConfiguration copy = copy();
+        copy.largeBinningRegion = largeBinningRegion;
+        return copy;
+    }
+
+    public int getNumberComparedPeaks() {
+        return numberComparedPeaks;
+    }
+
+    public ClusteringConfiguration withNumberComparedPeaks(int numberComparedPeaks) {
+        ClusteringConfiguration copy = copy();
+        copy.numberComparedPeaks = numberComparedPeaks;
+        return copy;
+    }
+
+    public float getFragmentIonTolerance() {
+        return fragmentIonTolerance;
+    }
+
+    /**
+     * Sets the fragment ion tolerance. The peak filter and the similarity checker
+     * are regenerated using the new tolerance unless they were explicitly set.
+     *
+     * @param fragmentIonTolerance The new tolerance
+     * @return The modified copy
+     */
+    public ClusteringConfiguration withFragmentIonTolerance(float fragmentIonTolerance) {
+        ClusteringConfiguration copy = copy();
+        copy.fragmentIonTolerance = fragmentIonTolerance;
+
+        if (!peakFilterIsOverwritten)
+            copy.peakFilter = generatePeakFilter(fragmentIonTolerance);
+        if (!similarityCheckerIsOverwritten)
+            copy.similarityChecker = new CombinedFisherIntensityTest(fragmentIonTolerance);
+
+        return copy;
+    }
+
+    /**
+     * The precursor tolerance is used by the incremental clustering
+     * engines as window size
+     */
+    public float getPrecursorIonTolerance() {
+        return precursorIonTolerance;
+    }
+
+    public ClusteringConfiguration withPrecursorIonTolerance(float precursorIonTolerance) {
+        ClusteringConfiguration copy = copy();
+        copy.precursorIonTolerance = precursorIonTolerance;
+        return copy;
+    }
+
+    public int getNumberReclusteringPasses() {
+        return numberReclusteringPasses;
+    }
+
+    public ClusteringConfiguration withNumberReclusteringPasses(int numberReclusteringPasses) {
+        ClusteringConfiguration copy = copy();
+        copy.numberReclusteringPasses = numberReclusteringPasses;
+        return copy;
+    }
+
+    public int getMajorPeakCount() {
+        return majorPeakCount;
+    }
+
+    public ClusteringConfiguration withMajorPeakCount(int majorPeakCount) {
+        ClusteringConfiguration copy = copy();
+        copy.majorPeakCount = majorPeakCount;
+        return copy;
+    }
+
+    /**
+     * The minimum number of peaks in a consensus spectrum before the
+     * peak filtering is used (retaining N peaks per M m/z).
+     */
+    public int getConsensusMinPeaks() {
+        return consensusMinPeaks;
+    }
+
+    public ClusteringConfiguration withConsensusMinPeaks(int consensusMinPeaks) {
+        ClusteringConfiguration copy = copy();
+        copy.consensusMinPeaks = consensusMinPeaks;
+        return copy;
+    }
+
+    public INumberOfComparisonAssessor getNumberOfComparisonAssessor() {
+        return numberOfComparisonAssessor;
+    }
+
+    public ClusteringConfiguration withNumberOfComparisonAssessor(INumberOfComparisonAssessor numberOfComparisonAssessor) {
+        ClusteringConfiguration copy = copy();
+        copy.numberOfComparisonAssessor = numberOfComparisonAssessor;
+        return copy;
+    }
+
+    /**
+     * The cumulative distribution function to use. If this is null the
+     * CDF is loaded from the resource matching the similarity checker
+     * (see CumulativeDistributionFunctionFactory).
+     */
+    public CumulativeDistributionFunction getCumulativeDistributionFunction() {
+        return cumulativeDistributionFunction;
+    }
+
+    public ClusteringConfiguration withCumulativeDistributionFunction(CumulativeDistributionFunction cumulativeDistributionFunction) {
+        ClusteringConfiguration copy = copy();
+        copy.cumulativeDistributionFunction = cumulativeDistributionFunction;
+        return copy;
+    }
+
+    /**
+     * The filter applied to spectra right after they are loaded from the peak list file.
+     */
+    public IFunction<ISpectrum, ISpectrum> getPeakFilter() {
+        return peakFilter;
+    }
+
+    public ClusteringConfiguration withPeakFilter(IFunction<ISpectrum, ISpectrum> peakFilter) {
+        ClusteringConfiguration copy = copy();
+        copy.peakFilter = peakFilter;
+        copy.peakFilterIsOverwritten = true;
+        return copy;
+    }
+
+    /**
+     * The filter to use before comparing two spectra
+     */
+    public IFunction<List<IPeak>, List<IPeak>> getComparisonPeakFilter() {
+        return comparisonPeakFilter;
+    }
+
+    public ClusteringConfiguration withComparisonPeakFilter(IFunction<List<IPeak>, List<IPeak>> comparisonPeakFilter) {
+        ClusteringConfiguration copy = copy();
+        copy.comparisonPeakFilter = comparisonPeakFilter;
+        return copy;
+    }
+
+    public ConcensusSpectrumBuilderFactory getConsensusFactory() {
+        return consensusFactory;
+    }
+
+    public ClusteringConfiguration withConsensusFactory(ConcensusSpectrumBuilderFactory consensusFactory) {
+        ClusteringConfiguration copy = copy();
+        copy.consensusFactory = consensusFactory;
+        return copy;
+    }
+
+    /**
+     * Creates a new consensus spectrum builder using the configured factory.
+     *
+     * @return !null builder using this configuration
+     */
+    public IConsensusSpectrumBuilder getConsensusSpectrumBuilder() {
+        return consensusFactory.getConsensusSpectrumBuilder(this);
+    }
+
+    public ISimilarityChecker getSimilarityChecker() {
+        return similarityChecker;
+    }
+
+    public ClusteringConfiguration withSimilarityChecker(ISimilarityChecker similarityChecker) {
+        ClusteringConfiguration copy = copy();
+        copy.similarityChecker = similarityChecker;
+        copy.similarityCheckerIsOverwritten = true;
+        return copy;
+    }
+
+    public IQualityScorer getQualityScorer() {
+        return qualityScorer;
+    }
+
+    public ClusteringConfiguration withQualityScorer(IQualityScorer qualityScorer) {
+        ClusteringConfiguration copy = copy();
+        copy.qualityScorer = qualityScorer;
+        return copy;
+    }
+
+    public ClusterComparator getSpectrumComparator() {
+        return spectrumComparator;
+    }
+
+    public ClusteringConfiguration withSpectrumComparator(ClusterComparator spectrumComparator) {
+        ClusteringConfiguration copy = copy();
+        copy.spectrumComparator = spectrumComparator;
+        return copy;
+    }
+
+    public IIntensityNormalizer getIntensityNormalizer() {
+        return intensityNormalizer;
+    }
+
+    public ClusteringConfiguration withIntensityNormalizer(IIntensityNormalizer intensityNormalizer) {
+        ClusteringConfiguration copy = copy();
+        copy.intensityNormalizer = intensityNormalizer;
+        return copy;
+    }
+
+    /**
+     * Indicates whether additional debug information is stored in the spectra
+     * objects during clustering (f.e. the number of comparisons when adding a
+     * spectrum).
+     */
+    public boolean isSaveDebugInformation() {
+        return saveDebugInformation;
+    }
+
+    public ClusteringConfiguration withSaveDebugInformation(boolean saveDebugInformation) {
+        ClusteringConfiguration copy = copy();
+        copy.saveDebugInformation = saveDebugInformation;
+        return copy;
+    }
+
+    /**
+     * Indicates whether the similarity score a spectrum has when it
+     * was added to a cluster is saved.
+     */
+    public boolean isSaveAddingScore() {
+        return saveAddingScore;
+    }
+
+    public ClusteringConfiguration withSaveAddingScore(boolean saveAddingScore) {
+        ClusteringConfiguration copy = copy();
+        copy.saveAddingScore = saveAddingScore;
+        return copy;
+    }
+
+    /**
+     * The cache the ClusteringEngine looks up similarity scores in before scoring
+     * two consensus spectra. Scoring is not cached if this is null (default).
+     */
+    public SimilarityScoreCache getScoreCache() {
+        return scoreCache;
+    }
+
+    /**
+     * The cache is shared with all copies of the returned configuration. It has
+     * to be replaced when the similarity checker or the comparison peak filter
+     * is changed.
+     *
+     * @param scoreCache The cache to use, null disables caching
+     * @return The modified copy
+     */
+    public ClusteringConfiguration withScoreCache(SimilarityScoreCache scoreCache) {
+        ClusteringConfiguration copy = copy();
+        copy.scoreCache = scoreCache;
+        return copy;
+    }
+
+    /**
+     * The executor the ClusteringEngine scores the clustered spectra against
+     * their consensus spectra with when it removes none fitting spectra. The
+     * spectra are scored in the engine's thread if this is null (default).
+     */
+    public ExecutorService getScoringExecutor() {
+        return scoringExecutor;
+    }
+
+    /**
+     * The executor is shared with all copies of the returned configuration and
+     * is never shut down by the engines.
+     *
+     * @param scoringExecutor The executor to use, null to score in the engine's thread
+     * @return The modified copy
+     */
+    public ClusteringConfiguration withScoringExecutor(ExecutorService scoringExecutor) {
+        ClusteringConfiguration copy = copy();
+        copy.scoringExecutor = scoringExecutor;
+        return copy;
+    }
+
+    /**
+     * The generator creating the ids of clusters that were not given an
+     * id. By default, ids are random UUIDs.
+     */
+    public IClusterIdGenerator getClusterIdGenerator() {
+        return clusterIdGenerator;
+    }
+
+    /**
+     * The generator is shared with all copies of the returned configuration.
+     * Use a SeededClusterIdGenerator with a fixed seed to get reproducible ids.
+     *
+     * @param clusterIdGenerator The generator to use, must not be null
+     * @return The modified copy
+     */
+    public ClusteringConfiguration withClusterIdGenerator(IClusterIdGenerator clusterIdGenerator) {
+        if (clusterIdGenerator == null)
+            throw new IllegalArgumentException("clusterIdGenerator must not be null");
+
+        ClusteringConfiguration copy = copy();
+        copy.clusterIdGenerator = clusterIdGenerator;
+        return copy;
+    }
+
+    /**
+     * The registry the clusters created with this configuration intern
+     * their spectrum and comparison match ids in.
+     */
+    public IdRegistry getIdRegistry() {
+        return idRegistry;
+    }
+
+    /**
+     * The registry is shared with all copies of the returned configuration and
+     * keeps all registered ids until it is no longer referenced. Pass a new
+     * registry to scope the ids to one run. GreedyIncrementalClusteringEngines
+     * always use their own registry.
+     *
+     * @param idRegistry The registry to use, must not be null
+     * @return The modified copy
+     */
+    public ClusteringConfiguration withIdRegistry(IdRegistry idRegistry) {
+        if (idRegistry == null)
+            throw new IllegalArgumentException("idRegistry must not be null");
+
+        ClusteringConfiguration copy = copy();
+        copy.idRegistry = idRegistry;
+        return copy;
+    }
+}
@@ -3,32 +3,31 @@ package uk.ac.ebi.pride.spectracluster.util;
 import uk.ac.ebi.pride.spectracluster.cdf.CumulativeDistributionFunction;
 import uk.ac.ebi.pride.spectracluster.cdf.INumberOfComparisonAssessor;
 import uk.ac.ebi.pride.spectracluster.cdf.MinNumberComparisonsAssessor;
+import uk.ac.ebi.pride.spectracluster.cluster.IClusterIdGenerator;
 import uk.ac.ebi.pride.spectracluster.consensus.ConcensusSpectrumBuilderFactory;
-import uk.ac.ebi.pride.spectracluster.consensus.ConsensusSpectrum;
 import uk.ac.ebi.pride.spectracluster.consensus.IConsensusSpectrumBuilder;
 import uk.ac.ebi.pride.spectracluster.engine.EngineFactories;
 import uk.ac.ebi.pride.spectracluster.engine.IClusteringEngine;
 import uk.ac.ebi.pride.spectracluster.normalizer.IIntensityNormalizer;
-import uk.ac.ebi.pride.spectracluster.normalizer.TotalIntensityNormalizer;
 import uk.ac.ebi.pride.spectracluster.quality.IQualityScorer;
-import uk.ac.ebi.pride.spectracluster.quality.SignalToNoiseChecker;
-import uk.ac.ebi.pride.spectracluster.similarity.CombinedFisherIntensityTest;
 import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.similarity.SimilarityScoreCache;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.comparator.ClusterComparator;
-import uk.ac.ebi.pride.spectracluster.util.function.Functions;
 import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
-import uk.ac.ebi.pride.spectracluster.util.function.peak.FractionTICPeakFunction;
-import uk.ac.ebi.pride.spectracluster.util.function.spectrum.HighestNSpectrumPeaksFunction;
-import uk.ac.ebi.pride.spectracluster.util.function.spectrum.RemoveImpossiblyHighPeaksFunction;
-import uk.ac.ebi.pride.spectracluster.util.function.spectrum.RemovePrecursorPeaksFunction;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * uk.ac.ebi.pride.spectracluster.util.Defaults
  *
+ * Static facade to the ClusteringConfiguration used by all classes that
+ * are not passed a configuration explicitly. Every setter replaces the
+ * shared configuration with a modified copy so that engines that already
+ * took a snapshot of the configuration are not affected.
+ *
  * @author Steve Lewis
  */
 public class Defaults {
@@ -76,106 +75,108 @@ public class Defaults {
      */
     public static final CumulativeDistributionFunction DEFAULT_CUMULATIVE_DISTRIBUTION_FUNCTION = null;
 
-    private static double similarityThreshold = DEFAULT_SIMILARITY_THRESHOLD;
-
-    private static int largeBinningRegion = DEFAULT_LARGE_BINNING_REGION;
-
-    private static int numberComparedPeaks = DEFAULT_NUMBER_COMPARED_PEAKS;
-
-    private static float fragmentIonTolerance = DEFAULT_FRAGMENT_ION_TOLERANCE;
-
-    private static double retainThreshold = DEFAULT_RETAIN_THRESHOLD;
+    public static final int DEFAULT_MAJOR_PEAKS = 5;
 
-    private static int numberReclusteringPasses = DEFAULT_NUMBER_RECLUSTERING_PASSES;
-
-    private static final int DEFAULT_MAJOR_PEAKS = 5;
+    /**
+     * The minimum number of peaks in a consensus spectrum before the
+     * peak filtering is used (retaining N peaks per M m/z).
+     */
+    public static final int DEFAULT_CONSENSUS_MIN_PEAKS = 50;
 
-    private static int majorPeakCount = DEFAULT_MAJOR_PEAKS;
+    private static volatile ClusteringConfiguration configuration = ClusteringConfiguration.createDefault();
 
-    private static float defaultPrecursorIonTolerance = DEFAULT_PRECURSOR_ION_TOLERANCE;
+    /**
+     * Returns the current shared configuration. Classes should take this snapshot
+     * once on construction instead of querying the single values repeatedly.
+     *
+     * @return !null configuration
+     */
+    public static ClusteringConfiguration getConfiguration() {
+        return configuration;
+    }
 
-    private static INumberOfComparisonAssessor numberOfComparisonAssessor = DEFAULT_NUMBER_COMPARISON_ASSESSOR;
+    /**
+     * Replaces the shared configuration.
+     *
+     * @param configuration !null configuration
+     */
+    public static void setConfiguration(ClusteringConfiguration configuration) {
+        if (configuration == null)
+            throw new IllegalArgumentException("Configuration must not be null");
 
-    private static CumulativeDistributionFunction cumulativeDistributionFunction = DEFAULT_CUMULATIVE_DISTRIBUTION_FUNCTION;
+        Defaults.configuration = configuration;
+    }
 
     public static int getMajorPeakCount() {
-        return majorPeakCount;
+        return configuration.getMajorPeakCount();
     }
 
-    public static void setMajorPeakCount(int majorPeakCount) {
-        Defaults.majorPeakCount = majorPeakCount;
+    public static synchronized void setMajorPeakCount(int majorPeakCount) {
+        configuration = configuration.withMajorPeakCount(majorPeakCount);
     }
 
     public static double getSimilarityThreshold() {
-        return similarityThreshold;
+        return configuration.getSimilarityThreshold();
     }
 
     public static int getLargeBinningRegion() {
-        return largeBinningRegion;
+        return configuration.getLargeBinningRegion();
     }
 
     public static int getNumberComparedPeaks() {
-        return numberComparedPeaks;
+        return configuration.getNumberComparedPeaks();
     }
 
     public static float getFragmentIonTolerance() {
-        return fragmentIonTolerance;
+        return configuration.getFragmentIonTolerance();
     }
 
     public static double getRetainThreshold() {
-        return retainThreshold;
+        return configuration.getRetainThreshold();
     }
 
-    public static void setSimilarityThreshold(double similarityThreshold) {
-        Defaults.similarityThreshold = similarityThreshold;
+    public static synchronized void setSimilarityThreshold(double similarityThreshold) {
+        configuration = configuration.withSimilarityThreshold(similarityThreshold);
     }
 
-    public static void setLargeBinningRegion(int largeBinningRegion) {
-        Defaults.largeBinningRegion = largeBinningRegion;
+    public static synchronized void setLargeBinningRegion(int largeBinningRegion) {
+        configuration = configuration.withLargeBinningRegion(largeBinningRegion);
     }
 
-    public static void setNumberComparedPeaks(int numberComparedPeaks) {
-        Defaults.numberComparedPeaks = numberComparedPeaks;
-    }
-
-    public static void setFragmentIonTolerance(float fragmentIonTolerance) {
-        Defaults.fragmentIonTolerance = fragmentIonTolerance;
-
-        Defaults.updateFragmentToleranceDependentDefaults();
+    public static synchronized void setNumberComparedPeaks(int numberComparedPeaks) {
+        configuration = configuration.withNumberComparedPeaks(numberComparedPeaks);
     }
 
     /**
-     * Update all default parameters that depend on the
-     * fragment ion tolerance.
+     * Sets the fragment ion tolerance and updates all default parameters
+     * that depend on it.
      *
-     * Parameters that were set by the user are not updated
+     * Parameters that were set by the user are not replaced. In case of a
+     * user defined similarity checker, setFragmentIonTolerance is called
+     * so that its tolerance is still adapted.
      *
-     * In case of the DefaultSimilarityChecker, the
-     * setFragmentIonTolerance is called. Therefore, this threshold
-     * is automatically adapted.
+     * @param fragmentIonTolerance
      */
-    private static void updateFragmentToleranceDependentDefaults() {
-        if (!Defaults.defaultPeakFilterIsOverwritten) {
-            Defaults.defaultPeakFilter = Defaults.generateDefaultPeakFilter();
-        }
+    public static synchronized void setFragmentIonTolerance(float fragmentIonTolerance) {
+        configuration = configuration.withFragmentIonTolerance(fragmentIonTolerance);
 
-        Defaults.defaultSimilarityChecker.setFragmentIonTolerance(Defaults.fragmentIonTolerance);
+        configuration.getSimilarityChecker().setFragmentIonTolerance(fragmentIonTolerance);
     }
 
     public static float getDefaultPrecursorIonTolerance() {
-        return defaultPrecursorIonTolerance;
+        return configuration.getPrecursorIonTolerance();
     }
 
-    public static void setDefaultPrecursorIonTolerance(float defaultPrecursorIonTolerance) {
-        Defaults.defaultPrecursorIonTolerance = defaultPrecursorIonTolerance;
+    public static synchronized void setDefaultPrecursorIonTolerance(float defaultPrecursorIonTolerance) {
+        configuration = configuration.withPrecursorIonTolerance(defaultPrecursorIonTolerance);
     }
 
     public static INumberOfComparisonAssessor getNumberOfComparisonAssessor() {
-        return numberOfComparisonAssessor;
+        return configuration.getNumberOfComparisonAssessor();
     }
 
-    public static void setNumberOfComparisonAssessor(INumberOfComparisonAssessor numberOfComparisonAssessor) {
-        Defaults.numberOfComparisonAssessor = numberOfComparisonAssessor;
+    public static synchronized void setNumberOfComparisonAssessor(INumberOfComparisonAssessor numberOfComparisonAssessor) {
+        configuration = configuration.withNumberOfComparisonAssessor(numberOfComparisonAssessor);
     }
 
     /**
@@ -184,76 +185,51 @@ public class Defaults {
      *
      * @param retainThreshold
      */
-    public static void setRetainThreshold(double retainThreshold) {
-        Defaults.retainThreshold = retainThreshold;
+    public static synchronized void setRetainThreshold(double retainThreshold) {
+        configuration = configuration.withRetainThreshold(retainThreshold);
     }
 
     public static int getNumberReclusteringPasses() {
-        return numberReclusteringPasses;
+        return configuration.getNumberReclusteringPasses();
     }
 
-    public static void setNumberReclusteringPasses(final int pNumberReclusteringPasses) {
-        numberReclusteringPasses = pNumberReclusteringPasses;
+    public static synchronized void setNumberReclusteringPasses(final int pNumberReclusteringPasses) {
+        configuration = configuration.withNumberReclusteringPasses(pNumberReclusteringPasses);
     }
 
     /**
-     * Generates the defaultPeakFiltering filter which is applied to spectra
-     * right after they are loaded from the peak list file.
-     *
-     * Some of these filters depend on the set fragmentIonTolerance. Therefore,
-     * they have to be regenerated when the tolerance is changed.
-     * @return The default peak filtering function
+     * The filter which is applied to spectra right after they are loaded
+     * from the peak list file. Unless it was set explicitly, it is
+     * regenerated whenever the fragment tolerance is changed.
      */
-    private static IFunction<ISpectrum, ISpectrum> generateDefaultPeakFilter() {
-        return Functions.join(new RemoveImpossiblyHighPeaksFunction(),
-                Functions.join(
-                        new RemovePrecursorPeaksFunction(fragmentIonTolerance),
-                        new HighestNSpectrumPeaksFunction(150)));
-    }
-
-    /**
-     * Indicates whether the user overwrote the default peak filtering
-     * function. In this case, it should not be regenerated if the
-     * fragment tolerance is changed.
-     */
-    private static boolean defaultPeakFilterIsOverwritten = false;
-
-    private static IFunction<ISpectrum, ISpectrum> defaultPeakFilter = generateDefaultPeakFilter();
-
     public static IFunction<ISpectrum, ISpectrum> getDefaultPeakFilter() {
-        return defaultPeakFilter;
+        return configuration.getPeakFilter();
     }
 
-    public static void setDefaultPeakFilter(IFunction<ISpectrum, ISpectrum> defaultPeakFilter) {
-        Defaults.defaultPeakFilter = defaultPeakFilter;
-        Defaults.defaultPeakFilterIsOverwritten = true;
+    public static synchronized void setDefaultPeakFilter(IFunction<ISpectrum, ISpectrum> defaultPeakFilter) {
+        configuration = configuration.withPeakFilter(defaultPeakFilter);
     }
 
     /**
      * default filter to use before comparing two spectra
      */
-    private static IFunction<List<IPeak>, List<IPeak>> defaultComparisonPeakFilter =
-            new FractionTICPeakFunction(0.5F, 20);
-
     public static IFunction<List<IPeak>, List<IPeak>> getDefaultComparisonPeakFilter() {
-        return defaultComparisonPeakFilter;
+        return configuration.getComparisonPeakFilter();
     }
 
-    public static void setDefaultComparisonPeakFilter(IFunction<List<IPeak>, List<IPeak>> defaultComparisonPeakFilter) {
-        Defaults.defaultComparisonPeakFilter = defaultComparisonPeakFilter;
+    public static synchronized void setDefaultComparisonPeakFilter(IFunction<List<IPeak>, List<IPeak>> defaultComparisonPeakFilter) {
+        configuration = configuration.withComparisonPeakFilter(defaultComparisonPeakFilter);
     }
 
     /**
      * filter to use a consensus spectrum
      */
-    private static ConcensusSpectrumBuilderFactory consensusFactory = ConsensusSpectrum.FACTORY;
-
     public static ConcensusSpectrumBuilderFactory getConsensusFactory() {
-        return consensusFactory;
+        return configuration.getConsensusFactory();
     }
 
-    public static void setConsensusFactory(ConcensusSpectrumBuilderFactory consensusFactory) {
-        Defaults.consensusFactory = consensusFactory;
+    public static synchronized void setConsensusFactory(ConcensusSpectrumBuilderFactory consensusFactory) {
+        configuration = configuration.withConsensusFactory(consensusFactory);
     }
 
     /**
@@ -262,61 +238,46 @@ public class Defaults {
      * @return
      */
     public static IConsensusSpectrumBuilder getDefaultConsensusSpectrumBuilder() {
-        return consensusFactory.getConsensusSpectrumBuilder();
+        return configuration.getConsensusSpectrumBuilder();
     }
 
-    //private static ISimilarityChecker defaultSimilarityChecker = new FrankEtAlDotProduct(getFragmentIonTolerance(), getNumberComparedPeaks());
-    //private static ISimilarityChecker defaultSimilarityChecker = new FisherExactTest((float) getFragmentIonTolerance());
-    private static ISimilarityChecker defaultSimilarityChecker = new CombinedFisherIntensityTest((float) getFragmentIonTolerance());
-
     public static ISimilarityChecker getDefaultSimilarityChecker() {
-        return defaultSimilarityChecker;
+        return configuration.getSimilarityChecker();
     }
 
-    public static void setDefaultSimilarityChecker(ISimilarityChecker defaultSimilarityChecker) {
-        Defaults.defaultSimilarityChecker = defaultSimilarityChecker;
+    public static synchronized void setDefaultSimilarityChecker(ISimilarityChecker defaultSimilarityChecker) {
+        configuration = configuration.withSimilarityChecker(defaultSimilarityChecker);
     }
 
-    private static IQualityScorer defaultQualityScorer = new SignalToNoiseChecker();
-
     public static IQualityScorer getDefaultQualityScorer() {
-        return defaultQualityScorer;
+        return configuration.getQualityScorer();
     }
 
-    public static void setDefaultQualityScorer(IQualityScorer defaultQualityScorer) {
-        Defaults.defaultQualityScorer = defaultQualityScorer;
+    public static synchronized void setDefaultQualityScorer(IQualityScorer defaultQualityScorer) {
+        configuration = configuration.withQualityScorer(defaultQualityScorer);
     }
 
-    private static ClusterComparator defaultSpectrumComparator = ClusterComparator.INSTANCE;
-
     public static ClusterComparator getDefaultSpectrumComparator() {
-        return defaultSpectrumComparator;
+        return configuration.getSpectrumComparator();
     }
 
-    public static void setDefaultSpectrumComparator(ClusterComparator dc) {
-        defaultSpectrumComparator = dc;
+    public static synchronized void setDefaultSpectrumComparator(ClusterComparator dc) {
+        configuration = configuration.withSpectrumComparator(dc);
     }
 
     public static IClusteringEngine getDefaultClusteringEngine() {
-        ISimilarityChecker similarityChecker = getDefaultSimilarityChecker();
-        final ClusterComparator spectrumComparator = getDefaultSpectrumComparator();
-        final double st = getSimilarityThreshold();
-        final double rt = getRetainThreshold();
-        return EngineFactories.buildClusteringEngineFactory(similarityChecker, spectrumComparator, st, rt).buildInstance();
-
+        return EngineFactories.buildClusteringEngineFactory(configuration).buildInstance();
     }
 
     /**
      * Default intensity normalizer
      */
-    private static IIntensityNormalizer defaultIntensityNormalizer = TotalIntensityNormalizer.DEFAULT;
-
     public static IIntensityNormalizer getDefaultIntensityNormalizer() {
-        return defaultIntensityNormalizer;
+        return configuration.getIntensityNormalizer();
     }
 
-    public static void setDefaultIntensityNormalizer(IIntensityNormalizer defaultIntensityNormalizer) {
-        Defaults.defaultIntensityNormalizer = defaultIntensityNormalizer;
+    public static synchronized void setDefaultIntensityNormalizer(IIntensityNormalizer defaultIntensityNormalizer) {
+        configuration = configuration.withIntensityNormalizer(defaultIntensityNormalizer);
     }
 
     /**
@@ -328,7 +289,7 @@ public class Defaults {
      * @return
      */
     public static CumulativeDistributionFunction getCumulativeDistributionFunction() {
-        return cumulativeDistributionFunction;
+        return configuration.getCumulativeDistributionFunction();
     }
 
     /**
@@ -338,18 +299,10 @@ public class Defaults {
      *
      * @param cumulativeDistributionFunction
      */
-    public static void setCumulativeDistributionFunction(CumulativeDistributionFunction cumulativeDistributionFunction) {
-        Defaults.cumulativeDistributionFunction = cumulativeDistributionFunction;
+    public static synchronized void setCumulativeDistributionFunction(CumulativeDistributionFunction cumulativeDistributionFunction) {
+        configuration = configuration.withCumulativeDistributionFunction(cumulativeDistributionFunction);
     }
 
-    /**
-     * The minimum number of peaks in a consensus spectrum before the
-     * peak filtering is used (retaining N peaks per M m/z).
-     */
-    public static final int DEFAULT_CONSENSUS_MIN_PEAKS = 50;
-
-    private static int defaultConsensusMinPeaks = DEFAULT_CONSENSUS_MIN_PEAKS;
-
     /**
      * The minimum number of peaks in a consensus spectrum before the
      * peak filtering is used (retaining N peaks per M m/z).
@@ -357,7 +310,7 @@ public class Defaults {
      * @return
      */
     public static int getDefaultConsensusMinPeaks() {
-        return defaultConsensusMinPeaks;
+        return configuration.getConsensusMinPeaks();
     }
 
     /**
@@ -365,46 +318,33 @@ public class Defaults {
      * peak filtering is used (retaining N peaks per M m/z).
      * @param defaultConsensusMinPeaks
      */
-    public static void setDefaultConsensusMinPeaks(int defaultConsensusMinPeaks) {
-        Defaults.defaultConsensusMinPeaks = defaultConsensusMinPeaks;
+    public static synchronized void setDefaultConsensusMinPeaks(int defaultConsensusMinPeaks) {
+        configuration = configuration.withConsensusMinPeaks(defaultConsensusMinPeaks);
     }
 
-    /**
-     * Indicates whether additional debug information is stored in the spectra
-     * objects during clustering (f.e. the number of comparisosn when adding a
-     * spectrum).
-     */
-    private static boolean saveDebugInformation = false;
-
     /**
      * Indicates whether additional debug information should be saved
      * @return
      */
     public static boolean isSaveDebugInformation() {
-        return saveDebugInformation;
+        return configuration.isSaveDebugInformation();
     }
 
     /**
      * Sets whether additional debug information should be saved during clustering
      * @param saveDebugInformation
      */
-    public static void setSaveDebugInformation(boolean saveDebugInformation) {
-        Defaults.saveDebugInformation = saveDebugInformation;
+    public static synchronized void setSaveDebugInformation(boolean saveDebugInformation) {
+        configuration = configuration.withSaveDebugInformation(saveDebugInformation);
     }
 
-    /**
-     * If set, the similarity score that led to the spectrum being added to
-     * the cluster is saved as a property of each spectrum
-     */
-    private static boolean saveAddingScore = false;
-
     /**
      * Indicates whether the similarity score a spectrum has when it
      * was added to a cluster is saved.
      * @return
      */
     public static boolean isSaveAddingScore() {
-        return saveAddingScore;
+        return configuration.isSaveAddingScore();
     }
 
     /**
@@ -412,32 +352,62 @@ public class Defaults {
      * added to a cluster should be saved.
      * @param saveAddingScore
      */
-    public static void setSaveAddingScore(boolean saveAddingScore) {
-        Defaults.saveAddingScore = saveAddingScore;
+    public static synchronized void setSaveAddingScore(boolean saveAddingScore) {
+        configuration = configuration.withSaveAddingScore(saveAddingScore);
+    }
+
+    /**
+     * Returns the cache of similarity scores used by the ClusteringEngine.
+     * @return The cache or null if scores are not cached
+     */
+    public static SimilarityScoreCache getScoreCache() {
+        return configuration.getScoreCache();
+    }
+
+    /**
+     * Sets the cache of similarity scores used by the ClusteringEngine.
+     * @param scoreCache The cache to use, null disables caching
+     */
+    public static synchronized void setScoreCache(SimilarityScoreCache scoreCache) {
+        configuration = configuration.withScoreCache(scoreCache);
+    }
+
+    /**
+     * Returns the executor the ClusteringEngine scores spectra with when removing none fitting spectra.
+     * @return The executor or null if the spectra are scored in the engine's thread
+     */
+    public static ExecutorService getScoringExecutor() {
+        return configuration.getScoringExecutor();
+    }
+
+    /**
+     * Sets the executor the ClusteringEngine scores spectra with when removing none fitting spectra.
+     * @param scoringExecutor The executor to use, null to score in the engine's thread
+     */
+    public static synchronized void setScoringExecutor(ExecutorService scoringExecutor) {
+        configuration = configuration.withScoringExecutor(scoringExecutor);
+    }
+
+    /**
+     * Returns the generator creating the ids of clusters that were not given an id.
+     * @return !null generator
+     */
+    public static IClusterIdGenerator getClusterIdGenerator() {
+        return configuration.getClusterIdGenerator();
+    }
+
+    /**
+     * Sets the generator creating the ids of clusters that were not given an id.
+     * @param clusterIdGenerator The generator to use, must not be null
+     */
+    public static synchronized void setClusterIdGenerator(IClusterIdGenerator clusterIdGenerator) {
+        configuration = configuration.withClusterIdGenerator(clusterIdGenerator);
     }
 
     /**
      * Reset all values to their defaults
      */
-    public static void resetDefaults() {
-        defaultComparisonPeakFilter = new FractionTICPeakFunction(0.5F, 20);
-        defaultConsensusMinPeaks = DEFAULT_CONSENSUS_MIN_PEAKS;
-        defaultIntensityNormalizer = TotalIntensityNormalizer.DEFAULT;
-        defaultPeakFilter = generateDefaultPeakFilter();
-        defaultPeakFilterIsOverwritten = false;
-        defaultPrecursorIonTolerance = DEFAULT_PRECURSOR_ION_TOLERANCE;
-        defaultQualityScorer = new SignalToNoiseChecker();
-        defaultSimilarityChecker = new CombinedFisherIntensityTest((float) getFragmentIonTolerance());
-        defaultSpectrumComparator = ClusterComparator.INSTANCE;
-        fragmentIonTolerance = DEFAULT_FRAGMENT_ION_TOLERANCE;
-        largeBinningRegion = DEFAULT_LARGE_BINNING_REGION;
-        majorPeakCount = DEFAULT_MAJOR_PEAKS;
-        numberOfComparisonAssessor = DEFAULT_NUMBER_COMPARISON_ASSESSOR;
-        numberComparedPeaks = DEFAULT_NUMBER_COMPARED_PEAKS;
-        numberReclusteringPasses = DEFAULT_NUMBER_RECLUSTERING_PASSES;
-        retainThreshold = DEFAULT_RETAIN_THRESHOLD;
-        saveAddingScore = false;
-        saveDebugInformation = false;
-        similarityThreshold = DEFAULT_SIMILARITY_THRESHOLD;
+    public static synchronized void resetDefaults() {
+        configuration = ClusteringConfiguration.createDefault();
     }
 }
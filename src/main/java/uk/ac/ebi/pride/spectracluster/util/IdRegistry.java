@@ -0,0 +1,91 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry that maps spectrum and cluster ids to dense int indices.
+ * Clusters only store these indices and resolve the ids when they are
+ * written. Thereby, every id string is only kept once and set operations
+ * on ids do not need to hash strings.
+ *
+ * Every ClusteringConfiguration owns one registry which is shared by its
+ * copies and used by all clusters created with it. Registered ids are kept
+ * as long as the registry is referenced, i.e. until the configuration and
+ * all clusters of the run are no longer used. Every
+ * GreedyIncrementalClusteringEngine and every Defaults.resetDefaults call
+ * starts with an empty registry, ClusteringConfiguration.withIdRegistry
+ * scopes a registry to any other run.
+ *
+ * Indices are only meaningful within one registry and are never reused.
+ * A null id always has the index NULL_ID.
+ */
+public final class IdRegistry {
+    public static final int UNKNOWN_ID = -1;
+    public static final int NULL_ID = 0;
+
+    private final ConcurrentHashMap<String, Integer> indices = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[1024];
+    private int size = NULL_ID + 1;
+
+    /**
+     * Returns the index of the id and registers it if necessary.
+     *
+     * @param id The id to register
+     * @return The id's index
+     */
+    public int intern(String id) {
+        if (id == null)
+            return NULL_ID;
+
+        Integer index = indices.get(id);
+        if (index != null)
+            return index;
+
+        synchronized (this) {
+            index = indices.get(id);
+            if (index != null)
+                return index;
+
+            String[] currentIds = ids;
+            if (size == currentIds.length) {
+                currentIds = Arrays.copyOf(currentIds, currentIds.length * 2);
+            }
+            currentIds[size] = id;
+            ids = currentIds;
+
+            // the index is only published once its id is stored
+            indices.put(id, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the index of an id without registering it.
+     *
+     * @param id The id to look up
+     * @return The id's index or UNKNOWN_ID if the id was never registered
+     */
+    public int getIndex(String id) {
+        if (id == null)
+            return NULL_ID;
+
+        Integer index = indices.get(id);
+        return (index != null) ? index : UNKNOWN_ID;
+    }
+
+    /**
+     * @param index An index returned by intern
+     * @return The registered id
+     */
+    public String resolve(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return Number of registered ids, including the null id
+     */
+    public int size() {
+        return indices.size() + 1;
+    }
+}
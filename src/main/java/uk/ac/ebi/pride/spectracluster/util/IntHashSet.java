@@ -0,0 +1,136 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints (f.e. indices from the IdRegistry) that
+ * does not box its values. Values are stored using open addressing
+ * with linear probing.
+ *
+ * Instances are not thread-safe.
+ */
+public final class IntHashSet {
+    private static final int EMPTY = -1;
+
+    private int[] values;
+    private int size;
+
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of values that can be added without resizing
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 < expectedSize * 4)
+            capacity *= 2;
+
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+    }
+
+    public IntHashSet(IntHashSet other) {
+        this.values = other.values.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * @param value The value to add, must not be negative
+     * @return true if the value was not part of the set before
+     */
+    public boolean add(int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Only non-negative values are supported");
+
+        int slot = findSlot(values, value);
+        if (values[slot] == value)
+            return false;
+
+        values[slot] = value;
+        size++;
+
+        // keep the load factor below 0.75
+        if (size * 4 > values.length * 3)
+            resize(values.length * 2);
+
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return value >= 0 && values[findSlot(values, value)] == value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param other Another set
+     * @return Number of values that are part of both sets
+     */
+    public int countShared(IntHashSet other) {
+        // iterate over the smaller set
+        IntHashSet smaller = (size <= other.size) ? this : other;
+        IntHashSet larger = (smaller == this) ? other : this;
+
+        int shared = 0;
+        for (int value : smaller.values) {
+            if (value != EMPTY && larger.contains(value))
+                shared++;
+        }
+
+        return shared;
+    }
+
+    /**
+     * @return The values in no particular order
+     */
+    public int[] toArray() {
+        int[] array = new int[size];
+        int index = 0;
+        for (int value : values) {
+            if (value != EMPTY)
+                array[index++] = value;
+        }
+
+        return array;
+    }
+
+    public void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] newValues = new int[capacity];
+        Arrays.fill(newValues, EMPTY);
+
+        for (int value : values) {
+            if (value != EMPTY)
+                newValues[findSlot(newValues, value)] = value;
+        }
+
+        values = newValues;
+    }
+
+    /**
+     * @return The slot holding the value or the empty slot it belongs to
+     */
+    private static int findSlot(int[] table, int value) {
+        int mask = table.length - 1;
+        // spread the dense indices over the table
+        int hash = value * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        while (table[slot] != EMPTY && table[slot] != value)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+}
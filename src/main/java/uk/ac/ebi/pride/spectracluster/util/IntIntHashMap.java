@@ -0,0 +1,187 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative int keys (f.e. indices from the IdRegistry) to
+ * int values that does not box its keys or values. Entries are stored
+ * using open addressing with linear probing, removed entries are filled
+ * by shifting the following entries back.
+ *
+ * Instances are not thread-safe.
+ */
+public final class IntIntHashMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of entries that can be added without resizing
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 < expectedSize * 4)
+            capacity *= 2;
+
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+    }
+
+    public IntIntHashMap(IntIntHashMap other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * @param key          The key to look up
+     * @param defaultValue Value to return if the key is not part of the map
+     * @return The key's value or defaultValue
+     */
+    public int get(int key, int defaultValue) {
+        if (key < 0)
+            return defaultValue;
+
+        int slot = findSlot(keys, key);
+        return (keys[slot] == key) ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return key >= 0 && keys[findSlot(keys, key)] == key;
+    }
+
+    /**
+     * @param key   The key, must not be negative
+     * @param value The new value
+     */
+    public void put(int key, int value) {
+        int slot = getOrCreateSlot(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Adds delta to the key's value. Keys that are not part of the map
+     * start with the value 0.
+     *
+     * @param key   The key, must not be negative
+     * @param delta The value to add
+     * @return The key's new value
+     */
+    public int addTo(int key, int delta) {
+        int slot = getOrCreateSlot(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * @param key The key to remove
+     * @return true if the key was part of the map
+     */
+    public boolean remove(int key) {
+        if (key < 0)
+            return false;
+
+        int slot = findSlot(keys, key);
+        if (keys[slot] != key)
+            return false;
+
+        // move following entries of the probe sequence into the gap
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = getHomeSlot(keys[next], mask);
+            // the entry may only move if the gap lies between its home slot and its slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @return The slot of the key, the key is added with the value 0 if necessary
+     */
+    private int getOrCreateSlot(int key) {
+        if (key < 0)
+            throw new IllegalArgumentException("Only non-negative keys are supported");
+
+        int slot = findSlot(keys, key);
+        if (keys[slot] == key)
+            return slot;
+
+        keys[slot] = key;
+        values[slot] = 0;
+        size++;
+
+        // keep the load factor below 0.75
+        if (size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+            slot = findSlot(keys, key);
+        }
+
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] newKeys = new int[capacity];
+        Arrays.fill(newKeys, EMPTY);
+        int[] newValues = new int[capacity];
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                int slot = findSlot(newKeys, keys[i]);
+                newKeys[slot] = keys[i];
+                newValues[slot] = values[i];
+            }
+        }
+
+        keys = newKeys;
+        values = newValues;
+    }
+
+    /**
+     * @return The slot holding the key or the empty slot it belongs to
+     */
+    private static int findSlot(int[] table, int key) {
+        int mask = table.length - 1;
+        int slot = getHomeSlot(key, mask);
+
+        while (table[slot] != EMPTY && table[slot] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    private static int getHomeSlot(int key, int mask) {
+        // spread the dense indices over the table
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -124,4 +124,141 @@ public class PeakUtilities {
         peaks.sort(PeakIntensityComparator.INSTANCE);
         return peaks;
     }
+
+    /**
+     * Partially orders the passed buffer of peak indices so that the n indices referring
+     * to the highest intensities occupy the positions from to from + n (in no particular
+     * order). Ties are resolved in favour of the lower index which is the same result as
+     * a stable sort using the PeakIntensityComparator. Runs in expected linear time.
+     *
+     * @param intensities intensities addressed by the indices
+     * @param indices     buffer of indices into intensities - reordered in place
+     * @param from        first position to consider (inclusive)
+     * @param to          last position to consider (exclusive)
+     * @param n           number of highest peaks to select
+     */
+    public static void selectHighestIntensities(float[] intensities, int[] indices, int from, int to, int n) {
+        // nothing to select
+        if (n <= 0 || n >= to - from)
+            return;
+
+        int left = from;
+        int right = to - 1;
+        final int kth = from + n - 1; // final position of the n-th highest peak
+
+        while (left < right) {
+            int pivotPosition = partitionByIntensity(intensities, indices, left, right, left + (right - left) / 2);
+
+            if (pivotPosition == kth)
+                return;
+            if (pivotPosition < kth)
+                left = pivotPosition + 1;
+            else
+                right = pivotPosition - 1;
+        }
+    }
+
+    /**
+     * Finds the k-th smallest value (0-based) using quickselect. The values
+     * are partially reordered in place so that all values before position
+     * k are smaller or equal to the returned value.
+     *
+     * @param values values to search - reordered in place
+     * @param k      the 0-based rank of the value to find
+     * @return the k-th smallest value
+     */
+    public static float selectKthSmallest(float[] values, int k) {
+        int left = 0;
+        int right = values.length - 1;
+
+        while (left < right) {
+            // partition around the middle value
+            final float pivot = values[left + (right - left) / 2];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    float tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                break;
+        }
+
+        return values[k];
+    }
+
+    /**
+     * Sorts the passed buffer of peak indices by decreasing intensity. Ties are resolved
+     * in favour of the lower index.
+     *
+     * @param intensities intensities addressed by the indices
+     * @param indices     buffer of indices into intensities - sorted in place
+     * @param from        first position to sort (inclusive)
+     * @param to          last position to sort (exclusive)
+     */
+    public static void sortByIntensity(float[] intensities, int[] indices, int from, int to) {
+        int left = from;
+        int right = to - 1;
+
+        while (left < right) {
+            int pivotPosition = partitionByIntensity(intensities, indices, left, right, left + (right - left) / 2);
+
+            // recurse into the smaller part to limit the stack depth
+            if (pivotPosition - left < right - pivotPosition) {
+                sortByIntensity(intensities, indices, left, pivotPosition);
+                left = pivotPosition + 1;
+            } else {
+                sortByIntensity(intensities, indices, pivotPosition + 1, right + 1);
+                right = pivotPosition - 1;
+            }
+        }
+    }
+
+    /**
+     * Moves all indices referring to a higher intensity than the pivot to the left
+     *
+     * @return the final position of the pivot
+     */
+    private static int partitionByIntensity(float[] intensities, int[] indices, int left, int right, int pivotPosition) {
+        final int pivot = indices[pivotPosition];
+        swap(indices, pivotPosition, right);
+
+        int storePosition = left;
+        for (int i = left; i < right; i++) {
+            if (isMoreIntense(intensities, indices[i], pivot)) {
+                swap(indices, i, storePosition);
+                storePosition++;
+            }
+        }
+        swap(indices, storePosition, right);
+
+        return storePosition;
+    }
+
+    private static boolean isMoreIntense(float[] intensities, int index1, int index2) {
+        if (intensities[index1] != intensities[index2])
+            return intensities[index1] > intensities[index2];
+
+        return index1 < index2;
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
 }
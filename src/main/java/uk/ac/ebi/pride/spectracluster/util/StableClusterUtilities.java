@@ -1,7 +1,5 @@
 package uk.ac.ebi.pride.spectracluster.util;
 
-import java.util.UUID;
-
 /**
  * Utility methods for StableClustering
  *
@@ -43,10 +41,24 @@ public final class StableClusterUtilities {
     }
 
     public static String getStableClusterId() {
-        return STABLE_CLUSTER_PREFIX + UUID.randomUUID().toString();
+        return getStableClusterId(Defaults.getConfiguration());
+    }
+
+    /**
+     * @param configuration The configuration whose id generator is used
+     */
+    public static String getStableClusterId(ClusteringConfiguration configuration) {
+        return STABLE_CLUSTER_PREFIX + configuration.getClusterIdGenerator().nextId();
     }
 
     public static String getSemiStableClusterId() {
-        return STABLE_CLUSTER_PREFIX + UUID.randomUUID().toString();
+        return getSemiStableClusterId(Defaults.getConfiguration());
+    }
+
+    /**
+     * @param configuration The configuration whose id generator is used
+     */
+    public static String getSemiStableClusterId(ClusteringConfiguration configuration) {
+        return STABLE_CLUSTER_PREFIX + configuration.getClusterIdGenerator().nextId();
     }
 }
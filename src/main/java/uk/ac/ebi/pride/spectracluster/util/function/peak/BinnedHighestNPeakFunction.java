@@ -3,11 +3,14 @@ package uk.ac.ebi.pride.spectracluster.util.function.peak;
 import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
 import uk.ac.ebi.pride.spectracluster.util.MZIntensityUtilities;
+import uk.ac.ebi.pride.spectracluster.util.PeakUtilities;
 import uk.ac.ebi.pride.spectracluster.util.comparator.PeakIntensityComparator;
 import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Return the highest peaks in bin size bins using overlapping bins -
@@ -27,6 +30,11 @@ public class BinnedHighestNPeakFunction implements IFunction<List<IPeak>, List<I
 
     public static final Comparator<IPeak> INTENSITY_COMPARATOR = PeakIntensityComparator.INSTANCE;
 
+    /**
+     * Buffers reused by all calls on the same thread - functions are shared between threads
+     */
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
     /**
      * Number of peaks per bin
      */
@@ -69,30 +77,75 @@ public class BinnedHighestNPeakFunction implements IFunction<List<IPeak>, List<I
 
     @Override
     public List<IPeak> apply(List<IPeak> originalPeaks) {
-        Set<IPeak> retained = new HashSet<>();
+        final int nPeaks = originalPeaks.size();
+
+        // primitive buffers shared by all bins
+        Buffers buffers = BUFFERS.get();
+        buffers.ensureCapacity(nPeaks);
+        float[] intensities = buffers.intensities;
+        for (int i = 0; i < nPeaks; i++)
+            intensities[i] = originalPeaks.get(i).getIntensity();
+        int[] binPeaks = buffers.binPeaks;
+        // overlapping bins may retain the same peak twice
+        BitSet retained = buffers.retained;
+
         int startPeak = 0;
         for (double binBottom = MINIMUM_BINNED_MZ; binBottom < MAXIMUM_BINNED_MZ - binSize; binBottom += (binSize - binOverlap)) {
-            startPeak = handleBin(originalPeaks, startPeak, retained, binBottom);
+            startPeak = handleBin(originalPeaks, intensities, binPeaks, startPeak, retained, binBottom);
             if (startPeak > originalPeaks.size())
                 break;
         }
 
-        // make a sorted list
-        List<IPeak> ret = retained.stream().map(Peak::new).collect(Collectors.toList());
+        // keep the original m/z order
+        List<IPeak> ret = new ArrayList<>(retained.cardinality());
+        for (int index = retained.nextSetBit(0); index >= 0; index = retained.nextSetBit(index + 1)) {
+            IPeak peak = originalPeaks.get(index);
+
+            if (isRetainedTwice(originalPeaks, retained, index))
+                continue;
+
+            // peaks are immutable - only foreign implementations need to be copied
+            ret.add(peak instanceof Peak ? peak : new Peak(peak));
+        }
 
         return ret;
     }
 
     /**
-     * we generate
+     * Tests whether an identical peak (same m/z and intensity) was already retained
+     * at a lower index.
      *
-     * @param allpeaks
-     * @param startpeak
-     * @param retained
-     * @param binBottom
-     * @return
+     * @param allpeaks all peaks sorted by m/z
+     * @param retained the indices of the retained peaks
+     * @param index    index of the peak to test
+     * @return true if the peak is a duplicate
      */
-    protected int handleBin(List<IPeak> allpeaks, int startpeak, Set<IPeak> retained, double binBottom) {
+    private boolean isRetainedTwice(List<IPeak> allpeaks, BitSet retained, int index) {
+        IPeak peak = allpeaks.get(index);
+
+        for (int previous = retained.previousSetBit(index - 1); previous >= 0; previous = retained.previousSetBit(previous - 1)) {
+            IPeak previousPeak = allpeaks.get(previous);
+            if (previousPeak.getMz() != peak.getMz())
+                return false;
+            if (previousPeak.equals(peak))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Retains the maxPeaks highest peaks of the bin starting at binBottom
+     *
+     * @param allpeaks    all peaks sorted by m/z
+     * @param intensities the peaks' intensities
+     * @param binPeaks    buffer to hold the indices of the current bin's peaks
+     * @param startpeak   index of the first peak that may belong to the bin
+     * @param retained    indices of all retained peaks
+     * @param binBottom   lowest m/z of the bin
+     * @return index of the first peak that may belong to the next bin
+     */
+    protected int handleBin(List<IPeak> allpeaks, float[] intensities, int[] binPeaks, int startpeak, BitSet retained, double binBottom) {
         int startIndexNextBin = startpeak; // the index of the next bin's peak
         double binEnd = binBottom + binSize; // end of this bin
         double nextBinStartMZ = binEnd - binOverlap; // start of next bin
@@ -100,7 +153,7 @@ public class BinnedHighestNPeakFunction implements IFunction<List<IPeak>, List<I
         // get all peaks within the current bin
         int index = startpeak;
         IPeak currentPeak = null;
-        List<IPeak> byIntensity = new ArrayList<>();
+        int nBinPeaks = 0;
 
         for (; index < allpeaks.size(); index++) {
             IPeak nextPeak = allpeaks.get(index);
@@ -127,18 +180,14 @@ public class BinnedHighestNPeakFunction implements IFunction<List<IPeak>, List<I
             if (currentPeakMz > binEnd)
                 break;
 
-            byIntensity.add(currentPeak); // accumulate
+            binPeaks[nBinPeaks++] = index; // accumulate
         }
 
-        // now sort highest intensity first
-        byIntensity.sort(INTENSITY_COMPARATOR);
-        // add highest maxPeaks to retained
-        int numberAdded = 0;
-        for (IPeak iPeak : byIntensity) {
-            retained.add(iPeak);
-
-            if (++numberAdded >= maxPeaks)
-                break;
+        // move the highest maxPeaks to the front and retain them
+        PeakUtilities.selectHighestIntensities(intensities, binPeaks, 0, nBinPeaks, maxPeaks);
+        int numberRetained = Math.min(nBinPeaks, maxPeaks);
+        for (int i = 0; i < numberRetained; i++) {
+            retained.set(binPeaks[i]);
         }
 
         // finished all peaks - lets quit;
@@ -148,4 +197,22 @@ public class BinnedHighestNPeakFunction implements IFunction<List<IPeak>, List<I
 
         return startIndexNextBin;
     }
+
+    /**
+     * Per thread working buffers, only grown if a spectrum has more peaks
+     * than any spectrum before.
+     */
+    private static class Buffers {
+        private float[] intensities = new float[0];
+        private int[] binPeaks = new int[0];
+        private final BitSet retained = new BitSet();
+
+        private void ensureCapacity(int nPeaks) {
+            if (intensities.length < nPeaks) {
+                intensities = new float[nPeaks];
+                binPeaks = new int[nPeaks];
+            }
+            retained.clear();
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.PeakUtilities;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies a chain of spectrum functions like Functions.join but only
+ * creates a single new spectrum for every run of fusable stages.
+ *
+ * All IPeakFilterFunctions of such a run are evaluated in one pass over
+ * the peaks and a following HighestNSpectrumPeaksFunction is applied as
+ * a selection on the kept peaks. Any other function is applied as is
+ * on the result of the previous stages.
+ */
+public final class FusedPeakFilterFunction implements IFunction<ISpectrum, ISpectrum> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<IFunction<ISpectrum, ISpectrum>> stages = new ArrayList<>();
+
+    public FusedPeakFilterFunction(List<? extends IFunction<ISpectrum, ISpectrum>> functions) {
+        for (IFunction<ISpectrum, ISpectrum> function : functions) {
+            addStage(function);
+        }
+    }
+
+    @SafeVarargs
+    public FusedPeakFilterFunction(IFunction<ISpectrum, ISpectrum>... functions) {
+        for (IFunction<ISpectrum, ISpectrum> function : functions) {
+            addStage(function);
+        }
+    }
+
+    private void addStage(IFunction<ISpectrum, ISpectrum> function) {
+        // nested pipelines are flattened to fuse across them
+        if (function instanceof FusedPeakFilterFunction)
+            stages.addAll(((FusedPeakFilterFunction) function).stages);
+        else
+            stages.add(function);
+    }
+
+    /**
+     * @return the stages in the order they are applied
+     */
+    public List<IFunction<ISpectrum, ISpectrum>> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    @Override
+    public ISpectrum apply(ISpectrum spectrum) {
+        ISpectrum result = spectrum;
+        int stage = 0;
+
+        while (stage < stages.size() && result != null) {
+            IFunction<ISpectrum, ISpectrum> function = stages.get(stage);
+
+            if (!isFusable(function)) {
+                result = function.apply(result);
+                stage++;
+                continue;
+            }
+
+            // collect all peak filters followed by at most one selection
+            List<IPeakFilterFunction.PeakDecision> decisions = new ArrayList<>();
+            boolean wasApplied = false;
+            while (stage < stages.size() && stages.get(stage) instanceof IPeakFilterFunction) {
+                IPeakFilterFunction.PeakDecision decision = ((IPeakFilterFunction) stages.get(stage)).getPeakDecision(result);
+                if (decision != null)
+                    decisions.add(decision);
+                wasApplied |= decision != null;
+                stage++;
+            }
+
+            int maxPeaks = Integer.MAX_VALUE;
+            if (stage < stages.size() && stages.get(stage) instanceof HighestNSpectrumPeaksFunction) {
+                maxPeaks = ((HighestNSpectrumPeaksFunction) stages.get(stage)).getMaxPeaks();
+                wasApplied = true;
+                stage++;
+            }
+
+            if (wasApplied)
+                result = filterPeaks(result, decisions, maxPeaks);
+        }
+
+        return result;
+    }
+
+    private static boolean isFusable(IFunction<ISpectrum, ISpectrum> function) {
+        return function instanceof IPeakFilterFunction || function instanceof HighestNSpectrumPeaksFunction;
+    }
+
+    /**
+     * Filters the spectrum's peaks using a single peak filter
+     *
+     * @param spectrum The spectrum to filter
+     * @param decision The filter's decision, null to leave the spectrum unchanged
+     * @return The filtered spectrum or the unchanged spectrum if decision is null
+     */
+    public static ISpectrum filterPeaks(ISpectrum spectrum, IPeakFilterFunction.PeakDecision decision) {
+        if (decision == null)
+            return spectrum;
+
+        return filterPeaks(spectrum, Arrays.asList(decision), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Keeps all peaks accepted by all decisions and retains the maxPeaks
+     * most intense ones of them.
+     *
+     * @param spectrum  The spectrum to filter
+     * @param decisions The decisions of all peak filters
+     * @param maxPeaks  The maximum number of peaks to retain
+     * @return A new spectrum holding the kept peaks
+     */
+    protected static ISpectrum filterPeaks(ISpectrum spectrum, List<IPeakFilterFunction.PeakDecision> decisions, int maxPeaks) {
+        List<IPeak> peaks = spectrum.getPeaks();
+        final int nPeaks = peaks.size();
+
+        float[] intensities = new float[nPeaks];
+        int[] keptPeaks = new int[nPeaks];
+        int nKept = 0;
+
+        for (int i = 0; i < nPeaks; i++) {
+            IPeak peak = peaks.get(i);
+            final float mz = peak.getMz();
+            final float intensity = peak.getIntensity();
+            intensities[i] = intensity;
+
+            boolean keep = true;
+            //noinspection ForLoopReplaceableByForEach
+            for (int d = 0; d < decisions.size() && keep; d++) {
+                keep = decisions.get(d).keepPeak(mz, intensity);
+            }
+
+            if (keep)
+                keptPeaks[nKept++] = i;
+        }
+
+        if (nKept > maxPeaks) {
+            PeakUtilities.selectHighestIntensities(intensities, keptPeaks, 0, nKept, maxPeaks);
+            nKept = maxPeaks;
+            // back to m/z order
+            Arrays.sort(keptPeaks, 0, nKept);
+        }
+
+        List<IPeak> filteredPeaks = new ArrayList<>(nKept);
+        for (int i = 0; i < nKept; i++) {
+            filteredPeaks.add(peaks.get(keptPeaks[i]));
+        }
+
+        return new Spectrum(spectrum, filteredPeaks, true);
+    }
+}
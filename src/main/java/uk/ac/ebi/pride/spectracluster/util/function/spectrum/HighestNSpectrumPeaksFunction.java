@@ -13,11 +13,17 @@ import java.util.List;
  */
 public class HighestNSpectrumPeaksFunction implements IFunction<ISpectrum, ISpectrum> {
     public final IFunction<List<IPeak>, List<IPeak>> peakFilter;
+    private final int maxPeaks;
 
     public HighestNSpectrumPeaksFunction(int maxPeaks) {
+        this.maxPeaks = maxPeaks;
         peakFilter = new HighestNPeakFunction(maxPeaks);
     }
 
+    public int getMaxPeaks() {
+        return maxPeaks;
+    }
+
     @Override
     public ISpectrum apply(ISpectrum o) {
         return new Spectrum(o, peakFilter.apply(o.getPeaks()));
@@ -0,0 +1,30 @@
+package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+
+/**
+ * Spectrum functions that only remove peaks based on a decision
+ * made for every peak individually. Such functions can be fused
+ * into a single pass over the peaks by the FusedPeakFilterFunction.
+ */
+public interface IPeakFilterFunction extends IFunction<ISpectrum, ISpectrum> {
+    /**
+     * Returns the decision which of the passed spectrum's peaks are kept.
+     * Peaks are always passed in increasing m/z order so that decisions
+     * may keep a cursor. The decision must only depend on the spectrum's
+     * precursor properties since the fused filters all receive the same
+     * unfiltered spectrum.
+     *
+     * @param spectrum The spectrum whose peaks will be filtered
+     * @return The decision or null if the spectrum is to be returned unchanged
+     */
+    PeakDecision getPeakDecision(ISpectrum spectrum);
+
+    /**
+     * Decides whether a single peak is kept
+     */
+    interface PeakDecision {
+        boolean keepPeak(float mz, float intensity);
+    }
+}
@@ -0,0 +1,187 @@
+package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
+
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.util.Arrays;
+
+/**
+ * Removes all peaks that lie within a list of exclusion windows
+ * (m/z +/- tolerance) such as reporter or immonium ions.
+ *
+ * The windows are merged and sorted when the function is created. Since
+ * peaks are sorted by m/z, every spectrum is filtered in a single sweep
+ * over peaks and windows.
+ */
+public class MzExclusionListFunction implements IPeakFilterFunction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * iTRAQ reporter ions. 305.1 for iTRAQ 9 was explicitly not added yet.
+     */
+    private static final float[] ITRAQ_REPORTER_MZ = {113.1F, 114.1F, 115.1F, 116.1F, 117.1F, 118.1F, 119.1F, 121.1F};
+
+    /**
+     * TMT 10 plex reporter ions. 230.1697 represents the complete TMT tag
+     */
+    private static final float[] TMT_REPORTER_MZ = {126.127725F, 127.12476F, 127.131079F, 128.128114F, 128.134433F, 129.131468F,
+            129.137787F, 130.134822F, 130.141141F, 131.138176F, 230.1697f};
+
+    /**
+     * Immonium ions
+     * This list of the most commonly observed
+     * immonium ions is taken from this
+     * page (accessed 23.02.2017):
+     * http://www.ionsource.com/Card/immon/immon.htm
+     * http://www.ionsource.com/Card/immon/more.htm
+     */
+    private static final float[] IMMONIUM_ION_MZ = {
+            60.04494F, // Serine
+            70.06568F, // Proline
+            72.08133F, // Valine
+            74.06059F, // Threonine
+            86.09698F, // Leucine / Isoleucine
+            87.05584F, // Asparagine
+            88.03986F, // Aspartic acid
+            101.0715F, // Glutamine
+            102.0555F, // Glutamic acid
+            104.0534F, // Methionine
+            110.0718F, // Histidine
+            120.0483F, // Ox Methionine
+            120.0813F, // Phenylalanine
+            133.0436F, // Carbamidomethylated C
+            134.0276F, // Carboxymethylated C
+            136.0762F, // Tyrosine
+            147.0772F, // C + Acrylamide
+            159.0922F, // Tryptophane
+    };
+
+    /**
+     * Lower bounds of the merged windows in increasing order
+     */
+    private final float[] windowStart;
+    /**
+     * Upper bounds of the merged windows (inclusive)
+     */
+    private final float[] windowEnd;
+
+    /**
+     * Creates a new exclusion list using the same tolerance for all m/z values
+     *
+     * @param excludedMz The m/z values to exclude
+     * @param tolerance  The tolerance around every m/z value
+     */
+    public MzExclusionListFunction(float[] excludedMz, float tolerance) {
+        this(excludedMz, filledArray(excludedMz.length, tolerance));
+    }
+
+    /**
+     * Creates a new exclusion list
+     *
+     * @param excludedMz The m/z values to exclude
+     * @param tolerances The tolerance for every m/z value
+     */
+    public MzExclusionListFunction(float[] excludedMz, float[] tolerances) {
+        if (excludedMz.length != tolerances.length)
+            throw new IllegalArgumentException("Every excluded m/z value requires a tolerance");
+
+        // sort the windows by their start
+        float[][] windows = new float[excludedMz.length][];
+        for (int i = 0; i < excludedMz.length; i++) {
+            windows[i] = new float[]{excludedMz[i] - tolerances[i], excludedMz[i] + tolerances[i]};
+        }
+        Arrays.sort(windows, (window1, window2) -> Float.compare(window1[0], window2[0]));
+
+        // merge overlapping windows
+        float[] starts = new float[windows.length];
+        float[] ends = new float[windows.length];
+        int nWindows = 0;
+        for (float[] window : windows) {
+            if (nWindows > 0 && window[0] <= ends[nWindows - 1]) {
+                ends[nWindows - 1] = Math.max(ends[nWindows - 1], window[1]);
+                continue;
+            }
+            starts[nWindows] = window[0];
+            ends[nWindows] = window[1];
+            nWindows++;
+        }
+
+        windowStart = Arrays.copyOf(starts, nWindows);
+        windowEnd = Arrays.copyOf(ends, nWindows);
+    }
+
+    /**
+     * @return a copy of the iTRAQ reporter ion m/z values
+     */
+    public static float[] getItraqReporterMz() {
+        return ITRAQ_REPORTER_MZ.clone();
+    }
+
+    /**
+     * @return a copy of the TMT reporter ion m/z values
+     */
+    public static float[] getTmtReporterMz() {
+        return TMT_REPORTER_MZ.clone();
+    }
+
+    /**
+     * @return a copy of the immonium ion m/z values
+     */
+    public static float[] getImmoniumIonMz() {
+        return IMMONIUM_ION_MZ.clone();
+    }
+
+    /**
+     * Concatenates several lists of m/z values, f.e. to exclude iTRAQ and TMT reporter ions.
+     *
+     * @param mzLists The lists to concatenate
+     * @return A new array holding all m/z values
+     */
+    public static float[] concat(float[]... mzLists) {
+        int length = 0;
+        for (float[] mzList : mzLists)
+            length += mzList.length;
+
+        float[] ret = new float[length];
+        int position = 0;
+        for (float[] mzList : mzLists) {
+            System.arraycopy(mzList, 0, ret, position, mzList.length);
+            position += mzList.length;
+        }
+
+        return ret;
+    }
+
+    private static float[] filledArray(int length, float value) {
+        float[] ret = new float[length];
+        Arrays.fill(ret, value);
+        return ret;
+    }
+
+    /**
+     * @return the number of windows after merging overlapping ones
+     */
+    public int getNumberOfWindows() {
+        return windowStart.length;
+    }
+
+    @Override
+    public ISpectrum apply(ISpectrum o) {
+        return FusedPeakFilterFunction.filterPeaks(o, getPeakDecision(o));
+    }
+
+    @Override
+    public PeakDecision getPeakDecision(ISpectrum o) {
+        return new PeakDecision() {
+            // the first window that may still contain peaks
+            private int currentWindow = 0;
+
+            @Override
+            public boolean keepPeak(float mz, float intensity) {
+                while (currentWindow < windowEnd.length && windowEnd[currentWindow] < mz)
+                    currentWindow++;
+
+                return !(currentWindow < windowStart.length && windowStart[currentWindow] <= mz);
+            }
+        };
+    }
+}
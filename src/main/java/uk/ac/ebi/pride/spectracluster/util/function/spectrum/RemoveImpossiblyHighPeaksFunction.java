@@ -1,13 +1,7 @@
 package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
 
-import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Masses;
-import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
-import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
-
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * This filter removes all peaks that are
@@ -19,7 +13,7 @@ import java.util.stream.Collectors;
  *
  * Created by jg on 13.05.15.
  */
-public class RemoveImpossiblyHighPeaksFunction implements IFunction<ISpectrum, ISpectrum> {
+public class RemoveImpossiblyHighPeaksFunction implements IPeakFilterFunction {
 
     public final static float DEFAULT_TOLERANCE = 3.0F;
     public final float tolerance;
@@ -34,18 +28,19 @@ public class RemoveImpossiblyHighPeaksFunction implements IFunction<ISpectrum, I
 
     @Override
     public ISpectrum apply(ISpectrum o) {
+        return FusedPeakFilterFunction.filterPeaks(o, getPeakDecision(o));
+    }
+
+    @Override
+    public PeakDecision getPeakDecision(ISpectrum o) {
         // this filter only works on spectra where the charge is known
         if (o.getPrecursorCharge() < 1) {
-            return(o);
+            return null;
         }
 
         final float monoisotopicMass = Masses.getMonoisotopicMass(o.getPrecursorMz(), o.getPrecursorCharge());
         final float maxMass = monoisotopicMass + Masses.PROTON + tolerance;
 
-        List<IPeak> filteredPeaks = o.getPeaks().stream()
-                .filter(peak -> !(peak.getMz() > maxMass))
-                .collect(Collectors.toList());
-
-        return new Spectrum(o, filteredPeaks, true);
+        return (mz, intensity) -> !(mz > maxMass);
     }
 }
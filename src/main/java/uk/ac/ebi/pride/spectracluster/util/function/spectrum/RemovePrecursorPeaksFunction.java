@@ -1,13 +1,7 @@
 package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
 
-import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.spectrum.Masses;
-import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
-import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * This filter removes all precursor associated peaks
@@ -17,7 +11,7 @@ import java.util.List;
  *
  * Created by jg on 13.05.15.
  */
-public class RemovePrecursorPeaksFunction implements IFunction<ISpectrum, ISpectrum> {
+public class RemovePrecursorPeaksFunction implements IPeakFilterFunction {
     private final float fragmentIonTolerance;
 
     public RemovePrecursorPeaksFunction(float fragmentIonTolerance) {
@@ -26,9 +20,14 @@ public class RemovePrecursorPeaksFunction implements IFunction<ISpectrum, ISpect
 
     @Override
     public ISpectrum apply(ISpectrum o) {
+        return FusedPeakFilterFunction.filterPeaks(o, getPeakDecision(o));
+    }
+
+    @Override
+    public PeakDecision getPeakDecision(ISpectrum o) {
         // this filter only works if the spectrum's charge is known
         if (o.getPrecursorCharge() < 1) {
-            return(o);
+            return null;
         }
 
         // calculate m/z of neutral losses
@@ -56,32 +55,14 @@ public class RemovePrecursorPeaksFunction implements IFunction<ISpectrum, ISpect
         final float minPrecursorC2 = o.getPrecursorMz() + (Masses.C13_DIFF * 2) / floatCharge - fragmentIonTolerance;
         final float maxPrecursorC2 = o.getPrecursorMz() + (Masses.C13_DIFF * 2) / floatCharge + fragmentIonTolerance;
 
-        // filter the peak list
-        List<IPeak> filteredPeakList = new ArrayList<>();
-
-        for (IPeak peak : o.getPeaks()) {
-            final float peakMz = peak.getMz();
-
-            // ignore any peak that could be a neutral loss
-            if (isWithinRange(minWaterLoss, maxWaterLoss, peakMz))
-                continue;
-            if (isWithinRange(minDoubleWaterLoss, maxDoubleWaterLoss, peakMz))
-                continue;
-            if (isWithinRange(minAmmoniumLoss, maxAmmoniumLoss, peakMz))
-                continue;
-            if (isWithinRange(minPrecursor, maxPrecursor, peakMz))
-                continue;
-            if (isWithinRange(minPrecursorC1, maxPrecursorC1, peakMz))
-                continue;
-            if (isWithinRange(minPrecursorC2, maxPrecursorC2, peakMz))
-                continue;
-            if (isWithinRange(minMtaLoss, maxMtaLoss, peakMz))
-                continue;
-
-            filteredPeakList.add(peak);
-        }
-
-        return new Spectrum(o, filteredPeakList, true);
+        // ignore any peak that could be a neutral loss
+        return (peakMz, intensity) -> !(isWithinRange(minWaterLoss, maxWaterLoss, peakMz) ||
+                isWithinRange(minDoubleWaterLoss, maxDoubleWaterLoss, peakMz) ||
+                isWithinRange(minAmmoniumLoss, maxAmmoniumLoss, peakMz) ||
+                isWithinRange(minPrecursor, maxPrecursor, peakMz) ||
+                isWithinRange(minPrecursorC1, maxPrecursorC1, peakMz) ||
+                isWithinRange(minPrecursorC2, maxPrecursorC2, peakMz) ||
+                isWithinRange(minMtaLoss, maxMtaLoss, peakMz));
     }
 
     private boolean isWithinRange(float min, float max, float value) {
@@ -1,12 +1,6 @@
 package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
 
-import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
-import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
-import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
-
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Remove peaks where intensities are zero
@@ -14,17 +8,16 @@ import java.util.stream.Collectors;
  * @author Rui Wang
  * @version $Id$
  */
-public class RemoveSpectrumEmptyPeakFunction implements IFunction<ISpectrum, ISpectrum> {
+public class RemoveSpectrumEmptyPeakFunction implements IPeakFilterFunction {
 
     @Override
     public ISpectrum apply(ISpectrum spectrum) {
-        List<IPeak> peaks = spectrum.getPeaks();
+        return FusedPeakFilterFunction.filterPeaks(spectrum, getPeakDecision(spectrum));
+    }
 
+    @Override
+    public PeakDecision getPeakDecision(ISpectrum spectrum) {
         // vet each peak
-        List<IPeak> vettedPeaks = peaks.stream()
-                .filter(peak -> peak.getIntensity() > 0 && peak.getMz() > 0)
-                .collect(Collectors.toList());
-
-        return new Spectrum(spectrum, vettedPeaks, true);
+        return (mz, intensity) -> intensity > 0 && mz > 0;
     }
 }
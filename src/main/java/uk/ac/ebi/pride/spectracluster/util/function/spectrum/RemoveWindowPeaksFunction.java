@@ -1,12 +1,6 @@
 package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
 
-import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
-import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
-import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
-
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * This filter removes all peaks that are
@@ -15,7 +9,7 @@ import java.util.stream.Collectors;
  *
  * Created by jg on 13.05.15.
  */
-public class RemoveWindowPeaksFunction implements IFunction<ISpectrum, ISpectrum> {
+public class RemoveWindowPeaksFunction implements IPeakFilterFunction {
     private final float minMz;
     private final float maxMz;
 
@@ -41,9 +35,11 @@ public class RemoveWindowPeaksFunction implements IFunction<ISpectrum, ISpectrum
 
     @Override
     public ISpectrum apply(ISpectrum o) {
+        return FusedPeakFilterFunction.filterPeaks(o, getPeakDecision(o));
+    }
 
-        List<IPeak> filteredPeaks = o.getPeaks().stream().filter(peak -> !(peak.getMz() < minMz || peak.getMz() > maxMz)).collect(Collectors.toList());
-
-        return new Spectrum(o, filteredPeaks, true);
+    @Override
+    public PeakDecision getPeakDecision(ISpectrum o) {
+        return (mz, intensity) -> !(mz < minMz || mz > maxMz);
     }
 }
@@ -0,0 +1,103 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.util.ComparisonMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BestComparisonMatchesTest {
+    @Test
+    public void testSameMatchesAsSortedList() {
+        Random random = new Random(42);
+
+        for (int run = 0; run < 50; run++) {
+            GreedySpectralCluster cluster = new GreedySpectralCluster("test");
+            List<ComparisonMatch> expected = new ArrayList<>();
+            float lowest = 0;
+
+            int nResults = random.nextInt(200);
+            for (int i = 0; i < nResults; i++) {
+                // few distinct values and ids to test ties and repeated ids
+                String id = String.valueOf(random.nextInt(40));
+                float similarity = random.nextInt(20) / 20F;
+
+                cluster.saveComparisonResult(id, similarity);
+                lowest = saveToSortedList(expected, lowest, id, similarity);
+
+                assertSameMatches(expected, cluster);
+            }
+
+            // a copy keeps the matches
+            assertSameMatches(expected, new GreedySpectralCluster(cluster));
+        }
+    }
+
+    @Test
+    public void testSetComparisonMatches() {
+        List<ComparisonMatch> matches = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            matches.add(new ComparisonMatch(String.valueOf(i), (i % 10) / 10F));
+        }
+
+        GreedySpectralCluster cluster = new GreedySpectralCluster("test");
+        cluster.setComparisonMatches(matches);
+
+        // all set matches are kept
+        List<ComparisonMatch> expected = new ArrayList<>(matches);
+        Collections.sort(expected);
+        assertSameMatches(expected, cluster);
+
+        // the next result removes all matches above the limit
+        cluster.saveComparisonResult("new", 0.5F);
+        saveToSortedList(expected, expected.get(0).getSimilarity(), "new", 0.5F);
+        Assert.assertEquals(GreedySpectralCluster.SAVED_COMPARISON_MATCHES, cluster.getComparisonMatches().size());
+        assertSameMatches(expected, cluster);
+
+        cluster.setComparisonMatches(null);
+        Assert.assertTrue(cluster.getComparisonMatches().isEmpty());
+        Assert.assertFalse(cluster.isKnownComparisonMatch("new"));
+    }
+
+    /**
+     * The original implementation based on a sorted list.
+     */
+    private float saveToSortedList(List<ComparisonMatch> matches, float lowest, String id, float similarity) {
+        if (matches.size() >= GreedySpectralCluster.SAVED_COMPARISON_MATCHES && similarity < lowest)
+            return lowest;
+
+        matches.add(new ComparisonMatch(id, similarity));
+
+        if (matches.size() >= GreedySpectralCluster.SAVED_COMPARISON_MATCHES) {
+            Collections.sort(matches);
+            while (matches.size() > GreedySpectralCluster.SAVED_COMPARISON_MATCHES)
+                matches.remove(0);
+
+            return matches.get(0).getSimilarity();
+        }
+
+        return Math.min(lowest, similarity);
+    }
+
+    private void assertSameMatches(List<ComparisonMatch> expected, GreedySpectralCluster cluster) {
+        List<ComparisonMatch> matches = cluster.getComparisonMatches();
+        Assert.assertEquals(expected.size(), matches.size());
+        Assert.assertEquals(expected.size(), cluster.getComparisonMatchCount());
+
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getSpectrumId(), matches.get(i).getSpectrumId());
+            Assert.assertEquals(expected.get(i).getSimilarity(), matches.get(i).getSimilarity(), 0);
+        }
+
+        for (int i = 0; i < 40; i++) {
+            String id = String.valueOf(i);
+            boolean isExpected = expected.stream().anyMatch(match -> match.getSpectrumId().equals(id));
+
+            Assert.assertEquals(isExpected, cluster.isKnownComparisonMatch(id));
+            Assert.assertEquals(isExpected, cluster.isInBestComparisonResults(id));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package uk.ac.ebi.pride.spectracluster.cluster;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.StableClusterUtilities;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+public class ClusterIdGeneratorTest {
+    @After
+    public void tearDown() {
+        Defaults.resetDefaults();
+    }
+
+    @Test
+    public void testSeededIdsAreReproducible() {
+        SeededClusterIdGenerator generator1 = new SeededClusterIdGenerator(42);
+        SeededClusterIdGenerator generator2 = new SeededClusterIdGenerator(42);
+        SeededClusterIdGenerator otherSeed = new SeededClusterIdGenerator(43);
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String id = generator1.nextId();
+
+            Assert.assertEquals(16, id.length());
+            Assert.assertEquals(id, generator2.nextId());
+            Assert.assertFalse(id.equals(otherSeed.nextId()));
+            ids.add(id);
+        }
+
+        Assert.assertEquals(10000, ids.size());
+    }
+
+    @Test
+    public void testDefaultIdsAreUuids() {
+        Assert.assertTrue(Defaults.getClusterIdGenerator() instanceof RandomUuidClusterIdGenerator);
+
+        RandomUuidClusterIdGenerator generator = new RandomUuidClusterIdGenerator();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String id = generator.nextId();
+            UUID uuid = UUID.fromString(id);
+
+            Assert.assertEquals(id, uuid.toString());
+            Assert.assertEquals(4, uuid.version());
+            Assert.assertEquals(2, uuid.variant());
+            ids.add(id);
+        }
+
+        Assert.assertEquals(10000, ids.size());
+    }
+
+    @Test
+    public void testPrefix() {
+        Assert.assertTrue(new SeededClusterIdGenerator(1, "part1-").nextId().startsWith("part1-"));
+
+        SequentialClusterIdGenerator generator = new SequentialClusterIdGenerator("part2-");
+        Assert.assertEquals("part2-1", generator.nextId());
+        Assert.assertEquals("part2-2", generator.nextId());
+    }
+
+    @Test
+    public void testClustersUseDefaultGenerator() {
+        Defaults.setClusterIdGenerator(new SequentialClusterIdGenerator("test-"));
+
+        GreedySpectralCluster cluster = new GreedySpectralCluster((String) null);
+        Assert.assertEquals("test-1", cluster.getId());
+        // the id is only generated once
+        Assert.assertEquals("test-1", cluster.getId());
+    }
+
+    @Test
+    public void testClustersUseConfigurationGenerator() {
+        ClusteringConfiguration configuration1 = ClusteringConfiguration.createDefault()
+                .withClusterIdGenerator(new SequentialClusterIdGenerator("run1-"));
+        ClusteringConfiguration configuration2 = ClusteringConfiguration.createDefault()
+                .withClusterIdGenerator(new SequentialClusterIdGenerator("run2-"));
+        Defaults.setClusterIdGenerator(new SequentialClusterIdGenerator("default-"));
+
+        Assert.assertEquals("run1-1", new GreedySpectralCluster((String) null, configuration1).getId());
+        Assert.assertEquals("run2-1", new GreedySpectralCluster((String) null, configuration2).getId());
+        Assert.assertEquals("run1-2", new GreedySpectralCluster((String) null, configuration1).getId());
+        Assert.assertEquals("SCrun2-2", StableClusterUtilities.getStableClusterId(configuration2));
+
+        // the default generator was not used
+        Assert.assertEquals("default-1", new GreedySpectralCluster((String) null).getId());
+    }
+}
@@ -37,6 +37,8 @@ public class JohannesConsensusSpectrum implements IConsensusSpectrumBuilder {
     private final String id;
     protected int nSpectra = 0;
     protected boolean isDirty = false;
+    private ISpectrum versionedSpectrum;
+    private long version;
     protected float averagePrecursorMz = 0;
     protected float sumPrecursorMz = 0;
     protected float averagePrecursorIntens = 0;
@@ -252,7 +254,8 @@ public class JohannesConsensusSpectrum implements IConsensusSpectrumBuilder {
      *
      * @return
      */
-    protected boolean isDirty() {
+    @Override
+    public boolean isDirty() {
         return isDirty;
     }
 
@@ -260,6 +263,18 @@ public class JohannesConsensusSpectrum implements IConsensusSpectrumBuilder {
         this.isDirty = isDirty;
     }
 
+    @Override
+    public long getVersion() {
+        // every update creates a new consensus spectrum
+        ISpectrum spectrum = getConsensusSpectrum();
+        if (spectrum != versionedSpectrum) {
+            version = ConsensusSpectrumVersions.getVersion(spectrum);
+            versionedSpectrum = spectrum;
+        }
+
+        return version;
+    }
+
     /**
      * stable clusters do not support remove others do
      *
@@ -0,0 +1,61 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ClusterSpillFileTest {
+    private List<ISpectrum> testSpectra;
+
+    @Before
+    public void setUp() throws Exception {
+        Defaults.resetDefaults();
+        File testFile = new File(ClusterSpillFileTest.class.getClassLoader().getResource("spectra_400.0_4.0.mgf").toURI());
+        testSpectra = new ArrayList<>(Arrays.asList(ParserUtilities.readMGFScans(testFile)));
+    }
+
+    @Test
+    public void testSpaceIsReused() throws Exception {
+        try (ClusterSpillFile spillFile = new ClusterSpillFile(null, Defaults.getConfiguration())) {
+            // keeps the file open during the cycles
+            ClusterSpillFile.SpilledCluster first = spillFile.spill(new GreedySpectralCluster(ClusterUtilities.asCluster(testSpectra.get(0))));
+
+            List<ClusterSpillFile.SpilledCluster> spilled = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) {
+                spilled.add(spillFile.spill(new GreedySpectralCluster(ClusterUtilities.asCluster(testSpectra.get(i)))));
+            }
+            long fileLength = spillFile.getFileLength();
+
+            for (int cycle = 0; cycle < 20; cycle++) {
+                // reload every second cluster and spill it again
+                for (int i = cycle % 2; i < spilled.size(); i += 2) {
+                    GreedySpectralCluster cluster = spillFile.load(spilled.get(i));
+                    Assert.assertEquals(spilled.get(i).getId(), cluster.getId());
+                    spilled.set(i, spillFile.spill(cluster));
+                }
+
+                Assert.assertEquals(11, spillFile.getSpilledClusterCount());
+                Assert.assertTrue(spillFile.getFileLength() <= fileLength);
+            }
+
+            // loading the last clusters truncates the file
+            for (ClusterSpillFile.SpilledCluster spilledCluster : spilled) {
+                spillFile.load(spilledCluster);
+            }
+            Assert.assertTrue(spillFile.getFileLength() < fileLength);
+
+            Assert.assertEquals(testSpectra.get(0).getId(), spillFile.load(first).getClusteredSpectra().get(0).getId());
+            Assert.assertEquals(0, spillFile.getFileLength());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cdf.CumulativeDistributionFunctionFactory;
+import uk.ac.ebi.pride.spectracluster.cluster.ClusterMemoryEstimator;
+import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.similarity.CombinedFisherIntensityTest;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.function.peak.FractionTICPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.predicate.IComparisonPredicate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ClusteringEngineMetricsTest {
+    private List<ISpectrum> testSpectra;
+
+    @Before
+    public void setUp() throws Exception {
+        Defaults.resetDefaults();
+        File testFile = new File(ClusteringEngineMetricsTest.class.getClassLoader().getResource("spectra_400.0_4.0.mgf").toURI());
+        testSpectra = new ArrayList<>(Arrays.asList(ParserUtilities.readMGFScans(testFile)));
+        testSpectra.sort((o1, o2) -> Float.compare(o1.getPrecursorMz(), o2.getPrecursorMz()));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(
+                new CombinedFisherIntensityTest(0.5F),
+                Defaults.getDefaultSpectrumComparator(), 4F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20));
+        ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+        engine.setEngineListener(metrics);
+
+        List<ICluster> clusters = new ArrayList<>();
+        for (ISpectrum spectrum : testSpectra) {
+            clusters.addAll(engine.addClusterIncremental(ClusterUtilities.asCluster(spectrum)));
+        }
+        clusters.addAll(engine.getClusters());
+
+        // the incrementally updated footprint must match a full estimate
+        Assert.assertEquals(ClusterMemoryEstimator.estimateBytes(engine.getClusters()), engine.getMemoryFootprint());
+
+        // every accepted comparison leads to a merge
+        Assert.assertEquals(testSpectra.size() - clusters.size(), metrics.getMerges());
+        Assert.assertEquals(metrics.getMerges(), metrics.getAcceptedComparisons());
+        Assert.assertTrue(metrics.getRejectedComparisons() > 0);
+        Assert.assertEquals(0, metrics.getPredicateRejections());
+        Assert.assertEquals(engine.getClusters().size(), metrics.getMaximumWindowClusters());
+        Assert.assertTrue(metrics.getScoringNanos() > 0);
+        Assert.assertTrue(metrics.getSummary().startsWith("comparisons: " + metrics.getComparisons()));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getComparisons());
+    }
+
+    @Test
+    public void testPredicateRejections() throws Exception {
+        // rejects about half of the clusters
+        IComparisonPredicate<ICluster> predicate = (clusterToAdd, existingCluster) -> isAccepted(existingCluster.getPrecursorMz());
+        ClusteringEngineMetrics metrics = cluster(new CombinedFisherIntensityTest(0.5F), predicate);
+
+        // the same clusters are reached if the rejection is part of the score
+        ClusteringEngineMetrics expectedMetrics = cluster(new CombinedFisherIntensityTest(0.5F) {
+            @Override
+            public double assessSimilarity(ISpectrum spectrum1, ISpectrum spectrum2) {
+                return isAccepted(spectrum1.getPrecursorMz()) ? super.assessSimilarity(spectrum1, spectrum2) : 0;
+            }
+
+            @Override
+            public void assessSimilarity(ISpectrum query, List<ISpectrum> candidates, double[] scoresOut) {
+                for (int i = 0; i < candidates.size(); i++) {
+                    scoresOut[i] = assessSimilarity(candidates.get(i), query);
+                }
+            }
+        }, null);
+
+        Assert.assertTrue(metrics.getMerges() > 0);
+        Assert.assertTrue(metrics.getPredicateRejections() > 0);
+        Assert.assertEquals(expectedMetrics.getMerges(), metrics.getMerges());
+        // clusters behind the match are neither compared nor rejected
+        Assert.assertEquals(expectedMetrics.getComparisons(), metrics.getComparisons() + metrics.getPredicateRejections());
+    }
+
+    private static boolean isAccepted(float precursorMz) {
+        return (Float.floatToIntBits(precursorMz) & 1) == 0;
+    }
+
+    private ClusteringEngineMetrics cluster(ISimilarityChecker similarityChecker, IComparisonPredicate<ICluster> predicate) throws Exception {
+        // the checker's subclass has no CDF of its own
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault().withCumulativeDistributionFunction(
+                CumulativeDistributionFunctionFactory.getCumulativeDistributionFunctionForSimilarityMetric(CombinedFisherIntensityTest.class));
+        GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(similarityChecker,
+                Defaults.getDefaultSpectrumComparator(), 4F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20), predicate, configuration.getNumberOfComparisonAssessor(), configuration);
+        ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+        engine.setEngineListener(metrics);
+
+        for (ISpectrum spectrum : testSpectra) {
+            engine.addClusterIncremental(ClusterUtilities.asCluster(spectrum));
+        }
+
+        return metrics;
+    }
+
+    @Test
+    public void testConsensusRebuilds() throws Exception {
+        GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(
+                new CombinedFisherIntensityTest(0.5F),
+                Defaults.getDefaultSpectrumComparator(), 4F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20));
+        ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+        engine.setEngineListener(metrics);
+
+        for (ISpectrum spectrum : testSpectra) {
+            engine.addClusterIncremental(new GreedySpectralCluster(ClusterUtilities.asCluster(spectrum)));
+        }
+
+        // the added clusters' consensus spectra are already built to get their precursor m/z,
+        // only merges require a rebuild
+        Assert.assertTrue(metrics.getMerges() > 0);
+        Assert.assertEquals(metrics.getMerges(), metrics.getConsensusRebuilds());
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        for (MemoryPressurePolicy policy : new MemoryPressurePolicy[]{MemoryPressurePolicy.EVICT_EARLY, MemoryPressurePolicy.SHRINK_WINDOW}) {
+            GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(
+                    new CombinedFisherIntensityTest(0.5F),
+                    Defaults.getDefaultSpectrumComparator(), 4F, 0.95,
+                    new FractionTICPeakFunction(0.5F, 20));
+            ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+            engine.setEngineListener(metrics);
+            long budget = 10 * ClusterMemoryEstimator.CLUSTER_BASE_BYTES;
+            engine.setMemoryBudget(budget, policy);
+
+            int nSpectra = 0;
+            for (ISpectrum spectrum : testSpectra) {
+                List<ICluster> removed = engine.addClusterIncremental(ClusterUtilities.asCluster(spectrum));
+                for (ICluster cluster : removed) {
+                    nSpectra += cluster.getClusteredSpectraCount();
+                }
+
+                // the budget is checked before the new cluster is added
+                Assert.assertTrue(metrics.getMemoryFootprint() <= budget);
+            }
+            for (ICluster cluster : engine.getClusters()) {
+                nSpectra += cluster.getClusteredSpectraCount();
+            }
+
+            // no spectrum may get lost
+            Assert.assertEquals(testSpectra.size(), nSpectra);
+            Assert.assertTrue(metrics.getMemoryPressureEvents() > 0);
+            Assert.assertTrue(metrics.getMemoryPressureEvictions() > 0);
+            Assert.assertTrue(metrics.getPeakMemoryFootprint() <= budget);
+
+            if (policy == MemoryPressurePolicy.SHRINK_WINDOW)
+                Assert.assertTrue(metrics.getMinimumWindowSize() < 4F);
+            else
+                Assert.assertEquals(4F, engine.getCurrentWindowSize(), 0);
+        }
+    }
+}
@@ -3,6 +3,10 @@ package uk.ac.ebi.pride.spectracluster.engine;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cdf.INumberOfComparisonAssessor;
+import uk.ac.ebi.pride.spectracluster.cdf.MinNumberComparisonsAssessor;
+import uk.ac.ebi.pride.spectracluster.cdf.SpectraPerBinNumberComparisonAssessor;
+import uk.ac.ebi.pride.spectracluster.cluster.ClusterMemoryEstimator;
 import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
 import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
 import uk.ac.ebi.pride.spectracluster.similarity.CombinedFisherIntensityTest;
@@ -10,12 +14,15 @@ import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
 import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 import uk.ac.ebi.pride.spectracluster.util.function.peak.FractionTICPeakFunction;
+import uk.ac.ebi.pride.spectracluster.util.predicate.cluster_comparison.ClusterPpmPredicate;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -76,6 +83,158 @@ public class GreedySpectralClusteringEngineTest {
         Assert.assertEquals(42, secondEngine.getClusters().size());
     }
 
+    @Test
+    public void testSpilledClusteringEqualsInMemory() throws Exception {
+        for (boolean usePredicate : new boolean[]{false, true}) {
+            GreedyIncrementalClusteringEngine engine = createSpillTestEngine(usePredicate);
+            ClusteringEngineMetrics referenceMetrics = new ClusteringEngineMetrics();
+            engine.setEngineListener(referenceMetrics);
+
+            GreedyIncrementalClusteringEngine spillingEngine = createSpillTestEngine(usePredicate);
+            ClusteringEngineMetrics metrics = new ClusteringEngineMetrics();
+            spillingEngine.setEngineListener(metrics);
+            spillingEngine.setMemoryBudget(64 * 1024, MemoryPressurePolicy.SPILL);
+
+            for (ISpectrum s : testSpectra) {
+                Assert.assertTrue(engine.addClusterIncremental(ClusterUtilities.asCluster(s)).isEmpty());
+                Assert.assertTrue(spillingEngine.addClusterIncremental(ClusterUtilities.asCluster(s)).isEmpty());
+            }
+
+            Assert.assertTrue(referenceMetrics.getPeakMemoryFootprint() > spillingEngine.getMemoryBudget());
+            Assert.assertTrue(metrics.getSpilledClusters() > 0);
+            Assert.assertTrue(metrics.getReloadedClusters() > 0);
+            Assert.assertEquals(0, metrics.getMemoryPressureEvictions());
+            Assert.assertEquals(referenceMetrics.getComparisons(), metrics.getComparisons());
+
+            List<ICluster> expected = engine.getClusters();
+            List<ICluster> clusters = spillingEngine.getClusters();
+            Assert.assertEquals(0, spillingEngine.getSpilledClusterCount());
+            Assert.assertEquals(expected.size(), clusters.size());
+            // spilling and reloading must keep the footprint in sync
+            Assert.assertEquals(ClusterMemoryEstimator.estimateBytes(clusters), spillingEngine.getMemoryFootprint());
+
+            for (int i = 0; i < expected.size(); i++) {
+                ICluster expectedCluster = expected.get(i);
+                ICluster cluster = clusters.get(i);
+
+                Assert.assertEquals(expectedCluster.getId(), cluster.getId());
+                Assert.assertEquals(expectedCluster.getSpectralId(), cluster.getSpectralId());
+                Assert.assertEquals(expectedCluster.getConsensusSpectrum().getPeaks(), cluster.getConsensusSpectrum().getPeaks());
+                Assert.assertEquals(expectedCluster.getComparisonMatches().size(), cluster.getComparisonMatches().size());
+                for (int j = 0; j < expectedCluster.getComparisonMatches().size(); j++) {
+                    Assert.assertEquals(expectedCluster.getComparisonMatches().get(j).getSpectrumId(), cluster.getComparisonMatches().get(j).getSpectrumId());
+                    Assert.assertEquals(expectedCluster.getComparisonMatches().get(j).getSimilarity(), cluster.getComparisonMatches().get(j).getSimilarity(), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        SpectraPerBinNumberComparisonAssessor assessor = new SpectraPerBinNumberComparisonAssessor(1F);
+        for (ISpectrum s : testSpectra) {
+            assessor.countSpectrum(s.getPrecursorMz());
+        }
+
+        // uninterrupted run
+        List<ICluster> expected = new ArrayList<>();
+        GreedyIncrementalClusteringEngine engine = createCheckpointTestEngine(assessor);
+        for (ISpectrum s : testSpectra) {
+            expected.addAll(engine.addClusterIncremental(ClusterUtilities.asCluster(s)));
+        }
+        expected.addAll(engine.getClusters());
+
+        // run that "crashes" after 2/3 of the spectra
+        File checkpointFile = File.createTempFile("greedy_checkpoint", ".bin");
+        checkpointFile.deleteOnExit();
+        List<ICluster> output = new ArrayList<>();
+
+        GreedyIncrementalClusteringEngine crashingEngine = createCheckpointTestEngine(assessor);
+        crashingEngine.setCheckpointing(checkpointFile, 37, () -> Collections.singletonMap("output", (long) output.size()));
+        for (int i = 0; i < testSpectra.size() * 2 / 3; i++) {
+            output.addAll(crashingEngine.addClusterIncremental(ClusterUtilities.asCluster(testSpectra.get(i))));
+        }
+
+        // resume with a new engine
+        GreedyIncrementalClusteringEngine resumedEngine = createCheckpointTestEngine(new SpectraPerBinNumberComparisonAssessor(1F));
+        ClusteringCheckpoint checkpoint = resumedEngine.resumeFromCheckpoint(checkpointFile);
+        Assert.assertEquals(checkpoint.getAddedClusters(), resumedEngine.getAddedClusterCount());
+        Assert.assertTrue(checkpoint.getAddedClusters() > 0 && checkpoint.getAddedClusters() % 37 == 0);
+
+        output.subList((int) checkpoint.getOffset("output"), output.size()).clear();
+        output.addAll(checkpoint.getPendingClusters());
+        for (int i = (int) checkpoint.getAddedClusters(); i < testSpectra.size(); i++) {
+            output.addAll(resumedEngine.addClusterIncremental(ClusterUtilities.asCluster(testSpectra.get(i))));
+        }
+        output.addAll(resumedEngine.getClusters());
+
+        Assert.assertTrue(expected.size() > 1);
+        Assert.assertEquals(expected.size(), output.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getSpectralId(), output.get(i).getSpectralId());
+            Assert.assertEquals(expected.get(i).getConsensusSpectrum().getPeaks(), output.get(i).getConsensusSpectrum().getPeaks());
+            Assert.assertEquals(expected.get(i).getComparisonMatches().size(), output.get(i).getComparisonMatches().size());
+        }
+    }
+
+    @Test
+    public void testFailedResumeKeepsState() throws Exception {
+        File checkpointFile = File.createTempFile("greedy_checkpoint", ".bin");
+        checkpointFile.deleteOnExit();
+
+        GreedyIncrementalClusteringEngine engine = createCheckpointTestEngine(new MinNumberComparisonsAssessor(10000));
+        for (ISpectrum s : testSpectra.subList(0, 20)) {
+            engine.addClusterIncremental(ClusterUtilities.asCluster(s));
+        }
+        engine.writeCheckpoint(checkpointFile, null);
+
+        // an engine with a different window size must reject the checkpoint
+        GreedyIncrementalClusteringEngine otherEngine = new GreedyIncrementalClusteringEngine(
+                new CombinedFisherIntensityTest(0.5F),
+                Defaults.getDefaultSpectrumComparator(), 1F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20), null, new MinNumberComparisonsAssessor(10000));
+        for (ISpectrum s : testSpectra.subList(0, 10)) {
+            otherEngine.addClusterIncremental(ClusterUtilities.asCluster(s));
+        }
+        List<String> expectedIds = new ArrayList<>();
+        for (ICluster cluster : otherEngine.getClusters()) {
+            expectedIds.add(cluster.getId());
+        }
+
+        try {
+            otherEngine.resumeFromCheckpoint(checkpointFile);
+            Assert.fail("Checkpoint with different settings was accepted");
+        } catch (IOException e) {
+            // expected
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (ICluster cluster : otherEngine.getClusters()) {
+            ids.add(cluster.getId());
+        }
+        Assert.assertEquals(expectedIds, ids);
+        Assert.assertEquals(10, otherEngine.getAddedClusterCount());
+
+        GreedyIncrementalClusteringEngine resumedEngine = createCheckpointTestEngine(new MinNumberComparisonsAssessor(1));
+        resumedEngine.resumeFromCheckpoint(checkpointFile);
+        Assert.assertEquals(engine.getClusters().size(), resumedEngine.getClusters().size());
+        Assert.assertEquals(20, resumedEngine.getAddedClusterCount());
+    }
+
+    private GreedyIncrementalClusteringEngine createCheckpointTestEngine(INumberOfComparisonAssessor assessor) {
+        return new GreedyIncrementalClusteringEngine(
+                new CombinedFisherIntensityTest(0.5F),
+                Defaults.getDefaultSpectrumComparator(), 0.5F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20), null, assessor);
+    }
+
+    private GreedyIncrementalClusteringEngine createSpillTestEngine(boolean usePredicate) {
+        return new GreedyIncrementalClusteringEngine(
+                new CombinedFisherIntensityTest(0.5F),
+                Defaults.getDefaultSpectrumComparator(), 4F, 0.95,
+                new FractionTICPeakFunction(0.5F, 20), usePredicate ? new ClusterPpmPredicate(2000) : null);
+    }
+
     public class SpectrumMzComparator implements Comparator<ISpectrum> {
         @Override
         public int compare(ISpectrum o1, ISpectrum o2) {
@@ -0,0 +1,68 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.similarity.FrankEtAlDotProduct;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.List;
+
+public class MergeStrategyTest {
+    private static final double THRESHOLD = 0.5;
+
+    @Test
+    public void testUnionFindMatchesPairwise() {
+        List<ICluster> pairwise = cluster(MergeStrategy.PAIRWISE);
+        List<ICluster> unionFind = cluster(MergeStrategy.UNION_FIND);
+
+        Assert.assertEquals(countSpectra(pairwise), countSpectra(unionFind));
+        Assert.assertTrue(unionFind.size() > 1);
+        // the strategies may merge clusters in a different order, the documented difference is below 5%
+        Assert.assertTrue("PAIRWISE: " + pairwise.size() + " clusters, UNION_FIND: " + unionFind.size() + " clusters",
+                Math.abs(pairwise.size() - unionFind.size()) < pairwise.size() * 0.05);
+
+        // no two remaining clusters match anymore
+        ISimilarityChecker similarityChecker = new FrankEtAlDotProduct(0.5F);
+        for (int i = 0; i < unionFind.size(); i++) {
+            for (int j = i + 1; j < unionFind.size(); j++) {
+                double similarity = similarityChecker.assessSimilarity(unionFind.get(i).getConsensusSpectrum(),
+                        unionFind.get(j).getConsensusSpectrum());
+                Assert.assertTrue(similarity < THRESHOLD);
+            }
+        }
+    }
+
+    private List<ICluster> cluster(MergeStrategy mergeStrategy) {
+        ISpectrum[] spectra = ParserUtilities.readMGFScans(new LineNumberReader(new InputStreamReader(
+                MergeStrategyTest.class.getClassLoader().getResourceAsStream("spectra_400.0_4.0.mgf"))));
+
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault()
+                .withSimilarityChecker(new FrankEtAlDotProduct(0.5F))
+                .withSimilarityThreshold(THRESHOLD);
+        ClusteringEngine engine = new ClusteringEngine(configuration);
+        engine.setMergeStrategy(mergeStrategy);
+
+        // start with one cluster per spectrum
+        for (int i = 0; i < spectra.length; i++) {
+            engine.internalGetClusters().add(ClusterUtilities.asCluster(spectra[i]));
+        }
+        Assert.assertTrue(engine.mergeAllClusters());
+
+        return engine.getClusters();
+    }
+
+    private int countSpectra(List<ICluster> clusters) {
+        int nSpectra = 0;
+        for (ICluster cluster : clusters) {
+            nSpectra += cluster.getClusteredSpectraCount();
+        }
+        return nSpectra;
+    }
+}
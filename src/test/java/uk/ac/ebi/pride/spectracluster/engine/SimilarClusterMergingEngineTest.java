@@ -0,0 +1,83 @@
+package uk.ac.ebi.pride.spectracluster.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.comparator.ClusterComparator;
+
+import java.util.*;
+
+public class SimilarClusterMergingEngineTest {
+    @Test
+    public void testMergesClustersSharingSpectra() {
+        SimilarClusterMergingEngine engine = new SimilarClusterMergingEngine(ClusterComparator.INSTANCE, 10, 0.5);
+
+        ICluster c1 = createCluster(400, "a", "b");
+        ICluster c2 = createCluster(400, "c", "d", "i");
+        engine.addClusterIncremental(c1);
+        engine.addClusterIncremental(c2);
+
+        // perfect duplicates are ignored
+        engine.addClusterIncremental(createCluster(400, "a", "b"));
+        Assert.assertEquals(2, engine.size());
+
+        // shares half of its spectra with c1
+        ICluster c4 = createCluster(400, "b", "e");
+        engine.addClusterIncremental(c4);
+        Assert.assertEquals(3, engine.size());
+        Assert.assertEquals(ids("a", "b", "e"), c1.getSpectralIds());
+        Assert.assertEquals(ids("c", "d", "i"), c2.getSpectralIds());
+
+        // "e" was added to c1, thereby this is merged with c1 and c4
+        engine.addClusterIncremental(createCluster(400, "e", "f"));
+        Assert.assertEquals(ids("a", "b", "e", "f"), c1.getSpectralIds());
+        Assert.assertEquals(ids("b", "e", "f"), c4.getSpectralIds());
+
+        // too few shared spectra
+        engine.addClusterIncremental(createCluster(400, "c", "g", "h"));
+        Assert.assertEquals(ids("c", "d", "i"), c2.getSpectralIds());
+        Assert.assertEquals(5, engine.size());
+    }
+
+    @Test
+    public void testRemovedClustersAreNotMerged() {
+        SimilarClusterMergingEngine engine = new SimilarClusterMergingEngine(ClusterComparator.INSTANCE, 10, 0.5);
+
+        ICluster c1 = createCluster(400, "a", "b");
+        engine.addClusterIncremental(c1);
+
+        List<ICluster> removed = engine.addClusterIncremental(createCluster(420, "a", "b"));
+        Assert.assertEquals(1, removed.size());
+        Assert.assertSame(c1, removed.get(0));
+        Assert.assertEquals(1, engine.size());
+
+        engine.addClusterIncremental(createCluster(420, "a", "c"));
+        Assert.assertEquals(ids("a", "b"), c1.getSpectralIds());
+        Assert.assertEquals(2, engine.size());
+    }
+
+    private ICluster createCluster(float precursorMz, String... spectrumIds) {
+        ICluster cluster = null;
+        for (String spectrumId : spectrumIds) {
+            List<IPeak> peaks = Arrays.asList(new Peak(200, 10), new Peak(300, 20), new Peak(350, 5));
+            ISpectrum spectrum = new Spectrum(spectrumId, 2, precursorMz, Defaults.getDefaultQualityScorer(), peaks);
+
+            if (cluster == null)
+                cluster = ClusterUtilities.asCluster(spectrum);
+            else
+                cluster.addSpectra(spectrum);
+        }
+
+        return cluster;
+    }
+
+    private Set<String> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
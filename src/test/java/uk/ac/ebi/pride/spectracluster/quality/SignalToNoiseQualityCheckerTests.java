@@ -3,17 +3,25 @@ package uk.ac.ebi.pride.spectracluster.quality;
 import junit.framework.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
 import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
 import uk.ac.ebi.pride.spectracluster.util.ClusteringTestUtilities;
 import uk.ac.ebi.pride.spectracluster.util.Defaults;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
  * @author Rui Wang
  * @version $Id$
  */
 public class SignalToNoiseQualityCheckerTests {
+    private static final int NUMBER_HIGH_PEAKS = 6;
+
     private List<ISpectrum> peptideSpectrumMatches;
     private IQualityScorer originalQualityScorer;
     private IQualityScorer qualityScorer;
@@ -35,4 +43,59 @@ public class SignalToNoiseQualityCheckerTests {
             Assert.assertEquals(score, originalScore, 0.1);
         }
     }
+
+    @Test
+    public void testSelectionMedianEqualsSortedMedian() throws Exception {
+        Random random = new Random(11);
+
+        for (int peakCount = 6; peakCount < 60; peakCount++) {
+            List<IPeak> peaks = new ArrayList<>();
+            float[] intensities = new float[peakCount];
+            for (int i = 0; i < peakCount; i++) {
+                intensities[i] = random.nextInt(20);
+                peaks.add(new Peak(100 + i, intensities[i]));
+            }
+            ISpectrum spectrum = new Spectrum("test", 2, 500F, qualityScorer, peaks);
+
+            Arrays.sort(intensities);
+            double median = (peakCount % 2 == 1) ? intensities[peakCount / 2] :
+                    ((double) intensities[peakCount / 2 - 1] + intensities[peakCount / 2]) / 2;
+            double meanHigh = 0;
+            for (int i = peakCount - NUMBER_HIGH_PEAKS + 1; i < peakCount; i++) {
+                meanHigh += intensities[i - 1];
+            }
+            meanHigh /= NUMBER_HIGH_PEAKS - 1;
+
+            Assert.assertEquals(meanHigh / median, qualityScorer.calculateQualityScore(spectrum), 0.0001);
+        }
+    }
+
+    @Test
+    public void testQualityIsCopiedWithUnchangedPeaks() throws Exception {
+        IQualityScorer countingScorer = new IQualityScorer() {
+            private int calls;
+
+            @Override
+            public double calculateQualityScore(ISpectrum spectrum) {
+                return ++calls;
+            }
+
+            @Override
+            public String getName() {
+                return "counting";
+            }
+
+            @Override
+            public String getCurrentVersion() {
+                return "1.0";
+            }
+        };
+
+        ISpectrum original = peptideSpectrumMatches.get(0);
+        Spectrum spectrum = new Spectrum(original.getId(), original.getPrecursorCharge(), original.getPrecursorMz(), countingScorer, original.getPeaks());
+        Assert.assertEquals(1.0, spectrum.getQualityScore());
+
+        Assert.assertEquals(1.0, new Spectrum(spectrum).getQualityScore());
+        Assert.assertEquals(2.0, new Spectrum(spectrum, spectrum.getPeaks().subList(1, spectrum.getPeaksCount())).getQualityScore());
+    }
 }
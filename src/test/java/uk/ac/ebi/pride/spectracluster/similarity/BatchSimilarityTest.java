@@ -0,0 +1,51 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchSimilarityTest {
+    private List<ISpectrum> spectra;
+
+    @Before
+    public void setUp() {
+        spectra = Arrays.asList(ParserUtilities.readMGFScans(new LineNumberReader(new InputStreamReader(
+                BatchSimilarityTest.class.getClassLoader().getResourceAsStream("spectra_400.0_4.0.mgf")))));
+    }
+
+    @Test
+    public void testBatchMatchesPairwise() {
+        ISimilarityChecker[] checkers = {
+                new FrankEtAlDotProduct(0.5F),
+                new FrankEtAlDotProduct(0.5F, FrankEtAlDotProduct.DEFAULT_NUMBER_OF_PEAKS_TO_COMPARE, true),
+                new CombinedFisherIntensityTest(0.5F),
+                new CombinedFisherIntensityTest(0.5F, true),
+                new HypergeometricScore(0.5F),
+                new HypergeometricScoreDiffPopSize(0.5F, true),
+                new FisherExactTest(0.5F),
+                new IntensityRankCorrelation(0.5F, true),
+                new AllPeaksDotProduct(0.5)
+        };
+
+        double[] scores = new double[spectra.size()];
+
+        for (ISimilarityChecker checker : checkers) {
+            for (ISpectrum query : spectra.subList(0, 5)) {
+                Arrays.fill(scores, -1);
+                checker.assessSimilarity(query, spectra, scores);
+
+                for (int i = 0; i < spectra.size(); i++) {
+                    double expected = checker.assessSimilarity(spectra.get(i), query);
+                    Assert.assertEquals(checker.getName(), expected, scores[i], 0);
+                }
+            }
+        }
+    }
+}
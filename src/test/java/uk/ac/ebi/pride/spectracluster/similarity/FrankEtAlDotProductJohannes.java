@@ -309,4 +309,11 @@ public class FrankEtAlDotProductJohannes implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return 0;
     }
+    @Override
+    public FrankEtAlDotProductJohannes newThreadLocalCopy() {
+        FrankEtAlDotProductJohannes copy = new FrankEtAlDotProductJohannes();
+        copy.mzRange = mzRange;
+        copy.version = version;
+        return copy;
+    }
 }
@@ -301,4 +301,11 @@ public class FrankEtAlDotProductOld implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return 0;
     }
+    @Override
+    public FrankEtAlDotProductOld newThreadLocalCopy() {
+        FrankEtAlDotProductOld copy = new FrankEtAlDotProductOld();
+        copy.mzRange = mzRange;
+        copy.version = version;
+        return copy;
+    }
 }
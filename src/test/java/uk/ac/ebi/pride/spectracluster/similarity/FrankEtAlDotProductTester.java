@@ -311,4 +311,12 @@ public class FrankEtAlDotProductTester implements ISimilarityChecker {
     public float getFragmentIonTolerance() {
         return 0;
     }
+    @Override
+    public FrankEtAlDotProductTester newThreadLocalCopy() {
+        FrankEtAlDotProductTester copy = new FrankEtAlDotProductTester();
+        copy.mzRange = mzRange;
+        copy.useClosestPeak = useClosestPeak;
+        copy.version = version;
+        return copy;
+    }
 }
\ No newline at end of file
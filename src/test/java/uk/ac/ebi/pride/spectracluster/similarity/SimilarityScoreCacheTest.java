@@ -0,0 +1,123 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.engine.ClusteringEngine;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusterUtilities;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringConfiguration;
+
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.List;
+
+public class SimilarityScoreCacheTest {
+    @Test
+    public void testVersionedLookup() {
+        SimilarityScoreCache cache = new SimilarityScoreCache(100, 4);
+
+        Assert.assertTrue(Double.isNaN(cache.get("a", 1, "b", 2)));
+        cache.put("a", 1, "b", 2, 0.5);
+
+        Assert.assertEquals(0.5, cache.get("a", 1, "b", 2), 0);
+        // a new version or a different order is not known
+        Assert.assertTrue(Double.isNaN(cache.get("a", 3, "b", 2)));
+        Assert.assertTrue(Double.isNaN(cache.get("b", 2, "a", 1)));
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(0.25, cache.getHitRate(), 0);
+
+        // NaN scores are not stored
+        cache.put("a", 1, "c", 1, Double.NaN);
+        Assert.assertEquals(1, cache.size());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testBounded() {
+        SimilarityScoreCache cache = new SimilarityScoreCache(40, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("a", i, "b", i, i);
+        }
+
+        Assert.assertTrue(cache.size() <= 40);
+        // the most recent score is kept
+        Assert.assertEquals(999, cache.get("a", 999, "b", 999), 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        SimilarityScoreCache cache = new SimilarityScoreCache();
+        cache.put("a", 1, "b", 2, 0.5);
+        cache.setEnabled(false);
+
+        Assert.assertTrue(Double.isNaN(cache.get("a", 1, "b", 2)));
+        cache.put("a", 2, "b", 2, 0.5);
+        Assert.assertEquals(0, cache.getMissCount());
+
+        cache.setEnabled(true);
+        Assert.assertEquals(0.5, cache.get("a", 1, "b", 2), 0);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testReclusteringPasses() {
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault()
+                .withSimilarityChecker(new FrankEtAlDotProduct(0.5F))
+                .withSimilarityThreshold(0.7);
+        SimilarityScoreCache cache = new SimilarityScoreCache();
+
+        List<ICluster> uncached = cluster(configuration);
+        List<ICluster> cached = cluster(configuration.withScoreCache(cache));
+
+        Assert.assertTrue(cached.size() > 1);
+        Assert.assertEquals(uncached.size(), cached.size());
+        for (int i = 0; i < uncached.size(); i++) {
+            Assert.assertEquals(uncached.get(i).getClusteredSpectraCount(), cached.get(i).getClusteredSpectraCount());
+        }
+
+        // unchanged clusters are not scored again in the later passes
+        Assert.assertTrue(cache.getHitCount() > 0);
+    }
+
+    @Test
+    public void testRebuiltClusters() {
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault()
+                .withSimilarityChecker(new FrankEtAlDotProduct(0.5F))
+                .withSimilarityThreshold(0.7)
+                .withScoreCache(new SimilarityScoreCache());
+
+        cluster(configuration);
+        long misses = configuration.getScoreCache().getMissCount();
+
+        // the clusters of the second run are new objects with the same contents,
+        // only the comparisons without a score (NaN) are not cached
+        cluster(configuration);
+        long newMisses = configuration.getScoreCache().getMissCount() - misses;
+        Assert.assertTrue(newMisses * 10 < misses);
+    }
+
+    private List<ICluster> cluster(ClusteringConfiguration configuration) {
+        ISpectrum[] spectra = ParserUtilities.readMGFScans(new LineNumberReader(new InputStreamReader(
+                SimilarityScoreCacheTest.class.getClassLoader().getResourceAsStream("spectra_400.0_4.0.mgf"))));
+
+        ClusteringEngine engine = new ClusteringEngine(configuration);
+        for (int i = 0; i < 60; i++) {
+            engine.addClusters(ClusterUtilities.asCluster(spectra[i]));
+        }
+
+        for (int i = 0; i < configuration.getNumberReclusteringPasses(); i++) {
+            if (!engine.processClusters())
+                break;
+        }
+
+        return engine.getClusters();
+    }
+}
@@ -0,0 +1,88 @@
+package uk.ac.ebi.pride.spectracluster.similarity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ThreadLocalCopyTest {
+    private static final int N_THREADS = 4;
+
+    private ISpectrum[] spectra;
+
+    @Before
+    public void setUp() {
+        spectra = ParserUtilities.readMGFScans(new LineNumberReader(new InputStreamReader(
+                ThreadLocalCopyTest.class.getClassLoader().getResourceAsStream("spectra_400.0_4.0.mgf"))));
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        FrankEtAlDotProduct checker = new FrankEtAlDotProduct(0.5F, 20, true);
+        checker.setVersion(FrankEtAlDotProduct.AlgorithmVersion.JPR_2008);
+
+        FrankEtAlDotProduct copy = checker.newThreadLocalCopy();
+        Assert.assertNotSame(checker, copy);
+        Assert.assertEquals(0.5F, copy.getFragmentIonTolerance(), 0);
+        Assert.assertTrue(copy.isPeakFiltering());
+        Assert.assertEquals(FrankEtAlDotProduct.AlgorithmVersion.JPR_2008, copy.getVersion());
+
+        copy.setFragmentIonTolerance(0.1F);
+        Assert.assertEquals(0.5F, checker.getFragmentIonTolerance(), 0);
+
+        ISimilarityChecker fisherCopy = new FisherExactTest(0.3F, true).newThreadLocalCopy();
+        Assert.assertEquals(FisherExactTest.class, fisherCopy.getClass());
+        Assert.assertEquals(0.3F, fisherCopy.getFragmentIonTolerance(), 0);
+        Assert.assertTrue(fisherCopy.isPeakFiltering());
+    }
+
+    @Test
+    public void testConcurrentScoring() throws Exception {
+        ISimilarityChecker[] checkers = {
+                new FrankEtAlDotProduct(0.5F),
+                new CombinedFisherIntensityTest(0.5F),
+                new HypergeometricScore(0.5F),
+                new FisherExactTest(0.5F),
+                new IntensityRankCorrelation(0.5F),
+                new AllPeaksDotProduct(0.5)
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+        try {
+            for (ISimilarityChecker checker : checkers) {
+                double[] expected = scoreAll(checker);
+
+                final ThreadLocal<ISimilarityChecker> localChecker = ThreadLocal.withInitial(checker::newThreadLocalCopy);
+                List<Future<double[]>> results = new ArrayList<>();
+                for (int i = 0; i < N_THREADS * 2; i++) {
+                    results.add(executor.submit(() -> scoreAll(localChecker.get())));
+                }
+
+                for (Future<double[]> result : results) {
+                    Assert.assertArrayEquals(checker.getName(), expected, result.get(), 0);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private double[] scoreAll(ISimilarityChecker checker) {
+        double[] scores = new double[spectra.length - 1];
+
+        for (int i = 1; i < spectra.length; i++) {
+            scores[i - 1] = checker.assessSimilarity(spectra[0], spectra[i]);
+        }
+
+        return scores;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.ebi.pride.spectracluster.spectrum;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+import uk.ac.ebi.pride.spectracluster.util.comparator.PeakIntensityComparator;
+import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the selection based highest peak extraction to
+ * a fully sorted reference.
+ */
+public class SpectrumHighestPeaksTest {
+    @Test
+    public void testHighestNPeaks() {
+        Random random = new Random(7);
+        List<IPeak> peaks = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // few distinct intensities to create ties
+            peaks.add(new Peak(100 + random.nextFloat() * 1500, random.nextInt(40)));
+        }
+        Spectrum spectrum = new Spectrum("test", 2, 500F, Defaults.getDefaultQualityScorer(), peaks);
+
+        // larger requests first so that smaller ones are answered from the prefix
+        int[] requests = {50, 10, 1, 49, 200, 0, 400};
+        for (int numberRequested : requests) {
+            ISpectrum highestPeaks = spectrum.getHighestNPeaks(numberRequested);
+            List<IPeak> expected = sortBasedHighestPeaks(spectrum.getPeaks(), numberRequested);
+
+            Assert.assertEquals(expected, highestPeaks.getPeaks());
+            if (numberRequested <= Spectrum.MAX_CACHED_HIGHEST_PEAKS)
+                Assert.assertSame(highestPeaks, spectrum.getHighestNPeaks(numberRequested));
+        }
+    }
+
+    @Test
+    public void testMajorPeaks() {
+        List<IPeak> peaks = new ArrayList<>();
+        peaks.add(new Peak(100.5F, 10));
+        peaks.add(new Peak(200.5F, 50));
+        peaks.add(new Peak(300.5F, 30));
+        peaks.add(new Peak(400.5F, 40));
+        Spectrum spectrum = new Spectrum("test", 2, 500F, Defaults.getDefaultQualityScorer(), peaks);
+
+        Assert.assertArrayEquals(new int[]{200, 400}, spectrum.asMajorPeakMZs(2));
+        Assert.assertArrayEquals(new int[]{200, 300, 400}, spectrum.asMajorPeakMZs(3));
+        Assert.assertTrue(spectrum.containsMajorPeak(300, 3));
+        Assert.assertFalse(spectrum.containsMajorPeak(300, 2));
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        Random random = new Random(11);
+        List<IPeak> peaks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            peaks.add(new Peak(100 + random.nextFloat() * 1500, random.nextInt(1000)));
+        }
+        final Spectrum spectrum = new Spectrum("test", 2, 500F, Defaults.getDefaultQualityScorer(), peaks);
+        final Spectrum reference = new Spectrum("test", 2, 500F, Defaults.getDefaultQualityScorer(), peaks);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int seed = thread;
+                results.add(executor.submit(() -> {
+                    Random threadRandom = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        int numberRequested = threadRandom.nextInt(Spectrum.MAX_CACHED_HIGHEST_PEAKS);
+                        Assert.assertEquals(reference.getHighestNPeaks(numberRequested).getPeaks(), spectrum.getHighestNPeaks(numberRequested).getPeaks());
+
+                        int majorPeakCount = 1 + threadRandom.nextInt(10);
+                        Assert.assertArrayEquals(reference.asMajorPeakMZs(majorPeakCount), spectrum.asMajorPeakMZs(majorPeakCount));
+                        Assert.assertEquals(reference.getQualityScore(), spectrum.getQualityScore(), 0);
+                    }
+                }));
+            }
+
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<IPeak> sortBasedHighestPeaks(List<IPeak> peaks, int numberRequested) {
+        List<IPeak> byIntensity = new ArrayList<>(peaks);
+        byIntensity.sort(PeakIntensityComparator.INSTANCE);
+
+        List<IPeak> ret = new ArrayList<>(byIntensity.subList(0, Math.min(numberRequested, byIntensity.size())));
+        ret.sort(new PeakMzComparator());
+
+        return ret;
+    }
+}
@@ -0,0 +1,165 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.consensus.GreedyConsensusSpectrum;
+import uk.ac.ebi.pride.spectracluster.engine.GreedyIncrementalClusteringEngine;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.similarity.FrankEtAlDotProduct;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ClusteringConfigurationTest {
+    @Before
+    public void setUp() {
+        Defaults.resetDefaults();
+    }
+
+    @After
+    public void tearDown() {
+        Defaults.resetDefaults();
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault();
+        ClusteringConfiguration changed = configuration.withFragmentIonTolerance(0.1F).withConsensusMinPeaks(0);
+
+        Assert.assertEquals(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE, configuration.getFragmentIonTolerance(), 0);
+        Assert.assertEquals(Defaults.DEFAULT_CONSENSUS_MIN_PEAKS, configuration.getConsensusMinPeaks());
+        Assert.assertEquals(0.1F, changed.getFragmentIonTolerance(), 0);
+        Assert.assertEquals(0, changed.getConsensusMinPeaks());
+
+        // tolerance dependent objects are regenerated
+        Assert.assertEquals(0.1F, changed.getSimilarityChecker().getFragmentIonTolerance(), 0);
+        Assert.assertEquals(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE, configuration.getSimilarityChecker().getFragmentIonTolerance(), 0);
+        Assert.assertNotSame(configuration.getPeakFilter(), changed.getPeakFilter());
+
+        // unless they were set explicitly
+        ISimilarityChecker checker = new FrankEtAlDotProduct(0.3F);
+        ClusteringConfiguration withChecker = configuration.withSimilarityChecker(checker).withFragmentIonTolerance(0.2F);
+        Assert.assertSame(checker, withChecker.getSimilarityChecker());
+
+        // the consensus builders use their configuration
+        ClusteringConfiguration greedy = changed.withConsensusFactory(GreedyConsensusSpectrum.FACTORY);
+        Assert.assertEquals(0.1F, greedy.getConsensusSpectrumBuilder().getFragmentIonTolerance(), 0);
+        Assert.assertEquals(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE, Defaults.getDefaultConsensusSpectrumBuilder().getFragmentIonTolerance(), 0);
+    }
+
+    @Test
+    public void testDefaultsSnapshot() {
+        ClusteringConfiguration snapshot = Defaults.getConfiguration();
+
+        Defaults.setSimilarityThreshold(0.5);
+        Defaults.setSaveAddingScore(true);
+
+        Assert.assertEquals(0.5, Defaults.getSimilarityThreshold(), 0);
+        Assert.assertTrue(Defaults.getConfiguration().isSaveAddingScore());
+        Assert.assertEquals(Defaults.DEFAULT_SIMILARITY_THRESHOLD, snapshot.getSimilarityThreshold(), 0);
+        Assert.assertFalse(snapshot.isSaveAddingScore());
+    }
+
+    @Test
+    public void testConcurrentEngines() throws Exception {
+        final File testFile = new File(ClusteringConfigurationTest.class.getClassLoader().getResource("spectra_400.0_4.0.mgf").toURI());
+
+        ClusteringConfiguration base = ClusteringConfiguration.createDefault().withPrecursorIonTolerance(4F);
+        final ClusteringConfiguration low = base.withSimilarityThreshold(0.6);
+        final ClusteringConfiguration high = base.withSimilarityThreshold(0.95).withSaveAddingScore(true);
+
+        int expectedLow = cluster(testFile, low).size();
+        int expectedHigh = cluster(testFile, high).size();
+        Assert.assertTrue(expectedLow < expectedHigh);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<ICluster>>> lowResults = new ArrayList<>();
+            List<Future<List<ICluster>>> highResults = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                lowResults.add(executor.submit(() -> cluster(testFile, low)));
+                highResults.add(executor.submit(() -> cluster(testFile, high)));
+            }
+
+            for (Future<List<ICluster>> result : lowResults)
+                Assert.assertEquals(expectedLow, result.get().size());
+            for (Future<List<ICluster>> result : highResults)
+                Assert.assertEquals(expectedHigh, result.get().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testEnginesWithDifferentFragmentTolerances() throws Exception {
+        final File testFile = new File(ClusteringConfigurationTest.class.getClassLoader().getResource("spectra_400.0_4.0.mgf").toURI());
+
+        ClusteringConfiguration base = ClusteringConfiguration.createDefault().withPrecursorIonTolerance(4F);
+        final ClusteringConfiguration narrow = base.withFragmentIonTolerance(0.1F);
+        final ClusteringConfiguration wide = base.withFragmentIonTolerance(1.0F);
+
+        List<String> expectedNarrow = describe(cluster(testFile, narrow));
+        List<String> expectedWide = describe(cluster(testFile, wide));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<ICluster>> narrowResult = executor.submit(() -> cluster(testFile, narrow));
+            Future<List<ICluster>> wideResult = executor.submit(() -> cluster(testFile, wide));
+
+            assertFragmentIonTolerance(0.1F, narrowResult.get());
+            assertFragmentIonTolerance(1.0F, wideResult.get());
+            Assert.assertEquals(expectedNarrow, describe(narrowResult.get()));
+            Assert.assertEquals(expectedWide, describe(wideResult.get()));
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(Defaults.DEFAULT_FRAGMENT_ION_TOLERANCE, Defaults.getFragmentIonTolerance(), 0);
+    }
+
+    private static void assertFragmentIonTolerance(float expected, List<ICluster> clusters) {
+        Assert.assertFalse(clusters.isEmpty());
+        for (ICluster cluster : clusters) {
+            Assert.assertEquals(expected, cluster.getConsensusSpectrumBuilder().getFragmentIonTolerance(), 0);
+        }
+    }
+
+    private static List<String> describe(List<ICluster> clusters) {
+        List<String> descriptions = new ArrayList<>(clusters.size());
+        for (ICluster cluster : clusters) {
+            descriptions.add(cluster.getSpectralId() + " " + cluster.getConsensusSpectrum().getPeaks().size());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    /**
+     * Every run reads its own spectra since the engines annotate them
+     */
+    private static List<ICluster> cluster(File testFile, ClusteringConfiguration configuration) {
+        List<ISpectrum> spectra = new ArrayList<>(Arrays.asList(ParserUtilities.readMGFScans(testFile)));
+        spectra.sort(Comparator.comparing(ISpectrum::getPrecursorMz));
+
+        GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(configuration, null);
+        List<ICluster> clusters = new ArrayList<>();
+
+        for (ISpectrum spectrum : spectra) {
+            clusters.addAll(engine.addClusterIncremental(ClusterUtilities.asCluster(spectrum)));
+        }
+        clusters.addAll(engine.getClusters());
+
+        return clusters;
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.GreedySpectralCluster;
+import uk.ac.ebi.pride.spectracluster.engine.GreedyIncrementalClusteringEngine;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+
+import java.util.*;
+
+public class IdRegistryTest {
+    @Test
+    public void testIntern() {
+        IdRegistry idRegistry = new IdRegistry();
+        int index = idRegistry.intern("IdRegistryTest.first");
+
+        Assert.assertEquals(index, idRegistry.intern("IdRegistryTest.first"));
+        Assert.assertEquals(index, idRegistry.getIndex(new String("IdRegistryTest.first")));
+        Assert.assertEquals("IdRegistryTest.first", idRegistry.resolve(index));
+        Assert.assertTrue(index != idRegistry.intern("IdRegistryTest.second"));
+        Assert.assertEquals(3, idRegistry.size());
+
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, idRegistry.getIndex("IdRegistryTest.unknown"));
+        Assert.assertEquals(IdRegistry.NULL_ID, idRegistry.intern(null));
+        Assert.assertNull(idRegistry.resolve(IdRegistry.NULL_ID));
+
+        // registries are independent
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, new IdRegistry().getIndex("IdRegistryTest.first"));
+    }
+
+    @Test
+    public void testRegistryIsScopedToConfiguration() {
+        ClusteringConfiguration configuration = ClusteringConfiguration.createDefault();
+        Assert.assertSame(configuration.getIdRegistry(), configuration.withFragmentIonTolerance(0.1F).getIdRegistry());
+        Assert.assertNotSame(configuration.getIdRegistry(), ClusteringConfiguration.createDefault().getIdRegistry());
+
+        ClusteringConfiguration otherRun = configuration.withIdRegistry(new IdRegistry());
+        GreedySpectralCluster cluster1 = new GreedySpectralCluster("cluster1", configuration);
+        GreedySpectralCluster cluster2 = new GreedySpectralCluster("cluster2", otherRun);
+
+        cluster1.addSpectra(createSpectrum("IdRegistryTest.scoped1"), createSpectrum("IdRegistryTest.scoped2"));
+        cluster1.saveComparisonResult("cluster3", 0.5F);
+        cluster2.addSpectra(createSpectrum("IdRegistryTest.scoped2"));
+
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, otherRun.getIdRegistry().getIndex("IdRegistryTest.scoped1"));
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, Defaults.getConfiguration().getIdRegistry().getIndex("IdRegistryTest.scoped1"));
+
+        // clusters of different runs can still be compared
+        Assert.assertEquals(1, cluster1.countSharedSpectra(cluster2));
+        Assert.assertSame(cluster1, ClusterUtilities.clusterFullyContains(cluster1, cluster2));
+
+        GreedySpectralCluster copy = new GreedySpectralCluster(cluster1, otherRun);
+        Assert.assertEquals(cluster1.getSpectralIds(), copy.getSpectralIds());
+        Assert.assertTrue(copy.isKnownComparisonMatch("cluster3"));
+        Assert.assertEquals(1, copy.getComparisonMatches().size());
+        Assert.assertEquals("cluster3", copy.getComparisonMatches().get(0).getSpectrumId());
+        Assert.assertEquals(1, copy.countSharedSpectra(cluster2));
+    }
+
+    @Test
+    public void testRegistryIsScopedToEngine() {
+        Defaults.resetDefaults();
+        IdRegistry defaultRegistry = Defaults.getConfiguration().getIdRegistry();
+
+        GreedyIncrementalClusteringEngine engine = new GreedyIncrementalClusteringEngine(
+                Defaults.getDefaultSimilarityChecker(), Defaults.getDefaultSpectrumComparator(), 2F, 0.99,
+                Defaults.getDefaultComparisonPeakFilter());
+        engine.addClusterIncremental(ClusterUtilities.asCluster(createSpectrum("IdRegistryTest.engine1")));
+        engine.addClusterIncremental(ClusterUtilities.asCluster(createSpectrum("IdRegistryTest.engine2")));
+
+        // the engine's clusters do not fill the process-wide registry
+        Assert.assertEquals(2, engine.getClusters().size());
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, defaultRegistry.getIndex("IdRegistryTest.engine1"));
+
+        defaultRegistry.intern("IdRegistryTest.default");
+        Defaults.resetDefaults();
+        Assert.assertNotSame(defaultRegistry, Defaults.getConfiguration().getIdRegistry());
+        Assert.assertEquals(IdRegistry.UNKNOWN_ID, Defaults.getConfiguration().getIdRegistry().getIndex("IdRegistryTest.default"));
+    }
+
+    @Test
+    public void testIntHashSet() {
+        Random random = new Random(1);
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<>();
+
+        for (int i = 0; i < 10000; i++) {
+            int value = random.nextInt(20000);
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+
+        Assert.assertEquals(expected.size(), set.size());
+        for (int i = 0; i < 20000; i++) {
+            Assert.assertEquals(expected.contains(i), set.contains(i));
+        }
+        Assert.assertFalse(set.contains(-1));
+
+        int[] values = set.toArray();
+        Arrays.sort(values);
+        Assert.assertEquals(expected.size(), values.length);
+        Assert.assertTrue(expected.containsAll(toList(values)));
+
+        IntHashSet other = new IntHashSet();
+        for (int i = 0; i < 100; i++) {
+            other.add(i);
+        }
+        int shared = 0;
+        for (int i = 0; i < 100; i++) {
+            if (expected.contains(i))
+                shared++;
+        }
+        Assert.assertEquals(shared, set.countShared(other));
+        Assert.assertEquals(shared, other.countShared(set));
+    }
+
+    @Test
+    public void testClusterSpectralIds() {
+        GreedySpectralCluster cluster1 = new GreedySpectralCluster("cluster1");
+        GreedySpectralCluster cluster2 = new GreedySpectralCluster("cluster2");
+
+        cluster1.addSpectra(createSpectrum("IdRegistryTest.b"), createSpectrum("IdRegistryTest.a"),
+                createSpectrum("IdRegistryTest.a"));
+        cluster2.addSpectra(createSpectrum("IdRegistryTest.a"));
+
+        Assert.assertEquals(2, cluster1.getClusteredSpectraCount());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("IdRegistryTest.a", "IdRegistryTest.b")), cluster1.getSpectralIds());
+        Assert.assertEquals("IdRegistryTest.a,IdRegistryTest.b", cluster1.getSpectralId());
+
+        Assert.assertEquals(1, cluster1.countSharedSpectra(cluster2));
+        Assert.assertSame(cluster1, ClusterUtilities.clusterFullyContains(cluster1, cluster2));
+        Assert.assertSame(cluster1, ClusterUtilities.clusterFullyContains(cluster2, cluster1));
+
+        cluster2.addSpectra(createSpectrum("IdRegistryTest.c"));
+        Assert.assertNull(ClusterUtilities.clusterFullyContains(cluster1, cluster2));
+        Assert.assertEquals(0.5, ClusterUtilities.clusterFullyContainsScore(cluster1, cluster2), 0);
+
+        // the cached spectral id changes with the spectra
+        Assert.assertEquals("IdRegistryTest.a,IdRegistryTest.c", cluster2.getSpectralId());
+        Assert.assertTrue(cluster1.compareTo(cluster2) < 0);
+        cluster1.addSpectra(createSpectrum("IdRegistryTest.d"));
+        Assert.assertEquals("IdRegistryTest.a,IdRegistryTest.b,IdRegistryTest.d", cluster1.getSpectralId());
+        Assert.assertEquals(cluster1.getSpectralId(), new GreedySpectralCluster(cluster1).getSpectralId());
+    }
+
+    private ISpectrum createSpectrum(String id) {
+        return new Spectrum(id, 2, 400, Defaults.getDefaultQualityScorer(), Collections.emptyList());
+    }
+
+    private List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,59 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IntIntHashMapTest {
+    @Test
+    public void testAddTo() {
+        IntIntHashMap map = new IntIntHashMap();
+
+        Assert.assertEquals(1, map.addTo(5, 1));
+        Assert.assertEquals(2, map.addTo(5, 1));
+        Assert.assertEquals(0, map.addTo(5, -2));
+        Assert.assertTrue(map.containsKey(5));
+
+        Assert.assertTrue(map.remove(5));
+        Assert.assertFalse(map.remove(5));
+        Assert.assertFalse(map.containsKey(5));
+        Assert.assertEquals(-1, map.get(5, -1));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testSameAsHashMap() {
+        IntIntHashMap map = new IntIntHashMap(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // few keys and many removals to test the shifting of colliding entries
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(200);
+
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                int value = random.nextInt();
+                expected.put(key, value);
+                map.put(key, value);
+            }
+
+            Assert.assertEquals(expected.size(), map.size());
+        }
+
+        for (int key = 0; key < 200; key++) {
+            Assert.assertEquals(expected.containsKey(key), map.containsKey(key));
+            if (expected.containsKey(key))
+                Assert.assertEquals((int) expected.get(key), map.get(key, 0));
+        }
+
+        IntIntHashMap copy = new IntIntHashMap(map);
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertEquals(expected.size(), copy.size());
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.ebi.pride.spectracluster.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.cluster.ICluster;
+import uk.ac.ebi.pride.spectracluster.io.ParserUtilities;
+import uk.ac.ebi.pride.spectracluster.similarity.FrankEtAlDotProduct;
+import uk.ac.ebi.pride.spectracluster.similarity.ISimilarityChecker;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NoneFittingSpectraTest {
+    @Test
+    public void testBulkMatchesSingleClusters() {
+        List<ICluster> clusters = createClusters();
+        ISimilarityChecker similarityChecker = new FrankEtAlDotProduct(0.5F);
+        double threshold = 0.5;
+
+        List<List<ICluster>> noneFittingSpectra = ClusterUtilities.findNoneFittingSpectra(clusters, similarityChecker, threshold);
+        Assert.assertEquals(clusters.size(), noneFittingSpectra.size());
+
+        int nNoneFitting = 0;
+        for (int i = 0; i < clusters.size(); i++) {
+            List<ICluster> expected = ClusterUtilities.findNoneFittingSpectra(clusters.get(i), similarityChecker, threshold);
+            List<ICluster> found = noneFittingSpectra.get(i);
+
+            Assert.assertEquals(expected.size(), found.size());
+            for (int j = 0; j < expected.size(); j++) {
+                Assert.assertEquals(expected.get(j).getSpectralId(), found.get(j).getSpectralId());
+            }
+            nNoneFitting += found.size();
+        }
+
+        Assert.assertTrue(nNoneFitting > 0);
+    }
+
+    @Test
+    public void testExecutorMatchesCallingThread() throws Exception {
+        List<ICluster> clusters = createClusters();
+        ISimilarityChecker similarityChecker = new FrankEtAlDotProduct(0.5F);
+        double threshold = 0.5;
+
+        List<List<ICluster>> expected = ClusterUtilities.findNoneFittingSpectra(clusters, similarityChecker, threshold);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<List<ICluster>> found = ClusterUtilities.findNoneFittingSpectra(clusters, similarityChecker, threshold, executor);
+
+            Assert.assertEquals(expected.size(), found.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).size(), found.get(i).size());
+                for (int j = 0; j < expected.get(i).size(); j++) {
+                    Assert.assertEquals(expected.get(i).get(j).getSpectralId(), found.get(i).get(j).getSpectralId());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Clusters of different sizes, including single spectra
+     */
+    private List<ICluster> createClusters() {
+        ISpectrum[] spectra = ParserUtilities.readMGFScans(new LineNumberReader(new InputStreamReader(
+                NoneFittingSpectraTest.class.getClassLoader().getResourceAsStream("spectra_400.0_4.0.mgf"))));
+
+        List<ICluster> clusters = new ArrayList<>();
+        int size = 1;
+        for (int start = 0; start + size <= spectra.length; start += size, size = size % 7 + 1) {
+            ICluster cluster = ClusterUtilities.asCluster(spectra[start]);
+            cluster.addSpectra(Arrays.copyOfRange(spectra, start + 1, start + size));
+            clusters.add(cluster);
+        }
+
+        return clusters;
+    }
+}
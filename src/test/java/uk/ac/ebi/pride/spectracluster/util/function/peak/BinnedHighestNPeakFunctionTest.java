@@ -0,0 +1,79 @@
+package uk.ac.ebi.pride.spectracluster.util.function.peak;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.util.comparator.PeakIntensityComparator;
+import uk.ac.ebi.pride.spectracluster.util.comparator.PeakMzComparator;
+
+import java.util.*;
+
+/**
+ * Compares the selection based BinnedHighestNPeakFunction to a simple
+ * sort based implementation.
+ */
+public class BinnedHighestNPeakFunctionTest {
+    @Test
+    public void testOverlappingBins() {
+        Random random = new Random(42);
+
+        for (int run = 0; run < 20; run++) {
+            List<IPeak> peaks = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                // use few distinct intensities to create ties
+                peaks.add(new Peak(100 + random.nextFloat() * 1500, random.nextInt(50)));
+            }
+            peaks.sort(new PeakMzComparator());
+
+            BinnedHighestNPeakFunction function = new BinnedHighestNPeakFunction(8, 100, 50);
+            List<IPeak> filtered = function.apply(peaks);
+            List<IPeak> expected = sortBasedFilter(peaks, 8, 100, 50);
+
+            Assert.assertEquals(expected.size(), filtered.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertSame(expected.get(i), filtered.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testIdenticalPeaksAreRetainedOnce() {
+        List<IPeak> peaks = new ArrayList<>();
+        peaks.add(new Peak(150F, 10F));
+        peaks.add(new Peak(150F, 10F));
+        peaks.add(new Peak(160F, 5F));
+
+        List<IPeak> filtered = new BinnedHighestNPeakFunction(8, 100, 50).apply(peaks);
+
+        Assert.assertEquals(2, filtered.size());
+        Assert.assertEquals(150F, filtered.get(0).getMz());
+        Assert.assertEquals(160F, filtered.get(1).getMz());
+    }
+
+    /**
+     * Straight-forward implementation that sorts every bin by intensity
+     */
+    private static List<IPeak> sortBasedFilter(List<IPeak> peaks, int maxPeaks, int binSize, int binOverlap) {
+        Set<IPeak> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (double binBottom = BinnedHighestNPeakFunction.MINIMUM_BINNED_MZ; binBottom < BinnedHighestNPeakFunction.MAXIMUM_BINNED_MZ - binSize; binBottom += (binSize - binOverlap)) {
+            List<IPeak> binPeaks = new ArrayList<>();
+            for (IPeak peak : peaks) {
+                if (peak.getMz() >= binBottom && peak.getMz() <= binBottom + binSize)
+                    binPeaks.add(peak);
+            }
+
+            binPeaks.sort(PeakIntensityComparator.INSTANCE);
+            retained.addAll(binPeaks.subList(0, Math.min(maxPeaks, binPeaks.size())));
+        }
+
+        List<IPeak> ret = new ArrayList<>();
+        for (IPeak peak : peaks) {
+            if (retained.contains(peak))
+                ret.add(peak);
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.ClusteringTestUtilities;
+import uk.ac.ebi.pride.spectracluster.util.function.Functions;
+import uk.ac.ebi.pride.spectracluster.util.function.IFunction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Makes sure the fused filters produce the same spectra as the
+ * chained functions.
+ */
+public class FusedPeakFilterFunctionTest {
+    @Test
+    public void testFusedFilterEqualsChain() {
+        List<ISpectrum> spectra = ClusteringTestUtilities.readISpectraFromResource();
+
+        // a function that cannot be fused
+        IFunction<ISpectrum, ISpectrum> userFunction = spectrum -> new Spectrum(spectrum, spectrum.getPeaks().subList(0, spectrum.getPeaksCount() / 2));
+
+        List<IFunction<ISpectrum, ISpectrum>> functions = Arrays.asList(
+                new RemoveImpossiblyHighPeaksFunction(),
+                new RemovePrecursorPeaksFunction(0.5F),
+                new HighestNSpectrumPeaksFunction(70),
+                new RemoveWindowPeaksFunction(200, 1500),
+                userFunction,
+                new RemoveIonContaminantsPeaksFunction(0.5F),
+                new RemoveReporterIonPeaksFunction(0.5F),
+                new HighestNSpectrumPeaksFunction(20));
+
+        IFunction<ISpectrum, ISpectrum> chain = Functions.join(functions);
+        IFunction<ISpectrum, ISpectrum> fused = new FusedPeakFilterFunction(functions);
+
+        for (ISpectrum spectrum : spectra) {
+            ISpectrum expected = chain.apply(spectrum);
+            ISpectrum filtered = fused.apply(spectrum);
+
+            Assert.assertEquals(expected.getPeaks(), filtered.getPeaks());
+            Assert.assertEquals(expected.getTotalIntensity(), filtered.getTotalIntensity(), 0.001);
+        }
+    }
+
+    @Test
+    public void testUnknownChargeIsUnchanged() {
+        ISpectrum spectrum = ClusteringTestUtilities.readISpectraFromResource().get(0);
+        ISpectrum noCharge = new Spectrum(spectrum.getId(), 0, spectrum.getPrecursorMz(), spectrum.getQualityScorer(), spectrum.getPeaks());
+
+        IFunction<ISpectrum, ISpectrum> fused = new FusedPeakFilterFunction(new RemoveImpossiblyHighPeaksFunction(),
+                new RemovePrecursorPeaksFunction(0.5F));
+
+        Assert.assertSame(noCharge, fused.apply(noCharge));
+    }
+}
@@ -0,0 +1,60 @@
+package uk.ac.ebi.pride.spectracluster.util.function.spectrum;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import uk.ac.ebi.pride.spectracluster.spectrum.IPeak;
+import uk.ac.ebi.pride.spectracluster.spectrum.ISpectrum;
+import uk.ac.ebi.pride.spectracluster.spectrum.Peak;
+import uk.ac.ebi.pride.spectracluster.spectrum.Spectrum;
+import uk.ac.ebi.pride.spectracluster.util.Defaults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MzExclusionListFunctionTest {
+    @Test
+    public void testOverlappingWindowsAreMerged() {
+        MzExclusionListFunction function = new MzExclusionListFunction(new float[]{130F, 100F, 100.5F}, new float[]{1F, 0.5F, 0.5F});
+
+        Assert.assertEquals(2, function.getNumberOfWindows());
+    }
+
+    @Test
+    public void testIonListsCannotBeChanged() {
+        MzExclusionListFunction.getItraqReporterMz()[0] = 0;
+
+        Assert.assertEquals(113.1F, MzExclusionListFunction.getItraqReporterMz()[0], 0);
+    }
+
+    @Test
+    public void testSweepEqualsNaiveFilter() {
+        float[] excluded = MzExclusionListFunction.concat(MzExclusionListFunction.getImmoniumIonMz(),
+                MzExclusionListFunction.getItraqReporterMz(), MzExclusionListFunction.getTmtReporterMz());
+        float tolerance = 0.05F;
+        MzExclusionListFunction function = new MzExclusionListFunction(excluded, tolerance);
+
+        Random random = new Random(3);
+        List<IPeak> peaks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            peaks.add(new Peak(50 + random.nextFloat() * 200, 1));
+        }
+        ISpectrum spectrum = new Spectrum("test", 2, 800F, Defaults.getDefaultQualityScorer(), peaks);
+
+        List<IPeak> expected = new ArrayList<>();
+        for (IPeak peak : spectrum.getPeaks()) {
+            boolean isExcluded = false;
+            for (float mz : excluded) {
+                if (peak.getMz() >= mz - tolerance && peak.getMz() <= mz + tolerance)
+                    isExcluded = true;
+            }
+            if (!isExcluded)
+                expected.add(peak);
+        }
+
+        ISpectrum filtered = function.apply(spectrum);
+
+        Assert.assertTrue(expected.size() < spectrum.getPeaksCount());
+        Assert.assertEquals(expected, filtered.getPeaks());
+    }
+}